@@ -183,6 +183,9 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
 
     protected abstract Class<? extends Channel> getChannelClass();
 
+    /**
+     * Groups obtained from {@link NettyEventLoopGroups} are shared and are not shut down on disconnect.
+     */
     protected abstract EventLoopGroup getWorkerGroup();
 
     protected abstract ChannelFuture startChannel();
@@ -337,7 +340,9 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
             }
         } finally {
             if (workerGroup != null) {
-                workerGroup.shutdownGracefully();
+                if (!NettyEventLoopGroups.isShared(workerGroup)) {
+                    workerGroup.shutdownGracefully();
+                }
                 workerGroup = null;
             }
         }
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.io;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.ServerSocketChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.openremote.model.Container;
+import org.openremote.model.ContainerService;
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static org.openremote.container.util.MapAccess.getBoolean;
+import static org.openremote.container.util.MapAccess.getInteger;
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * Manages the Netty {@link EventLoopGroup}s shared by all {@link AbstractNettyIOClient}s and
+ * {@link AbstractNettyIOServer}s, so connections don't each need their own selector thread.
+ * <p>
+ * By default all protocols share a single group with {@link #IO_EVENT_LOOP_THREADS} threads; a protocol (e.g.
+ * {@link #TCP}) can be given its own group by configuring <code>IO_EVENT_LOOP_THREADS_&lt;PROTOCOL&gt;</code>
+ * (e.g. <code>IO_EVENT_LOOP_THREADS_UDP</code>). The native epoll transport is used when it is available, unless
+ * {@link #IO_EVENT_LOOP_EPOLL} is disabled; use the channel class getters of this class so channels match the
+ * transport of the group.
+ * <p>
+ * Groups are created when first used and shut down when the container stops.
+ */
+public class NettyEventLoopGroups implements ContainerService {
+
+    public static final String IO_EVENT_LOOP_THREADS = "IO_EVENT_LOOP_THREADS";
+    public static final int IO_EVENT_LOOP_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
+    public static final String IO_EVENT_LOOP_EPOLL = "IO_EVENT_LOOP_EPOLL";
+    public static final boolean IO_EVENT_LOOP_EPOLL_DEFAULT = true;
+    public static final String TCP = "tcp";
+    public static final String UDP = "udp";
+    public static final String WEBSOCKET = "websocket";
+    protected static final String SHARED = "shared";
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, NettyEventLoopGroups.class);
+    protected static final Map<String, EventLoopGroup> eventLoopGroups = new ConcurrentHashMap<>();
+    protected static Map<String, String> config = Collections.emptyMap();
+    protected static Boolean epoll;
+
+    @Override
+    public int getPriority() {
+        // Start before and stop after the agents
+        return ContainerService.HIGH_PRIORITY;
+    }
+
+    @Override
+    public void init(Container container) throws Exception {
+        synchronized (NettyEventLoopGroups.class) {
+            config = new HashMap<>(container.getConfig());
+            epoll = null;
+        }
+    }
+
+    @Override
+    public void start(Container container) throws Exception {
+        LOG.info("Netty transport for IO clients and servers: " + (isEpoll() ? "epoll" : "nio"));
+    }
+
+    @Override
+    public void stop(Container container) throws Exception {
+        shutdown();
+    }
+
+    /**
+     * @return The group to use for the protocol, this must not be shut down by the caller.
+     */
+    public static EventLoopGroup getEventLoopGroup(String protocol) {
+        String key = "IO_EVENT_LOOP_THREADS_" + protocol.toUpperCase(Locale.ROOT);
+        String name = getConfig().containsKey(key) ? protocol : SHARED;
+
+        return eventLoopGroups.computeIfAbsent(name, n -> {
+            int threads = Math.max(1, getInteger(getConfig(), key, getInteger(getConfig(), IO_EVENT_LOOP_THREADS, IO_EVENT_LOOP_THREADS_DEFAULT)));
+            LOG.fine("Creating IO event loop group '" + n + "' with threads: " + threads);
+            DefaultThreadFactory threadFactory = new DefaultThreadFactory("IO-" + n, true);
+            return isEpoll() ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+        });
+    }
+
+    public static boolean isShared(EventLoopGroup eventLoopGroup) {
+        return eventLoopGroups.containsValue(eventLoopGroup);
+    }
+
+    public static Class<? extends SocketChannel> getSocketChannelClass() {
+        return isEpoll() ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    public static Class<? extends ServerSocketChannel> getServerSocketChannelClass() {
+        return isEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends DatagramChannel> getDatagramChannelClass() {
+        return isEpoll() ? EpollDatagramChannel.class : NioDatagramChannel.class;
+    }
+
+    public static synchronized boolean isEpoll() {
+        if (epoll == null) {
+            epoll = getBoolean(config, IO_EVENT_LOOP_EPOLL, IO_EVENT_LOOP_EPOLL_DEFAULT) && Epoll.isAvailable();
+        }
+        return epoll;
+    }
+
+    public static void shutdown() {
+        eventLoopGroups.keySet().forEach(name -> {
+            EventLoopGroup eventLoopGroup = eventLoopGroups.remove(name);
+            if (eventLoopGroup != null) {
+                eventLoopGroup.shutdownGracefully();
+            }
+        });
+    }
+
+    protected static synchronized Map<String, String> getConfig() {
+        return config;
+    }
+}
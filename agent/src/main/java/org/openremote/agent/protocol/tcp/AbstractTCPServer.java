@@ -22,9 +22,10 @@ package org.openremote.agent.protocol.tcp;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import org.openremote.agent.protocol.io.AbstractNettyIOServer;
+import org.openremote.agent.protocol.io.NettyEventLoopGroups;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
@@ -47,10 +48,15 @@ public abstract class AbstractTCPServer<T> extends AbstractNettyIOServer<T, Sock
         return localAddress == null ? null : "tcp://" + localAddress;
     }
 
+    @Override
+    protected EventLoopGroup getWorkerGroup() {
+        return NettyEventLoopGroups.getEventLoopGroup(NettyEventLoopGroups.TCP);
+    }
+
     @Override
     protected ServerBootstrap createAndConfigureBootstrap() {
         ServerBootstrap bootstrap = new ServerBootstrap();
-        bootstrap.channel(NioServerSocketChannel.class);
+        bootstrap.channel(NettyEventLoopGroups.getServerSocketChannelClass());
         bootstrap.group(workerGroup);
         bootstrap.localAddress(localAddress);
         bootstrap.option(ChannelOption.SO_BACKLOG, clientLimit);
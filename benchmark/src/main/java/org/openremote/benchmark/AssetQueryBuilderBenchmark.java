@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.manager.asset.AssetStorageService;
+import org.openremote.model.asset.impl.ThingAsset;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.filter.*;
+import org.openremote.model.value.MetaItemType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Building the SQL of an {@link AssetQuery} using {@link AssetStorageService#buildQuery}, which is done for every
+ * asset query executed by the manager.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssetQueryBuilderBenchmark {
+
+    /**
+     * Gives access to the protected query builder.
+     */
+    protected static class QueryBuilder extends AssetStorageService {
+        protected static Object build(AssetQuery query, Supplier<Long> timeProvider) {
+            return buildQuery(query, timeProvider);
+        }
+    }
+
+    protected AssetQuery idQuery;
+    protected AssetQuery complexQuery;
+    protected Supplier<Long> timeProvider = System::currentTimeMillis;
+
+    @Setup
+    public void setup() {
+        idQuery = new AssetQuery().ids("4rb8yRsY3mbDq1NpPq1Lge");
+
+        complexQuery = new AssetQuery()
+            .tenant(new TenantPredicate("master"))
+            .types(ThingAsset.DESCRIPTOR)
+            .paths(new PathPredicate("2Yp7wpfXnQzWAVNqUxxNpp"))
+            .names(new StringPredicate(AssetQuery.Match.BEGIN, "Living"))
+            .attributes(
+                new AttributePredicate("temperature", new NumberPredicate(20, AssetQuery.Operator.GREATER_THAN))
+                    .meta(new NameValuePredicate(MetaItemType.STORE_DATA_POINTS, new BooleanPredicate(true))),
+                new AttributePredicate("mode", new StringPredicate("auto")));
+    }
+
+    @Benchmark
+    public Object buildIdQuery() {
+        return QueryBuilder.build(idQuery, timeProvider);
+    }
+
+    @Benchmark
+    public Object buildComplexQuery() {
+        return QueryBuilder.build(complexQuery, timeProvider);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.container.timer.TimerService;
+import org.openremote.manager.rules.AssetQueryPredicate;
+import org.openremote.model.asset.impl.ThingAsset;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.filter.AttributePredicate;
+import org.openremote.model.query.filter.NumberPredicate;
+import org.openremote.model.query.filter.StringPredicate;
+import org.openremote.model.query.filter.TenantPredicate;
+import org.openremote.model.rules.AssetState;
+import org.openremote.model.value.ValueType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AssetQueryPredicate#test} as done by rules for every asset state when matching a rule condition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AssetQueryPredicateBenchmark {
+
+    protected AssetQueryPredicate matchingPredicate;
+    protected AssetQueryPredicate nonMatchingPredicate;
+    protected AssetState<?> assetState;
+
+    @Setup
+    public void setup() {
+        TimerService timerService = new TimerService() {{
+            clock = Clock.REAL;
+        }};
+
+        ThingAsset asset = new ThingAsset("Living room thermostat");
+        asset.setId("4rb8yRsY3mbDq1NpPq1Lge");
+        asset.setRealm("master");
+        Attribute<Double> attribute = new Attribute<>("temperature", ValueType.NUMBER, 21.5, System.currentTimeMillis());
+        asset.addOrReplaceAttributes(attribute, new Attribute<>("targetTemperature", ValueType.NUMBER, 20d));
+        assetState = new AssetState<>(asset, attribute, AttributeEvent.Source.SENSOR);
+
+        matchingPredicate = new AssetQueryPredicate(timerService, null, new AssetQuery()
+            .tenant(new TenantPredicate("master"))
+            .types(ThingAsset.DESCRIPTOR)
+            .names(new StringPredicate(AssetQuery.Match.BEGIN, "Living"))
+            .attributes(new AttributePredicate("temperature", new NumberPredicate(20, AssetQuery.Operator.GREATER_THAN))));
+
+        nonMatchingPredicate = new AssetQueryPredicate(timerService, null, new AssetQuery()
+            .tenant(new TenantPredicate("master"))
+            .types(ThingAsset.DESCRIPTOR)
+            .attributes(new AttributePredicate("temperature", new NumberPredicate(25, AssetQuery.Operator.GREATER_THAN))));
+    }
+
+    @Benchmark
+    public boolean testMatching() {
+        return matchingPredicate.test(assetState);
+    }
+
+    @Benchmark
+    public boolean testNonMatching() {
+        return nonMatchingPredicate.test(assetState);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.hibernate.internal.util.SerializationHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.MetaItem;
+import org.openremote.model.util.ValueUtil;
+import org.openremote.model.value.MetaItemType;
+import org.openremote.model.value.ValueType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link ValueUtil#clone} of an {@link Attribute} (which uses {@link Attribute#deepCopy}) with the Java
+ * serialization and Jackson round trip copies that were used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttributeCloneBenchmark {
+
+    @Param({"number", "JSONObject"})
+    public String valueType;
+
+    protected Attribute<?> attribute;
+
+    @Setup
+    public void setup() {
+        if ("number".equals(valueType)) {
+            attribute = new Attribute<>("temperature", ValueType.NUMBER, 21.5, System.currentTimeMillis());
+        } else {
+            ObjectNode value = ValueUtil.JSON.createObjectNode();
+            value.put("mode", "auto");
+            value.put("setpoint", 21.5);
+            value.putArray("schedule").add(18).add(21).add(19);
+            value.putObject("options").put("eco", true);
+            attribute = new Attribute<>("settings", ValueType.JSON_OBJECT, value, System.currentTimeMillis());
+        }
+
+        attribute.addMeta(
+            new MetaItem<>(MetaItemType.LABEL, "Benchmark attribute"),
+            new MetaItem<>(MetaItemType.STORE_DATA_POINTS, true),
+            new MetaItem<>(MetaItemType.RULE_STATE, true),
+            new MetaItem<>(MetaItemType.UNITS, new String[]{"celsius"})
+        );
+    }
+
+    @Benchmark
+    public Attribute<?> deepCopy() {
+        return ValueUtil.clone(attribute);
+    }
+
+    @Benchmark
+    public Attribute<?> javaSerialization() {
+        return (Attribute<?>) SerializationHelper.clone(attribute);
+    }
+
+    @Benchmark
+    public Attribute<?> jacksonRoundTrip() throws Exception {
+        return ValueUtil.JSON.readValue(ValueUtil.JSON.writeValueAsBytes(attribute), Attribute.class);
+    }
+}
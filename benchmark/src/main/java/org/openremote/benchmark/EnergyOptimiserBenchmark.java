@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.manager.energy.EnergyOptimiser;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Power set point calculation of a storage asset for a 24 hour schedule, using the same {@link EnergyOptimiser} steps
+ * as the energy optimisation service.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnergyOptimiserBenchmark {
+
+    @Param({"1", "0.25"})
+    public double intervalSize;
+
+    protected EnergyOptimiser optimiser;
+    protected int intervalCount;
+    protected double[] powerNets;
+    protected double[] importPowerLimits;
+    protected double[] exportPowerLimits;
+    protected double[] tariffImports;
+    protected double[] tariffExports;
+    protected double[] energyLevelMins;
+    protected double[] energyLevelMaxs;
+
+    @Setup
+    public void setup() {
+        optimiser = new EnergyOptimiser(intervalSize, 0.5);
+        intervalCount = optimiser.get24HourIntervalCount();
+
+        // Daily consumption and solar production profile with a day/night tariff
+        powerNets = IntStream.range(0, intervalCount).mapToDouble(i -> {
+            double hour = i * intervalSize;
+            double consumption = 2 + Math.sin(hour / 24d * 2 * Math.PI) * 1.5;
+            double production = hour > 6 && hour < 20 ? Math.sin((hour - 6) / 14d * Math.PI) * 5 : 0;
+            return consumption - production;
+        }).toArray();
+        importPowerLimits = new double[intervalCount];
+        Arrays.fill(importPowerLimits, 20d);
+        exportPowerLimits = new double[intervalCount];
+        Arrays.fill(exportPowerLimits, -20d);
+        tariffImports = IntStream.range(0, intervalCount).mapToDouble(i -> i * intervalSize < 7 ? 0.08 : 0.25).toArray();
+        tariffExports = IntStream.range(0, intervalCount).mapToDouble(i -> i * intervalSize < 7 ? -0.02 : -0.05).toArray();
+        energyLevelMins = new double[intervalCount];
+        energyLevelMins[intervalCount - 1] = 40d;
+        energyLevelMaxs = new double[intervalCount];
+        Arrays.fill(energyLevelMaxs, 80d);
+    }
+
+    @Benchmark
+    public double[] calculateStorageSetpoints() {
+        double energyLevel = 20d;
+        double powerImportMax = 7d;
+        double powerExportMax = -7d;
+        Function<Integer, Double> powerImportMaxCalculator = interval -> powerImportMax;
+        Function<Integer, Double> powerExportMaxCalculator = interval -> powerExportMax;
+        double[] powerSetpoints = new double[intervalCount];
+        double[] normalisedEnergyLevelMins = Arrays.copyOf(energyLevelMins, intervalCount);
+
+        Function<Integer, Double> energyLevelCalculator = interval ->
+            energyLevel + IntStream.range(0, interval).mapToDouble(j -> powerSetpoints[j] * optimiser.getIntervalSize()).sum();
+
+        optimiser.normaliseEnergyMinRequirements(normalisedEnergyLevelMins, powerImportMaxCalculator, powerExportMaxCalculator, energyLevel);
+
+        BiFunction<Integer, Double, double[]> exportOptimiser = optimiser.getExportOptimiser(powerNets, exportPowerLimits, tariffImports, tariffExports, 0.01);
+        double[][] exportCostAndPower = IntStream.range(0, intervalCount).mapToObj(it -> exportOptimiser.apply(it, powerExportMax))
+            .toArray(double[][]::new);
+
+        BiFunction<Integer, double[], double[]> importOptimiser = optimiser.getImportOptimiser(powerNets, importPowerLimits, tariffImports, tariffExports, 0.01);
+        double[][] importCostAndPower = IntStream.range(0, intervalCount).mapToObj(it -> importOptimiser.apply(it, new double[]{0d, powerImportMax}))
+            .toArray(double[][]::new);
+
+        optimiser.applyEnergyMinImports(importCostAndPower, normalisedEnergyLevelMins, powerSetpoints, energyLevelCalculator, importOptimiser, powerImportMaxCalculator);
+        optimiser.applyEarningOpportunities(importCostAndPower, exportCostAndPower, normalisedEnergyLevelMins, energyLevelMaxs, powerSetpoints, energyLevelCalculator, powerImportMaxCalculator, powerExportMaxCalculator);
+
+        return powerSetpoints;
+    }
+}
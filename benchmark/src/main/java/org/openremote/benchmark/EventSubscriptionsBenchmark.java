@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.openjdk.jmh.annotations.*;
+import org.openremote.container.timer.TimerService;
+import org.openremote.manager.event.ClientEventService;
+import org.openremote.manager.event.EventSubscriptions;
+import org.openremote.model.asset.AssetFilter;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.shared.EventSubscription;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EventSubscriptions#splitForSubscribers} with a number of client sessions that are each subscribed to the
+ * attribute events of a few assets, only a small fraction of the sessions match the published event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSubscriptionsBenchmark {
+
+    protected static final int ASSETS_PER_SESSION = 5;
+
+    @Param({"10", "100", "1000"})
+    public int sessions;
+
+    protected EventSubscriptions eventSubscriptions;
+    protected Exchange exchange;
+
+    @Setup
+    public void setup() {
+        TimerService timerService = new TimerService() {{
+            clock = Clock.REAL;
+        }};
+        eventSubscriptions = new EventSubscriptions(timerService);
+
+        for (int i = 0; i < sessions; i++) {
+            String[] assetIds = new String[ASSETS_PER_SESSION];
+            for (int j = 0; j < ASSETS_PER_SESSION; j++) {
+                // Groups of ten sessions are subscribed to the same assets so ten sessions match the event
+                assetIds[j] = "asset" + ((i - i % 10) * ASSETS_PER_SESSION + j);
+            }
+            eventSubscriptions.createOrUpdate(
+                "session" + i,
+                false,
+                new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setRealm("master").setAssetIds(assetIds), "subscription" + i));
+        }
+
+        AttributeEvent event = new AttributeEvent("asset0", "temperature", 21.5, System.currentTimeMillis())
+            .setRealm("master");
+        exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setBody(event);
+        exchange.getIn().setHeader(ClientEventService.HEADER_ACCESS_RESTRICTED, false);
+    }
+
+    @Benchmark
+    public List<Message> splitForSubscribers() {
+        return eventSubscriptions.splitForSubscribers(exchange);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.model.asset.agent.DefaultAgentLink;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.protocol.ProtocolUtil;
+import org.openremote.model.util.Pair;
+import org.openremote.model.value.JsonPathFilter;
+import org.openremote.model.value.RegexValueFilter;
+import org.openremote.model.value.ValueFilter;
+import org.openremote.model.value.ValueType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ProtocolUtil#doInboundValueProcessing} as done for every message received by a protocol, with and without
+ * value filters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InboundValueProcessingBenchmark {
+
+    @Param({"none", "regex", "jsonPath"})
+    public String filter;
+
+    protected Attribute<Double> attribute;
+    protected DefaultAgentLink agentLink;
+    protected Object value;
+
+    @Setup
+    public void setup() {
+        attribute = new Attribute<>("temperature", ValueType.NUMBER);
+        agentLink = new DefaultAgentLink("agentId");
+
+        switch (filter) {
+            case "regex":
+                value = "sensor=livingroom;temperature=21.5;humidity=45";
+                agentLink.setValueFilters(new ValueFilter[]{
+                    new RegexValueFilter("temperature=([\\d.]+)", true, false).setMatchGroup(1)
+                });
+                break;
+            case "jsonPath":
+                value = "{\"sensors\":[{\"name\":\"livingroom\",\"temperature\":21.5,\"humidity\":45}]}";
+                agentLink.setValueFilters(new ValueFilter[]{
+                    new JsonPathFilter("$.sensors[0].temperature", false, false)
+                });
+                break;
+            default:
+                value = "21.5";
+        }
+    }
+
+    @Benchmark
+    public Pair<Boolean, Object> doInboundValueProcessing() {
+        return ProtocolUtil.doInboundValueProcessing("assetId", attribute, agentLink, value);
+    }
+}
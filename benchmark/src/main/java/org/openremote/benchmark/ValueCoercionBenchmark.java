@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openremote.model.util.ValueUtil;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ValueUtil#getValueCoerced} for the conversions done when protocols and rules write attribute values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValueCoercionBenchmark {
+
+    @Param({"stringToDouble", "doubleToInteger", "stringToBoolean", "doubleToString"})
+    public String conversion;
+
+    protected Object value;
+    protected Class<?> type;
+
+    @Setup
+    public void setup() {
+        switch (conversion) {
+            case "stringToDouble":
+                value = "21.5";
+                type = Double.class;
+                break;
+            case "doubleToInteger":
+                value = 21.5d;
+                type = Integer.class;
+                break;
+            case "stringToBoolean":
+                value = "true";
+                type = Boolean.class;
+                break;
+            default:
+                value = 21.5d;
+                type = String.class;
+        }
+    }
+
+    @Benchmark
+    public Optional<?> getValueCoerced() {
+        return ValueUtil.getValueCoerced(value, type);
+    }
+}
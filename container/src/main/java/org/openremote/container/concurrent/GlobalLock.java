@@ -80,6 +80,10 @@ public class GlobalLock {
         return 30000;
     }
 
+    static public boolean isHeldByCurrentThread() {
+        return lock.isHeldByCurrentThread();
+    }
+
     /**
      * Obtain the lock within {@link #getLockTimeoutMillis()} or throw {@link IllegalStateException}.
      *
@@ -34,18 +34,25 @@ import org.openremote.container.security.IdentityService;
 import org.openremote.container.web.DefaultWebsocketComponent;
 import org.openremote.container.web.WebService;
 import org.openremote.container.web.socket.WebsocketComponent;
+import org.openremote.container.web.socket.WebsocketSessionQueue;
 
+import java.util.Locale;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.util.MapAccess.getString;
 
 public class MessageBrokerService implements ContainerService {
 
     public static final String MESSAGE_SESSION_ALLOWED_ORIGIN = "MESSAGE_SESSION_ALLOWED_ORIGIN";
     public static final String MESSAGE_SESSION_ALLOWED_ORIGIN_DEFAULT = null;
+    public static final String MESSAGE_SESSION_QUEUE_SIZE = "MESSAGE_SESSION_QUEUE_SIZE";
+    public static final int MESSAGE_SESSION_QUEUE_SIZE_DEFAULT = WebsocketComponent.SESSION_QUEUE_SIZE_DEFAULT;
+    public static final String MESSAGE_SESSION_OVERFLOW_POLICY = "MESSAGE_SESSION_OVERFLOW_POLICY";
+    public static final String MESSAGE_SESSION_OVERFLOW_POLICY_DEFAULT = WebsocketSessionQueue.OverflowPolicy.DISCONNECT.name();
     private static final Logger LOG = Logger.getLogger(MessageBrokerService.class.getName());
     public static final int PRIORITY = ContainerService.HIGH_PRIORITY;
 
@@ -138,6 +145,12 @@ public class MessageBrokerService implements ContainerService {
             container.getService(WebService.class),
             allowedOrigin
         );
+        websocketComponent.setSessionQueueSize(
+            getInteger(container.getConfig(), MESSAGE_SESSION_QUEUE_SIZE, MESSAGE_SESSION_QUEUE_SIZE_DEFAULT)
+        );
+        websocketComponent.setSessionQueueOverflowPolicy(WebsocketSessionQueue.OverflowPolicy.valueOf(
+            getString(container.getConfig(), MESSAGE_SESSION_OVERFLOW_POLICY, MESSAGE_SESSION_OVERFLOW_POLICY_DEFAULT).toUpperCase(Locale.ROOT)
+        ));
 
         context.addComponent(WebsocketComponent.NAME, websocketComponent);
         context.addComponent("snmp", new SnmpComponent());
@@ -24,6 +24,10 @@ public interface ConnectionConstants {
     String SESSION = "connection.session";
     String SESSION_KEY = "connection.sessionKey";
     String SEND_TO_ALL = "connection.sendToAll";
+    /**
+     * Queued outbound messages of a session with the same key supersede each other.
+     */
+    String COALESCE_KEY = "connection.coalesceKey";
     String HANDSHAKE_AUTH = "connection.auth";
     String SESSION_OPEN = "connection.sessionOpen";
     String SESSION_CLOSE = "connection.sessionClose";
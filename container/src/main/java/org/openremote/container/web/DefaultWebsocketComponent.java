@@ -25,6 +25,7 @@ import io.undertow.servlet.api.DeploymentInfo;
 import io.undertow.servlet.api.SecurityConstraint;
 import io.undertow.servlet.api.SecurityInfo;
 import io.undertow.servlet.api.WebResourceCollection;
+import io.undertow.websockets.extensions.PerMessageDeflateHandshake;
 import io.undertow.websockets.jsr.DefaultContainerConfigurator;
 import io.undertow.websockets.jsr.UndertowContainerProvider;
 import io.undertow.websockets.jsr.WebSocketDeploymentInfo;
@@ -45,6 +46,7 @@ import javax.websocket.server.ServerEndpointConfig;
 import javax.ws.rs.WebApplicationException;
 import java.security.Principal;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 import static javax.ws.rs.core.Response.Status.FORBIDDEN;
 import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
@@ -124,6 +126,10 @@ public class DefaultWebsocketComponent extends WebsocketComponent {
         // pool for websocket frame processing
         webSocketDeploymentInfo.setDispatchToWorkerThread(false);
 
+        // Allow clients to negotiate permessage-deflate, this mostly benefits clients on metered links (e.g. edge
+        // gateways on cellular connections) as event messages are small and repetitive JSON
+        webSocketDeploymentInfo.addExtension(new PerMessageDeflateHandshake(false, Deflater.BEST_SPEED));
+
         // Make the shit Undertow/Websocket JSR client bootstrap happy - this is the pool that would be used
         // when Undertow acts as a WebSocket client, which we don't do... and I'm not even sure it can do that...
         webSocketDeploymentInfo.setWorker(Xnio.getInstance().createWorker(
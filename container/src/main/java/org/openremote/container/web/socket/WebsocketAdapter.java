@@ -70,6 +70,7 @@ public class WebsocketAdapter extends Endpoint {
             exchange.getIn().setHeader(ConnectionConstants.SESSION_CLOSE, true);
         });
         consumer.getEndpoint().getWebsocketSessions().remove(session);
+        consumer.getEndpoint().getComponent().removeSessionQueue(session);
     }
 
     @Override
@@ -86,6 +87,7 @@ public class WebsocketAdapter extends Endpoint {
             exchange.getIn().setHeader(ConnectionConstants.SESSION_CLOSE_ERROR, true);
         });
         consumer.getEndpoint().getWebsocketSessions().remove(session);
+        consumer.getEndpoint().getComponent().removeSessionQueue(session);
     }
 
     protected AuthContext getHandshakeAuth(Session session) {
@@ -23,8 +23,11 @@ import org.apache.camel.Endpoint;
 import org.apache.camel.impl.DefaultComponent;
 import org.apache.camel.util.ServiceHelper;
 
+import javax.websocket.Session;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 public abstract class WebsocketComponent extends DefaultComponent {
@@ -32,9 +35,13 @@ public abstract class WebsocketComponent extends DefaultComponent {
     private static final Logger LOG = Logger.getLogger(WebsocketComponent.class.getName());
 
     public static final String NAME = "websocket";
+    public static final int SESSION_QUEUE_SIZE_DEFAULT = 1000;
 
     final protected Map<String, WebsocketConsumer> consumers = new HashMap<>();
     final protected WebsocketSessions websocketSessions;
+    final protected Map<String, WebsocketSessionQueue> sessionQueues = new ConcurrentHashMap<>();
+    protected int sessionQueueSize = SESSION_QUEUE_SIZE_DEFAULT;
+    protected WebsocketSessionQueue.OverflowPolicy sessionQueueOverflowPolicy = WebsocketSessionQueue.OverflowPolicy.DISCONNECT;
 
     public WebsocketComponent() {
         this.websocketSessions = new MemoryWebsocketSessions();
@@ -57,6 +64,8 @@ public abstract class WebsocketComponent extends DefaultComponent {
     protected void doStop() throws Exception {
         super.doStop();
         ServiceHelper.stopService(getWebsocketSessions());
+        sessionQueues.values().forEach(WebsocketSessionQueue::close);
+        sessionQueues.clear();
         undeploy();
     }
 
@@ -64,6 +73,43 @@ public abstract class WebsocketComponent extends DefaultComponent {
         return websocketSessions;
     }
 
+    /**
+     * @return The outbound message queue of the session, created on first use.
+     */
+    public WebsocketSessionQueue getSessionQueue(Session session) {
+        return sessionQueues.computeIfAbsent(
+            session.getId(),
+            id -> new WebsocketSessionQueue(session, sessionQueueSize, sessionQueueOverflowPolicy)
+        );
+    }
+
+    public void removeSessionQueue(Session session) {
+        WebsocketSessionQueue sessionQueue = sessionQueues.remove(session.getId());
+        if (sessionQueue != null) {
+            sessionQueue.close();
+        }
+    }
+
+    public Collection<WebsocketSessionQueue> getSessionQueues() {
+        return sessionQueues.values();
+    }
+
+    public int getSessionQueueSize() {
+        return sessionQueueSize;
+    }
+
+    public void setSessionQueueSize(int sessionQueueSize) {
+        this.sessionQueueSize = sessionQueueSize;
+    }
+
+    public WebsocketSessionQueue.OverflowPolicy getSessionQueueOverflowPolicy() {
+        return sessionQueueOverflowPolicy;
+    }
+
+    public void setSessionQueueOverflowPolicy(WebsocketSessionQueue.OverflowPolicy sessionQueueOverflowPolicy) {
+        this.sessionQueueOverflowPolicy = sessionQueueOverflowPolicy;
+    }
+
     public Map<String, WebsocketConsumer> getConsumers() {
         return consumers;
     }
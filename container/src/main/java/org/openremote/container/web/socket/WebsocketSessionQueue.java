@@ -0,0 +1,295 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.container.web.socket;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded outbound message queue of a websocket session; messages are sent asynchronously and one at a time, the
+ * next message is sent when the previous send has completed. This means a slow client can't block the thread that
+ * is producing the messages, instead the queue fills up and the {@link OverflowPolicy} decides what happens.
+ * <p>
+ * Only messages with a coalesce key (attribute events of a subscription) may ever be replaced or discarded, all other
+ * messages (e.g. request/response and gateway messages) are either delivered or the session is closed.
+ */
+public class WebsocketSessionQueue {
+
+    public enum OverflowPolicy {
+        /**
+         * Close the session, the client has to reconnect and resynchronise.
+         */
+        DISCONNECT,
+        /**
+         * Replace the queued message that has the same coalesce key (e.g. the same attribute) as the new message, close
+         * the session if there is none.
+         */
+        COALESCE,
+        /**
+         * Discard the oldest queued message that has a coalesce key, close the session if there is none.
+         */
+        DROP_OLDEST
+    }
+
+    protected static class OutboundMessage {
+        final String coalesceKey;
+        String text;
+
+        OutboundMessage(String coalesceKey, String text) {
+            this.coalesceKey = coalesceKey;
+            this.text = text;
+        }
+    }
+
+    protected static final int SEND_PENDING = 0;
+    protected static final int SEND_AWAITING_RESULT = 1;
+    protected static final int SEND_COMPLETED = 2;
+
+    private static final Logger LOG = Logger.getLogger(WebsocketSessionQueue.class.getName());
+    protected final Session session;
+    protected final int maxSize;
+    protected final OverflowPolicy overflowPolicy;
+    protected final Deque<OutboundMessage> queue = new ArrayDeque<>();
+    protected final Map<String, OutboundMessage> queuedByKey = new HashMap<>();
+    protected final AtomicLong sentCount = new AtomicLong();
+    protected final AtomicLong failedCount = new AtomicLong();
+    protected final AtomicLong droppedCount = new AtomicLong();
+    protected final AtomicLong coalescedCount = new AtomicLong();
+    protected int highWaterMark;
+    protected boolean sending;
+    protected boolean closed;
+
+    public WebsocketSessionQueue(Session session, int maxSize, OverflowPolicy overflowPolicy) {
+        this.session = session;
+        this.maxSize = Math.max(1, maxSize);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Queue the message for sending.
+     *
+     * @param coalesceKey Identifies messages that supersede each other, can be <code>null</code>.
+     */
+    public void offer(String text, String coalesceKey) {
+        boolean disconnect = false;
+        boolean startSending = false;
+
+        synchronized (this) {
+            if (closed) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+
+            if (queue.size() >= maxSize) {
+                switch (overflowPolicy) {
+                    case COALESCE:
+                        OutboundMessage queued = coalesceKey != null ? queuedByKey.get(coalesceKey) : null;
+                        if (queued != null) {
+                            queued.text = text;
+                            coalescedCount.incrementAndGet();
+                            return;
+                        }
+                        disconnect = true;
+                        break;
+                    case DROP_OLDEST:
+                        disconnect = !dropOldestCoalescable();
+                        break;
+                    default:
+                        disconnect = true;
+                }
+
+                if (disconnect) {
+                    closed = true;
+                    droppedCount.addAndGet(queue.size() + 1);
+                    clear();
+                }
+            }
+
+            if (!disconnect) {
+                OutboundMessage message = new OutboundMessage(coalesceKey, text);
+                queue.add(message);
+                if (coalesceKey != null) {
+                    queuedByKey.put(coalesceKey, message);
+                }
+                highWaterMark = Math.max(highWaterMark, queue.size());
+
+                if (!sending) {
+                    sending = true;
+                    startSending = true;
+                }
+            }
+        }
+
+        if (disconnect) {
+            LOG.info("Outbound queue of websocket session is full (" + maxSize + "), disconnecting: " + session.getId());
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Outbound queue overflow"));
+            } catch (Exception e) {
+                LOG.log(Level.FINE, "Failed to close websocket session: " + session.getId(), e);
+            }
+        } else if (startSending) {
+            sendQueued();
+        }
+    }
+
+    /**
+     * Discard any queued messages, called when the session is closed.
+     */
+    public synchronized void close() {
+        closed = true;
+        clear();
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public synchronized int getSize() {
+        return queue.size();
+    }
+
+    public synchronized int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * Sends queued messages until the queue is empty or a send is awaiting its result on another thread, in which case
+     * that thread continues. Results that are reported on the sending thread (i.e. whilst still inside the async send
+     * call) are picked up by this loop, so completed sends never nest and the stack doesn't grow with the queue.
+     */
+    protected void sendQueued() {
+        while (true) {
+            OutboundMessage next;
+            synchronized (this) {
+                next = closed ? null : poll();
+                if (next == null) {
+                    sending = false;
+                    return;
+                }
+            }
+
+            if (!session.isOpen()) {
+                close();
+                droppedCount.incrementAndGet();
+                continue;
+            }
+
+            if (LOG.isLoggable(Level.FINER))
+                LOG.finer("Sending to session " + session.getId() + ": " + next.text);
+
+            AtomicInteger sendState = new AtomicInteger(SEND_PENDING);
+            try {
+                session.getAsyncRemote().sendText(next.text, result -> {
+                    onResult(result);
+                    if (!sendState.compareAndSet(SEND_PENDING, SEND_COMPLETED)) {
+                        // The sending thread has moved on so continue sending on this thread
+                        sendQueued();
+                    }
+                });
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                LOG.log(Level.FINE, "Failed to send message to websocket session: " + session.getId(), e);
+                continue;
+            }
+
+            if (sendState.compareAndSet(SEND_PENDING, SEND_AWAITING_RESULT)) {
+                return;
+            }
+        }
+    }
+
+    protected void onResult(SendResult result) {
+        if (result.isOK()) {
+            sentCount.incrementAndGet();
+        } else {
+            failedCount.incrementAndGet();
+            if (LOG.isLoggable(Level.FINE))
+                LOG.log(Level.FINE, "Failed to send message to websocket session: " + session.getId(), result.getException());
+        }
+    }
+
+    /**
+     * @return <code>true</code> if a message with a coalesce key was discarded.
+     */
+    protected boolean dropOldestCoalescable() {
+        for (Iterator<OutboundMessage> it = queue.iterator(); it.hasNext(); ) {
+            OutboundMessage message = it.next();
+            if (message.coalesceKey != null) {
+                it.remove();
+                removeQueued(message);
+                droppedCount.incrementAndGet();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected OutboundMessage poll() {
+        OutboundMessage message = queue.poll();
+        removeQueued(message);
+        return message;
+    }
+
+    protected void removeQueued(OutboundMessage message) {
+        if (message != null && message.coalesceKey != null) {
+            queuedByKey.remove(message.coalesceKey, message);
+        }
+    }
+
+    protected void clear() {
+        queue.clear();
+        queuedByKey.clear();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "sessionId=" + session.getId() +
+            ", size=" + getSize() +
+            ", overflowPolicy=" + overflowPolicy +
+            '}';
+    }
+}
@@ -55,6 +55,7 @@ import org.openremote.model.util.TextUtil;
 
 import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
@@ -70,7 +71,7 @@ import static org.openremote.container.concurrent.GlobalLock.withLock;
 import static org.openremote.container.concurrent.GlobalLock.withLockReturning;
 import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
-import static org.openremote.manager.asset.AssetProcessingService.ASSET_QUEUE;
+import static org.openremote.manager.asset.AssetProcessingService.ASSET_QUEUE_PARTITION_HEADER;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
 import static org.openremote.model.asset.agent.Protocol.ACTUATOR_TOPIC;
 import static org.openremote.model.asset.agent.Protocol.SENSOR_QUEUE;
@@ -98,7 +99,7 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
     protected ScheduledExecutorService executorService;
     protected Map<String, Agent<?, ?, ?>> agentMap;
     protected final Map<String, Future<Void>> agentDiscoveryImportFutureMap = new HashMap<>();
-    protected final Map<String, Protocol<?>> protocolInstanceMap = new HashMap<>();
+    protected final Map<String, Protocol<?>> protocolInstanceMap = new ConcurrentHashMap<>();
     protected final Map<String, List<Consumer<PersistenceEvent<Asset<?>>>>> childAssetSubscriptions = new HashMap<>();
     protected boolean initDone;
     protected Container container;
@@ -179,7 +180,8 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
             .routeId("FromSensorUpdates")
             .filter(body().isInstanceOf(AttributeEvent.class))
             .setHeader(HEADER_SOURCE, () -> SENSOR)
-            .to(ASSET_QUEUE);
+            .process(exchange -> assetProcessingService.setAssetQueueHeader(exchange))
+            .recipientList(header(ASSET_QUEUE_PARTITION_HEADER));
     }
 
     @Override
@@ -530,31 +532,32 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
 
         AttributeEvent attributeEvent = new AttributeEvent(new AttributeState(asset.getId(), attribute), attribute.getTimestamp().orElseGet(timerService::getCurrentTimeMillis));
 
-        if (asset instanceof Agent) {
+        // The agent map and in memory agents are shared with other asset processing partitions and agent changes
+        Boolean result = withLockReturning(getClass().getSimpleName() + "::processAssetUpdate", () -> {
+            if (asset instanceof Agent) {
 
-            // This is how we update the agent when an attribute event occurs on an agent's attribute by a client, this
-            // is not ideal as value is not committed to the DB and could in theory be consumed by another processor
-            // but we need to know the source which isn't available from the client event service.
-            // TODO: Expose event source to client event subscriptions
-            Agent<?, ?, ?> agent = getAgent(attributeEvent.getAssetId());
+                // This is how we update the agent when an attribute event occurs on an agent's attribute by a client, this
+                // is not ideal as value is not committed to the DB and could in theory be consumed by another processor
+                // but we need to know the source which isn't available from the client event service.
+                // TODO: Expose event source to client event subscriptions
+                Agent<?, ?, ?> agent = getAgent(attributeEvent.getAssetId());
 
-            if (agent != null) {
+                if (agent != null) {
 
-                // Update in memory agent
-                agent.addOrReplaceAttributes(attribute);
+                    // Update in memory agent
+                    agent.addOrReplaceAttributes(attribute);
 
-                if (source == CLIENT && agent.isConfigurationAttribute(attribute.getName())) {
-                    LOG.finer("Agent attribute event occurred from a client for an agent config attribute so updating: agent=" + agent.getId() + ", event=" + attributeEvent);
-                    onAgentUpdated(agent);
+                    if (source == CLIENT && agent.isConfigurationAttribute(attribute.getName())) {
+                        LOG.finer("Agent attribute event occurred from a client for an agent config attribute so updating: agent=" + agent.getId() + ", event=" + attributeEvent);
+                        onAgentUpdated(agent);
+                    }
                 }
-            }
 
-            // Don't consume the event as we want the agent attribute to be updated in the DB
-            return false;
-        }
+                // Don't consume the event as we want the agent attribute to be updated in the DB
+                return false;
+            }
 
-        Boolean result = withLockReturning(getClass().getSimpleName() + "::processAssetUpdate", () ->
-            attribute.getMetaValue(AGENT_LINK)
+            return attribute.getMetaValue(AGENT_LINK)
                 .map(agentLink -> {
                     LOG.finer("Attribute write for agent linked attribute: agent=" + agentLink.getId() + ", asset=" + asset.getId() + ", attribute=" + attribute.getName());
 
@@ -565,8 +568,8 @@ public class AgentService extends RouteBuilder implements ContainerService, Asse
                         getProtocolInstance(agentLink.getId())
                     );
                     return true; // Processing complete, skip other processors
-                }).orElse(false) // This is a regular attribute so allow the processing to continue
-        );
+                }).orElse(false); // This is a regular attribute so allow the processing to continue
+        });
         return result != null ? result : false;
     }
 
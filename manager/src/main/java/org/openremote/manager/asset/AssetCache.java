@@ -0,0 +1,130 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.asset;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.attribute.Attribute;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * A bounded cache of fully loaded assets, used on the attribute event hot path instead of querying the database.
+ * <p>
+ * The cache is write-through for attribute values stored by the {@link AssetProcessingService} and entries are
+ * invalidated when an asset is merged or deleted (see {@link AssetStorageService}). Callers always get a copy of the
+ * cached asset which they are free to modify, made with {@link Asset#deepCopy} rather than a serialization round trip.
+ */
+public class AssetCache {
+
+    private static final Logger LOG = Logger.getLogger(AssetCache.class.getName());
+    protected final Cache<String, Asset<?>> cache;
+    // Incremented on every invalidation so a load that raced with an invalidation is not cached
+    protected final AtomicLong generation = new AtomicLong();
+
+    public AssetCache(int maxSize, int expireSeconds) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .recordStats();
+
+        if (expireSeconds > 0) {
+            builder.expireAfterAccess(expireSeconds, TimeUnit.SECONDS);
+        }
+
+        cache = builder.build();
+    }
+
+    /**
+     * @return A copy of the cached asset or of the asset returned by the loader, <code>null</code> if the loader
+     * didn't find the asset.
+     */
+    public Asset<?> get(String assetId, Supplier<Asset<?>> loader) {
+        Asset<?> asset = cache.getIfPresent(assetId);
+
+        if (asset == null) {
+            long loadGeneration = generation.get();
+            asset = loader.get();
+            if (asset == null) {
+                return null;
+            }
+            if (loadGeneration == generation.get()) {
+                cache.put(assetId, asset.deepCopy());
+            }
+            return asset;
+        }
+
+        synchronized (asset) {
+            return asset.deepCopy();
+        }
+    }
+
+    /**
+     * Update the value and timestamp of the cached attribute, unless the cached value is more recent.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void updateAttributeValue(String assetId, Attribute<?> attribute) {
+        // Don't record a hit or miss for write-through
+        Asset<?> asset = cache.asMap().get(assetId);
+
+        if (asset == null) {
+            return;
+        }
+
+        synchronized (asset) {
+            Attribute<?> cachedAttribute = asset.getAttributes().get(attribute.getName()).orElse(null);
+
+            if (cachedAttribute == null) {
+                LOG.fine("Cached asset doesn't have the stored attribute so invalidating: " + assetId);
+                invalidate(assetId);
+                return;
+            }
+
+            long timestamp = attribute.getTimestamp().orElse(0L);
+            if (cachedAttribute.getTimestamp().filter(t -> t > timestamp).isPresent()) {
+                return;
+            }
+
+            ((Attribute) cachedAttribute).setValue(attribute.getValue().orElse(null), timestamp);
+        }
+    }
+
+    public void invalidate(String assetId) {
+        generation.incrementAndGet();
+        cache.invalidate(assetId);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long getSize() {
+        return cache.size();
+    }
+
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+}
@@ -21,6 +21,7 @@ package org.openremote.manager.asset;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
 import org.apache.camel.builder.RouteBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceService;
@@ -49,12 +50,20 @@ import org.openremote.model.value.ValueType;
 import javax.persistence.EntityManager;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static org.apache.camel.builder.PredicateBuilder.or;
 import static org.openremote.container.concurrent.GlobalLock.withLock;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.model.attribute.AttributeWriteFailure.*;
 import static org.openremote.manager.event.ClientEventService.CLIENT_EVENT_TOPIC;
 import static org.openremote.model.attribute.AttributeEvent.HEADER_SOURCE;
@@ -68,7 +77,7 @@ import static org.openremote.model.value.MetaItemType.AGENT_LINK;
  * <dd><p>Client events published through event bus or sent by web service. These exchanges must contain an {@link AuthContext}
  * header named {@link Constants#AUTH_CONTEXT}.</dd>
  * <dt>{@link Source#INTERNAL}</dt>
- * <dd><p>Events sent to {@link #ASSET_QUEUE} or through {@link #sendAttributeEvent} convenience method by processors.</dd>
+ * <dd><p>Events sent to {@link #getAssetQueue} or through {@link #sendAttributeEvent} convenience method by processors.</dd>
  * <dt>{@link Source#SENSOR}</dt>
  * <dd><p>Protocol sensor updates sent to {@link Protocol#SENSOR_QUEUE}.</dd>
  * </dl>
@@ -118,6 +127,31 @@ import static org.openremote.model.value.MetaItemType.AGENT_LINK;
  * {@link org.openremote.model.asset.agent.AgentLink} meta, and if so the {@link AttributeEvent}
  * is not stored in a time series DB of historical data, otherwise the value is stored. Then allows the message to
  * continue if the commit was successful.
+ * <h2>Partitioned processing</h2>
+ * <p>
+ * By default a single consumer processes all {@link AttributeEvent}s from the {@link #ASSET_QUEUE} while holding the
+ * {@link org.openremote.container.concurrent.GlobalLock}. When {@link #ASSET_PROCESSING_PARTITIONS} is greater than 1
+ * events are processed by that many ordered partition queues instead, an event is assigned to a partition by hashing
+ * its asset ID so all events for the same asset are processed in order by the same consumer. Producers (including the
+ * client and sensor routes) send events straight to the queue of the asset, see {@link #getAssetQueue}; the
+ * {@link #ASSET_QUEUE} consumer only dispatches events of producers that still send to it. A batch of events sent
+ * through {@link #sendAttributeEvents} is split by queue and each queue processes its part as a single exchange. Each
+ * partition has its own consumer thread and does not hold the global lock while processing; processors that
+ * access shared in memory state (e.g. {@link AgentService} and {@link RulesService}) acquire the lock themselves so
+ * agent and ruleset (re)configuration remains exclusive.
+ * <h2>Batched storage</h2>
+ * <p>
+ * When {@link #ASSET_PROCESSING_BATCH_WINDOW_MILLIS} is greater than 0 the attribute value and datapoint of a processed
+ * event are not written in the processing transaction but handed to an {@link AttributeWriteBehind} stage, which
+ * writes the values collected during the window in a single transaction. The client event is published once the value
+ * has been stored and callers that expect a reply wait until then (see {@link #awaitStored}), the asset queue consumer
+ * doesn't wait.
+ * <p>
+ * The processors ({@link RulesService}, {@link AgentService}, etc.) act on the value before it has been stored, so a
+ * value that fails to store is retried by the write behind stage until it has been stored rather than dropped; only
+ * the value of an asset that has been deleted in the meantime is discarded (with no client event). At most
+ * {@link #ASSET_PROCESSING_BATCH_MAX_PENDING} values are pending, when the limit is reached the asset queue consumer
+ * stores pending values itself before processing the next event.
  */
 @SuppressWarnings("unchecked")
 public class AssetProcessingService extends RouteBuilder implements ContainerService {
@@ -126,6 +160,18 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     // TODO: Some of these options should be configurable depending on expected load etc.
     // Message topic for communicating individual asset attribute changes
     public static final String ASSET_QUEUE = "seda://AssetQueue?waitForTaskToComplete=IfReplyExpected&timeout=10000&purgeWhenStopping=true&discardIfNoConsumers=false&size=25000";
+    // Number of ordered partitions used for processing attribute events, 1 means single consumer with global lock
+    public static final String ASSET_PROCESSING_PARTITIONS = "ASSET_PROCESSING_PARTITIONS";
+    public static final int ASSET_PROCESSING_PARTITIONS_DEFAULT = 1;
+    public static final String ASSET_QUEUE_PARTITION_HEADER = "AssetQueuePartition";
+    // Attribute values and datapoints are written in batches collected over this window, 0 means write per event
+    public static final String ASSET_PROCESSING_BATCH_WINDOW_MILLIS = "ASSET_PROCESSING_BATCH_WINDOW_MILLIS";
+    public static final int ASSET_PROCESSING_BATCH_WINDOW_MILLIS_DEFAULT = 0;
+    public static final String ASSET_PROCESSING_BATCH_SIZE = "ASSET_PROCESSING_BATCH_SIZE";
+    public static final int ASSET_PROCESSING_BATCH_SIZE_DEFAULT = 1000;
+    // Maximum number of values waiting to be written in batches, processing waits for the database beyond this
+    public static final String ASSET_PROCESSING_BATCH_MAX_PENDING = "ASSET_PROCESSING_BATCH_MAX_PENDING";
+    public static final int ASSET_PROCESSING_BATCH_MAX_PENDING_DEFAULT = 10000;
     private static final Logger LOG = Logger.getLogger(AssetProcessingService.class.getName());
     final protected List<AssetUpdateProcessor> processors = new ArrayList<>();
     protected TimerService timerService;
@@ -139,42 +185,51 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     protected AttributeLinkingService assetAttributeLinkingService;
     protected MessageBrokerService messageBrokerService;
     protected ClientEventService clientEventService;
+    protected int partitionCount;
+    protected AttributeWriteBehind writeBehind;
     // Used in testing to detect if initial/startup processing has completed
-    protected long lastProcessedEventTimestamp = System.currentTimeMillis();
+    protected volatile long lastProcessedEventTimestamp = System.currentTimeMillis();
 
     protected static Processor handleAssetProcessingException(Logger logger) {
         return exchange -> {
-            AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
             Exception exception = (Exception) exchange.getProperty(Exchange.EXCEPTION_CAUGHT);
 
-            StringBuilder error = new StringBuilder();
-
-            Source source = exchange.getIn().getHeader(HEADER_SOURCE, "unknown source", Source.class);
-            if (source != null) {
-                error.append("Error processing from ").append(source);
-            }
-
-            String protocolName = exchange.getIn().getHeader(Protocol.SENSOR_QUEUE_SOURCE_PROTOCOL, String.class);
-            if (protocolName != null) {
-                error.append(" (protocol: ").append(protocolName).append(")");
-            }
-
-            // TODO Better exception handling - dead letter queue?
-            if (exception instanceof AssetProcessingException) {
-                AssetProcessingException processingException = (AssetProcessingException) exception;
-                error.append(" - ").append(processingException.getMessage());
-                error.append(": ").append(event.toString());
-                logger.warning(error.toString());
-            } else {
-                error.append(": ").append(event.toString());
-                logger.log(Level.WARNING, error.toString(), exception);
-            }
+            logProcessingException(
+                logger,
+                exchange.getIn().getBody(),
+                exchange.getIn().getHeader(HEADER_SOURCE, "unknown source", Source.class),
+                exchange.getIn().getHeader(Protocol.SENSOR_QUEUE_SOURCE_PROTOCOL, String.class),
+                exception
+            );
 
             // Make the exception available if MEP is InOut
             exchange.getOut().setBody(exception);
         };
     }
 
+    protected static void logProcessingException(Logger logger, Object event, Source source, String protocolName, Exception exception) {
+        StringBuilder error = new StringBuilder();
+
+        if (source != null) {
+            error.append("Error processing from ").append(source);
+        }
+
+        if (protocolName != null) {
+            error.append(" (protocol: ").append(protocolName).append(")");
+        }
+
+        // TODO Better exception handling - dead letter queue?
+        if (exception instanceof AssetProcessingException) {
+            AssetProcessingException processingException = (AssetProcessingException) exception;
+            error.append(" - ").append(processingException.getMessage());
+            error.append(": ").append(event);
+            logger.warning(error.toString());
+        } else {
+            error.append(": ").append(event);
+            logger.log(Level.WARNING, error.toString(), exception);
+        }
+    }
+
     @Override
     public int getPriority() {
         return PRIORITY;
@@ -193,6 +248,19 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
         assetAttributeLinkingService = container.getService(AttributeLinkingService.class);
         messageBrokerService = container.getService(MessageBrokerService.class);
         clientEventService = container.getService(ClientEventService.class);
+        partitionCount = Math.max(1, getInteger(container.getConfig(), ASSET_PROCESSING_PARTITIONS, ASSET_PROCESSING_PARTITIONS_DEFAULT));
+        int batchWindowMillis = getInteger(container.getConfig(), ASSET_PROCESSING_BATCH_WINDOW_MILLIS, ASSET_PROCESSING_BATCH_WINDOW_MILLIS_DEFAULT);
+        if (batchWindowMillis > 0) {
+            writeBehind = new AttributeWriteBehind(
+                persistenceService,
+                assetStorageService,
+                assetDatapointService,
+                container.getExecutorService(),
+                batchWindowMillis,
+                Math.max(1, getInteger(container.getConfig(), ASSET_PROCESSING_BATCH_SIZE, ASSET_PROCESSING_BATCH_SIZE_DEFAULT)),
+                getInteger(container.getConfig(), ASSET_PROCESSING_BATCH_MAX_PENDING, ASSET_PROCESSING_BATCH_MAX_PENDING_DEFAULT)
+            );
+        }
         EventSubscriptionAuthorizer assetEventAuthorizer = AssetStorageService.assetInfoAuthorizer(identityService, assetStorageService);
 
         clientEventService.addSubscriptionAuthorizer((auth, subscription) -> {
@@ -205,7 +273,10 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
         processors.add(gatewayService);
         processors.add(agentService);
         processors.add(rulesService);
-        processors.add(assetDatapointService);
+        if (writeBehind == null) {
+            // Datapoints are otherwise stored with the attribute value by the write behind stage
+            processors.add(assetDatapointService);
+        }
         processors.add(assetAttributeLinkingService);
 
         container.getService(MessageBrokerService.class).getContext().addRoutes(this);
@@ -213,12 +284,19 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
 
     @Override
     public void start(Container container) throws Exception {
-
+        if (isPartitioned()) {
+            LOG.info("Processing attribute events using partitions: " + partitionCount);
+        }
+        if (writeBehind != null) {
+            writeBehind.start();
+        }
     }
 
     @Override
     public void stop(Container container) throws Exception {
-
+        if (writeBehind != null) {
+            writeBehind.stop();
+        }
     }
 
     @Override
@@ -229,7 +307,8 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
             .routeId("FromClientUpdates")
             .filter(body().isInstanceOf(AttributeEvent.class))
             .setHeader(HEADER_SOURCE, () -> CLIENT)
-            .to(ASSET_QUEUE);
+            .process(this::setAssetQueueHeader)
+            .recipientList(header(ASSET_QUEUE_PARTITION_HEADER));
 
         // Process attribute events
         /* TODO This message consumer should be transactionally consistent with the database, this is currently not the case
@@ -247,131 +326,214 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
          - See pseudocode here: http://activemq.apache.org/should-i-use-xa.html
          - Do we want JMS/AMQP/WSS or SOME_API/MQTT/WSS? ActiveMQ or Moquette?
         */
+        if (!isPartitioned()) {
+            from(ASSET_QUEUE)
+                .routeId("AssetQueueProcessor")
+                .filter(or(body().isInstanceOf(AttributeEvent.class), body().isInstanceOf(List.class)))
+                .doTry()
+                // Lock the global context, we can only process attribute events when the
+                // context isn't locked. Agent- and RulesService lock the context while protocols
+                // or rulesets are modified.
+                .process(exchange -> withLock(getClass().getSimpleName() + "::processFromAssetQueue", () -> processFromAssetQueue(exchange)))
+                .endDoTry()
+                .doCatch(AssetProcessingException.class)
+                .process(handleAssetProcessingException(LOG));
+            return;
+        }
+
+        // Producers send events straight to the partition of the asset (see getAssetQueue), this only dispatches events
+        // of producers that still send to the asset queue; it waits for each request that expects a reply so these
+        // requests are processed one at a time and aren't ordered with events sent straight to the partitions
         from(ASSET_QUEUE)
-            .routeId("AssetQueueProcessor")
+            .routeId("AssetQueueDispatcher")
             .filter(body().isInstanceOf(AttributeEvent.class))
-            .doTry()
-            // Lock the global context, we can only process attribute events when the
-            // context isn't locked. Agent- and RulesService lock the context while protocols
-            // or rulesets are modified.
-            .process(exchange -> withLock(getClass().getSimpleName() + "::processFromAssetQueue", () -> {
-
-                AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
-                LOG.finest("Processing: " + event);
-                if (event.getAssetId() == null || event.getAssetId().isEmpty())
-                    return;
-                if (event.getAttributeName() == null || event.getAttributeName().isEmpty())
-                    return;
-                Source source = exchange.getIn().getHeader(HEADER_SOURCE, () -> null, Source.class);
-                if (source == null) {
-                    throw new AssetProcessingException(MISSING_SOURCE);
+            .process(this::setAssetQueueHeader)
+            .recipientList(header(ASSET_QUEUE_PARTITION_HEADER));
+
+        for (int i = 0; i < partitionCount; i++) {
+            // Each partition has a single consumer, processors acquire the global lock when accessing shared state
+            from(getPartitionQueue(i))
+                .routeId("AssetQueueProcessor" + i)
+                .filter(or(body().isInstanceOf(AttributeEvent.class), body().isInstanceOf(List.class)))
+                .doTry()
+                .process(this::processFromAssetQueue)
+                .endDoTry()
+                .doCatch(AssetProcessingException.class)
+                .process(handleAssetProcessingException(LOG));
+        }
+    }
+
+    protected void processFromAssetQueue(Exchange exchange) {
+        if (exchange.getIn().getBody() instanceof List) {
+            processBatchFromAssetQueue(exchange);
+            return;
+        }
+
+        AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
+        CompletableFuture<Void> pendingWrite = processAttributeEvent(
+            event,
+            exchange.getIn().getHeader(HEADER_SOURCE, () -> null, Source.class),
+            exchange.getIn().getHeader(Constants.AUTH_CONTEXT, AuthContext.class)
+        );
+
+        if (pendingWrite != null && exchange.getPattern().isOutCapable()) {
+            // Reply straight away so this consumer isn't blocked (nor the global lock held) until the batch is flushed,
+            // the caller waits for the value to be stored instead, see awaitStored
+            exchange.getOut().setBody(pendingWrite);
+        }
+    }
+
+    /**
+     * Process the events of a batch sent by {@link #sendAttributeEvents} in the order given, an event that fails is
+     * logged and doesn't stop the rest of the batch. When storage is batched the values of the batch are flushed once
+     * the whole batch has been processed rather than waiting for the end of the window.
+     */
+    protected void processBatchFromAssetQueue(Exchange exchange) {
+        List<AttributeEvent> events = exchange.getIn().getBody(List.class);
+        Source source = exchange.getIn().getHeader(HEADER_SOURCE, () -> null, Source.class);
+        String protocolName = exchange.getIn().getHeader(Protocol.SENSOR_QUEUE_SOURCE_PROTOCOL, String.class);
+        AuthContext authContext = exchange.getIn().getHeader(Constants.AUTH_CONTEXT, AuthContext.class);
+        LOG.finest("Processing batch of " + events.size() + " attribute event(s)");
+
+        for (AttributeEvent event : events) {
+            try {
+                processAttributeEvent(event, source, authContext);
+            } catch (Exception e) {
+                logProcessingException(LOG, event, source, protocolName, e);
+            }
+        }
+
+        if (writeBehind != null) {
+            writeBehind.flushSoon();
+        }
+    }
+
+    /**
+     * @return The pending write of the value when storage is batched, otherwise <code>null</code>.
+     */
+    protected CompletableFuture<Void> processAttributeEvent(AttributeEvent event, Source source, AuthContext authContext) throws AssetProcessingException {
+        LOG.finest("Processing: " + event);
+        if (event.getAssetId() == null || event.getAssetId().isEmpty())
+            return null;
+        if (event.getAttributeName() == null || event.getAttributeName().isEmpty())
+            return null;
+        if (source == null) {
+            throw new AssetProcessingException(MISSING_SOURCE);
+        }
+
+        if (writeBehind != null) {
+            // Outside of the processing transaction as this may store pending values on this thread
+            writeBehind.awaitCapacity();
+        }
+
+        // Process the asset update in a database transaction, this ensures that processors
+        // will see consistent database state and we only commit if no processor failed. This
+        // still won't make this procedure consistent with the message queue from which we consume!
+        return persistenceService.doReturningTransaction(em -> {
+            Asset<?> asset = assetStorageService.findCached(em, event.getAssetId());
+
+            if (asset == null) {
+                if (source == SENSOR) {
+                    // Fail silently as a protocol may have queued updates before the asset was deleted
+                    return null;
                 }
 
-                // Process the asset update in a database transaction, this ensures that processors
-                // will see consistent database state and we only commit if no processor failed. This
-                // still won't make this procedure consistent with the message queue from which we consume!
-                persistenceService.doTransaction(em -> {
-                    Asset<?> asset = assetStorageService.find(em, event.getAssetId(), true);
+                throw new AssetProcessingException(ASSET_NOT_FOUND);
+            }
 
-                    if (asset == null) {
-                        if (source == SENSOR) {
-                            // Fail silently as a protocol may have queued updates before the asset was deleted
-                            return;
-                        }
+            if (writeBehind != null) {
+                writeBehind.applyPendingValues(asset);
+            }
 
-                        throw new AssetProcessingException(ASSET_NOT_FOUND);
-                    }
+            Attribute<?> oldAttribute = asset.getAttribute(event.getAttributeName()).orElse(null);
+            if (oldAttribute == null) {
+                if (source == SENSOR) {
+                    // Fail silently as a protocol may have queued updates before the attribute was modified/deleted
+                    return null;
+                }
 
-                    Attribute<?> oldAttribute = asset.getAttribute(event.getAttributeName()).orElse(null);
-                    if (oldAttribute == null) {
-                        if (source == SENSOR) {
-                            // Fail silently as a protocol may have queued updates before the attribute was modified/deleted
-                            return;
-                        }
+                throw new AssetProcessingException(ATTRIBUTE_NOT_FOUND);
+            }
 
-                        throw new AssetProcessingException(ATTRIBUTE_NOT_FOUND);
-                    }
+            switch (source) {
+                case CLIENT:
 
-                    switch (source) {
-                        case CLIENT:
-
-                            AuthContext authContext = exchange.getIn().getHeader(Constants.AUTH_CONTEXT, AuthContext.class);
-                            if (authContext == null) {
-                                // Check attribute has public write flag
-                                if (!oldAttribute.hasMeta(MetaItemType.ACCESS_PUBLIC_WRITE)) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-                                // Check read-only
-                                if (oldAttribute.getMetaValue(MetaItemType.READ_ONLY).orElse(false)) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-                            } else {
-                                // Check realm, must be accessible
-                                if (!identityService.getIdentityProvider().isTenantActiveAndAccessible(authContext,
-                                    asset.getRealm())) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-
-                                // Check read-only
-                                if (oldAttribute.getMetaValue(MetaItemType.READ_ONLY).orElse(false) && !authContext.isSuperUser()) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-
-                                // Regular user must have write attributes role
-                                if (!authContext.hasResourceRoleOrIsSuperUser(ClientRole.WRITE_ATTRIBUTES.getValue(),
-                                    authContext.getClientId())) {
-                                    throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                }
-
-                                // Check restricted user
-                                if (identityService.getIdentityProvider().isRestrictedUser(authContext.getUserId())) {
-                                    // Must be asset linked to user
-                                    if (!assetStorageService.isUserAsset(authContext.getUserId(),
-                                        event.getAssetId())) {
-                                        throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                    }
-                                    // Must be writable by restricted client
-                                    if (!oldAttribute.getMetaValue(MetaItemType.ACCESS_RESTRICTED_WRITE).orElse(false)) {
-                                        throw new AssetProcessingException(INSUFFICIENT_ACCESS);
-                                    }
-                                }
-                            }
-                            break;
+                    if (authContext == null) {
+                        // Check attribute has public write flag
+                        if (!oldAttribute.hasMeta(MetaItemType.ACCESS_PUBLIC_WRITE)) {
+                            throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                        }
+                        // Check read-only
+                        if (oldAttribute.getMetaValue(MetaItemType.READ_ONLY).orElse(false)) {
+                            throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                        }
+                    } else {
+                        // Check realm, must be accessible
+                        if (!identityService.getIdentityProvider().isTenantActiveAndAccessible(authContext,
+                            asset.getRealm())) {
+                            throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                        }
+
+                        // Check read-only
+                        if (oldAttribute.getMetaValue(MetaItemType.READ_ONLY).orElse(false) && !authContext.isSuperUser()) {
+                            throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                        }
 
-                        case SENSOR:
-                            Optional<Protocol<?>> protocol = oldAttribute.getMetaValue(AGENT_LINK)
-                                .map(agentLink -> agentService.getProtocolInstance(agentLink.getId()));
+                        // Regular user must have write attributes role
+                        if (!authContext.hasResourceRoleOrIsSuperUser(ClientRole.WRITE_ATTRIBUTES.getValue(),
+                            authContext.getClientId())) {
+                            throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                        }
 
-                            // Sensor event must be for an attribute linked to an agent
-                            if (!protocol.isPresent()) {
-                                throw new AssetProcessingException(INVALID_AGENT_LINK);
+                        // Check restricted user
+                        if (identityService.getIdentityProvider().isRestrictedUser(authContext.getUserId())) {
+                            // Must be asset linked to user
+                            if (!assetStorageService.isUserAsset(authContext.getUserId(),
+                                event.getAssetId())) {
+                                throw new AssetProcessingException(INSUFFICIENT_ACCESS);
                             }
-                            break;
+                            // Must be writable by restricted client
+                            if (!oldAttribute.getMetaValue(MetaItemType.ACCESS_RESTRICTED_WRITE).orElse(false)) {
+                                throw new AssetProcessingException(INSUFFICIENT_ACCESS);
+                            }
+                        }
                     }
+                    break;
 
-                    // For executable attributes, non-sensor sources can set a writable attribute execute status
-                    if (oldAttribute.getType() == ValueType.EXECUTION_STATUS && source != SENSOR) {
-                        Optional<AttributeExecuteStatus> status = event.getValue()
-                            .flatMap(ValueUtil::getString)
-                            .flatMap(AttributeExecuteStatus::fromString);
+                case SENSOR:
+                    Optional<Protocol<?>> protocol = oldAttribute.getMetaValue(AGENT_LINK)
+                        .map(agentLink -> agentService.getProtocolInstance(agentLink.getId()));
 
-                        if (status.isPresent() && !status.get().isWrite()) {
-                            throw new AssetProcessingException(INVALID_ATTRIBUTE_EXECUTE_STATUS);
-                        }
+                    // Sensor event must be for an attribute linked to an agent
+                    if (!protocol.isPresent()) {
+                        throw new AssetProcessingException(INVALID_AGENT_LINK);
                     }
+                    break;
+            }
+
+            // For executable attributes, non-sensor sources can set a writable attribute execute status
+            if (oldAttribute.getType() == ValueType.EXECUTION_STATUS && source != SENSOR) {
+                Optional<AttributeExecuteStatus> status = event.getValue()
+                    .flatMap(ValueUtil::getString)
+                    .flatMap(AttributeExecuteStatus::fromString);
+
+                if (status.isPresent() && !status.get().isWrite()) {
+                    throw new AssetProcessingException(INVALID_ATTRIBUTE_EXECUTE_STATUS);
+                }
+            }
 
-                    // Type coercion
-                    Object value = event.getValue().map(eventValue -> {
-                        Class<?> attributeValueType = oldAttribute.getType().getType();
-                        return ValueUtil.getValueCoerced(eventValue, attributeValueType).orElseThrow(() -> {
-                            LOG.info("Failed to coerce attribute event value into the correct value type: event value type=" + eventValue.getClass() + ", attribute value type=" + attributeValueType);
-                            return new AssetProcessingException(INVALID_VALUE_FOR_WELL_KNOWN_ATTRIBUTE);
-                        });
+            // Type coercion
+            Object value = event.getValue().map(eventValue -> {
+                Class<?> attributeValueType = oldAttribute.getType().getType();
+                return ValueUtil.getValueCoerced(eventValue, attributeValueType).orElseThrow(() -> {
+                    LOG.info("Failed to coerce attribute event value into the correct value type: event value type=" + eventValue.getClass() + ", attribute value type=" + attributeValueType);
+                    return new AssetProcessingException(INVALID_VALUE_FOR_WELL_KNOWN_ATTRIBUTE);
+                });
 
-                    }).orElse(null);
+            }).orElse(null);
 
-                    // TODO: Use schema validation
-                    // Check if attribute is well known and the value is valid
+            // TODO: Use schema validation
+            // Check if attribute is well known and the value is valid
 //                    AssetModelUtil.getAssetDescriptor(asset.getType()).map(assetDescriptor -> assetDescriptor.get)
 //                    AssetModelUtil.getAttributeDescriptor(oldAttribute.name).ifPresent(wellKnownAttribute -> {
 //                        // Check if the value is valid
@@ -384,50 +546,122 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
 //                            });
 //                    });
 
-                    // Either use the timestamp of the event or set event time to processing time
-                    long processingTime = timerService.getCurrentTimeMillis();
-                    long eventTime = event.getTimestamp() > 0 ? event.getTimestamp() : processingTime;
-
-                    // Ensure timestamp of event is not in the future as that would essentially block access to
-                    // the attribute until after that time (maybe that is desirable behaviour)
-                    if (eventTime - processingTime > 0) {
-                        // TODO: Decide how to handle update events in the future - ignore or change timestamp
-                        throw new AssetProcessingException(
-                            EVENT_IN_FUTURE,
-                            "current time: " + new Date(processingTime) + "/" + processingTime
-                                + ", event time: " + new Date(eventTime) + "/" + eventTime
-                        );
-                    }
+            // Either use the timestamp of the event or set event time to processing time
+            long processingTime = timerService.getCurrentTimeMillis();
+            long eventTime = event.getTimestamp() > 0 ? event.getTimestamp() : processingTime;
 
-                    // Check the last update timestamp of the attribute, ignoring any event that is older than last update
-                    // TODO This means we drop out-of-sequence events but accept events with the same source timestamp
-                    // TODO Several attribute events can occur in the same millisecond, then order of application is undefined
-                    oldAttribute.getTimestamp().filter(t -> t >= 0 && eventTime < t).ifPresent(
-                        lastStateTime -> {
-                            throw new AssetProcessingException(
-                                EVENT_OUTDATED,
-                                "last asset state time: " + new Date(lastStateTime) + "/" + lastStateTime
-                                    + ", event time: " + new Date(eventTime) + "/" + eventTime);
-                        }
-                    );
+            // Ensure timestamp of event is not in the future as that would essentially block access to
+            // the attribute until after that time (maybe that is desirable behaviour)
+            if (eventTime - processingTime > 0) {
+                // TODO: Decide how to handle update events in the future - ignore or change timestamp
+                throw new AssetProcessingException(
+                    EVENT_IN_FUTURE,
+                    "current time: " + new Date(processingTime) + "/" + processingTime
+                        + ", event time: " + new Date(eventTime) + "/" + eventTime
+                );
+            }
+
+            // Check the last update timestamp of the attribute, ignoring any event that is older than last update
+            // TODO This means we drop out-of-sequence events but accept events with the same source timestamp
+            // TODO Several attribute events can occur in the same millisecond, then order of application is undefined
+            oldAttribute.getTimestamp().filter(t -> t >= 0 && eventTime < t).ifPresent(
+                lastStateTime -> {
+                    throw new AssetProcessingException(
+                        EVENT_OUTDATED,
+                        "last asset state time: " + new Date(lastStateTime) + "/" + lastStateTime
+                            + ", event time: " + new Date(eventTime) + "/" + eventTime);
+                }
+            );
+
+            // Create a copy of the attribute and set the new value and timestamp
+            @SuppressWarnings("rawtypes")
+            Attribute updatedAttribute = ValueUtil.clone(oldAttribute);
+            updatedAttribute.setValue(value, eventTime);
 
-                    // Create a copy of the attribute and set the new value and timestamp
-                    @SuppressWarnings("rawtypes")
-                    Attribute updatedAttribute = ValueUtil.clone(oldAttribute);
-                    updatedAttribute.setValue(value, eventTime);
+            // Push through all processors
+            boolean consumedCompletely = processAssetUpdate(em, asset, updatedAttribute, source);
 
-                    // Push through all processors
-                    boolean consumedCompletely = processAssetUpdate(em, asset, updatedAttribute, source);
+            if (consumedCompletely) {
+                return null;
+            }
 
-                    // Publish a new event for clients if no processor consumed the update completely
-                    if (!consumedCompletely) {
+            if (writeBehind != null) {
+                // Publish a new event for clients once the value has been stored
+                return writeBehind.write(asset, updatedAttribute).whenComplete((result, failure) -> {
+                    if (failure != null) {
+                        LOG.log(Level.WARNING, "Error storing attribute value: " + event, failure);
+                    } else {
                         publishClientEvent(asset, updatedAttribute);
                     }
                 });
-            }))
-            .endDoTry()
-            .doCatch(AssetProcessingException.class)
-            .process(handleAssetProcessingException(LOG));
+            }
+
+            // Publish a new event for clients if no processor consumed the update completely
+            publishClientEvent(asset, updatedAttribute);
+            return null;
+        });
+    }
+
+    /**
+     * Waits on the calling thread until the value of an {@link AttributeEvent} requested through the asset queue has
+     * been stored, which is only required when storage is batched (see {@link AttributeWriteBehind}) as the reply is
+     * then the pending write.
+     */
+    public static void awaitStored(Object reply) throws AssetProcessingException {
+        if (!(reply instanceof CompletableFuture)) {
+            return;
+        }
+        try {
+            ((CompletableFuture<?>) reply).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AssetProcessingException) {
+                throw (AssetProcessingException) e.getCause();
+            }
+            throw new AssetProcessingException(STATE_STORAGE_FAILED, "database update failed", e.getCause());
+        } catch (InterruptedException | TimeoutException e) {
+            throw new AssetProcessingException(STATE_STORAGE_FAILED, "database update not completed", e);
+        }
+    }
+
+    public boolean isPartitioned() {
+        return partitionCount > 1;
+    }
+
+    /**
+     * @return The queue that processes {@link AttributeEvent}s of the specified asset, this is the {@link #ASSET_QUEUE}
+     * when processing isn't partitioned. All producers must send the events of an asset to this queue so they are
+     * processed in the order they were sent.
+     * @throws IllegalArgumentException if the asset ID is <code>null</code> or empty, such events can't be processed.
+     */
+    public String getAssetQueue(String assetId) throws IllegalArgumentException {
+        if (assetId == null || assetId.isEmpty()) {
+            throw new IllegalArgumentException("Attribute event must have an asset ID");
+        }
+        if (!isPartitioned()) {
+            return ASSET_QUEUE;
+        }
+        return getPartitionQueue(Math.floorMod(assetId.hashCode(), partitionCount));
+    }
+
+    /**
+     * Set the {@link #ASSET_QUEUE_PARTITION_HEADER} of an exchange with an {@link AttributeEvent} body to the queue of
+     * its asset (see {@link #getAssetQueue}), so a route can forward the event with
+     * <code>recipientList(header(ASSET_QUEUE_PARTITION_HEADER))</code>; an event without an asset ID stops the route.
+     */
+    public void setAssetQueueHeader(Exchange exchange) {
+        AttributeEvent event = exchange.getIn().getBody(AttributeEvent.class);
+
+        if (event.getAssetId() == null || event.getAssetId().isEmpty()) {
+            LOG.fine("Ignoring attribute event without an asset ID: " + event);
+            exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+            return;
+        }
+
+        exchange.getIn().setHeader(ASSET_QUEUE_PARTITION_HEADER, getAssetQueue(event.getAssetId()));
+    }
+
+    protected static String getPartitionQueue(int partition) {
+        return "seda://AssetQueuePartition" + partition + "?waitForTaskToComplete=IfReplyExpected&timeout=10000&purgeWhenStopping=true&discardIfNoConsumers=false&size=25000";
     }
 
     /**
@@ -442,14 +676,43 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
         if (attributeEvent.getTimestamp() <= 0) {
             attributeEvent.setTimestamp(timerService.getCurrentTimeMillis());
         }
-        messageBrokerService.getProducerTemplate().sendBodyAndHeader(ASSET_QUEUE, attributeEvent, HEADER_SOURCE, source);
+        messageBrokerService.getProducerTemplate().sendBodyAndHeader(getAssetQueue(attributeEvent.getAssetId()), attributeEvent, HEADER_SOURCE, source);
+    }
+
+    /**
+     * Send attribute events (e.g. received from a gateway in a single message) as a batch: the events are grouped by
+     * the queue of their asset (see {@link #getAssetQueue}) and each queue receives a single exchange with the events
+     * of its assets in the order given, which its consumer processes in one pass (see
+     * {@link #processBatchFromAssetQueue}). Events without an asset ID are ignored.
+     */
+    public void sendAttributeEvents(List<AttributeEvent> attributeEvents, Source source) {
+        if (attributeEvents.isEmpty()) {
+            return;
+        }
+
+        long now = timerService.getCurrentTimeMillis();
+        Map<String, List<AttributeEvent>> queueEvents = new LinkedHashMap<>();
+
+        for (AttributeEvent attributeEvent : attributeEvents) {
+            if (attributeEvent.getAssetId() == null || attributeEvent.getAssetId().isEmpty()) {
+                LOG.fine("Ignoring attribute event without an asset ID: " + attributeEvent);
+                continue;
+            }
+            if (attributeEvent.getTimestamp() <= 0) {
+                attributeEvent.setTimestamp(now);
+            }
+            queueEvents.computeIfAbsent(getAssetQueue(attributeEvent.getAssetId()), queue -> new ArrayList<>()).add(attributeEvent);
+        }
+
+        ProducerTemplate producerTemplate = messageBrokerService.getProducerTemplate();
+        queueEvents.forEach((queue, events) -> producerTemplate.sendBodyAndHeader(queue, events, HEADER_SOURCE, source));
     }
 
     /**
      * This deals with single {@link Attribute} updates and pushes them through the chain where each processor is given
      * the opportunity to completely consume the update or allow its progress to the next processor, see {@link
      * AssetUpdateProcessor#processAssetUpdate}. If no processor completely consumed the update, the attribute will be
-     * stored in the database.
+     * stored in the database (unless storage is batched, see {@link AttributeWriteBehind}).
      */
     protected boolean processAssetUpdate(EntityManager em,
                                          Asset<?> asset,
@@ -486,7 +749,7 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
             }
         }
 
-        if (!complete) {
+        if (!complete && writeBehind == null) {
             LOG.fine("No processor consumed the update completely, storing: " + attributeStr);
             storeAttributeValue(em, asset, attribute);
         }
@@ -58,14 +58,17 @@ public class AssetResourceImpl extends ManagerWebResource implements AssetResour
     protected final static Asset<?>[] EMPTY_ASSETS = new Asset<?>[0];
     protected final AssetStorageService assetStorageService;
     protected final MessageBrokerService messageBrokerService;
+    protected final AssetProcessingService assetProcessingService;
 
     public AssetResourceImpl(TimerService timerService,
                              ManagerIdentityService identityService,
                              AssetStorageService assetStorageService,
-                             MessageBrokerService messageBrokerService) {
+                             MessageBrokerService messageBrokerService,
+                             AssetProcessingService assetProcessingService) {
         super(timerService, identityService);
         this.assetStorageService = assetStorageService;
         this.messageBrokerService = messageBrokerService;
+        this.assetProcessingService = assetProcessingService;
     }
 
     @Override
@@ -605,12 +608,14 @@ public class AssetResourceImpl extends ManagerWebResource implements AssetResour
 
             // Process synchronously
             Object result = messageBrokerService.getProducerTemplate().requestBodyAndHeaders(
-                AssetProcessingService.ASSET_QUEUE, event, headers
+                assetProcessingService.getAssetQueue(ref.getAssetId()), event, headers
             );
 
             if (result instanceof AssetProcessingException) {
                 AssetProcessingException processingException = (AssetProcessingException) result;
                 failure = processingException.getReason();
+            } else {
+                AssetProcessingService.awaitStored(result);
             }
 
         } catch (AssetProcessingException e) {
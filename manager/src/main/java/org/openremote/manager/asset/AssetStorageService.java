@@ -21,6 +21,8 @@ package org.openremote.manager.asset;
 
 import com.vladmihalcea.hibernate.type.array.StringArrayType;
 import org.apache.camel.builder.RouteBuilder;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.jdbc.AbstractReturningWork;
 import org.openremote.container.message.MessageBrokerService;
@@ -32,6 +34,7 @@ import org.openremote.manager.asset.console.ConsoleResourceImpl;
 import org.openremote.manager.event.ClientEventService;
 import org.openremote.manager.event.EventSubscriptionAuthorizer;
 import org.openremote.manager.gateway.GatewayService;
+import org.openremote.manager.security.AuthorizationCache;
 import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.manager.web.ManagerWebService;
 import org.openremote.model.Constants;
@@ -59,6 +62,8 @@ import org.openremote.model.util.ValueUtil;
 import org.postgresql.util.PGobject;
 
 import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
 import javax.persistence.NoResultException;
 import javax.persistence.TypedQuery;
 import javax.validation.ConstraintViolation;
@@ -81,6 +86,7 @@ import static java.util.stream.Collectors.groupingBy;
 import static org.apache.camel.builder.PredicateBuilder.or;
 import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.manager.event.ClientEventService.CLIENT_EVENT_TOPIC;
 import static org.openremote.model.attribute.Attribute.getAddedOrModifiedAttributes;
 import static org.openremote.model.query.AssetQuery.*;
@@ -90,6 +96,8 @@ import static org.openremote.model.query.filter.ValuePredicate.asPredicateOrTrue
 import static org.openremote.model.util.TextUtil.isNullOrEmpty;
 import static org.openremote.model.value.MetaItemType.ACCESS_PUBLIC_READ;
 import static org.openremote.model.value.MetaItemType.ACCESS_RESTRICTED_READ;
+import static org.openremote.model.value.MetaItemType.AGENT_LINK;
+import static org.openremote.model.value.MetaItemType.RULE_STATE;
 
 public class AssetStorageService extends RouteBuilder implements ContainerService {
 
@@ -126,6 +134,14 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
     private static final Logger LOG = Logger.getLogger(AssetStorageService.class.getName());
     public static final int PRIORITY = MED_PRIORITY;
+    // Maximum number of fully loaded assets kept in memory for attribute event processing, 0 disables the cache
+    public static final String ASSET_CACHE_MAX_SIZE = "ASSET_CACHE_MAX_SIZE";
+    public static final int ASSET_CACHE_MAX_SIZE_DEFAULT = 10000;
+    // Cached assets that haven't been accessed for this long are evicted, 0 means entries are only evicted by size
+    public static final String ASSET_CACHE_EXPIRE_SECONDS = "ASSET_CACHE_EXPIRE_SECONDS";
+    public static final int ASSET_CACHE_EXPIRE_SECONDS_DEFAULT = 600;
+    // Matches attributes that are rule state, RULE_STATE meta is set to true or it is not set and AGENT_LINK meta is present
+    protected static final String RULE_STATE_ATTRIBUTE_FILTER = "coalesce((AX.VALUE #>> '{meta," + RULE_STATE.getName() + "}')::boolean, AX.VALUE #> '{meta," + AGENT_LINK.getName() + "}' is not null)";
     protected static final Field assetParentNameField;
     protected static final Field assetParentTypeField;
 
@@ -215,6 +231,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
     protected ManagerIdentityService identityService;
     protected ClientEventService clientEventService;
     protected GatewayService gatewayService;
+    protected AssetCache assetCache;
 
     /**
      * Will evaluate each {@link CalendarEventPredicate} and apply it depending on the {@link LogicGroup} type
@@ -302,6 +319,14 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         gatewayService = container.getService(GatewayService.class);
         EventSubscriptionAuthorizer assetEventAuthorizer = AssetStorageService.assetInfoAuthorizer(identityService, this);
 
+        int assetCacheMaxSize = getInteger(container.getConfig(), ASSET_CACHE_MAX_SIZE, ASSET_CACHE_MAX_SIZE_DEFAULT);
+        if (assetCacheMaxSize > 0) {
+            assetCache = new AssetCache(
+                assetCacheMaxSize,
+                getInteger(container.getConfig(), ASSET_CACHE_EXPIRE_SECONDS, ASSET_CACHE_EXPIRE_SECONDS_DEFAULT)
+            );
+        }
+
         clientEventService.addSubscriptionAuthorizer((auth, subscription) -> {
              if (!subscription.isEventType(AssetEvent.class)) {
                  return false;
@@ -315,7 +340,8 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 container.getService(TimerService.class),
                 identityService,
                 this,
-                container.getService(MessageBrokerService.class)
+                container.getService(MessageBrokerService.class),
+                container.getService(AssetProcessingService.class)
             )
         );
 
@@ -346,7 +372,11 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         from(PERSISTENCE_TOPIC)
             .routeId("AssetPersistenceChanges")
             .filter(isPersistenceEventForEntityType(Asset.class))
-            .process(exchange -> publishModificationEvents(exchange.getIn().getBody(PersistenceEvent.class)));
+            .process(exchange -> {
+                PersistenceEvent<Asset<?>> persistenceEvent = exchange.getIn().getBody(PersistenceEvent.class);
+                invalidateCachedAsset(persistenceEvent);
+                publishModificationEvents(persistenceEvent);
+            });
 
         // React if a client wants to read assets and attributes
         from(CLIENT_EVENT_TOPIC)
@@ -489,6 +519,31 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return find(em, assetId, loadComplete, PRIVATE);
     }
 
+    /**
+     * Find a fully loaded asset using the asset cache (when enabled), the returned asset is a copy that may be modified
+     * by the caller. Use this on hot paths that only need the current state of a single asset.
+     */
+    public Asset<?> findCached(String assetId) {
+        if (assetCache == null) {
+            return find(assetId, true);
+        }
+        return assetCache.get(assetId, () -> find(assetId, true));
+    }
+
+    /**
+     * Same as {@link #findCached(String)} but loads the asset using the supplied {@link EntityManager} on a cache miss.
+     */
+    public Asset<?> findCached(EntityManager em, String assetId) {
+        if (assetCache == null) {
+            return find(em, assetId, true);
+        }
+        return assetCache.get(assetId, () -> find(em, assetId, true));
+    }
+
+    public AssetCache getAssetCache() {
+        return assetCache;
+    }
+
     /**
      * @param loadComplete If the whole asset data (including path and attributes) should be loaded.
      * @param access       The required access permissions of the asset data.
@@ -522,6 +577,30 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return persistenceService.doReturningTransaction(em -> findAll(em, query));
     }
 
+    /**
+     * @return The {@link AssetDigest}s of all assets of the realm, only the columns required for the digests are read
+     * and the most recent attribute timestamp is worked out by the database.
+     */
+    @SuppressWarnings("unchecked")
+    public List<AssetDigest> findDigests(String realm) {
+        return persistenceService.doReturningTransaction(em -> {
+            List<Object[]> result = em.createNativeQuery(
+                "select A.ID, A.PARENT_ID, A.VERSION, (select max(case jsonb_typeof(AV.value -> 'timestamp') when 'number' then (AV.value ->> 'timestamp')::int8 end) from jsonb_each(A.ATTRIBUTES) AV)" +
+                    " from ASSET A where A.REALM = ?1")
+                .setParameter(1, realm)
+                .getResultList();
+            List<AssetDigest> digests = new ArrayList<>(result.size());
+            for (Object[] row : result) {
+                digests.add(new AssetDigest(
+                    (String) row[0],
+                    (String) row[1],
+                    ((Number) row[2]).longValue(),
+                    row[3] != null ? ((Number) row[3]).longValue() : 0L));
+            }
+            return digests;
+        });
+    }
+
     public List<String> findNames(String... ids) {
         if (ids == null || ids.length == 0)
             return new ArrayList<>();
@@ -585,7 +664,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
      */
     @SuppressWarnings("unchecked")
     public <T extends Asset<?>> T merge(T asset, boolean overrideVersion, boolean skipGatewayCheck, String userName) throws IllegalStateException, ConstraintViolationException {
-        return persistenceService.doReturningTransaction(em -> {
+        T mergedAsset = persistenceService.doReturningTransaction(em -> {
 
             T existingAsset = TextUtil.isNullOrEmpty(asset.getId()) ? null : (T)em.find(Asset.class, asset.getId());
 
@@ -771,6 +850,12 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
             return updatedAsset;
         });
+
+        // Don't wait for the persistence event, the next attribute event of this asset must see the new state
+        if (assetCache != null && mergedAsset != null && mergedAsset.getId() != null) {
+            assetCache.invalidate(mergedAsset.getId());
+        }
+        return mergedAsset;
     }
 
     /**
@@ -873,6 +958,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             return false;
         }
 
+        if (assetCache != null) {
+            ids.forEach(assetCache::invalidate);
+        }
+
         return true;
     }
 
@@ -884,6 +973,13 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         if (TextUtil.isNullOrEmpty(userId) || TextUtil.isNullOrEmpty(assetId)) {
             return false;
         }
+        AuthorizationCache authorizationCache = identityService.getAuthorizationCache();
+        return authorizationCache != null
+            ? authorizationCache.isUserAsset(userId, assetId, () -> isUserAssetFromDb(userId, assetId))
+            : isUserAssetFromDb(userId, assetId);
+    }
+
+    protected boolean isUserAssetFromDb(String userId, String assetId) {
         return persistenceService.doReturningTransaction(entityManager -> {
             try {
                 String queryStr = TextUtil.isNullOrEmpty(userId) ?
@@ -1025,6 +1121,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
      */
     public void storeUserAsset(UserAsset userAsset) {
         persistenceService.doTransaction(entityManager -> storeUserAsset(entityManager, userAsset));
+        identityService.invalidateUserAsset(userAsset.getId().getUserId(), userAsset.getId().getAssetId());
     }
 
     /**
@@ -1037,6 +1134,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             if (userAsset != null)
                 entityManager.remove(userAsset);
         });
+        identityService.invalidateUserAsset(userId, assetId);
     }
 
     protected void storeUserAsset(EntityManager entityManager, UserAsset userAsset) {
@@ -1084,22 +1182,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
         List<Object[]> results = jpql.getResultList();
 
-        Stream<Asset<?>> assetStream = results.stream().map(objArr -> {
-            Asset<?> asset = (Asset<?>)objArr[0];
-
-            if (objArr.length == 3) {
-                // We have transient parent info
-                String parentName = (String)objArr[1];
-                String parentType = (String)objArr[2];
-                try {
-                    assetParentNameField.set(asset, parentName);
-                    assetParentTypeField.set(asset, parentType);
-                } catch (IllegalAccessException e) {
-                    LOG.log(Level.WARNING, "Failed to set asset parent name and/or type fields", e);
-                }
-            }
-            return asset;
-        });
+        Stream<Asset<?>> assetStream = results.stream().map(AssetStorageService::toAsset);
 
         if (containsCalendarPredicate) {
             assetStream = assetStream.filter(asset -> calendarEventPredicateMatches(timerService::getCurrentTimeMillis, query, asset));
@@ -1108,6 +1191,83 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return assetStream.collect(Collectors.toList());
     }
 
+    /**
+     * Streams all assets with only their rule state attributes (see {@link org.openremote.model.value.MetaItemType#RULE_STATE}) to the consumer,
+     * assets without rule state attributes are skipped; see {@link #streamAll(AssetQuery, int, Consumer)}.
+     */
+    public void streamRuleStateAssets(int fetchSize, Consumer<Asset<?>> consumer) {
+        streamAll(new AssetQuery(), RULE_STATE_ATTRIBUTE_FILTER, fetchSize, asset -> {
+            if (!asset.getAttributes().isEmpty()) {
+                consumer.accept(asset);
+            }
+        });
+    }
+
+    /**
+     * Streams the assets matching the query to the consumer using a server side cursor, rather than loading all
+     * assets into memory at once. Rows are fetched in batches of the fetch size and the persistence context is cleared
+     * after each batch, so the consumer must not hold on to managed state. The consumer is called inside the read
+     * transaction.
+     */
+    public void streamAll(AssetQuery query, int fetchSize, Consumer<Asset<?>> consumer) {
+        streamAll(query, null, fetchSize, consumer);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void streamAll(AssetQuery query, String attributeFilter, int fetchSize, Consumer<Asset<?>> consumer) {
+
+        if (query.access == null)
+            query.access = PRIVATE;
+
+        // Default to order by creation date if the query may return multiple results
+        if (query.orderBy == null && query.ids == null)
+            query.orderBy = new OrderBy(OrderBy.Property.CREATED_ON);
+
+        Pair<PreparedAssetQuery, Boolean> queryAndContainsCalendarPredicate = buildQuery(query, timerService::getCurrentTimeMillis, attributeFilter);
+        PreparedAssetQuery querySql = queryAndContainsCalendarPredicate.key;
+        boolean containsCalendarPredicate = queryAndContainsCalendarPredicate.value;
+
+        persistenceService.doTransaction(em -> {
+            org.hibernate.query.Query<Object[]> jpql = em.createNativeQuery(querySql.querySql, "AssetMapping").unwrap(org.hibernate.query.Query.class);
+            querySql.apply(em, jpql);
+            jpql.setFetchSize(fetchSize);
+            jpql.setReadOnly(true);
+
+            int count = 0;
+            try (ScrollableResults results = jpql.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (results.next()) {
+                    Asset<?> asset = toAsset(results.get());
+
+                    if (!containsCalendarPredicate || calendarEventPredicateMatches(timerService::getCurrentTimeMillis, query, asset)) {
+                        consumer.accept(asset);
+                    }
+
+                    if (++count % fetchSize == 0) {
+                        em.clear();
+                    }
+                }
+            }
+            LOG.fine("Streamed " + count + " asset(s) in batches of " + fetchSize);
+        });
+    }
+
+    protected static Asset<?> toAsset(Object[] objArr) {
+        Asset<?> asset = (Asset<?>)objArr[0];
+
+        if (objArr.length == 3) {
+            // We have transient parent info
+            String parentName = (String)objArr[1];
+            String parentType = (String)objArr[2];
+            try {
+                assetParentNameField.set(asset, parentName);
+                assetParentTypeField.set(asset, parentType);
+            } catch (IllegalAccessException e) {
+                LOG.log(Level.WARNING, "Failed to set asset parent name and/or type fields", e);
+            }
+        }
+        return asset;
+    }
+
     protected boolean updateAttributeValue(EntityManager em, Asset<?> asset, Attribute<?> attribute) {
 
         try {
@@ -1158,6 +1318,9 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                             + "' (affected rows: " + updatedRows + ") value: "
                             + (value != null ? ValueUtil.asJSON(value).orElse("null") : "null"));
                     }
+                    if (updatedRows == 1 && assetCache != null) {
+                        cacheAttributeValueAfterCommit(em, asset.getId(), attribute);
+                    }
                     return updatedRows == 1;
                 }
             });
@@ -1167,6 +1330,113 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         }
     }
 
+    /**
+     * Updates the value and timestamp of several attributes per asset using the supplied connection; a single
+     * coalesced update is executed per asset and updates of assets with the same number of attributes are sent as one
+     * JDBC batch. The caller is responsible for transaction handling.
+     *
+     * @return The IDs of the assets that were not updated because the asset or one of the attributes doesn't exist.
+     */
+    protected Set<String> updateAttributeValues(Connection connection, Map<String, ? extends Collection<Attribute<?>>> assetAttributes) throws SQLException {
+        Set<String> failedAssetIds = new HashSet<>();
+        Map<Integer, List<String>> assetIdsByAttributeCount = assetAttributes.entrySet().stream()
+            .filter(entry -> !entry.getValue().isEmpty())
+            .collect(groupingBy(entry -> entry.getValue().size(), Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+
+        for (Map.Entry<Integer, List<String>> group : assetIdsByAttributeCount.entrySet()) {
+            String attributesExpression = "attributes";
+            for (int i = 0; i < group.getKey() * 2; i++) {
+                attributesExpression = "jsonb_set(" + attributesExpression + ", ?, ?, true)";
+            }
+            String sql = "update Asset set attributes = " + attributesExpression + " where id = ? and jsonb_exists_all(attributes, ?)";
+
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (String assetId : group.getValue()) {
+                    int index = 1;
+                    List<String> attributeNames = new ArrayList<>();
+
+                    for (Attribute<?> attribute : assetAttributes.get(assetId)) {
+                        String attributeName = attribute.getName();
+                        attributeNames.add(attributeName);
+
+                        statement.setArray(index++, connection.createArrayOf("text", new String[]{attributeName, "value"}));
+                        PGobject pgJsonValue = new PGobject();
+                        pgJsonValue.setType("jsonb");
+                        // Careful, do not set Java null here! It will erase your whole SQL column!
+                        pgJsonValue.setValue(ValueUtil.asJSON(attribute.getValue()).orElse(ValueUtil.NULL_LITERAL));
+                        statement.setObject(index++, pgJsonValue);
+
+                        statement.setArray(index++, connection.createArrayOf("text", new String[]{attributeName, "timestamp"}));
+                        PGobject pgJsonValueTimestamp = new PGobject();
+                        pgJsonValueTimestamp.setType("jsonb");
+                        pgJsonValueTimestamp.setValue(Long.toString(attribute.getTimestamp().orElseGet(timerService::getCurrentTimeMillis)));
+                        statement.setObject(index++, pgJsonValueTimestamp);
+                    }
+
+                    statement.setString(index++, assetId);
+                    statement.setArray(index, connection.createArrayOf("text", attributeNames.toArray(new String[0])));
+                    statement.addBatch();
+                }
+
+                int[] updatedRows = statement.executeBatch();
+                for (int i = 0; i < updatedRows.length; i++) {
+                    // No row was updated when the asset or one of the attributes no longer exists, a successful
+                    // entry may also be reported without a count (SUCCESS_NO_INFO) which isn't a failure
+                    if (updatedRows[i] == 0) {
+                        failedAssetIds.add(group.getValue().get(i));
+                    }
+                }
+            }
+        }
+
+        LOG.finest("Stored attribute values of " + assetAttributes.size() + " asset(s), failed: " + failedAssetIds.size());
+        return failedAssetIds;
+    }
+
+    protected void cacheAttributeValueAfterCommit(EntityManager em, String assetId, Attribute<?> attribute) {
+        em.unwrap(Session.class).getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    assetCache.updateAttributeValue(assetId, attribute);
+                } else {
+                    assetCache.invalidate(assetId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Update the cached state of an attribute whose value has been committed to the database.
+     */
+    protected void cacheAttributeValue(String assetId, Attribute<?> attribute) {
+        if (assetCache != null) {
+            assetCache.updateAttributeValue(assetId, attribute);
+        }
+    }
+
+    protected void invalidateCachedAsset(PersistenceEvent<Asset<?>> persistenceEvent) {
+        if (assetCache == null) {
+            return;
+        }
+
+        if (persistenceEvent.getCause() == PersistenceEvent.Cause.UPDATE) {
+            // The path of all descendants changes when the parent changes
+            String oldParentId = persistenceEvent.getPreviousState("parentId");
+            String newParentId = persistenceEvent.getCurrentState("parentId");
+            if (!Objects.equals(oldParentId, newParentId)) {
+                assetCache.invalidateAll();
+                return;
+            }
+        }
+
+        assetCache.invalidate(persistenceEvent.getEntity().getId());
+    }
+
     protected void publishModificationEvents(PersistenceEvent<Asset<?>> persistenceEvent) {
         Asset<?> asset = persistenceEvent.getEntity();
         switch (persistenceEvent.getCause()) {
@@ -1274,22 +1544,30 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
 
     protected static Pair<PreparedAssetQuery, Boolean> buildQuery(AssetQuery query, Supplier<Long> timeProvider) {
+        return buildQuery(query, timeProvider, null);
+    }
+
+    /**
+     * @param attributeFilter An optional SQL condition on each attribute (<code>AX.VALUE</code>) of the asset, only
+     *                        matching attributes are selected.
+     */
+    protected static Pair<PreparedAssetQuery, Boolean> buildQuery(AssetQuery query, Supplier<Long> timeProvider, String attributeFilter) {
         LOG.finest("Building: " + query);
         StringBuilder sb = new StringBuilder();
         boolean recursive = query.recursive;
         List<ParameterBinder> binders = new ArrayList<>();
-        sb.append(buildSelectString(query, 1, binders, timeProvider));
+        sb.append(buildSelectString(query, 1, binders, timeProvider, attributeFilter));
         sb.append(buildFromString(query, 1));
         boolean containsCalendarPredicate = appendWhereClause(sb, query, 1, binders, timeProvider);
 
         if (recursive) {
             sb.insert(0, "WITH RECURSIVE top_level_assets AS ((");
             sb.append(") UNION (");
-            sb.append(buildSelectString(query, 2, binders, timeProvider));
+            sb.append(buildSelectString(query, 2, binders, timeProvider, attributeFilter));
             sb.append(buildFromString(query, 2));
             containsCalendarPredicate = !containsCalendarPredicate && appendWhereClause(sb, query, 2, binders, timeProvider);
             sb.append("))");
-            sb.append(buildSelectString(query, 3, binders, timeProvider));
+            sb.append(buildSelectString(query, 3, binders, timeProvider, attributeFilter));
             sb.append(buildFromString(query, 3));
             containsCalendarPredicate = !containsCalendarPredicate && appendWhereClause(sb, query, 3, binders, timeProvider);
         }
@@ -1299,7 +1577,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return new Pair<>(new PreparedAssetQuery(sb.toString(), binders), containsCalendarPredicate);
     }
 
-    protected static String buildSelectString(AssetQuery query, int level, List<ParameterBinder> binders, Supplier<Long> timeProvider) {
+    protected static String buildSelectString(AssetQuery query, int level, List<ParameterBinder> binders, Supplier<Long> timeProvider, String attributeFilter) {
         // level = 1 is main query select
         // level = 2 is union select
         // level = 3 is CTE select
@@ -1332,7 +1610,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             if (query.recursive && level != 3) {
                 sb.append(", A.ATTRIBUTES as ATTRIBUTES");
             } else {
-                sb.append(buildAttributeSelect(query, binders, timeProvider));
+                sb.append(buildAttributeSelect(query, binders, timeProvider, attributeFilter));
             }
         } else {
             sb.append(", NULL as ATTRIBUTES");
@@ -1341,10 +1619,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return sb.toString();
     }
 
-    protected static String buildAttributeSelect(AssetQuery query, List<ParameterBinder> binders, Supplier<Long> timeProvider) {
+    protected static String buildAttributeSelect(AssetQuery query, List<ParameterBinder> binders, Supplier<Long> timeProvider, String attributeFilter) {
 
         Select select = query.select;
-        boolean hasAttributeFilter = select != null && select.attributes != null && select.attributes.length > 0;
+        boolean hasAttributeFilter = attributeFilter != null || (select != null && select.attributes != null && select.attributes.length > 0);
 
         if (!hasAttributeFilter && query.access == PRIVATE) {
             return ", A.ATTRIBUTES as ATTRIBUTES";
@@ -1370,6 +1648,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             sb.append(" AND AX.VALUE #>> '{meta,").append(metaName).append("}' = 'true'");
         }
 
+        if (attributeFilter != null) {
+            sb.append(" AND (").append(attributeFilter).append(")");
+        }
+
         sb.append(") AS ATTRIBUTES");
         return sb.toString();
     }
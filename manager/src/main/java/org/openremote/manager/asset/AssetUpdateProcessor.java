@@ -33,6 +33,10 @@ import javax.persistence.EntityManager;
  * caller of this has already obtained the lock. Internal synchronization and thread-safety
  * must still be maintained if shared state of a processor can be modified by concurrent tasks
  * maintained by that processor.
+ * <p>
+ * When {@link AssetProcessingService#ASSET_PROCESSING_PARTITIONS} is configured the caller does not hold the lock and
+ * updates of different assets are processed concurrently, implementations that access shared state must then obtain
+ * the {@link GlobalLock} themselves.
  */
 public interface AssetUpdateProcessor {
 
@@ -27,7 +27,6 @@ import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.*;
 import org.openremote.model.attribute.AttributeEvent.Source;
 import org.openremote.model.protocol.ProtocolUtil;
-import org.openremote.model.query.AssetQuery;
 import org.openremote.model.util.Pair;
 import org.openremote.model.util.ValueUtil;
 import org.openremote.model.value.MetaItemType;
@@ -279,11 +278,7 @@ public class AttributeLinkingService implements ContainerService, AssetUpdatePro
                                                  AssetStorageService assetStorageService,
                                                  AttributeRef attributeRef) {
         // Get the full asset as shared em
-        Asset<?> asset = assetStorageService.find(
-            em,
-            new AssetQuery()
-                .ids(attributeRef.getId())
-        );
+        Asset<?> asset = assetStorageService.findCached(em, attributeRef.getId());
 
         Attribute<?> attribute = asset != null ? asset.getAttributes().get(attributeRef.getName()).orElse(null) : null;
 
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.asset;
+
+import org.hibernate.Session;
+import org.openremote.container.persistence.PersistenceService;
+import org.openremote.manager.datapoint.AssetDatapointService;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.AssetDatapoint;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.attribute.AttributeWriteFailure.STATE_STORAGE_FAILED;
+
+/**
+ * Collects attribute value writes of the asset processing chain and flushes them periodically (every
+ * {@link AssetProcessingService#ASSET_PROCESSING_BATCH_WINDOW_MILLIS}) or when
+ * {@link AssetProcessingService#ASSET_PROCESSING_BATCH_SIZE} writes are pending, in a single database transaction.
+ * <p>
+ * Writes of the same asset are coalesced into one update of the asset attributes (the latest value of each attribute
+ * wins) and datapoints are stored with a single JDBC batch. Each write is given a future that completes when its
+ * batch has been committed; if a batch fails then its writes are stored individually. A write that fails with an
+ * exception (e.g. the database is unavailable) is kept and retried on the next flush, ahead of any newer writes, so
+ * a value processors have already acted on isn't dropped; only a write of an asset that no longer exists is completed
+ * exceptionally with an {@link AssetProcessingException}.
+ * <p>
+ * At most {@link AssetProcessingService#ASSET_PROCESSING_BATCH_MAX_PENDING} writes are pending, see
+ * {@link #awaitCapacity}. Pending values are applied to assets loaded by the processing chain (see
+ * {@link #applyPendingValues}), so processors see the latest attribute state before it has been flushed.
+ */
+public class AttributeWriteBehind {
+
+    protected static class PendingWrite {
+        final String assetId;
+        final Attribute<?> attribute;
+        final boolean storeDatapoint;
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        int attempts;
+
+        PendingWrite(String assetId, Attribute<?> attribute, boolean storeDatapoint) {
+            this.assetId = assetId;
+            this.attribute = attribute;
+            this.storeDatapoint = storeDatapoint;
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger(AttributeWriteBehind.class.getName());
+    protected final PersistenceService persistenceService;
+    protected final AssetStorageService assetStorageService;
+    protected final AssetDatapointService assetDatapointService;
+    protected final ScheduledExecutorService executorService;
+    protected final int windowMillis;
+    protected final int batchSize;
+    protected final int maxPending;
+    protected final Map<AttributeRef, Attribute<?>> pendingValues = new ConcurrentHashMap<>();
+    protected final Object flushLock = new Object();
+    protected List<PendingWrite> pendingWrites = new ArrayList<>();
+    protected boolean flushScheduled;
+    protected ScheduledFuture<?> flushFuture;
+
+    public AttributeWriteBehind(PersistenceService persistenceService,
+                                AssetStorageService assetStorageService,
+                                AssetDatapointService assetDatapointService,
+                                ScheduledExecutorService executorService,
+                                int windowMillis,
+                                int batchSize,
+                                int maxPending) {
+        this.persistenceService = persistenceService;
+        this.assetStorageService = assetStorageService;
+        this.assetDatapointService = assetDatapointService;
+        this.executorService = executorService;
+        this.windowMillis = windowMillis;
+        this.batchSize = batchSize;
+        this.maxPending = Math.max(batchSize, maxPending);
+    }
+
+    public void start() {
+        flushFuture = executorService.scheduleWithFixedDelay(this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        flush();
+
+        synchronized (this) {
+            if (!pendingWrites.isEmpty()) {
+                LOG.warning("Failed to store " + pendingWrites.size() + " attribute value(s) before stopping");
+                pendingWrites.forEach(write -> write.future.completeExceptionally(
+                    new AssetProcessingException(STATE_STORAGE_FAILED, "database update not completed before stopping")));
+                pendingWrites.clear();
+                pendingValues.clear();
+            }
+        }
+    }
+
+    /**
+     * Block the calling thread while the maximum number of writes are pending, flushing them on the calling thread,
+     * so a slow database slows down event processing instead of growing the queue without limit. Must be called
+     * before the processing transaction is started so the calling thread doesn't hold a second connection; the queue
+     * can exceed the maximum by at most the number of threads calling {@link #write}.
+     */
+    public void awaitCapacity() throws AssetProcessingException {
+        while (getPendingCount() >= maxPending) {
+            flush();
+
+            if (getPendingCount() >= maxPending) {
+                // Only writes that failed and are waiting to be retried are pending, back off for a window
+                try {
+                    Thread.sleep(windowMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AssetProcessingException(STATE_STORAGE_FAILED, "interrupted waiting for pending writes to be stored", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queue the value and timestamp of the attribute to be written to the database.
+     */
+    public CompletableFuture<Void> write(Asset<?> asset, Attribute<?> attribute) {
+        PendingWrite pendingWrite = new PendingWrite(
+            asset.getId(),
+            attribute,
+            AssetDatapointService.attributeIsStoreDatapoint(attribute) && attribute.getValue().isPresent()
+        );
+        boolean batchFull;
+
+        synchronized (this) {
+            pendingValues.put(new AttributeRef(asset.getId(), attribute.getName()), attribute);
+            pendingWrites.add(pendingWrite);
+            batchFull = pendingWrites.size() >= batchSize;
+        }
+
+        if (batchFull) {
+            flushSoon();
+        }
+        return pendingWrite.future;
+    }
+
+    /**
+     * Flush the pending writes on the executor without waiting for the end of the window, e.g. once a batch of events
+     * has been processed; does nothing if a flush is already scheduled.
+     */
+    public void flushSoon() {
+        synchronized (this) {
+            if (flushScheduled || pendingWrites.isEmpty()) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        executorService.execute(this::flush);
+    }
+
+    /**
+     * Replace value and timestamp of any attribute of the asset that has a pending write.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void applyPendingValues(Asset<?> asset) {
+        if (pendingValues.isEmpty()) {
+            return;
+        }
+        asset.getAttributes().values().forEach(attribute -> {
+            Attribute pending = pendingValues.get(new AttributeRef(asset.getId(), attribute.getName()));
+            if (pending != null) {
+                ((Attribute)attribute).setValue(pending.getValue().orElse(null), pending.getTimestamp().orElse(0L));
+            }
+        });
+    }
+
+    public int getPendingCount() {
+        synchronized (this) {
+            return pendingWrites.size();
+        }
+    }
+
+    protected void flush() {
+        // Only one flush at a time so batches are written in order
+        synchronized (flushLock) {
+            List<PendingWrite> writes;
+            synchronized (this) {
+                flushScheduled = false;
+                if (pendingWrites.isEmpty()) {
+                    return;
+                }
+                writes = pendingWrites;
+                pendingWrites = new ArrayList<>();
+            }
+
+            List<PendingWrite> retries = new ArrayList<>();
+
+            try {
+                Set<String> failedAssetIds = store(writes);
+                writes.forEach(write -> complete(write, failedAssetIds.contains(write.assetId)
+                    ? new AssetProcessingException(STATE_STORAGE_FAILED, "database update failed, no rows updated")
+                    : null));
+            } catch (Exception e) {
+                LOG.log(Level.INFO, "Failed to store batch of " + writes.size() + " attribute value(s), storing individually", e);
+                writes.forEach(write -> storeIndividually(write, retries));
+            }
+
+            if (!retries.isEmpty()) {
+                LOG.warning("Failed to store " + retries.size() + " attribute value(s), retrying on the next flush");
+                synchronized (this) {
+                    // Retries go ahead of newer writes so the latest value of an attribute still wins
+                    retries.addAll(pendingWrites);
+                    pendingWrites = retries;
+                }
+            }
+        }
+    }
+
+    protected void storeIndividually(PendingWrite write, List<PendingWrite> retries) {
+        try {
+            Set<String> failedAssetIds = store(Collections.singletonList(write));
+            complete(write, failedAssetIds.isEmpty()
+                ? null
+                : new AssetProcessingException(STATE_STORAGE_FAILED, "database update failed, no rows updated"));
+        } catch (Exception e) {
+            write.attempts++;
+            LOG.log(Level.FINE, "Failed to store attribute value (attempt " + write.attempts + "): " + write.attribute, e);
+            retries.add(write);
+        }
+    }
+
+    protected Set<String> store(List<PendingWrite> writes) {
+        // Coalesce the attribute updates per asset, writes are in processing order so the last write of an attribute wins
+        Map<String, Map<String, Attribute<?>>> assetAttributes = new LinkedHashMap<>();
+        List<AssetDatapoint> datapoints = new ArrayList<>();
+
+        for (PendingWrite write : writes) {
+            assetAttributes.computeIfAbsent(write.assetId, id -> new LinkedHashMap<>()).put(write.attribute.getName(), write.attribute);
+            if (write.storeDatapoint) {
+                datapoints.add(new AssetDatapoint(
+                    write.assetId,
+                    write.attribute.getName(),
+                    write.attribute.getValue().orElse(null),
+                    write.attribute.getTimestamp().orElse(0L)));
+            }
+        }
+
+        Map<String, Collection<Attribute<?>>> updates = new LinkedHashMap<>();
+        assetAttributes.forEach((assetId, attributes) -> updates.put(assetId, attributes.values()));
+
+        return persistenceService.doReturningTransaction(em ->
+            em.unwrap(Session.class).doReturningWork(connection -> {
+                Set<String> failedAssetIds = assetStorageService.updateAttributeValues(connection, updates);
+                if (!datapoints.isEmpty()) {
+                    try {
+                        assetDatapointService.upsertValues(connection, datapoints);
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Failed to insert/update data points", e);
+                    }
+                }
+                return failedAssetIds;
+            }));
+    }
+
+    protected void complete(PendingWrite write, AssetProcessingException failure) {
+        pendingValues.remove(new AttributeRef(write.assetId, write.attribute.getName()), write.attribute);
+        if (failure != null) {
+            write.future.completeExceptionally(failure);
+        } else {
+            assetStorageService.cacheAttributeValue(write.assetId, write.attribute);
+            write.future.complete(null);
+        }
+    }
+}
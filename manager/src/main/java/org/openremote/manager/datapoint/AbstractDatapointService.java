@@ -12,6 +12,7 @@ import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.datapoint.Datapoint;
+import org.openremote.model.datapoint.DatapointDecimation;
 import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.datapoint.DatapointPeriod;
 import org.openremote.model.datapoint.ValueDatapoint;
@@ -25,17 +26,24 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.DAYS;
+import static org.openremote.container.util.MapAccess.getInteger;
 
 /**
  * Base class for all classes that store and retrieve {@link org.openremote.model.datapoint.Datapoint}.
@@ -43,11 +51,25 @@ import static java.time.temporal.ChronoUnit.DAYS;
 public abstract class AbstractDatapointService<T extends Datapoint> implements ContainerService {
 
     public static final int PRIORITY = AssetStorageService.PRIORITY + 100;
+    // Maximum number of points a decimated datapoint query can return
+    public static final int DECIMATION_MAX_POINTS = 10000;
+    public static final int DECIMATION_DEFAULT_POINTS = 500;
+    // Number of datapoint rows fetched from the database at a time when decimating
+    public static final int DECIMATION_FETCH_SIZE = 1000;
+    // Number of days ahead of today to create datapoint partitions for
+    public static final String DATA_POINTS_PARTITIONS_AHEAD_DAYS = "DATA_POINTS_PARTITIONS_AHEAD_DAYS";
+    public static final int DATA_POINTS_PARTITIONS_AHEAD_DAYS_DEFAULT = 7;
+    // Maximum number of datapoints deleted per transaction when purging
+    public static final String DATA_POINTS_PURGE_CHUNK_SIZE = "DATA_POINTS_PURGE_CHUNK_SIZE";
+    public static final int DATA_POINTS_PURGE_CHUNK_SIZE_DEFAULT = 10000;
     protected PersistenceService persistenceService;
     protected AssetStorageService assetStorageService;
     protected TimerService timerService;
     protected ScheduledExecutorService executorService;
     protected ScheduledFuture<?> dataPointsPurgeScheduledFuture;
+    protected ScheduledFuture<?> partitionsScheduledFuture;
+    protected DatapointPartitions partitions;
+    protected int partitionsAheadDays;
 
     @Override
     public int getPriority() {
@@ -60,6 +82,11 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         assetStorageService = container.getService(AssetStorageService.class);
         timerService = container.getService(TimerService.class);
         executorService = container.getExecutorService();
+        partitionsAheadDays = Math.max(1, getInteger(container.getConfig(), DATA_POINTS_PARTITIONS_AHEAD_DAYS, DATA_POINTS_PARTITIONS_AHEAD_DAYS_DEFAULT));
+        partitions = new DatapointPartitions(
+            persistenceService,
+            getDatapointTableName(),
+            Math.max(1, getInteger(container.getConfig(), DATA_POINTS_PURGE_CHUNK_SIZE, DATA_POINTS_PURGE_CHUNK_SIZE_DEFAULT)));
     }
 
     @Override
@@ -67,6 +94,22 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         if (dataPointsPurgeScheduledFuture != null) {
             dataPointsPurgeScheduledFuture.cancel(true);
         }
+        if (partitionsScheduledFuture != null) {
+            partitionsScheduledFuture.cancel(true);
+        }
+    }
+
+    /**
+     * Create the datapoint partitions of today and the configured number of days ahead now and then daily.
+     */
+    protected void startPartitionMaintenance() {
+        partitionsScheduledFuture = executorService.scheduleAtFixedRate(() -> {
+            try {
+                partitions.createPartitions(LocalDateTime.ofInstant(timerService.getNow(), ZoneId.systemDefault()), partitionsAheadDays + 1);
+            } catch (Exception e) {
+                getLogger().log(Level.WARNING, "Failed to create datapoint partitions", e);
+            }
+        }, 0, Duration.ofDays(1).toMillis(), TimeUnit.MILLISECONDS);
     }
 
     public void upsertValue(String assetId, String attributeName, Object value, LocalDateTime timestamp) throws IllegalStateException {
@@ -75,9 +118,11 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                     PreparedStatement st;
 
                     try {
+                        partitions.ensurePartitions(connection, Collections.singletonList(timestamp));
                         st = getUpsertPreparedStatement(connection);
                         setUpsertValues(st, assetId, attributeName, value, timestamp);
                         st.executeUpdate();
+                        datapointUpserted(connection, assetId, attributeName, value, timestamp);
                     } catch (Exception e) {
                         String msg = "Failed to insert/update data point: ";
                         getLogger().log(Level.WARNING, msg, e);
@@ -94,6 +139,7 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                     PreparedStatement st;
 
                     try {
+                        partitions.ensurePartitions(connection, valuesAndTimestamps.stream().map(valueAndTimestamp -> valueAndTimestamp.value).collect(Collectors.toList()));
                         st = getUpsertPreparedStatement(connection);
 
                         for (Pair<?, LocalDateTime> valueAndTimestamp : valuesAndTimestamps) {
@@ -101,6 +147,9 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                             st.addBatch();
                         }
                         st.executeBatch();
+                        for (Pair<?, LocalDateTime> valueAndTimestamp : valuesAndTimestamps) {
+                            datapointUpserted(connection, assetId, attributeName, valueAndTimestamp.key, valueAndTimestamp.value);
+                        }
                     } catch (Exception e) {
                         String msg = "Failed to insert/update data points: " + assetId + ", name=" + attributeName + ", count=" + valuesAndTimestamps.size();
                         getLogger().log(Level.WARNING, msg, e);
@@ -109,6 +158,39 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                 }));
     }
 
+    /**
+     * Inserts or updates datapoints of any number of attributes as a single JDBC batch using the supplied connection;
+     * the caller is responsible for transaction handling.
+     */
+    public void upsertValues(Connection connection, List<T> datapoints) throws Exception {
+        getLogger().finest("Storing datapoints batch: count=" + datapoints.size());
+        partitions.ensurePartitions(connection, datapoints.stream()
+            .map(datapoint -> LocalDateTime.ofInstant(Instant.ofEpochMilli(datapoint.getTimestamp()), ZoneId.systemDefault()))
+            .collect(Collectors.toList()));
+
+        try (PreparedStatement st = getUpsertPreparedStatement(connection)) {
+            for (T datapoint : datapoints) {
+                setUpsertValues(
+                    st,
+                    datapoint.getAssetId(),
+                    datapoint.getAttributeName(),
+                    datapoint.getValue(),
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(datapoint.getTimestamp()), ZoneId.systemDefault()));
+                st.addBatch();
+            }
+            st.executeBatch();
+        }
+
+        for (T datapoint : datapoints) {
+            datapointUpserted(
+                connection,
+                datapoint.getAssetId(),
+                datapoint.getAttributeName(),
+                datapoint.getValue(),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(datapoint.getTimestamp()), ZoneId.systemDefault()));
+        }
+    }
+
     public List<T> getDatapoints(AttributeRef attributeRef) {
         return persistenceService.doReturningTransaction(entityManager ->
                 entityManager.createQuery(
@@ -175,6 +257,11 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
 
         getLogger().finer("Getting datapoints for: " + attributeRef);
 
+        Class<?> valueType = attribute.getType().getType();
+        String rollupTableName = Number.class.isAssignableFrom(valueType) || Boolean.class.isAssignableFrom(valueType)
+                ? getRollupTableName(attributeRef, datapointInterval)
+                : null;
+
         return persistenceService.doReturningTransaction(entityManager ->
 
                 entityManager.unwrap(Session.class).doReturningWork(new AbstractReturningWork<ValueDatapoint<?>[]>() {
@@ -243,18 +330,21 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
                             }
                             stepStr = step + " " + interval;
 
-                            // TODO: Change this to use something like this max min decimation algorithm https://knowledge.ni.com/KnowledgeArticleDetails?id=kA00Z0000019YLKSA2&l=en-GB)
+                            // Averages flatten peaks, use a DatapointDecimation for min/max or LTTB decimation instead
                             query.append("select PERIOD as X, AVG_VALUE as Y " +
                                     "from generate_series(date_trunc(?, ?) + " + partQuery + " / ? * ?, date_trunc(?, ?) + " + partQuery + " / ? * ?, ?) PERIOD left join ( " +
                                     "select (date_trunc(?, TIMESTAMP) + " + partQuery2 + " / ? * ?)::timestamp as TS, ");
 
-                            if (isNumber) {
+                            if (rollupTableName != null) {
+                                // Each rollup bucket falls entirely within a period so the period average is exact
+                                query.append(" SUM(SUM_VALUE) / SUM(VALUE_COUNT) as AVG_VALUE ");
+                            } else if (isNumber) {
                                 query.append(" AVG(VALUE::text::numeric) as AVG_VALUE ");
                             } else {
                                 query.append(" AVG(case when VALUE::text::boolean is true then 1 else 0 end) as AVG_VALUE ");
                             }
 
-                            query.append("from " + getDatapointTableName() +
+                            query.append("from " + (rollupTableName != null ? rollupTableName : getDatapointTableName()) +
                                     " where TIMESTAMP >= date_trunc(?, ?) and TIMESTAMP < (date_trunc(?, ?) + ?) and ENTITY_ID = ? and ATTRIBUTE_NAME = ? group by TS) DP on DP.TS = PERIOD order by PERIOD asc");
 
                         } else {
@@ -336,26 +426,124 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         );
     }
 
+    public ValueDatapoint<?>[] getValueDatapoints(AttributeRef attributeRef,
+                                                  DatapointDecimation decimation,
+                                                  int maxPoints,
+                                                  LocalDateTime fromTimestamp,
+                                                  LocalDateTime toTimestamp) {
+
+        Asset<?> asset = assetStorageService.find(attributeRef.getId());
+        if (asset == null) {
+            throw new IllegalStateException("Asset not found: " + attributeRef.getId());
+        }
+
+        Attribute<?> assetAttribute = asset.getAttribute(attributeRef.getName())
+                .orElseThrow(() -> new IllegalStateException("Attribute not found: " + attributeRef.getName()));
+
+        return getValueDatapoints(asset.getId(), assetAttribute, decimation, maxPoints, fromTimestamp, toTimestamp);
+    }
+
+    /**
+     * Get the datapoints of a number or boolean attribute in the time range reduced to at most the specified number
+     * of points using the {@link DatapointDecimation} algorithm. The datapoints are read with a cursor and reduced as
+     * they are read so memory use doesn't depend on the number of datapoints in the time range.
+     */
+    public ValueDatapoint<?>[] getValueDatapoints(String assetId,
+                                                  Attribute<?> attribute,
+                                                  DatapointDecimation decimation,
+                                                  int maxPoints,
+                                                  LocalDateTime fromTimestamp,
+                                                  LocalDateTime toTimestamp) {
+
+        AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+        Class<?> attributeType = attribute.getType().getType();
+        boolean isNumber = Number.class.isAssignableFrom(attributeType);
+        boolean isBoolean = Boolean.class.isAssignableFrom(attributeType);
+
+        if (!isNumber && !isBoolean) {
+            throw new IllegalStateException("Decimation is only supported for number and boolean attributes: " + attributeRef);
+        }
+        if (maxPoints < 2 || maxPoints > DECIMATION_MAX_POINTS) {
+            throw new IllegalStateException("Decimation points must be between 2 and " + DECIMATION_MAX_POINTS + ": " + maxPoints);
+        }
+
+        getLogger().finer("Getting " + decimation + " decimated datapoints for: " + attributeRef);
+
+        long fromMillis = Timestamp.valueOf(fromTimestamp).getTime();
+        long toMillis = Timestamp.valueOf(toTimestamp).getTime();
+        ValueDatapointDecimator decimator = ValueDatapointDecimator.create(decimation, fromMillis, toMillis, maxPoints);
+        String valueSelect = isNumber ? "VALUE::text::numeric" : "(case when VALUE::text::boolean is true then 1 else 0 end)";
+        String where = " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP >= ? and TIMESTAMP <= ? and VALUE != 'null'::jsonb";
+
+        return persistenceService.doReturningTransaction(entityManager ->
+
+                entityManager.unwrap(Session.class).doReturningWork(new AbstractReturningWork<ValueDatapoint<?>[]>() {
+                    @Override
+                    public ValueDatapoint<?>[] execute(Connection connection) throws SQLException {
+
+                        if (decimator instanceof ValueDatapointDecimator.Lttb) {
+                            // Bucket averages are needed to select the point of each bucket in a single pass
+                            String offsetSelect = "extract(epoch from (TIMESTAMP - ?::timestamp)) * 1000";
+                            String bucketQuery = "select least(?, greatest(0, floor(" + offsetSelect + " / ?)))::int as BUCKET, " +
+                                    "avg(" + offsetSelect + "), avg(" + valueSelect + ") " +
+                                    "from " + getDatapointTableName() + where + " group by BUCKET";
+
+                            try (PreparedStatement st = connection.prepareStatement(bucketQuery)) {
+                                int counter = 1;
+                                st.setInt(counter++, decimator.getBucketCount() - 1);
+                                st.setObject(counter++, fromTimestamp);
+                                st.setDouble(counter++, decimator.getBucketMillis());
+                                st.setObject(counter++, fromTimestamp);
+                                setDecimationWhereValues(st, counter, attributeRef, fromTimestamp, toTimestamp);
+
+                                try (ResultSet rs = st.executeQuery()) {
+                                    while (rs.next()) {
+                                        ((ValueDatapointDecimator.Lttb) decimator).setBucketAverage(
+                                                rs.getInt(1), fromMillis + rs.getDouble(2), rs.getDouble(3));
+                                    }
+                                }
+                            }
+                        }
+
+                        String query = "select TIMESTAMP, " + valueSelect + " from " + getDatapointTableName() + where + " order by TIMESTAMP asc";
+
+                        try (PreparedStatement st = connection.prepareStatement(query)) {
+                            st.setFetchSize(DECIMATION_FETCH_SIZE);
+                            setDecimationWhereValues(st, 1, attributeRef, fromTimestamp, toTimestamp);
+
+                            try (ResultSet rs = st.executeQuery()) {
+                                while (rs.next()) {
+                                    double value = rs.getDouble(2);
+                                    if (!rs.wasNull()) {
+                                        decimator.accept(rs.getTimestamp(1).getTime(), value);
+                                    }
+                                }
+                            }
+                        }
+
+                        return decimator.finish().toArray(new ValueDatapoint<?>[0]);
+                    }
+                })
+        );
+    }
+
     public DatapointPeriod getDatapointPeriod(String assetId, String attributeName) {
         return persistenceService.doReturningTransaction(em ->
                 em.unwrap(Session.class).doReturningWork(new AbstractReturningWork<DatapointPeriod>() {
                     @Override
                     public DatapointPeriod execute(Connection connection) throws SQLException {
+                        // Two probes of the (entity_id, attribute_name, timestamp) index
                         String tableName = getDatapointTableName();
-                        String query = "SELECT DISTINCT periods.* FROM " +
-                                "(SELECT entity_id, attribute_name, " +
-                                "MIN(timestamp) AS oldestTimestamp, MAX(timestamp) AS latestTimestamp " +
-                                "FROM " + tableName + " GROUP BY entity_id, attribute_name) AS periods " +
-                                "INNER JOIN " + tableName + " ON " + tableName + ".entity_id = periods.entity_id AND " +
-                                tableName + ".attribute_name = periods.attribute_name " +
-                                "WHERE " + tableName + ".entity_id = ? " +
-                                "AND " + tableName + ".attribute_name = ? ";
+                        String probe = "SELECT timestamp FROM " + tableName + " WHERE entity_id = ? AND attribute_name = ? ORDER BY timestamp ";
+                        String query = "SELECT (" + probe + "ASC LIMIT 1), (" + probe + "DESC LIMIT 1)";
                         try (PreparedStatement st = connection.prepareStatement(query)) {
                             st.setString(1, assetId);
                             st.setString(2, attributeName);
+                            st.setString(3, assetId);
+                            st.setString(4, attributeName);
                             try (ResultSet rs = st.executeQuery()) {
-                                if (rs.next()) {
-                                    return new DatapointPeriod(rs.getString(1), rs.getString(2), rs.getTimestamp(3).getTime(), rs.getTimestamp(4).getTime());
+                                if (rs.next() && rs.getTimestamp(1) != null) {
+                                    return new DatapointPeriod(assetId, attributeName, rs.getTimestamp(1).getTime(), rs.getTimestamp(2).getTime());
                                 }
                                 return new DatapointPeriod(assetId, attributeName, null, null);
                             }
@@ -365,6 +553,13 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         );
     }
 
+    protected void setDecimationWhereValues(PreparedStatement st, int counter, AttributeRef attributeRef, LocalDateTime fromTimestamp, LocalDateTime toTimestamp) throws SQLException {
+        st.setString(counter++, attributeRef.getId());
+        st.setString(counter++, attributeRef.getName());
+        st.setObject(counter++, fromTimestamp);
+        st.setObject(counter, toTimestamp);
+    }
+
     protected PreparedStatement getUpsertPreparedStatement(Connection connection) throws SQLException {
         return connection.prepareStatement("INSERT INTO " + getDatapointTableName() + " (entity_id, attribute_name, value, timestamp) " +
                 "VALUES (?, ?, ?, ?) " +
@@ -382,16 +577,34 @@ public abstract class AbstractDatapointService<T extends Datapoint> implements C
         st.setObject(4, timestamp);
     }
 
+    /**
+     * Called after a datapoint has been inserted or updated using the connection of the upsert, the transaction may
+     * not have been committed yet.
+     */
+    protected void datapointUpserted(Connection connection, String assetId, String attributeName, Object value, LocalDateTime timestamp) throws SQLException {
+    }
+
+    /**
+     * @return The name of a table of pre-aggregated datapoints with SUM_VALUE and VALUE_COUNT columns whose buckets
+     * fall entirely within the periods of the interval, or <code>null</code> to aggregate the raw datapoints.
+     */
+    protected String getRollupTableName(AttributeRef attributeRef, DatapointInterval datapointInterval) {
+        return null;
+    }
+
     protected abstract Class<T> getDatapointClass();
 
     protected abstract String getDatapointTableName();
 
     protected abstract Logger getLogger();
 
-    protected void doPurge(String whereClause, LocalDateTime dateTime) {
-        persistenceService.doTransaction(em -> em.createQuery(
-                "delete from " + getDatapointClass().getSimpleName() + " dp " + whereClause
-        ).setParameter("dt", dateTime).executeUpdate());
+    /**
+     * Drop the partitions older than the date time and delete any older datapoints stored before the table was
+     * partitioned in chunks.
+     */
+    protected void doPurge(LocalDateTime dateTime) {
+        partitions.dropPartitionsBefore(dateTime);
+        partitions.deleteBefore(dateTime, Collections.emptyMap());
     }
 
     protected long getFirstPurgeMillis(Instant currentTime) {
@@ -20,7 +20,6 @@
 package org.openremote.manager.datapoint;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import org.apache.commons.io.IOUtils;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.security.ManagerIdentityService;
@@ -29,6 +28,9 @@ import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.datapoint.AssetDatapointResource;
+import org.openremote.model.datapoint.DatapointDecimation;
+import org.openremote.model.datapoint.DatapointExportCompression;
+import org.openremote.model.datapoint.DatapointExportFormat;
 import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.datapoint.DatapointPeriod;
 import org.openremote.model.datapoint.ValueDatapoint;
@@ -40,16 +42,17 @@ import javax.ws.rs.BeanParam;
 import javax.ws.rs.NotSupportedException;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.AsyncResponse;
-import javax.ws.rs.container.ConnectionCallback;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
-import java.io.*;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.concurrent.ScheduledFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -80,7 +83,9 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
                                              DatapointInterval interval,
                                              Integer stepSize,
                                              long fromTimestamp,
-                                             long toTimestamp) {
+                                             long toTimestamp,
+                                             DatapointDecimation decimation,
+                                             Integer maxPoints) {
         try {
 
             if (isRestrictedUser() && !assetStorageService.isUserAsset(getUserId(), assetId)) {
@@ -102,6 +107,15 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
                     new WebApplicationException(Response.Status.NOT_FOUND)
             );
 
+            if (decimation != null) {
+                return assetDatapointService.getValueDatapoints(assetId,
+                        attribute,
+                        decimation,
+                        maxPoints != null ? maxPoints : AssetDatapointService.DECIMATION_DEFAULT_POINTS,
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(fromTimestamp), ZoneId.systemDefault()),
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(toTimestamp), ZoneId.systemDefault()));
+            }
+
             return assetDatapointService.getValueDatapoints(assetId,
                     attribute,
                     interval,
@@ -146,7 +160,12 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
     }
 
     @Override
-    public void getDatapointExport(AsyncResponse asyncResponse, String attributeRefsString, long fromTimestamp, long toTimestamp) {
+    public void getDatapointExport(AsyncResponse asyncResponse,
+                                   String attributeRefsString,
+                                   long fromTimestamp,
+                                   long toTimestamp,
+                                   DatapointExportFormat format,
+                                   DatapointExportCompression compression) {
         try {
             AttributeRef[] attributeRefs = JSON.readValue(attributeRefsString, AttributeRef[].class);
 
@@ -173,44 +192,57 @@ public class AssetDatapointResourceImpl extends ManagerWebResource implements As
 
             DATA_EXPORT_LOG.info("User '" + getUsername() +  "' started data export for " + attributeRefsString + " from " + fromTimestamp + " to " + toTimestamp);
 
-            ScheduledFuture<File> exportFuture = assetDatapointService.exportDatapoints(attributeRefs, fromTimestamp, toTimestamp);
-            asyncResponse.register((ConnectionCallback) disconnected -> {
-                exportFuture.cancel(true);
-            });
-
-            File exportFile = null;
-
-            try {
-                exportFile = exportFuture.get();
-
-                ZipOutputStream zipOut = new ZipOutputStream(response.getOutputStream());
-                FileInputStream fin = new FileInputStream(exportFile);
-                ZipEntry zipEntry = new ZipEntry(exportFile.getName());
-                zipOut.putNextEntry(zipEntry);
-                IOUtils.copy(fin, zipOut);
-                zipOut.closeEntry();
-                zipOut.close();
-                fin.close();
-
-                response.setContentType("application/zip");
-                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"dataexport.zip\"");
+            DatapointExportFormat exportFormat = format != null ? format : DatapointExportFormat.CSV;
+            DatapointExportCompression exportCompression = compression != null ? compression : DatapointExportCompression.ZIP;
+            String entryName = "dataexport." + (exportFormat == DatapointExportFormat.COLUMNAR ? "json" : "csv");
+            String fileName = entryName;
+            String username = getUsername();
+            String contentType = exportFormat == DatapointExportFormat.COLUMNAR ? MediaType.APPLICATION_JSON : "text/csv";
+
+            switch (exportCompression) {
+                case ZIP:
+                    contentType = "application/zip";
+                    fileName = "dataexport.zip";
+                    break;
+                case GZIP:
+                    contentType = "application/gzip";
+                    fileName += ".gz";
+                    break;
+            }
 
-                asyncResponse.resume(
-                    response
-                );
-            } catch (Exception ex) {
-                exportFuture.cancel(true);
-                asyncResponse.resume(new WebApplicationException(Response.Status.INTERNAL_SERVER_ERROR));
-                DATA_EXPORT_LOG.log(Level.SEVERE, "Exception in ScheduledFuture: ", ex);
-            } finally {
-                if (exportFile != null && exportFile.exists()) {
-                    try {
-                        exportFile.delete();
-                    } catch (Exception e) {
-                        DATA_EXPORT_LOG.log(Level.SEVERE, "Failed to delete temporary export file: " + exportFile.getPath(), e);
+            // Rows are streamed from the database into the response as they are written
+            StreamingOutput output = outputStream -> {
+                try {
+                    switch (exportCompression) {
+                        case ZIP:
+                            ZipOutputStream zipOut = new ZipOutputStream(outputStream);
+                            zipOut.putNextEntry(new ZipEntry(entryName));
+                            assetDatapointService.exportDatapoints(attributeRefs, fromTimestamp, toTimestamp, exportFormat, zipOut);
+                            zipOut.closeEntry();
+                            zipOut.finish();
+                            break;
+                        case GZIP:
+                            GZIPOutputStream gzipOut = new GZIPOutputStream(outputStream);
+                            assetDatapointService.exportDatapoints(attributeRefs, fromTimestamp, toTimestamp, exportFormat, gzipOut);
+                            gzipOut.finish();
+                            break;
+                        default:
+                            assetDatapointService.exportDatapoints(attributeRefs, fromTimestamp, toTimestamp, exportFormat, outputStream);
                     }
+                } catch (IOException ex) {
+                    DATA_EXPORT_LOG.info("Data export for user '" + username + "' aborted: " + ex.getMessage());
+                    throw ex;
+                } catch (Exception ex) {
+                    DATA_EXPORT_LOG.log(Level.SEVERE, "Data export for user '" + username + "' failed", ex);
+                    throw new WebApplicationException(ex, Response.Status.INTERNAL_SERVER_ERROR);
                 }
-            }
+            };
+
+            asyncResponse.resume(
+                Response.ok(output, contentType)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                    .build()
+            );
         } catch (JsonProcessingException ex) {
             asyncResponse.resume(new BadRequestException(ex));
         }
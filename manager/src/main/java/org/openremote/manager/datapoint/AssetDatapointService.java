@@ -1,7 +1,8 @@
 package org.openremote.manager.datapoint;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.hibernate.Session;
 import org.openremote.container.timer.TimerService;
-import org.openremote.container.util.UniqueIdentifierGenerator;
 import org.openremote.manager.asset.AssetProcessingException;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.asset.AssetUpdateProcessor;
@@ -14,25 +15,32 @@ import org.openremote.model.attribute.AttributeEvent.Source;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.attribute.AttributeWriteFailure;
 import org.openremote.model.datapoint.AssetDatapoint;
+import org.openremote.model.datapoint.DatapointExportFormat;
+import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.query.filter.AttributePredicate;
 import org.openremote.model.query.filter.NameValuePredicate;
 import org.openremote.model.util.Pair;
+import org.openremote.model.util.ValueUtil;
 import org.openremote.model.value.MetaItemType;
 
 import javax.persistence.EntityManager;
-import java.io.File;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.sql.Date;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -40,9 +48,10 @@ import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.DAYS;
 import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
+import static org.openremote.container.util.MapAccess.getBoolean;
 import static org.openremote.container.util.MapAccess.getInteger;
-import static org.openremote.container.util.MapAccess.getString;
 import static org.openremote.model.value.MetaItemType.STORE_DATA_POINTS;
 
 /**
@@ -55,11 +64,18 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
 
     public static final String DATA_POINTS_MAX_AGE_DAYS = "DATA_POINTS_MAX_AGE_DAYS";
     public static final int DATA_POINTS_MAX_AGE_DAYS_DEFAULT = 31;
-    public static final String DATA_POINTS_EXPORT_DIR = "DATA_POINTS_EXPORT_DIR";
-    public static final String DATA_POINTS_EXPORT_DIR_DEFAULT = "/tmp";
+    // Number of datapoint rows fetched from the database at a time when exporting
+    public static final int DATA_POINTS_EXPORT_FETCH_SIZE = 1000;
+    // Maximum number of datapoints per block of the columnar export
+    public static final int DATA_POINTS_EXPORT_BLOCK_SIZE = 1000;
+    public static final String DATA_POINTS_ROLLUPS = "DATA_POINTS_ROLLUPS";
+    public static final boolean DATA_POINTS_ROLLUPS_DEFAULT = true;
+    public static final String DATA_POINTS_ROLLUPS_FLUSH_SECONDS = "DATA_POINTS_ROLLUPS_FLUSH_SECONDS";
+    public static final int DATA_POINTS_ROLLUPS_FLUSH_SECONDS_DEFAULT = 60;
     private static final Logger LOG = Logger.getLogger(AssetDatapointService.class.getName());
     protected int maxDatapointAgeDays;
-    protected Path exportPath;
+    protected DatapointRollups rollups;
+    protected int rollupsFlushSeconds;
 
     @Override
     public void init(Container container) throws Exception {
@@ -80,11 +96,16 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
             LOG.warning(DATA_POINTS_MAX_AGE_DAYS + " value is not a valid value so data points won't be auto purged");
         }
 
-        exportPath = Paths.get(getString(container.getConfig(), DATA_POINTS_EXPORT_DIR, DATA_POINTS_EXPORT_DIR_DEFAULT));
+        if (getBoolean(container.getConfig(), DATA_POINTS_ROLLUPS, DATA_POINTS_ROLLUPS_DEFAULT)) {
+            rollups = new DatapointRollups(persistenceService, executorService, getDatapointTableName());
+            rollupsFlushSeconds = Math.max(1, getInteger(container.getConfig(), DATA_POINTS_ROLLUPS_FLUSH_SECONDS, DATA_POINTS_ROLLUPS_FLUSH_SECONDS_DEFAULT));
+        }
     }
 
     @Override
     public void start(Container container) throws Exception {
+        startPartitionMaintenance();
+
         if (maxDatapointAgeDays > 0) {
             dataPointsPurgeScheduledFuture = executorService.scheduleAtFixedRate(
                 this::purgeDataPoints,
@@ -92,6 +113,19 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
                 Duration.ofDays(1).toMillis(), TimeUnit.MILLISECONDS
             );
         }
+
+        if (rollups != null) {
+            rollups.start(rollupsFlushSeconds);
+        }
+    }
+
+    @Override
+    public void stop(Container container) throws Exception {
+        super.stop(container);
+
+        if (rollups != null) {
+            rollups.stop();
+        }
     }
 
     public static boolean attributeIsStoreDatapoint(Attribute<?> attribute) {
@@ -114,6 +148,22 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
         return false;
     }
 
+    @Override
+    protected void datapointUpserted(Connection connection, String assetId, String attributeName, Object value, LocalDateTime timestamp) throws SQLException {
+        if (rollups != null) {
+            rollups.datapointUpserted(connection, assetId, attributeName, value, timestamp);
+        }
+    }
+
+    @Override
+    protected String getRollupTableName(AttributeRef attributeRef, DatapointInterval datapointInterval) {
+        return rollups != null ? rollups.getRollupTableName(attributeRef, datapointInterval) : null;
+    }
+
+    public DatapointRollups getRollups() {
+        return rollups;
+    }
+
     @Override
     protected Class<AssetDatapoint> getDatapointClass() {
         return AssetDatapoint.class;
@@ -142,44 +192,55 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
                         ))
                     .select(AssetQuery.Select.selectExcludePathAndParentInfo()));
 
-            List<Pair<String, Attribute<?>>> attributes = assets.stream()
+            List<Pair<AttributeRef, Integer>> attributes = assets.stream()
                 .map(asset -> asset
                     .getAttributes().stream()
                     .filter(assetAttribute -> assetAttribute.hasMeta(MetaItemType.DATA_POINTS_MAX_AGE_DAYS))
-                    .map(assetAttribute -> new Pair<String, Attribute<?>>(asset.getId(), assetAttribute))
+                    .map(assetAttribute -> new Pair<>(
+                        new AttributeRef(asset.getId(), assetAttribute.getName()),
+                        assetAttribute.getMetaValue(MetaItemType.DATA_POINTS_MAX_AGE_DAYS).orElse(maxDatapointAgeDays)))
                     .collect(toList()))
                 .flatMap(List::stream)
                 .collect(toList());
 
+            // Group the attributes with custom durations by their max age
+            Map<Integer, List<AttributeRef>> ageAttributeRefMap = attributes.stream()
+                .collect(groupingBy(attributeRef -> attributeRef.value, mapping(attributeRef -> attributeRef.key, toList())));
+
+            // Datapoints of attributes with a longer max age are retained when dropping partitions, keyed by cutoff
+            Map<LocalDateTime, List<AttributeRef>> retainedAttributeRefs = new HashMap<>();
+            ageAttributeRefMap.forEach((age, attributeRefs) -> {
+                if (age > maxDatapointAgeDays) {
+                    retainedAttributeRefs.put(getPurgeCutoff(age), attributeRefs);
+                }
+            });
+
             // Purge data points not in the above list using default duration
             LOG.fine("Purging data points of attributes that use default max age days of " + maxDatapointAgeDays);
 
-            persistenceService.doTransaction(em -> em.createQuery(
-                "delete from AssetDatapoint dp " +
-                    "where dp.timestamp < :dt" + buildWhereClause(attributes, true)
-            ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(maxDatapointAgeDays, DAYS))).executeUpdate());
-
-            if (!attributes.isEmpty()) {
-                // Purge data points that have specific age constraints
-                Map<Integer, List<Pair<String, Attribute<?>>>> ageAttributeRefMap = attributes.stream()
-                    .collect(groupingBy(attributeRef ->
-                        attributeRef.value
-                            .getMetaValue(MetaItemType.DATA_POINTS_MAX_AGE_DAYS)
-                            .orElse(maxDatapointAgeDays)));
-
-                ageAttributeRefMap.forEach((age, attrs) -> {
-                    LOG.fine("Purging data points of " + attrs.size() + " attributes that use a max age of " + age);
-
-                    try {
-                        persistenceService.doTransaction(em -> em.createQuery(
-                            "delete from AssetDatapoint dp " +
-                                "where dp.timestamp < :dt" + buildWhereClause(attrs, false)
-                        ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(age, DAYS))).executeUpdate());
-                    } catch (Exception e) {
-                        LOG.log(Level.SEVERE, "An error occurred whilst deleting data points, this should not happen", e);
-                    }
-                });
+            LocalDateTime defaultCutoff = getPurgeCutoff(maxDatapointAgeDays);
+            partitions.dropPartitionsBefore(defaultCutoff, retainedAttributeRefs);
+            partitions.deleteBefore(defaultCutoff, retainedAttributeRefs);
+
+            if (rollups != null) {
+                rollups.purge(
+                    timerService.getNow().truncatedTo(DAYS).minus(maxDatapointAgeDays, DAYS),
+                    attributes.stream().map(attributeRef -> attributeRef.key).collect(toList()));
             }
+
+            ageAttributeRefMap.forEach((age, attributeRefs) -> {
+                LOG.fine("Purging data points of " + attributeRefs.size() + " attributes that use a max age of " + age);
+
+                try {
+                    partitions.deleteAttributesBefore(getPurgeCutoff(age), attributeRefs);
+
+                    if (rollups != null) {
+                        rollups.purgeAttributes(timerService.getNow().truncatedTo(DAYS).minus(age, DAYS), attributeRefs);
+                    }
+                } catch (Exception e) {
+                    LOG.log(Level.SEVERE, "An error occurred whilst deleting data points, this should not happen", e);
+                }
+            });
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to run data points purge", e);
         }
@@ -187,34 +248,134 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
         LOG.info("Finished data points purge daily task");
     }
 
-    protected String buildWhereClause(List<Pair<String, Attribute<?>>> attributes, boolean negate) {
+    protected LocalDateTime getPurgeCutoff(int ageDays) {
+        return LocalDateTime.ofInstant(timerService.getNow().truncatedTo(DAYS).minus(ageDays, DAYS), ZoneId.systemDefault());
+    }
 
-        if (attributes.isEmpty()) {
-            return "";
-        }
+    /**
+     * Write the datapoints of the attributes in the time range to the output stream. Datapoints are read with a
+     * cursor and written as they are read, so memory use doesn't depend on the size of the export.
+     */
+    public void exportDatapoints(AttributeRef[] attributeRefs,
+                                 long fromTimestamp,
+                                 long toTimestamp,
+                                 DatapointExportFormat format,
+                                 OutputStream outputStream) throws IOException {
+
+        boolean columnar = format == DatapointExportFormat.COLUMNAR;
+        String query = "select ad.timestamp, a.name, ad.entity_id, ad.attribute_name, ad.value from " + getDatapointTableName() + " ad " +
+            "join asset a on a.id = ad.entity_id " +
+            "where ad.timestamp >= ? and ad.timestamp <= ? and (ad.entity_id, ad.attribute_name) in (" +
+            Arrays.stream(attributeRefs).map(attributeRef -> "(?, ?)").collect(Collectors.joining(", ")) + ") " +
+            (columnar ? "order by ad.entity_id, ad.attribute_name, ad.timestamp" : "order by ad.timestamp");
 
-        String whereStr = attributes.stream()
-            .map(attributeRef -> "('" + attributeRef.key + "','" + attributeRef.value.getName() + "')")
-            .collect(Collectors.joining(","));
+        try {
+            persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement(query)) {
+                    int counter = 1;
+                    st.setFetchSize(DATA_POINTS_EXPORT_FETCH_SIZE);
+                    st.setTimestamp(counter++, new Timestamp(fromTimestamp));
+                    st.setTimestamp(counter++, new Timestamp(toTimestamp));
+                    for (AttributeRef attributeRef : attributeRefs) {
+                        st.setString(counter++, attributeRef.getId());
+                        st.setString(counter++, attributeRef.getName());
+                    }
 
-        return " and (dp.assetId, dp.attributeName) " + (negate ? "not " : "") + "in (" + whereStr + ")";
+                    try (ResultSet rs = st.executeQuery()) {
+                        if (columnar) {
+                            writeColumnarExport(rs, outputStream);
+                        } else {
+                            writeCsvExport(rs, outputStream);
+                        }
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
-    public ScheduledFuture<File> exportDatapoints(AttributeRef[] attributeRefs,
-                                                  long fromTimestamp,
-                                                  long toTimestamp) {
-        return executorService.schedule(() -> {
-            String fileName = UniqueIdentifierGenerator.generateId() + ".csv";
-            StringBuilder sb = new StringBuilder(String.format("copy (select ad.timestamp, a.name, ad.attribute_name, value from asset_datapoint ad, asset a where ad.entity_id = a.id and ad.timestamp >= to_timestamp(%d) and ad.timestamp <= to_timestamp(%d) and (", fromTimestamp / 1000, toTimestamp / 1000));
+    protected void writeCsvExport(ResultSet rs, OutputStream outputStream) throws SQLException, IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        writer.write("timestamp,name,attribute_name,value\n");
+
+        while (rs.next()) {
+            writer.write(rs.getString(1));
+            writer.write(',');
+            writer.write(escapeCsv(rs.getString(2)));
+            writer.write(',');
+            writer.write(escapeCsv(rs.getString(4)));
+            writer.write(',');
+            writer.write(escapeCsv(rs.getString(5)));
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    protected void writeColumnarExport(ResultSet rs, OutputStream outputStream) throws SQLException, IOException {
+        JsonGenerator generator = ValueUtil.JSON.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        List<Long> timestamps = new ArrayList<>(DATA_POINTS_EXPORT_BLOCK_SIZE);
+        List<String> values = new ArrayList<>(DATA_POINTS_EXPORT_BLOCK_SIZE);
+        String[] block = null;
 
-            sb.append(Arrays.stream(attributeRefs).map(attributeRef -> String.format("(ad.entity_id = '%s' and ad.attribute_name = '%s')", attributeRef.getId(), attributeRef.getName())).collect(Collectors.joining(" or ")));
+        generator.writeStartArray();
 
-            sb.append(String.format(")) to '/tmp/%s' delimiter ',' CSV HEADER;", fileName));
+        while (rs.next()) {
+            String assetId = rs.getString(3);
+            String attributeName = rs.getString(4);
 
-            persistenceService.doTransaction(em -> em.createNativeQuery(sb.toString()).executeUpdate());
+            if (block != null && (timestamps.size() == DATA_POINTS_EXPORT_BLOCK_SIZE || !block[0].equals(assetId) || !block[2].equals(attributeName))) {
+                writeColumnarBlock(generator, block, timestamps, values);
+                block = null;
+            }
+            if (block == null) {
+                block = new String[] {assetId, rs.getString(2), attributeName};
+            }
 
-            return exportPath.resolve(fileName).toFile();
-        }, 0, TimeUnit.MILLISECONDS);
+            timestamps.add(rs.getTimestamp(1).getTime());
+            values.add(rs.getString(5));
+        }
+
+        if (block != null) {
+            writeColumnarBlock(generator, block, timestamps, values);
+        }
+
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+    protected void writeColumnarBlock(JsonGenerator generator, String[] block, List<Long> timestamps, List<String> values) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("assetId", block[0]);
+        generator.writeStringField("assetName", block[1]);
+        generator.writeStringField("attributeName", block[2]);
+        generator.writeArrayFieldStart("timestamps");
+        for (Long timestamp : timestamps) {
+            generator.writeNumber(timestamp);
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("values");
+        for (String value : values) {
+            // Values are already JSON
+            generator.writeRawValue(value);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+        timestamps.clear();
+        values.clear();
+    }
+
+    protected static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
     }
 
 }
@@ -66,6 +66,8 @@ public class AssetPredictedDatapointService extends AbstractDatapointService<Ass
 
     @Override
     public void start(Container container) throws Exception {
+        startPartitionMaintenance();
+
         dataPointsPurgeScheduledFuture = executorService.scheduleAtFixedRate(
             this::purgeDataPoints,
             getFirstPurgeMillis(timerService.getNow()),
@@ -109,7 +111,7 @@ public class AssetPredictedDatapointService extends AbstractDatapointService<Ass
         try {
             // Purge data points not in the above list using default duration
             LOG.finer("Purging predicted data points older than now");
-            doPurge("where dp.timestamp < :dt", LocalDateTime.ofInstant(timerService.getNow().truncatedTo(HOURS), ZoneId.systemDefault()));
+            doPurge(LocalDateTime.ofInstant(timerService.getNow().truncatedTo(HOURS), ZoneId.systemDefault()));
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to run data points purge", e);
         }
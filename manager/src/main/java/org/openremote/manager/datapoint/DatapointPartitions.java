@@ -0,0 +1,277 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.datapoint;
+
+import org.hibernate.Session;
+import org.openremote.container.persistence.PersistenceService;
+import org.openremote.model.attribute.AttributeRef;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Manages the daily child tables (partitions) of a datapoint table, see the DatapointPartitions database migrations;
+ * creates partitions ahead of time and before datapoints of any other day are inserted (so the insert trigger rarely
+ * has to), drops partitions that are entirely older than the retention cutoff after retaining the datapoints of
+ * attributes with a longer max age, deletes the expired datapoints stored before the table was partitioned in bounded
+ * chunks and the expired datapoints of attributes with their own max age per attribute.
+ */
+public class DatapointPartitions {
+
+    protected static final DateTimeFormatter PARTITION_SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    protected static final String RETAINED_CONFLICT = " on conflict (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME) do update set VALUE = excluded.VALUE";
+    private static final Logger LOG = Logger.getLogger(DatapointPartitions.class.getName());
+    protected final PersistenceService persistenceService;
+    protected final String tableName;
+    protected final int chunkSize;
+    // Days whose partition is known to exist, avoids a database round trip per insert
+    protected final Set<LocalDate> partitionDays = ConcurrentHashMap.newKeySet();
+
+    public DatapointPartitions(PersistenceService persistenceService, String tableName, int chunkSize) {
+        this.persistenceService = persistenceService;
+        this.tableName = tableName.toLowerCase();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Create the partitions of the specified number of days starting with the day of the timestamp, if they don't
+     * exist already.
+     */
+    public void createPartitions(LocalDateTime from, int days) {
+        Set<LocalDate> partitionDays = new TreeSet<>();
+        for (int i = 0; i < days; i++) {
+            partitionDays.add(from.plusDays(i).toLocalDate());
+        }
+        createPartitions(partitionDays);
+    }
+
+    /**
+     * Create the partitions of the days of the timestamps that aren't known to exist yet, before the datapoints are
+     * inserted so the insert trigger doesn't have to (the trigger still does for any other insert). The partitions
+     * are created using the connection (and so in the transaction) of the insert; should the transaction be rolled back
+     * after a day has been remembered then the trigger creates its partition.
+     */
+    public void ensurePartitions(Connection connection, Collection<LocalDateTime> timestamps) throws SQLException {
+        Set<LocalDate> missingDays = new TreeSet<>();
+        for (LocalDateTime timestamp : timestamps) {
+            LocalDate day = timestamp.toLocalDate();
+            if (!partitionDays.contains(day)) {
+                missingDays.add(day);
+            }
+        }
+        if (!missingDays.isEmpty()) {
+            createPartitions(connection, missingDays);
+        }
+    }
+
+    protected void createPartitions(Set<LocalDate> days) {
+        persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> createPartitions(connection, days)));
+    }
+
+    protected void createPartitions(Connection connection, Set<LocalDate> days) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement("select CREATE_DATAPOINT_PARTITION(current_schema(), ?, ?)")) {
+            for (LocalDate day : days) {
+                st.setString(1, tableName);
+                st.setObject(2, day.atStartOfDay());
+                st.executeQuery().close();
+            }
+        }
+        partitionDays.addAll(days);
+    }
+
+    /**
+     * Drop the partitions that only contain datapoints older than the cutoff.
+     *
+     * @return The number of dropped partitions.
+     */
+    public int dropPartitionsBefore(LocalDateTime cutoff) {
+        return dropPartitionsBefore(cutoff, Collections.emptyMap());
+    }
+
+    /**
+     * Drop the partitions that only contain datapoints older than the cutoff; the datapoints of the retained
+     * attributes that aren't older than the cutoff of their attribute (the map key) are first copied to the retained
+     * table, in the transaction that drops the partition.
+     *
+     * @return The number of dropped partitions.
+     */
+    public int dropPartitionsBefore(LocalDateTime cutoff, Map<LocalDateTime, ? extends Collection<AttributeRef>> retainedAttributeRefs) {
+        List<String> partitions = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            List<String> result = new ArrayList<>();
+            try (PreparedStatement st = connection.prepareStatement(
+                "select C.RELNAME from PG_INHERITS I join PG_CLASS C on C.OID = I.INHRELID where I.INHPARENT = (current_schema() || '.' || ?)::regclass")) {
+                st.setString(1, tableName);
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(rs.getString(1));
+                    }
+                }
+            }
+            return result;
+        }));
+
+        int dropped = 0;
+
+        for (String partition : partitions) {
+            LocalDate partitionDay = getPartitionDay(partition);
+
+            if (partitionDay == null || partitionDay.plusDays(1).atStartOfDay().isAfter(cutoff)) {
+                continue;
+            }
+
+            LOG.fine("Dropping datapoint partition: " + partition);
+            partitionDays.remove(partitionDay);
+            persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                for (Map.Entry<LocalDateTime, ? extends Collection<AttributeRef>> retained : retainedAttributeRefs.entrySet()) {
+                    if (!retained.getKey().isBefore(partitionDay.plusDays(1).atStartOfDay())) {
+                        continue;
+                    }
+                    try (PreparedStatement st = connection.prepareStatement(
+                        "insert into " + getRetainedTableName() + " select * from " + partition +
+                            " where TIMESTAMP >= ? and (ENTITY_ID, ATTRIBUTE_NAME) in (select * from unnest(?, ?))" + RETAINED_CONFLICT)) {
+                        st.setObject(1, retained.getKey());
+                        setAttributeRefArrays(connection, st, 2, retained.getValue());
+                        st.executeUpdate();
+                    }
+                }
+                try (PreparedStatement st = connection.prepareStatement("drop table if exists " + partition)) {
+                    st.executeUpdate();
+                }
+            }));
+            dropped++;
+        }
+
+        if (dropped > 0) {
+            LOG.info("Dropped " + dropped + " partition(s) of " + tableName + " older than " + cutoff);
+        }
+        return dropped;
+    }
+
+    /**
+     * Delete the datapoints older than the cutoff that were stored in the parent table before it was partitioned, in
+     * chunks of a bounded number of rows; the datapoints of the retained attributes that aren't older than the cutoff
+     * of their attribute (the map key) are first moved to the retained table so the chunks don't have to skip them.
+     *
+     * @return The number of deleted datapoints.
+     */
+    public long deleteBefore(LocalDateTime cutoff, Map<LocalDateTime, ? extends Collection<AttributeRef>> retainedAttributeRefs) {
+        for (Map.Entry<LocalDateTime, ? extends Collection<AttributeRef>> retained : retainedAttributeRefs.entrySet()) {
+            persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement(
+                    "with MOVED as (delete from only " + tableName + " where TIMESTAMP < ? and TIMESTAMP >= ?" +
+                        " and (ENTITY_ID, ATTRIBUTE_NAME) in (select * from unnest(?, ?)) returning *) " +
+                        "insert into " + getRetainedTableName() + " select * from MOVED" + RETAINED_CONFLICT)) {
+                    st.setObject(1, cutoff);
+                    st.setObject(2, retained.getKey());
+                    setAttributeRefArrays(connection, st, 3, retained.getValue());
+                    st.executeUpdate();
+                }
+            }));
+        }
+
+        String query = "delete from only " + tableName + " where (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME) in (" +
+            "select TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME from only " + tableName + " where TIMESTAMP < ? limit ?)";
+        long total = 0;
+        int deleted;
+
+        do {
+            deleted = persistenceService.doReturningTransaction(em -> em.createNativeQuery(query)
+                .setParameter(1, Timestamp.valueOf(cutoff))
+                .setParameter(2, chunkSize)
+                .executeUpdate());
+            total += deleted;
+        } while (deleted >= chunkSize && !Thread.currentThread().isInterrupted());
+
+        if (total > 0) {
+            LOG.fine("Deleted " + total + " datapoint(s) of " + tableName + " older than " + cutoff);
+        }
+        return total;
+    }
+
+    /**
+     * Delete the datapoints of the attributes that are older than the cutoff, wherever they are stored; each attribute
+     * is a probe of the attribute index of the tables.
+     *
+     * @return The number of deleted datapoints.
+     */
+    public long deleteAttributesBefore(LocalDateTime cutoff, Collection<AttributeRef> attributeRefs) {
+        if (attributeRefs.isEmpty()) {
+            return 0;
+        }
+
+        long total = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            long deleted = 0;
+            try (PreparedStatement st = connection.prepareStatement(
+                "delete from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP < ?")) {
+                for (AttributeRef attributeRef : attributeRefs) {
+                    st.setString(1, attributeRef.getId());
+                    st.setString(2, attributeRef.getName());
+                    st.setObject(3, cutoff);
+                    st.addBatch();
+                }
+                for (int count : st.executeBatch()) {
+                    deleted += Math.max(0, count);
+                }
+            }
+            return deleted;
+        }));
+
+        if (total > 0) {
+            LOG.fine("Deleted " + total + " datapoint(s) of " + attributeRefs.size() + " attribute(s) of " + tableName + " older than " + cutoff);
+        }
+        return total;
+    }
+
+    protected String getRetainedTableName() {
+        return tableName + "_retained";
+    }
+
+    protected static void setAttributeRefArrays(Connection connection, PreparedStatement st, int index, Collection<AttributeRef> attributeRefs) throws SQLException {
+        st.setArray(index, connection.createArrayOf("text", attributeRefs.stream().map(AttributeRef::getId).toArray()));
+        st.setArray(index + 1, connection.createArrayOf("text", attributeRefs.stream().map(AttributeRef::getName).toArray()));
+    }
+
+    protected LocalDate getPartitionDay(String partition) {
+        if (!partition.startsWith(tableName + "_")) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(partition.substring(tableName.length() + 1), PARTITION_SUFFIX_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
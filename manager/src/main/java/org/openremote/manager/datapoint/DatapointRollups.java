@@ -0,0 +1,452 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.datapoint;
+
+import org.hibernate.Session;
+import org.openremote.container.persistence.PersistenceService;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.DatapointInterval;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.HOURS;
+
+/**
+ * Maintains hourly and daily aggregates (min, max, sum, count and last value) of number and boolean datapoints, so
+ * {@link DatapointInterval#HOUR} and coarser datapoint queries don't have to aggregate the raw datapoints.
+ * <p>
+ * Upserted datapoints mark their hourly bucket as dirty and dirty buckets are recomputed from the raw datapoints
+ * periodically (and before a query of the attribute uses a rollup), followed by their daily bucket which is computed
+ * from the hourly buckets. The first marking of a bucket is also stored in the {@link #DIRTY_TABLE_NAME} table in the
+ * transaction of the upsert and removed once the bucket has been recomputed, so buckets of (historic) datapoints
+ * upserted just before a shutdown are recomputed when started again. Recomputing rather than merging keeps the buckets correct when an existing datapoint is
+ * replaced. Rollups of existing datapoints are backfilled one day at a time when started; queries use the raw
+ * datapoints until the backfill has completed.
+ */
+public class DatapointRollups {
+
+    protected static class BucketKey {
+        final String assetId;
+        final String attributeName;
+        final LocalDateTime hour;
+
+        BucketKey(String assetId, String attributeName, LocalDateTime hour) {
+            this.assetId = assetId;
+            this.attributeName = attributeName;
+            this.hour = hour;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            BucketKey that = (BucketKey) o;
+            return assetId.equals(that.assetId) && attributeName.equals(that.attributeName) && hour.equals(that.hour);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(assetId, attributeName, hour);
+        }
+    }
+
+    public static final String HOURLY_TABLE_NAME = "ASSET_DATAPOINT_HOURLY";
+    public static final String DAILY_TABLE_NAME = "ASSET_DATAPOINT_DAILY";
+    public static final String DIRTY_TABLE_NAME = "ASSET_DATAPOINT_ROLLUP_DIRTY";
+    // Buckets marked more recently than this are recomputed again on the next flush, in case the datapoint upsert
+    // hadn't been committed yet when the bucket was recomputed
+    protected static final long DIRTY_GRACE_MILLIS = 10000;
+    protected static final String VALUE_SELECT = "case jsonb_typeof(VALUE) when 'boolean' then (case when VALUE::text::boolean then 1 else 0 end) else VALUE::text::numeric end";
+    protected static final String UPSERT_CONFLICT = " on conflict (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP) do update set " +
+        "MIN_VALUE = excluded.MIN_VALUE, MAX_VALUE = excluded.MAX_VALUE, SUM_VALUE = excluded.SUM_VALUE, " +
+        "VALUE_COUNT = excluded.VALUE_COUNT, LAST_VALUE = excluded.LAST_VALUE, LAST_TIMESTAMP = excluded.LAST_TIMESTAMP";
+    private static final Logger LOG = Logger.getLogger(DatapointRollups.class.getName());
+    protected final PersistenceService persistenceService;
+    protected final ScheduledExecutorService executorService;
+    protected final String datapointTableName;
+    protected final Map<BucketKey, Long> dirtyBuckets = new ConcurrentHashMap<>();
+    protected final Object flushLock = new Object();
+    protected volatile boolean backfillComplete;
+    protected ScheduledFuture<?> flushFuture;
+    protected ScheduledFuture<?> backfillFuture;
+
+    public DatapointRollups(PersistenceService persistenceService, ScheduledExecutorService executorService, String datapointTableName) {
+        this.persistenceService = persistenceService;
+        this.executorService = executorService;
+        this.datapointTableName = datapointTableName;
+    }
+
+    public void start(int flushIntervalSeconds) {
+        flushFuture = executorService.scheduleWithFixedDelay(this::flush, flushIntervalSeconds, flushIntervalSeconds, TimeUnit.SECONDS);
+        backfillFuture = executorService.schedule(this::backfill, 0, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        if (backfillFuture != null) {
+            backfillFuture.cancel(true);
+            backfillFuture = null;
+        }
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        flush();
+    }
+
+    /**
+     * Mark the hourly bucket of an upserted datapoint as dirty, values other than numbers and booleans are ignored.
+     * The connection must be the one used to upsert the datapoint so the marking is stored in the same transaction.
+     */
+    public void datapointUpserted(Connection connection, String assetId, String attributeName, Object value, LocalDateTime timestamp) throws SQLException {
+        if (!(value instanceof Number || value instanceof Boolean)) {
+            return;
+        }
+
+        BucketKey bucket = new BucketKey(assetId, attributeName, timestamp.truncatedTo(HOURS));
+        long markTimestamp = System.currentTimeMillis();
+
+        // Only store the first marking since the bucket was last recomputed, most upserts hit an already dirty bucket
+        if (dirtyBuckets.put(bucket, markTimestamp) == null) {
+            try (PreparedStatement st = connection.prepareStatement(
+                "insert into " + DIRTY_TABLE_NAME + " (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME, MARKED_AT) values (?, ?, ?, ?)" +
+                    " on conflict (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP) do update set MARKED_AT = excluded.MARKED_AT")) {
+                st.setObject(1, bucket.hour);
+                st.setString(2, assetId);
+                st.setString(3, attributeName);
+                st.setLong(4, markTimestamp);
+                st.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * @return The name of the rollup table that can be used to aggregate datapoints of the specified interval, or
+     * <code>null</code> if the raw datapoints must be used; the dirty buckets of the attribute are recomputed first.
+     */
+    public String getRollupTableName(AttributeRef attributeRef, DatapointInterval interval) {
+        if (!backfillComplete || interval == null) {
+            return null;
+        }
+
+        String tableName;
+        switch (interval) {
+            case HOUR:
+                tableName = HOURLY_TABLE_NAME;
+                break;
+            case DAY:
+            case WEEK:
+            case MONTH:
+            case YEAR:
+                tableName = DAILY_TABLE_NAME;
+                break;
+            default:
+                return null;
+        }
+
+        flush(attributeRef);
+        return tableName;
+    }
+
+    public boolean isBackfillComplete() {
+        return backfillComplete;
+    }
+
+    public int getDirtyBucketCount() {
+        return dirtyBuckets.size();
+    }
+
+    /**
+     * Delete the rollup buckets that start before the specified time, except those of the excluded attributes.
+     */
+    public void purge(Instant before, Collection<AttributeRef> excludedAttributeRefs) {
+        persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+            for (String tableName : new String[] {HOURLY_TABLE_NAME, DAILY_TABLE_NAME, DIRTY_TABLE_NAME}) {
+                try (PreparedStatement st = connection.prepareStatement("delete from " + tableName +
+                    " where TIMESTAMP < ? and (ENTITY_ID, ATTRIBUTE_NAME) not in (select * from unnest(?, ?))")) {
+                    st.setTimestamp(1, Timestamp.from(before));
+                    DatapointPartitions.setAttributeRefArrays(connection, st, 2, excludedAttributeRefs);
+                    st.executeUpdate();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Delete the rollup buckets of the attributes that start before the specified time.
+     */
+    public void purgeAttributes(Instant before, Collection<AttributeRef> attributeRefs) {
+        persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+            for (String tableName : new String[] {HOURLY_TABLE_NAME, DAILY_TABLE_NAME, DIRTY_TABLE_NAME}) {
+                try (PreparedStatement st = connection.prepareStatement("delete from " + tableName +
+                    " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP < ?")) {
+                    for (AttributeRef attributeRef : attributeRefs) {
+                        st.setString(1, attributeRef.getId());
+                        st.setString(2, attributeRef.getName());
+                        st.setTimestamp(3, Timestamp.from(before));
+                        st.addBatch();
+                    }
+                    st.executeBatch();
+                }
+            }
+        }));
+    }
+
+    protected void flush() {
+        flush(null);
+    }
+
+    protected void flush(AttributeRef attributeRef) {
+        if (dirtyBuckets.isEmpty()) {
+            return;
+        }
+
+        synchronized (flushLock) {
+            long graceTimestamp = System.currentTimeMillis() - DIRTY_GRACE_MILLIS;
+            List<BucketKey> buckets = new ArrayList<>();
+            Map<BucketKey, Long> cleanBuckets = new HashMap<>();
+
+            dirtyBuckets.forEach((bucket, markTimestamp) -> {
+                if (attributeRef != null && (!attributeRef.getId().equals(bucket.assetId) || !attributeRef.getName().equals(bucket.attributeName))) {
+                    return;
+                }
+                buckets.add(bucket);
+                if (markTimestamp < graceTimestamp && dirtyBuckets.remove(bucket, markTimestamp)) {
+                    cleanBuckets.put(bucket, markTimestamp);
+                }
+            });
+
+            if (buckets.isEmpty()) {
+                return;
+            }
+
+            try {
+                persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                    updateBuckets(connection, buckets);
+                    deleteDirtyMarkings(connection, cleanBuckets);
+                }));
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to update " + buckets.size() + " datapoint rollup bucket(s)", e);
+                buckets.forEach(bucket -> dirtyBuckets.putIfAbsent(bucket, System.currentTimeMillis()));
+            }
+        }
+    }
+
+    /**
+     * Recompute the buckets and the days they belong to from scratch; the rows are deleted first as a bucket whose
+     * datapoints have all been deleted produces no row to upsert and would otherwise keep its stale aggregates.
+     */
+    protected void updateBuckets(Connection connection, List<BucketKey> buckets) throws SQLException {
+        Set<BucketKey> days = new LinkedHashSet<>();
+        buckets.forEach(bucket -> days.add(new BucketKey(bucket.assetId, bucket.attributeName, bucket.hour.truncatedTo(DAYS))));
+
+        deleteBuckets(connection, HOURLY_TABLE_NAME, buckets);
+
+        try (PreparedStatement st = connection.prepareStatement(getHourlyUpsert(true))) {
+            for (BucketKey bucket : buckets) {
+                setRangeValues(st, bucket.hour, bucket.hour.plusHours(1), bucket.assetId, bucket.attributeName);
+                st.addBatch();
+            }
+            st.executeBatch();
+        }
+
+        deleteBuckets(connection, DAILY_TABLE_NAME, days);
+
+        try (PreparedStatement st = connection.prepareStatement(getDailyUpsert(true))) {
+            for (BucketKey day : days) {
+                setRangeValues(st, day.hour, day.hour.plusDays(1), day.assetId, day.attributeName);
+                st.addBatch();
+            }
+            st.executeBatch();
+        }
+    }
+
+    protected void deleteBuckets(Connection connection, String tableName, Collection<BucketKey> buckets) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(
+            "delete from " + tableName + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP = ?")) {
+            for (BucketKey bucket : buckets) {
+                st.setString(1, bucket.assetId);
+                st.setString(2, bucket.attributeName);
+                st.setObject(3, bucket.hour);
+                st.addBatch();
+            }
+            st.executeBatch();
+        }
+    }
+
+    /**
+     * Delete the stored markings of the recomputed buckets, unless a bucket has been marked again since.
+     */
+    protected void deleteDirtyMarkings(Connection connection, Map<BucketKey, Long> buckets) throws SQLException {
+        if (buckets.isEmpty()) {
+            return;
+        }
+
+        try (PreparedStatement st = connection.prepareStatement(
+            "delete from " + DIRTY_TABLE_NAME + " where ENTITY_ID = ? and ATTRIBUTE_NAME = ? and TIMESTAMP = ? and MARKED_AT <= ?")) {
+            for (Map.Entry<BucketKey, Long> bucket : buckets.entrySet()) {
+                st.setString(1, bucket.getKey().assetId);
+                st.setString(2, bucket.getKey().attributeName);
+                st.setObject(3, bucket.getKey().hour);
+                st.setLong(4, bucket.getValue());
+                st.addBatch();
+            }
+            st.executeBatch();
+        }
+    }
+
+    /**
+     * Load the buckets that were marked but not recomputed before the last shutdown.
+     */
+    protected void loadDirtyMarkings() {
+        int count = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            int loaded = 0;
+            try (PreparedStatement st = connection.prepareStatement("select ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP, MARKED_AT from " + DIRTY_TABLE_NAME);
+                 ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    dirtyBuckets.putIfAbsent(
+                        new BucketKey(rs.getString(1), rs.getString(2), rs.getTimestamp(3).toLocalDateTime()),
+                        rs.getLong(4));
+                    loaded++;
+                }
+            }
+            return loaded;
+        }));
+
+        if (count > 0) {
+            LOG.info("Loaded " + count + " datapoint rollup bucket(s) marked dirty before the last shutdown");
+        }
+    }
+
+    protected void backfill() {
+        try {
+            loadDirtyMarkings();
+
+            LocalDateTime[] range = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+                LocalDateTime[] result = new LocalDateTime[4];
+                readRange(connection, "select min(TIMESTAMP), max(TIMESTAMP) from " + datapointTableName, result, 0);
+                readRange(connection, "select min(TIMESTAMP), max(TIMESTAMP) from " + HOURLY_TABLE_NAME, result, 2);
+                return result;
+            }));
+
+            LocalDateTime datapointOldest = range[0];
+            LocalDateTime datapointLatest = range[1];
+            LocalDateTime rollupOldest = range[2];
+            LocalDateTime rollupLatest = range[3];
+
+            if (datapointOldest != null) {
+                if (rollupOldest == null) {
+                    LOG.info("Backfilling datapoint rollups from " + datapointOldest + " to " + datapointLatest);
+                    backfill(datapointOldest, datapointLatest);
+                } else {
+                    // Datapoints may have been stored before the rollups existed or after the last flush
+                    if (datapointOldest.isBefore(rollupOldest)) {
+                        backfill(datapointOldest, rollupOldest);
+                    }
+                    backfill(rollupLatest, datapointLatest);
+                }
+            }
+
+            backfillComplete = true;
+            LOG.info("Datapoint rollups are up to date");
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                LOG.info("Datapoint rollups backfill cancelled");
+            } else {
+                LOG.log(Level.WARNING, "Failed to backfill datapoint rollups, queries will use the raw datapoints", e);
+            }
+        }
+    }
+
+    protected void backfill(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime day = from.truncatedTo(DAYS);
+
+        // A transaction per day so each statement only aggregates a day of datapoints
+        while (!day.isAfter(to) && !Thread.currentThread().isInterrupted()) {
+            LocalDateTime dayStart = day;
+            LocalDateTime dayEnd = day.plusDays(1);
+
+            persistenceService.doTransaction(em -> em.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement st = connection.prepareStatement(getHourlyUpsert(false))) {
+                    setRangeValues(st, dayStart, dayEnd, null, null);
+                    st.executeUpdate();
+                }
+                try (PreparedStatement st = connection.prepareStatement(getDailyUpsert(false))) {
+                    setRangeValues(st, dayStart, dayEnd, null, null);
+                    st.executeUpdate();
+                }
+            }));
+
+            LOG.fine("Backfilled datapoint rollups of " + dayStart.toLocalDate());
+            day = dayEnd;
+        }
+    }
+
+    protected void readRange(Connection connection, String query, LocalDateTime[] result, int index) throws SQLException {
+        try (PreparedStatement st = connection.prepareStatement(query);
+             ResultSet rs = st.executeQuery()) {
+            if (rs.next()) {
+                Timestamp min = rs.getTimestamp(1);
+                Timestamp max = rs.getTimestamp(2);
+                result[index] = min != null ? min.toLocalDateTime() : null;
+                result[index + 1] = max != null ? max.toLocalDateTime() : null;
+            }
+        }
+    }
+
+    protected String getHourlyUpsert(boolean forAttribute) {
+        return "insert into " + HOURLY_TABLE_NAME + " (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME, MIN_VALUE, MAX_VALUE, SUM_VALUE, VALUE_COUNT, LAST_VALUE, LAST_TIMESTAMP) " +
+            "select date_trunc('hour', TIMESTAMP) as BUCKET, ENTITY_ID, ATTRIBUTE_NAME, min(V), max(V), sum(V), count(*), (array_agg(V order by TIMESTAMP desc))[1], max(TIMESTAMP) " +
+            "from (select TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME, " + VALUE_SELECT + " as V from " + datapointTableName +
+            " where TIMESTAMP >= ? and TIMESTAMP < ?" + (forAttribute ? " and ENTITY_ID = ? and ATTRIBUTE_NAME = ?" : "") +
+            " and jsonb_typeof(VALUE) in ('number', 'boolean')) DP " +
+            "group by BUCKET, ENTITY_ID, ATTRIBUTE_NAME" + UPSERT_CONFLICT;
+    }
+
+    protected String getDailyUpsert(boolean forAttribute) {
+        return "insert into " + DAILY_TABLE_NAME + " (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME, MIN_VALUE, MAX_VALUE, SUM_VALUE, VALUE_COUNT, LAST_VALUE, LAST_TIMESTAMP) " +
+            "select date_trunc('day', TIMESTAMP) as BUCKET, ENTITY_ID, ATTRIBUTE_NAME, min(MIN_VALUE), max(MAX_VALUE), sum(SUM_VALUE), sum(VALUE_COUNT), (array_agg(LAST_VALUE order by LAST_TIMESTAMP desc))[1], max(LAST_TIMESTAMP) " +
+            "from " + HOURLY_TABLE_NAME +
+            " where TIMESTAMP >= ? and TIMESTAMP < ?" + (forAttribute ? " and ENTITY_ID = ? and ATTRIBUTE_NAME = ?" : "") +
+            " group by BUCKET, ENTITY_ID, ATTRIBUTE_NAME" + UPSERT_CONFLICT;
+    }
+
+    protected void setRangeValues(PreparedStatement st, LocalDateTime from, LocalDateTime to, String assetId, String attributeName) throws SQLException {
+        st.setObject(1, from);
+        st.setObject(2, to);
+        if (assetId != null) {
+            st.setString(3, assetId);
+            st.setString(4, attributeName);
+        }
+    }
+}
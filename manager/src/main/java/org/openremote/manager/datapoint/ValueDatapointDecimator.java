@@ -0,0 +1,272 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.datapoint;
+
+import org.openremote.model.datapoint.DatapointDecimation;
+import org.openremote.model.datapoint.ValueDatapoint;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reduces a stream of numeric datapoints, which must be supplied in timestamp order, to a maximum number of points
+ * using one of the {@link DatapointDecimation} algorithms. The time range is divided into buckets of equal length and
+ * only the state of the current bucket is held, so memory use is bounded by the number of points returned and not by
+ * the number of datapoints in the time range.
+ */
+public abstract class ValueDatapointDecimator {
+
+    /**
+     * Takes the minimum and maximum datapoint of each bucket, in timestamp order.
+     */
+    public static class MinMax extends ValueDatapointDecimator {
+
+        protected int bucket = -1;
+        protected long minTimestamp;
+        protected double minValue;
+        protected long maxTimestamp;
+        protected double maxValue;
+
+        public MinMax(long fromMillis, long toMillis, int maxPoints) {
+            super(fromMillis, toMillis, Math.max(1, maxPoints / 2));
+        }
+
+        @Override
+        public void accept(long timestamp, double value) {
+            int valueBucket = getBucket(timestamp);
+
+            if (valueBucket != bucket) {
+                flushBucket();
+                bucket = valueBucket;
+                minTimestamp = maxTimestamp = timestamp;
+                minValue = maxValue = value;
+                return;
+            }
+
+            if (value < minValue) {
+                minTimestamp = timestamp;
+                minValue = value;
+            } else if (value > maxValue) {
+                maxTimestamp = timestamp;
+                maxValue = value;
+            }
+        }
+
+        @Override
+        public List<ValueDatapoint<?>> finish() {
+            flushBucket();
+            bucket = -1;
+            return result;
+        }
+
+        protected void flushBucket() {
+            if (bucket < 0) {
+                return;
+            }
+            if (minTimestamp == maxTimestamp) {
+                add(minTimestamp, minValue);
+            } else if (minTimestamp < maxTimestamp) {
+                add(minTimestamp, minValue);
+                add(maxTimestamp, maxValue);
+            } else {
+                add(maxTimestamp, maxValue);
+                add(minTimestamp, minValue);
+            }
+        }
+    }
+
+    /**
+     * Largest-Triangle-Three-Buckets; the average of each bucket must be supplied with {@link #setBucketAverage}
+     * before the datapoints are streamed so the point of each bucket can be selected in a single pass.
+     */
+    public static class Lttb extends ValueDatapointDecimator {
+
+        protected final double[] averageTimestamps;
+        protected final double[] averageValues;
+        protected final boolean[] hasAverage;
+        protected int[] nextBuckets;
+        protected boolean first = true;
+        protected int bucket = -1;
+        // Point selected in the previous bucket
+        protected long previousTimestamp;
+        protected double previousValue;
+        // Average of the next (non empty) bucket
+        protected double nextTimestamp;
+        protected double nextValue;
+        protected boolean hasSelected;
+        protected long selectedTimestamp;
+        protected double selectedValue;
+        protected double selectedArea;
+        protected long lastTimestamp;
+        protected double lastValue;
+
+        public Lttb(long fromMillis, long toMillis, int maxPoints) {
+            // First and last points are always selected
+            super(fromMillis, toMillis, Math.max(1, maxPoints - 2));
+            averageTimestamps = new double[bucketCount];
+            averageValues = new double[bucketCount];
+            hasAverage = new boolean[bucketCount];
+        }
+
+        public void setBucketAverage(int bucket, double timestamp, double value) {
+            if (bucket < 0 || bucket >= bucketCount) {
+                return;
+            }
+            averageTimestamps[bucket] = timestamp;
+            averageValues[bucket] = value;
+            hasAverage[bucket] = true;
+        }
+
+        @Override
+        public void accept(long timestamp, double value) {
+            if (nextBuckets == null) {
+                nextBuckets = new int[bucketCount];
+                int next = -1;
+                for (int i = bucketCount - 1; i >= 0; i--) {
+                    nextBuckets[i] = next;
+                    if (hasAverage[i]) {
+                        next = i;
+                    }
+                }
+            }
+
+            if (first) {
+                first = false;
+                add(timestamp, value);
+                previousTimestamp = lastTimestamp = timestamp;
+                previousValue = lastValue = value;
+                return;
+            }
+
+            int valueBucket = getBucket(timestamp);
+
+            if (valueBucket != bucket) {
+                flushBucket();
+                bucket = valueBucket;
+                int next = nextBuckets[bucket];
+                if (next >= 0) {
+                    nextTimestamp = averageTimestamps[next];
+                    nextValue = averageValues[next];
+                } else {
+                    // Last bucket so use its own average, the last point is added by finish
+                    nextTimestamp = hasAverage[bucket] ? averageTimestamps[bucket] : timestamp;
+                    nextValue = hasAverage[bucket] ? averageValues[bucket] : value;
+                }
+            }
+
+            double area = Math.abs(
+                (previousTimestamp - nextTimestamp) * (value - previousValue)
+                    - (previousTimestamp - timestamp) * (nextValue - previousValue)
+            );
+
+            if (!hasSelected || area > selectedArea) {
+                hasSelected = true;
+                selectedTimestamp = timestamp;
+                selectedValue = value;
+                selectedArea = area;
+            }
+
+            lastTimestamp = timestamp;
+            lastValue = value;
+        }
+
+        @Override
+        public List<ValueDatapoint<?>> finish() {
+            if (hasSelected && selectedTimestamp == lastTimestamp) {
+                hasSelected = false;
+            }
+            flushBucket();
+            if (!first && (result.isEmpty() || result.get(result.size() - 1).getTimestamp() != lastTimestamp)) {
+                add(lastTimestamp, lastValue);
+            }
+            return result;
+        }
+
+        protected void flushBucket() {
+            if (!hasSelected) {
+                return;
+            }
+            add(selectedTimestamp, selectedValue);
+            previousTimestamp = selectedTimestamp;
+            previousValue = selectedValue;
+            hasSelected = false;
+        }
+    }
+
+    protected final long fromMillis;
+    protected final int bucketCount;
+    protected final double bucketMillis;
+    protected final List<ValueDatapoint<?>> result = new ArrayList<>();
+
+    protected ValueDatapointDecimator(long fromMillis, long toMillis, int bucketCount) {
+        this.fromMillis = fromMillis;
+        this.bucketCount = bucketCount;
+        this.bucketMillis = Math.max(1d, (double) (toMillis - fromMillis + 1) / bucketCount);
+    }
+
+    public static ValueDatapointDecimator create(DatapointDecimation decimation, long fromMillis, long toMillis, int maxPoints) {
+        switch (decimation) {
+            case MIN_MAX:
+                return new MinMax(fromMillis, toMillis, maxPoints);
+            case LTTB:
+                return new Lttb(fromMillis, toMillis, maxPoints);
+            default:
+                throw new UnsupportedOperationException("Can't handle decimation: " + decimation);
+        }
+    }
+
+    public int getBucketCount() {
+        return bucketCount;
+    }
+
+    /**
+     * @return The length of each bucket in milliseconds.
+     */
+    public double getBucketMillis() {
+        return bucketMillis;
+    }
+
+    public int getBucket(long timestamp) {
+        return (int) Math.max(0, Math.min(bucketCount - 1, (long) ((timestamp - fromMillis) / bucketMillis)));
+    }
+
+    /**
+     * Supply the next datapoint, datapoints must be supplied in timestamp order.
+     */
+    public abstract void accept(long timestamp, double value);
+
+    /**
+     * @return The selected datapoints in timestamp order.
+     */
+    public abstract List<ValueDatapoint<?>> finish();
+
+    protected void add(long timestamp, double value) {
+        result.add(new ValueDatapoint<>(timestamp, value));
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "fromMillis=" + fromMillis +
+            ", bucketCount=" + bucketCount +
+            ", bucketMillis=" + bucketMillis +
+            '}';
+    }
+}
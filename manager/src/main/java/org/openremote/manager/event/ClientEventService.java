@@ -32,6 +32,8 @@ import org.openremote.manager.web.ManagerWebService;
 import org.openremote.model.Constants;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.TriggeredEventSubscription;
 import org.openremote.model.event.shared.*;
 import org.openremote.model.syslog.SyslogEvent;
 
@@ -163,7 +165,9 @@ public class ClientEventService implements ContainerService {
         gatewayService = container.getService(GatewayService.class);
 
         eventSubscriptions = new EventSubscriptions(
-            container.getService(TimerService.class)
+            container.getService(TimerService.class),
+            container.getExecutorService(),
+            this::sendToSession
         );
 
         messageBrokerService.getContext().getTypeConverterRegistry().addTypeConverters(
@@ -375,10 +379,16 @@ public class ClientEventService implements ContainerService {
                 return;
             }
             if (sessionInfo.connectionType.equals(HEADER_CONNECTION_TYPE_WEBSOCKET)) {
-                messageBrokerService.getProducerTemplate().sendBodyAndHeader(
+                Map<String, Object> headers = new HashMap<>();
+                headers.put(ConnectionConstants.SESSION_KEY, sessionKey);
+                String coalesceKey = getCoalesceKey(data);
+                if (coalesceKey != null) {
+                    headers.put(ConnectionConstants.COALESCE_KEY, coalesceKey);
+                }
+                messageBrokerService.getProducerTemplate().sendBodyAndHeaders(
                         "websocket://" + WEBSOCKET_EVENTS,
                         data,
-                        ConnectionConstants.SESSION_KEY, sessionKey
+                        headers
                 );
             } else if (sessionInfo.connectionType.equals(HEADER_CONNECTION_TYPE_MQTT)) {
                 messageBrokerService.getProducerTemplate().sendBodyAndHeader(
@@ -390,6 +400,23 @@ public class ClientEventService implements ContainerService {
         }
     }
 
+    /**
+     * Queued attribute events of the same subscription and attribute supersede each other when a websocket client
+     * can't keep up, so only the latest value is sent.
+     */
+    protected static String getCoalesceKey(Object data) {
+        if (data instanceof TriggeredEventSubscription) {
+            TriggeredEventSubscription<?> triggeredEventSubscription = (TriggeredEventSubscription<?>) data;
+            List<?> events = triggeredEventSubscription.getEvents();
+            if (events != null && events.size() == 1 && events.get(0) instanceof AttributeEvent) {
+                AttributeEvent attributeEvent = (AttributeEvent) events.get(0);
+                return triggeredEventSubscription.getSubscriptionId() + ":" + attributeEvent.getAttributeRef().getId()
+                    + ":" + attributeEvent.getAttributeRef().getName();
+            }
+        }
+        return null;
+    }
+
     public void closeSession(String sessionKey) {
         SessionInfo sessionInfo = sessionKeyInfoMap.get(sessionKey);
 
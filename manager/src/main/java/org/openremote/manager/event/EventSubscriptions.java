@@ -24,26 +24,51 @@ import org.apache.camel.Message;
 import org.apache.camel.impl.DefaultMessage;
 import org.openremote.container.timer.TimerService;
 import org.openremote.container.web.ConnectionConstants;
+import org.openremote.model.asset.AssetFilter;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.event.TriggeredEventSubscription;
-import org.openremote.model.event.shared.CancelEventSubscription;
-import org.openremote.model.event.shared.EventSubscription;
-import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.event.shared.*;
 import org.openremote.model.util.TextUtil;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Manages subscriptions to events for WebSocket sessions.
+ * <p>
+ * Subscriptions are indexed by event type and then by the most selective criteria of their {@link AssetFilter} (asset
+ * ID, parent ID, path, attribute name or realm) or {@link TenantFilter} (realm), so publishing an event only evaluates
+ * the filters of subscriptions that can match the event; subscriptions without a filter or with any other filter are
+ * evaluated for every event of their type.
+ * <p>
+ * {@link AttributeEvent}s of subscriptions with a {@link EventSubscription#getConflationMillis} window are not
+ * delivered immediately, only the latest event of each {@link AttributeRef} is kept and delivered when the window
+ * ends.
  */
 public class EventSubscriptions {
 
     private static final Logger LOG = Logger.getLogger(EventSubscriptions.class.getName());
 
     final protected TimerService timerService;
+    final protected ScheduledExecutorService executorService;
+    final protected BiConsumer<String, TriggeredEventSubscription<?>> conflatedEventsConsumer;
     final protected Map<String, SessionSubscriptions> sessionSubscriptionIdMap = new HashMap<>();
+    final protected Map<String, EventTypeSubscriptions> eventTypeSubscriptionsMap = new ConcurrentHashMap<>();
 
     class SessionSubscriptions extends HashSet<SessionSubscription> {
+        final String sessionKey;
+
+        public SessionSubscriptions(String sessionKey) {
+            this.sessionKey = sessionKey;
+        }
+
         public void createOrUpdate(boolean restrictedUser, EventSubscription<?> eventSubscription) {
 
             if (TextUtil.isNullOrEmpty(eventSubscription.getSubscriptionId())) {
@@ -52,7 +77,9 @@ public class EventSubscriptions {
                 cancelById(eventSubscription.getSubscriptionId());
             }
 
-            add(new SessionSubscription(restrictedUser, timerService.getCurrentTimeMillis(), eventSubscription));
+            SessionSubscription sessionSubscription = new SessionSubscription(sessionKey, restrictedUser, timerService.getCurrentTimeMillis(), eventSubscription);
+            add(sessionSubscription);
+            index(sessionSubscription);
         }
 
         public void update(boolean resstrictedUser, String[] subscriptionIds) {
@@ -66,21 +93,45 @@ public class EventSubscriptions {
         }
 
         public void cancelByType(String eventType) {
-            removeIf(sessionSubscription -> sessionSubscription.subscriptionId == null && sessionSubscription.subscription.getEventType().equals(eventType));
+            cancelIf(sessionSubscription -> sessionSubscription.subscriptionId == null && sessionSubscription.subscription.getEventType().equals(eventType));
         }
 
         public void cancelById(String subscriptionId) {
-            removeIf(sessionSubscription -> sessionSubscription.subscription.getSubscriptionId().equals(subscriptionId));
+            cancelIf(sessionSubscription -> sessionSubscription.subscription.getSubscriptionId().equals(subscriptionId));
+        }
+
+        public void cancelAll() {
+            cancelIf(sessionSubscription -> true);
+        }
+
+        protected void cancelIf(Predicate<SessionSubscription> predicate) {
+            Iterator<SessionSubscription> iterator = iterator();
+            while (iterator.hasNext()) {
+                SessionSubscription sessionSubscription = iterator.next();
+                if (predicate.test(sessionSubscription)) {
+                    iterator.remove();
+                    sessionSubscription.cancelled = true;
+                    unindex(sessionSubscription);
+                }
+            }
         }
     }
 
     class SessionSubscription {
+        final String sessionKey;
         boolean restrictedUser;
         long timestamp;
         final EventSubscription subscription;
         final String subscriptionId;
+        // The index this subscription is stored in and its keys, no index means the subscription is evaluated for every event
+        Map<String, Set<SessionSubscription>> index;
+        String[] indexKeys;
+        // The latest event of each attribute waiting for the end of the conflation window, guarded by this
+        Map<AttributeRef, AttributeEvent> conflatedEvents;
+        volatile boolean cancelled;
 
-        public SessionSubscription(boolean restrictedUser, long timestamp, EventSubscription subscription) {
+        public SessionSubscription(String sessionKey, boolean restrictedUser, long timestamp, EventSubscription subscription) {
+            this.sessionKey = sessionKey;
             this.restrictedUser = restrictedUser;
             this.timestamp = timestamp;
             this.subscription = subscription;
@@ -90,11 +141,179 @@ public class EventSubscriptions {
         public boolean matches(boolean accessibleForRestrictedUsers, SharedEvent event) {
             return (!restrictedUser || accessibleForRestrictedUsers) && subscription.getEventType().equals(event.getEventType());
         }
+
+        public boolean isConflated(SharedEvent event) {
+            return executorService != null
+                && subscription.getInternalConsumer() == null
+                && event instanceof AttributeEvent
+                && subscription.getConflationMillis() != null
+                && subscription.getConflationMillis() > 0;
+        }
+
+        /**
+         * Keep the event until the end of the conflation window, the window starts with the first event.
+         */
+        public void conflate(AttributeEvent event) {
+            synchronized (this) {
+                if (conflatedEvents != null) {
+                    conflatedEvents.put(event.getAttributeRef(), event);
+                    return;
+                }
+                conflatedEvents = new LinkedHashMap<>();
+                conflatedEvents.put(event.getAttributeRef(), event);
+            }
+            executorService.schedule(this::flushConflatedEvents, subscription.getConflationMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        protected void flushConflatedEvents() {
+            List<SharedEvent> events;
+            synchronized (this) {
+                if (conflatedEvents == null) {
+                    return;
+                }
+                events = new ArrayList<>(conflatedEvents.values());
+                conflatedEvents = null;
+            }
+            if (cancelled) {
+                return;
+            }
+            LOG.finer("Delivering " + events.size() + " conflated event(s) to session '" + sessionKey + "'");
+            try {
+                conflatedEventsConsumer.accept(sessionKey, new TriggeredEventSubscription<>(events, subscriptionId));
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to deliver conflated events to session '" + sessionKey + "'", e);
+            }
+        }
+    }
+
+    /**
+     * The subscriptions of a single event type.
+     */
+    class EventTypeSubscriptions {
+        final Map<String, Set<SessionSubscription>> byAssetId = new ConcurrentHashMap<>();
+        final Map<String, Set<SessionSubscription>> byParentId = new ConcurrentHashMap<>();
+        final Map<String, Set<SessionSubscription>> byPath = new ConcurrentHashMap<>();
+        final Map<String, Set<SessionSubscription>> byAttributeName = new ConcurrentHashMap<>();
+        final Map<String, Set<SessionSubscription>> byRealm = new ConcurrentHashMap<>();
+        final Set<SessionSubscription> unindexed = ConcurrentHashMap.newKeySet();
+
+        public void add(SessionSubscription sessionSubscription) {
+            EventFilter<?> filter = sessionSubscription.subscription.getFilter();
+
+            if (filter instanceof AssetFilter) {
+                AssetFilter<?> assetFilter = (AssetFilter<?>) filter;
+                if (!isNullOrEmpty(assetFilter.getAssetIds())) {
+                    setIndex(sessionSubscription, byAssetId, assetFilter.getAssetIds());
+                } else if (!isNullOrEmpty(assetFilter.getParentIds())) {
+                    setIndex(sessionSubscription, byParentId, assetFilter.getParentIds());
+                } else if (!isNullOrEmpty(assetFilter.getPath())) {
+                    setIndex(sessionSubscription, byPath, assetFilter.getPath());
+                } else if (!isNullOrEmpty(assetFilter.getAttributeNames())) {
+                    setIndex(sessionSubscription, byAttributeName, assetFilter.getAttributeNames());
+                } else if (!TextUtil.isNullOrEmpty(assetFilter.getRealm())) {
+                    setIndex(sessionSubscription, byRealm, assetFilter.getRealm());
+                }
+            } else if (filter instanceof TenantFilter && ((TenantFilter) filter).getRealm() != null) {
+                setIndex(sessionSubscription, byRealm, ((TenantFilter) filter).getRealm());
+            }
+
+            if (sessionSubscription.index == null) {
+                unindexed.add(sessionSubscription);
+                return;
+            }
+
+            for (String key : sessionSubscription.indexKeys) {
+                sessionSubscription.index.compute(key, (k, subscriptions) -> {
+                    if (subscriptions == null) {
+                        subscriptions = ConcurrentHashMap.newKeySet();
+                    }
+                    subscriptions.add(sessionSubscription);
+                    return subscriptions;
+                });
+            }
+        }
+
+        public void remove(SessionSubscription sessionSubscription) {
+            if (sessionSubscription.index == null) {
+                unindexed.remove(sessionSubscription);
+                return;
+            }
+
+            for (String key : sessionSubscription.indexKeys) {
+                sessionSubscription.index.computeIfPresent(key, (k, subscriptions) -> {
+                    subscriptions.remove(sessionSubscription);
+                    return subscriptions.isEmpty() ? null : subscriptions;
+                });
+            }
+        }
+
+        public boolean isEmpty() {
+            return unindexed.isEmpty()
+                && byAssetId.isEmpty()
+                && byParentId.isEmpty()
+                && byPath.isEmpty()
+                && byAttributeName.isEmpty()
+                && byRealm.isEmpty();
+        }
+
+        /**
+         * @return The subscriptions that may match the event, their filter must still be applied.
+         */
+        public Set<SessionSubscription> getCandidates(SharedEvent event) {
+            Set<SessionSubscription> candidates = new HashSet<>(unindexed);
+            String realm = null;
+
+            if (event instanceof AssetInfo) {
+                AssetInfo assetInfo = (AssetInfo) event;
+                addCandidates(candidates, byAssetId, assetInfo.getAssetId());
+                addCandidates(candidates, byParentId, assetInfo.getParentId());
+                addCandidates(candidates, byPath, assetInfo.getPath());
+                addCandidates(candidates, byAttributeName, assetInfo.getAttributeNames());
+                realm = assetInfo.getRealm();
+            } else if (event instanceof TenantScopedEvent) {
+                realm = ((TenantScopedEvent) event).getRealm();
+            }
+
+            addCandidates(candidates, byRealm, realm);
+            return candidates;
+        }
+
+        protected void setIndex(SessionSubscription sessionSubscription, Map<String, Set<SessionSubscription>> index, String... keys) {
+            sessionSubscription.index = index;
+            // Copy the keys so the subscription can always be removed from the index even if the filter is modified
+            sessionSubscription.indexKeys = Arrays.copyOf(keys, keys.length);
+        }
+
+        protected void addCandidates(Set<SessionSubscription> candidates, Map<String, Set<SessionSubscription>> index, String... keys) {
+            if (keys == null || index.isEmpty()) {
+                return;
+            }
+            for (String key : keys) {
+                if (key != null) {
+                    Set<SessionSubscription> subscriptions = index.get(key);
+                    if (subscriptions != null) {
+                        candidates.addAll(subscriptions);
+                    }
+                }
+            }
+        }
     }
 
     public EventSubscriptions(TimerService timerService) {
+        this(timerService, null, null);
+    }
+
+    /**
+     * @param executorService Schedules the delivery of conflated events, conflation is disabled when <code>null</code>.
+     * @param conflatedEventsConsumer Delivers conflated events to the given session.
+     */
+    public EventSubscriptions(TimerService timerService,
+                              ScheduledExecutorService executorService,
+                              BiConsumer<String, TriggeredEventSubscription<?>> conflatedEventsConsumer) {
         LOG.info("Starting background task checking for expired event subscriptions from clients");
         this.timerService = timerService;
+        this.executorService = executorService;
+        this.conflatedEventsConsumer = conflatedEventsConsumer;
     }
 
     public void createOrUpdate(String sessionKey, boolean restrictedUser, EventSubscription<?> subscription) {
@@ -102,7 +321,7 @@ public class EventSubscriptions {
             // TODO Check if the user can actually subscribe to the events it wants, how do we do that?
             LOG.finer("For session '" + sessionKey + "', creating/updating: " + subscription);
             SessionSubscriptions sessionSubscriptions =
-                this.sessionSubscriptionIdMap.computeIfAbsent(sessionKey, k -> new SessionSubscriptions());
+                this.sessionSubscriptionIdMap.computeIfAbsent(sessionKey, SessionSubscriptions::new);
             sessionSubscriptions.createOrUpdate(restrictedUser, subscription);
         }
     }
@@ -139,7 +358,7 @@ public class EventSubscriptions {
         synchronized (this.sessionSubscriptionIdMap) {
             if (this.sessionSubscriptionIdMap.containsKey(sessionKey)) {
                 LOG.finer("Cancelling all subscriptions for session: " + sessionKey);
-                this.sessionSubscriptionIdMap.remove(sessionKey);
+                this.sessionSubscriptionIdMap.remove(sessionKey).cancelAll();
             }
         }
     }
@@ -151,43 +370,65 @@ public class EventSubscriptions {
         if (event == null)
             return messageList;
 
+        EventTypeSubscriptions eventTypeSubscriptions = eventTypeSubscriptionsMap.get(event.getEventType());
+        if (eventTypeSubscriptions == null)
+            return messageList;
+
         boolean accessibleForRestrictedUsers = exchange.getIn().getHeader(ClientEventService.HEADER_ACCESS_RESTRICTED, false, Boolean.class);
+        List<SharedEvent> events = Collections.singletonList(event);
+        // Shared by the messages of all sessions so the event is only serialized once
+        SharedTriggeredEventSubscription.SharedEvents sharedEvents = new SharedTriggeredEventSubscription.SharedEvents(events);
 
-        Set<Map.Entry<String, SessionSubscriptions>> sessionSubscriptionsSet;
-        synchronized (this.sessionSubscriptionIdMap) {
-            sessionSubscriptionsSet = new HashSet<>(sessionSubscriptionIdMap.entrySet());
-        }
-
-        for (Map.Entry<String, SessionSubscriptions> entry : sessionSubscriptionsSet) {
-            String sessionKey = entry.getKey();
-            SessionSubscriptions subscriptions = entry.getValue();
-
-            for (SessionSubscription sessionSubscription : subscriptions) {
-
-                if (!sessionSubscription.matches(accessibleForRestrictedUsers, event))
-                    continue;
-
-                if (sessionSubscription.subscription.getFilter() == null
-                    || sessionSubscription.subscription.getFilter().apply(event)) {
-                    LOG.finer("Creating message for subscribed session '" + sessionKey + "': " + event);
-                    List<SharedEvent> events = Collections.singletonList(event);
-                    TriggeredEventSubscription<?> triggeredEventSubscription = new TriggeredEventSubscription<>(events, sessionSubscription.subscriptionId);
-
-                    if (sessionSubscription.subscription.getInternalConsumer() == null) {
-                        Message msg = new DefaultMessage();
-                        msg.setBody(triggeredEventSubscription); // Don't copy the event, use same reference
-                        msg.setHeaders(new HashMap<>(exchange.getIn().getHeaders())); // Copy headers
-                        msg.setHeader(ConnectionConstants.SESSION_KEY, sessionKey);
-                        messageList.add(msg);
-                    } else {
-                        if (triggeredEventSubscription.getEvents() != null) {
-                            triggeredEventSubscription.getEvents().forEach(ev ->
-                                sessionSubscription.subscription.getInternalConsumer().accept(ev));
-                        }
-                    }
+        for (SessionSubscription sessionSubscription : eventTypeSubscriptions.getCandidates(event)) {
+            String sessionKey = sessionSubscription.sessionKey;
+
+            if (!sessionSubscription.matches(accessibleForRestrictedUsers, event))
+                continue;
+
+            if (sessionSubscription.subscription.getFilter() == null
+                || sessionSubscription.subscription.getFilter().apply(event)) {
+                LOG.finer("Creating message for subscribed session '" + sessionKey + "': " + event);
+                if (sessionSubscription.isConflated(event)) {
+                    sessionSubscription.conflate((AttributeEvent) event);
+                } else if (sessionSubscription.subscription.getInternalConsumer() == null) {
+                    TriggeredEventSubscription<?> triggeredEventSubscription = new SharedTriggeredEventSubscription(sharedEvents, sessionSubscription.subscriptionId);
+                    Message msg = new DefaultMessage();
+                    msg.setBody(triggeredEventSubscription); // Don't copy the event, use same reference
+                    msg.setHeaders(new HashMap<>(exchange.getIn().getHeaders())); // Copy headers
+                    msg.setHeader(ConnectionConstants.SESSION_KEY, sessionKey);
+                    messageList.add(msg);
+                } else {
+                    events.forEach(ev -> sessionSubscription.subscription.getInternalConsumer().accept(ev));
                 }
             }
         }
         return messageList;
     }
+
+    /**
+     * Must be called while holding the {@link #sessionSubscriptionIdMap} lock.
+     */
+    protected void index(SessionSubscription sessionSubscription) {
+        eventTypeSubscriptionsMap
+            .computeIfAbsent(sessionSubscription.subscription.getEventType(), eventType -> new EventTypeSubscriptions())
+            .add(sessionSubscription);
+    }
+
+    /**
+     * Must be called while holding the {@link #sessionSubscriptionIdMap} lock.
+     */
+    protected void unindex(SessionSubscription sessionSubscription) {
+        String eventType = sessionSubscription.subscription.getEventType();
+        EventTypeSubscriptions eventTypeSubscriptions = eventTypeSubscriptionsMap.get(eventType);
+        if (eventTypeSubscriptions != null) {
+            eventTypeSubscriptions.remove(sessionSubscription);
+            if (eventTypeSubscriptions.isEmpty()) {
+                eventTypeSubscriptionsMap.remove(eventType);
+            }
+        }
+    }
+
+    protected static boolean isNullOrEmpty(String[] values) {
+        return values == null || values.length == 0;
+    }
 }
@@ -67,6 +67,10 @@ public class EventTypeConverters implements TypeConverters {
 
     @Converter
     public String writeTriggeredEventSubscription(TriggeredEventSubscription triggeredEventSubscription, Exchange exchange) throws Exception {
+        if (triggeredEventSubscription instanceof SharedTriggeredEventSubscription) {
+            // Events are serialized once for all sessions
+            return TriggeredEventSubscription.MESSAGE_PREFIX + ((SharedTriggeredEventSubscription) triggeredEventSubscription).toJson();
+        }
         return TriggeredEventSubscription.MESSAGE_PREFIX + ValueUtil.JSON.writeValueAsString(triggeredEventSubscription);
     }
 
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openremote.model.event.TriggeredEventSubscription;
+import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.util.ValueUtil;
+
+import java.util.List;
+
+/**
+ * A {@link TriggeredEventSubscription} of one of the sessions that are sent the same events; the events are serialized
+ * once when the first session message is written (see {@link EventTypeConverters}) and the JSON is shared by all
+ * sessions, only the subscription ID envelope is written per session.
+ */
+public class SharedTriggeredEventSubscription extends TriggeredEventSubscription<SharedEvent> {
+
+    /**
+     * The events and their lazily serialized JSON, shared by all sessions.
+     */
+    public static class SharedEvents {
+        protected static final ObjectWriter EVENTS_WRITER = ValueUtil.JSON.writerFor(new TypeReference<List<SharedEvent>>() {});
+        protected final List<SharedEvent> events;
+        protected volatile String eventsJson;
+
+        public SharedEvents(List<SharedEvent> events) {
+            this.events = events;
+        }
+
+        public List<SharedEvent> getEvents() {
+            return events;
+        }
+
+        public String getEventsJson() throws JsonProcessingException {
+            String json = eventsJson;
+            if (json == null) {
+                // Concurrent writers may serialize more than once but always produce the same JSON
+                json = EVENTS_WRITER.writeValueAsString(events);
+                eventsJson = json;
+            }
+            return json;
+        }
+    }
+
+    @JsonIgnore
+    protected final SharedEvents sharedEvents;
+
+    public SharedTriggeredEventSubscription(SharedEvents sharedEvents, String subscriptionId) {
+        super(sharedEvents.getEvents(), subscriptionId);
+        this.sharedEvents = sharedEvents;
+    }
+
+    /**
+     * @return The same JSON as serializing this instance with {@link ValueUtil#JSON}.
+     */
+    public String toJson() throws JsonProcessingException {
+        String eventsJson = sharedEvents.getEventsJson();
+        if (subscriptionId == null) {
+            return "{\"events\":" + eventsJson + "}";
+        }
+        return "{\"events\":" + eventsJson
+            + ",\"subscriptionId\":\"" + new String(JsonStringEncoder.getInstance().quoteAsString(subscriptionId)) + "\"}";
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openremote.container.message.MessageBrokerService;
+import org.openremote.container.web.socket.WebsocketComponent;
+import org.openremote.container.web.socket.WebsocketSessionQueue;
+import org.openremote.model.Container;
+import org.openremote.model.ContainerService;
+import org.openremote.model.system.HealthStatusProvider;
+import org.openremote.model.util.ValueUtil;
+
+public class WebsocketHealthStatusProvider implements HealthStatusProvider, ContainerService {
+
+    public static final String NAME = "websocketSessions";
+    public static final String VERSION = "1.0";
+    protected MessageBrokerService messageBrokerService;
+
+    @Override
+    public int getPriority() {
+        return ContainerService.DEFAULT_PRIORITY;
+    }
+
+    @Override
+    public void init(Container container) throws Exception {
+        messageBrokerService = container.getService(MessageBrokerService.class);
+    }
+
+    @Override
+    public void start(Container container) throws Exception {
+
+    }
+
+    @Override
+    public void stop(Container container) throws Exception {
+
+    }
+
+    @Override
+    public String getHealthStatusName() {
+        return NAME;
+    }
+
+    @Override
+    public String getHealthStatusVersion() {
+        return VERSION;
+    }
+
+    @Override
+    public Object getHealthStatus() {
+        ObjectNode value = ValueUtil.JSON.createObjectNode();
+        WebsocketComponent websocketComponent = messageBrokerService.getContext().getComponent(WebsocketComponent.NAME, WebsocketComponent.class);
+
+        if (websocketComponent == null) {
+            return value;
+        }
+
+        value.put("queueSize", websocketComponent.getSessionQueueSize());
+        value.put("overflowPolicy", websocketComponent.getSessionQueueOverflowPolicy().name());
+
+        // Only aggregates are reported, there can be many sessions
+        int sessionCount = 0;
+        long queued = 0;
+        int highWaterMark = 0;
+        long sent = 0;
+        long failed = 0;
+        long dropped = 0;
+        long coalesced = 0;
+
+        for (WebsocketSessionQueue sessionQueue : websocketComponent.getSessionQueues()) {
+            sessionCount++;
+            queued += sessionQueue.getSize();
+            highWaterMark = Math.max(highWaterMark, sessionQueue.getHighWaterMark());
+            sent += sessionQueue.getSentCount();
+            failed += sessionQueue.getFailedCount();
+            dropped += sessionQueue.getDroppedCount();
+            coalesced += sessionQueue.getCoalescedCount();
+        }
+
+        value.put("sessionCount", sessionCount);
+        value.put("highWaterMark", highWaterMark);
+        value.put("queued", queued);
+        value.put("sent", sent);
+        value.put("failed", failed);
+        value.put("dropped", dropped);
+        value.put("coalesced", coalesced);
+        return value;
+    }
+}
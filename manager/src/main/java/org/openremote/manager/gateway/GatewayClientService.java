@@ -43,6 +43,8 @@ import org.openremote.model.event.shared.EventRequestResponseWrapper;
 import org.openremote.model.event.shared.EventSubscription;
 import org.openremote.model.event.shared.SharedEvent;
 import org.openremote.model.event.shared.TenantFilter;
+import org.openremote.model.gateway.GatewayAttributeEventsEvent;
+import org.openremote.model.gateway.GatewayCapabilitiesEvent;
 import org.openremote.model.gateway.GatewayConnection;
 import org.openremote.model.gateway.GatewayConnectionStatusEvent;
 import org.openremote.model.gateway.GatewayDisconnectEvent;
@@ -52,13 +54,16 @@ import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.ValueUtil;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
 
 /**
@@ -69,6 +74,10 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
     public static final int PRIORITY = ManagerWebService.PRIORITY - 300;
     private static final Logger LOG = SyslogCategory.getLogger(GATEWAY, GatewayClientService.class.getName());
     public static final String CLIENT_EVENT_SESSION_PREFIX = GatewayClientService.class.getSimpleName() + ":";
+    // How long attribute events are collected before they are sent to the central manager as one message (0 disables)
+    public static final String GATEWAY_CLIENT_ATTRIBUTE_EVENT_BATCH_MILLIS = "GATEWAY_CLIENT_ATTRIBUTE_EVENT_BATCH_MILLIS";
+    public static final int GATEWAY_CLIENT_ATTRIBUTE_EVENT_BATCH_MILLIS_DEFAULT = 200;
+    public static final int ATTRIBUTE_EVENT_BATCH_MAX_SIZE = 1000;
     protected AssetStorageService assetStorageService;
     protected AssetProcessingService assetProcessingService;
     protected PersistenceService persistenceService;
@@ -78,6 +87,11 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
     protected ManagerIdentityService identityService;
     protected final Map<String, GatewayConnection> connectionRealmMap = new HashMap<>();
     protected final Map<String, WebsocketIOClient<String>> clientRealmMap = new HashMap<>();
+    // Attribute events waiting to be sent keyed by local realm, only present for connections that accept batches
+    protected final Map<String, List<AttributeEvent>> pendingAttributeEvents = new HashMap<>();
+    // Serialises the sending of events per local realm so batches and single events reach the central manager in order
+    protected final Map<String, Object> realmSendLocks = new ConcurrentHashMap<>();
+    protected int attributeEventBatchMillis;
 
     @Override
     public int getPriority() {
@@ -93,6 +107,7 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         clientEventService = container.getService(ClientEventService.class);
         timerService = container.getService(TimerService.class);
         identityService = container.getService(ManagerIdentityService.class);
+        attributeEventBatchMillis = getInteger(container.getConfig(), GATEWAY_CLIENT_ATTRIBUTE_EVENT_BATCH_MILLIS, GATEWAY_CLIENT_ATTRIBUTE_EVENT_BATCH_MILLIS_DEFAULT);
 
         container.getService(ManagerWebService.class).getApiSingletons().add(
             new GatewayClientResourceImpl(timerService, identityService, this)
@@ -197,13 +212,20 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         LOG.info("Creating gateway IO client: " + connection);
 
         try {
-            WebsocketIOClient<String> client = new WebsocketIOClient<>(
-                new URIBuilder()
-                    .setScheme(connection.isSecured() ? "wss" : "ws")
-                    .setHost(connection.getHost())
-                    .setPort(connection.getPort() == null ? -1 : connection.getPort())
+            URIBuilder uriBuilder = new URIBuilder()
+                .setScheme(connection.isSecured() ? "wss" : "ws")
+                .setHost(connection.getHost())
+                .setPort(connection.getPort() == null ? -1 : connection.getPort())
                 .setPath("websocket/events")
-                .setParameter("Auth-Realm", connection.getRealm()).build(),
+                .setParameter("Auth-Realm", connection.getRealm())
+                .setParameter(GatewayConnector.SYNC_DIGESTS_PARAMETER, "true");
+
+            if (attributeEventBatchMillis > 0) {
+                uriBuilder.setParameter(GatewayConnector.ATTRIBUTE_EVENT_BATCHING_PARAMETER, "true");
+            }
+
+            WebsocketIOClient<String> client = new WebsocketIOClient<>(
+                uriBuilder.build(),
                 null,
                 new OAuthClientCredentialsGrant(
                     new URIBuilder()
@@ -232,15 +254,19 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
                 getClientSessionKey(connection)+"Asset",
                 AssetEvent.class,
                 new AssetFilter<AssetEvent>().setRealm(connection.getLocalRealm()),
-                assetEvent ->
-                    sendCentralManagerMessage(connection.getLocalRealm(), messageToString(SharedEvent.MESSAGE_PREFIX, assetEvent)));
+                assetEvent -> {
+                    // Keep attribute events ordered with respect to asset events
+                    synchronized (getSendLock(connection.getLocalRealm())) {
+                        flushAttributeEvents(connection.getLocalRealm());
+                        sendCentralManagerMessage(connection.getLocalRealm(), messageToString(SharedEvent.MESSAGE_PREFIX, assetEvent));
+                    }
+                });
 
             clientEventService.addInternalSubscription(
                 getClientSessionKey(connection)+"Attribute",
                 AttributeEvent.class,
                 new AssetFilter<AttributeEvent>().setRealm(connection.getLocalRealm()),
-                attributeEvent ->
-                    sendCentralManagerMessage(connection.getLocalRealm(), messageToString(SharedEvent.MESSAGE_PREFIX, attributeEvent)));
+                attributeEvent -> onLocalAttributeEvent(connection.getLocalRealm(), attributeEvent));
 
             client.connect();
             return client;
@@ -270,11 +296,22 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         if (connection != null) {
             clientEventService.cancelInternalSubscription(getClientSessionKey(connection)+"Asset");
             clientEventService.cancelInternalSubscription(getClientSessionKey(connection)+"Attribute");
+            synchronized (pendingAttributeEvents) {
+                pendingAttributeEvents.remove(connection.getLocalRealm());
+            }
         }
     }
 
     protected void onGatewayClientConnectionStatusChanged(GatewayConnection connection, ConnectionStatus connectionStatus) {
         LOG.info("Connection status change for gateway IO client '" + connectionStatus + "': " + connection);
+
+        if (connectionStatus != ConnectionStatus.CONNECTED) {
+            // Batching is only used once the central manager confirms it accepts batches on the new connection
+            synchronized (pendingAttributeEvents) {
+                pendingAttributeEvents.remove(connection.getLocalRealm());
+            }
+        }
+
         clientEventService.publishEvent(new GatewayConnectionStatusEvent(timerService.getCurrentTimeMillis(), connection.getLocalRealm(), connectionStatus));
     }
 
@@ -296,7 +333,14 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         }
 
         if (event != null) {
-            if (event instanceof GatewayDisconnectEvent) {
+            if (event instanceof GatewayCapabilitiesEvent) {
+                if (((GatewayCapabilitiesEvent)event).isAttributeEventBatching() && attributeEventBatchMillis > 0) {
+                    LOG.fine("Central manager accepts attribute event batches: Realm=" + connection.getLocalRealm());
+                    synchronized (pendingAttributeEvents) {
+                        pendingAttributeEvents.putIfAbsent(connection.getLocalRealm(), new ArrayList<>());
+                    }
+                }
+            } else if (event instanceof GatewayDisconnectEvent) {
                 if (((GatewayDisconnectEvent)event).getReason() == GatewayDisconnectEvent.Reason.PERMANENT_ERROR) {
                     LOG.info("Central manager requested disconnect due to permanent error (likely this version of the edge gateway software is not compatible with that manager version)");
                     destroyGatewayClient(connection, clientRealmMap.get(connection.getLocalRealm()));
@@ -350,10 +394,78 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
                             messageId,
                             new AssetsEvent(assets)
                         )));
+            } else if (event instanceof ReadAssetDigestsEvent) {
+                List<AssetDigest> digests = assetStorageService.findDigests(connection.getLocalRealm());
+
+                sendCentralManagerMessage(
+                    connection.getLocalRealm(),
+                    messageToString(
+                        EventRequestResponseWrapper.MESSAGE_PREFIX,
+                        new EventRequestResponseWrapper<>(
+                            messageId,
+                            new AssetDigestsEvent(digests)
+                        )));
+            }
+        }
+    }
+
+    /**
+     * Send the attribute event to the central manager; if the central manager accepts batches then the event is sent
+     * with the other events that occur within {@link #GATEWAY_CLIENT_ATTRIBUTE_EVENT_BATCH_MILLIS}.
+     */
+    protected void onLocalAttributeEvent(String realm, AttributeEvent attributeEvent) {
+        synchronized (getSendLock(realm)) {
+            boolean batched = false;
+            boolean flushNow = false;
+
+            synchronized (pendingAttributeEvents) {
+                List<AttributeEvent> events = pendingAttributeEvents.get(realm);
+
+                if (events != null) {
+                    batched = true;
+                    events.add(attributeEvent);
+                    if (events.size() == 1) {
+                        executorService.schedule(() -> flushAttributeEvents(realm), attributeEventBatchMillis, TimeUnit.MILLISECONDS);
+                    }
+                    flushNow = events.size() >= ATTRIBUTE_EVENT_BATCH_MAX_SIZE;
+                }
+            }
+
+            if (!batched) {
+                sendCentralManagerMessage(realm, messageToString(SharedEvent.MESSAGE_PREFIX, attributeEvent));
+            } else if (flushNow) {
+                flushAttributeEvents(realm);
+            }
+        }
+    }
+
+    /**
+     * Send the pending attribute events of the realm as a single batch; the swap and the send happen under the send
+     * lock of the realm so a later batch or event can't overtake this one. The send lock is only ever taken before
+     * (never whilst holding) the {@link #pendingAttributeEvents} and {@link #clientRealmMap} monitors.
+     */
+    protected void flushAttributeEvents(String realm) {
+        synchronized (getSendLock(realm)) {
+            List<AttributeEvent> events;
+
+            synchronized (pendingAttributeEvents) {
+                events = pendingAttributeEvents.get(realm);
+
+                if (events == null || events.isEmpty()) {
+                    return;
+                }
+
+                pendingAttributeEvents.put(realm, new ArrayList<>());
             }
+
+            sendCentralManagerMessage(realm, messageToString(SharedEvent.MESSAGE_PREFIX, new GatewayAttributeEventsEvent(events)));
         }
     }
 
+    protected Object getSendLock(String realm) {
+        return realmSendLocks.computeIfAbsent(realm, r -> new Object());
+    }
+
     protected void sendCentralManagerMessage(String realm, String message) {
         WebsocketIOClient<String> client;
 
@@ -28,6 +28,7 @@ import org.openremote.model.asset.impl.GatewayAsset;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.event.shared.EventRequestResponseWrapper;
 import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.gateway.GatewayAttributeEventsEvent;
 import org.openremote.model.gateway.GatewayDisconnectEvent;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.syslog.SyslogCategory;
@@ -61,7 +62,12 @@ public class GatewayConnector {
     public static long ASSET_CRUD_TIMEOUT_MILLIS = 10000; // How long to wait for a response when merging an asset before throwing an exception
     public static int MAX_SYNC_RETRIES = 5;
     public static int SYNC_ASSET_BATCH_SIZE = 20;
+    public static int SYNC_DIGEST_ASSET_BATCH_SIZE = 200;
+    public static int SYNC_DIGEST_PIPELINE_DEPTH = 4; // How many batch requests of a digest sync can be outstanding
+    public static final String SYNC_DIGESTS_PARAMETER = "Sync-Digests";
+    public static final String ATTRIBUTE_EVENT_BATCHING_PARAMETER = "Attribute-Event-Batching";
     public static final String ASSET_READ_EVENT_NAME_INITIAL = "INITIAL";
+    public static final String ASSET_READ_EVENT_NAME_DIGESTS = "DIGESTS";
     public static final String ASSET_READ_EVENT_NAME_BATCH = "BATCH";
     protected static final Map<String, Pair<Function<String, String>, Function<String, String>>> ASSET_ID_MAPPERS = new HashMap<>();
     protected final String realm;
@@ -71,15 +77,21 @@ public class GatewayConnector {
     protected final AssetProcessingService assetProcessingService;
     protected final Map<String, Asset<?>> pendingAssetMerges = new HashMap<>();
     protected final AtomicReference<EventRequestResponseWrapper<DeleteAssetsRequestEvent>> pendingAssetDelete = new AtomicReference<>();
+    // Digests of the gateway assets stored locally (keyed by gateway asset ID), kept between connections
+    protected final Map<String, AssetDigest> assetDigests = new HashMap<>();
     protected List<AssetEvent> cachedAssetEvents;
     protected List<AttributeEvent> cachedAttributeEvents;
     protected Consumer<Object> gatewayMessageConsumer;
     protected Runnable disconnectRunnable;
     protected boolean disabled;
     protected boolean initialSyncInProgress;
+    protected boolean digestSyncSupported;
     protected ScheduledFuture<?> syncProcessorFuture;
     List<String> syncAssetIds;
+    List<String> syncRequestAssetIds;
+    Deque<Pair<String, List<String>>> syncPendingBatches;
     int syncIndex;
+    int syncRequestIndex;
     int syncErrors;
     GatewayAsset gateway;
     String expectedSyncResponseName;
@@ -151,12 +163,13 @@ public class GatewayConnector {
     /**
      * Start the connector and initiate synchronisation of assets
      */
-    synchronized public void connect(Consumer<Object> gatewayMessageConsumer, Runnable disconnectRunnable) {
+    synchronized public void connect(Consumer<Object> gatewayMessageConsumer, Runnable disconnectRunnable, boolean digestSyncSupported) {
         if (this.gatewayMessageConsumer != null) {
             return;
         }
         this.gatewayMessageConsumer = gatewayMessageConsumer;
         this.disconnectRunnable = disconnectRunnable;
+        this.digestSyncSupported = digestSyncSupported;
         initialSyncInProgress = true;
 
         LOG.info("Gateway connector starting: Gateway ID=" + gatewayId);
@@ -167,7 +180,10 @@ public class GatewayConnector {
         cachedAssetEvents = new ArrayList<>();
         cachedAttributeEvents = new ArrayList<>();
         syncAssetIds = null;
+        syncRequestAssetIds = null;
+        syncPendingBatches = new ArrayDeque<>();
         syncIndex = 0;
+        syncRequestIndex = 0;
         syncErrors = 0;
 
         startSync();
@@ -245,8 +261,12 @@ public class GatewayConnector {
         if (initialSyncInProgress) {
             if (e instanceof AssetsEvent) {
                 onSyncAssetsResponse(messageId, (AssetsEvent) e);
+            } else if (e instanceof AssetDigestsEvent) {
+                onSyncDigestsResponse(messageId, (AssetDigestsEvent) e);
             } else if (e instanceof AttributeEvent) {
                 cachedAttributeEvents.add((AttributeEvent) e);
+            } else if (e instanceof GatewayAttributeEventsEvent) {
+                cachedAttributeEvents.addAll(((GatewayAttributeEventsEvent) e).getEvents());
             } else if (e instanceof AssetEvent) {
                 cachedAssetEvents.add((AssetEvent) e);
             }
@@ -255,6 +275,8 @@ public class GatewayConnector {
                 onAssetEvent((AssetEvent) e);
             } else if (e instanceof AttributeEvent) {
                 onAttributeEvent((AttributeEvent) e);
+            } else if (e instanceof GatewayAttributeEventsEvent) {
+                onAttributeEvents(((GatewayAttributeEventsEvent) e).getEvents());
             } else if (e instanceof DeleteAssetsResponseEvent) {
                 onAssetDeleteResponseEvent(messageId, (DeleteAssetsResponseEvent) e);
             }
@@ -262,7 +284,8 @@ public class GatewayConnector {
     }
 
     /**
-     * Get list of gateway assets (get basic details and then batch load them to minimise load)
+     * Get list of gateway assets (get basic details and then batch load them to minimise load); if the gateway supports
+     * it then a digest of each asset is requested instead so only assets that have changed are loaded.
      */
     synchronized protected void startSync() {
 
@@ -270,10 +293,17 @@ public class GatewayConnector {
             return;
         }
 
-        expectedSyncResponseName = ASSET_READ_EVENT_NAME_INITIAL;
-        sendMessageToGateway(new EventRequestResponseWrapper<>(
-            ASSET_READ_EVENT_NAME_INITIAL,
-            new ReadAssetsEvent(new AssetQuery().select(selectExcludeAll()).recursive(true))));
+        if (digestSyncSupported) {
+            expectedSyncResponseName = ASSET_READ_EVENT_NAME_DIGESTS;
+            sendMessageToGateway(new EventRequestResponseWrapper<>(
+                ASSET_READ_EVENT_NAME_DIGESTS,
+                new ReadAssetDigestsEvent()));
+        } else {
+            expectedSyncResponseName = ASSET_READ_EVENT_NAME_INITIAL;
+            sendMessageToGateway(new EventRequestResponseWrapper<>(
+                ASSET_READ_EVENT_NAME_INITIAL,
+                new ReadAssetsEvent(new AssetQuery().select(selectExcludeAll()).recursive(true))));
+        }
         syncProcessorFuture = executorService.schedule(this::onSyncAssetsTimeout, SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
     }
 
@@ -312,7 +342,9 @@ public class GatewayConnector {
     }
 
     /**
-     * Request assets in batches of {@link #SYNC_ASSET_BATCH_SIZE} to avoid overloading the gateway
+     * Request assets that haven't been received yet in batches of {@link #SYNC_ASSET_BATCH_SIZE} to avoid overloading
+     * the gateway; a digest sync uses batches of {@link #SYNC_DIGEST_ASSET_BATCH_SIZE} and keeps up to
+     * {@link #SYNC_DIGEST_PIPELINE_DEPTH} batch requests outstanding.
      */
     protected void requestAssets() {
 
@@ -320,22 +352,77 @@ public class GatewayConnector {
             return;
         }
 
-        String[] requestAssetIds = syncAssetIds.stream().skip(syncIndex).limit(SYNC_ASSET_BATCH_SIZE).toArray(String[]::new);
-        expectedSyncResponseName = ASSET_READ_EVENT_NAME_BATCH + syncIndex;
-
-        LOG.fine("Synchronising gateway assets " + syncIndex+1 + "-" + syncIndex + requestAssetIds.length + " of " + syncAssetIds.size());
+        syncPendingBatches.clear();
+        syncRequestIndex = syncIndex;
+        requestNextAssets();
+    }
 
-        sendMessageToGateway(
-            new EventRequestResponseWrapper<>(
-                expectedSyncResponseName,
-                new ReadAssetsEvent(
-                    new AssetQuery()
-                        .select(new AssetQuery.Select().excludeParentInfo(true).excludePath(true))
-                        .ids(requestAssetIds)
+    protected void requestNextAssets() {
+        int batchSize = digestSyncSupported ? SYNC_DIGEST_ASSET_BATCH_SIZE : SYNC_ASSET_BATCH_SIZE;
+        int pipelineDepth = digestSyncSupported ? SYNC_DIGEST_PIPELINE_DEPTH : 1;
+
+        while (syncPendingBatches.size() < pipelineDepth && syncRequestIndex < syncRequestAssetIds.size()) {
+            List<String> requestAssetIds = new ArrayList<>(
+                syncRequestAssetIds.subList(syncRequestIndex, Math.min(syncRequestIndex + batchSize, syncRequestAssetIds.size())));
+            String requestName = ASSET_READ_EVENT_NAME_BATCH + syncRequestIndex;
+
+            LOG.fine("Synchronising gateway assets " + (syncRequestIndex+1) + "-" + (syncRequestIndex + requestAssetIds.size()) + " of " + syncRequestAssetIds.size());
+
+            sendMessageToGateway(
+                new EventRequestResponseWrapper<>(
+                    requestName,
+                    new ReadAssetsEvent(
+                        new AssetQuery()
+                            .select(new AssetQuery.Select().excludeParentInfo(true).excludePath(true))
+                            .ids(requestAssetIds.toArray(new String[0]))
+                    )
                 )
-            )
-        );
-        syncProcessorFuture = executorService.schedule(this::requestAssets, SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            );
+            syncPendingBatches.add(new Pair<>(requestName, requestAssetIds));
+            syncRequestIndex += requestAssetIds.size();
+        }
+
+        // Responses are sent in request order so only the oldest outstanding batch is expected
+        expectedSyncResponseName = syncPendingBatches.isEmpty() ? null : syncPendingBatches.peek().key;
+        syncProcessorFuture = executorService.schedule(this::onSyncAssetsTimeout, SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized protected void onSyncDigestsResponse(String messageId, AssetDigestsEvent e) {
+        if (!isConnected()) {
+            return;
+        }
+
+        if (expectedSyncResponseName == null || !expectedSyncResponseName.equalsIgnoreCase(messageId)) {
+            LOG.info("Unexpected response from gateway so ignoring (expected=" + expectedSyncResponseName + ", actual =" + messageId + "): " + e);
+            return;
+        }
+
+        syncProcessorFuture.cancel(true);
+        syncProcessorFuture = null;
+
+        Map<String, String> gatewayAssetIdParentIdMap = e.getDigests().stream()
+            .collect(LinkedHashMap::new, (m, v) -> m.put(v.getId(), v.getParentId()), LinkedHashMap::putAll);
+        Map<String, AssetDigest> gatewayAssetDigests = e.getDigests().stream()
+            .collect(HashMap::new, (m, v) -> m.put(v.getId(), v), HashMap::putAll);
+
+        syncAssetIds = getHierarchicalOrder(gatewayAssetIdParentIdMap);
+
+        // Only load assets that are missing or have changed since they were stored locally
+        syncRequestAssetIds = syncAssetIds.stream()
+            .filter(id -> {
+                AssetDigest syncedDigest = assetDigests.get(id);
+                return syncedDigest == null || syncedDigest.isChanged(gatewayAssetDigests.get(id));
+            })
+            .collect(Collectors.toList());
+
+        LOG.info("Gateway asset digests received, " + syncRequestAssetIds.size() + " of " + syncAssetIds.size() + " asset(s) to be loaded: Gateway ID=" + gatewayId);
+
+        if (syncRequestAssetIds.isEmpty()) {
+            onSyncAssetsComplete();
+            return;
+        }
+
+        requestAssets();
     }
 
     synchronized protected void onSyncAssetsResponse(String messageId, AssetsEvent e) {
@@ -343,7 +430,7 @@ public class GatewayConnector {
             return;
         }
 
-        if (!expectedSyncResponseName.equalsIgnoreCase(messageId)) {
+        if (expectedSyncResponseName == null || !expectedSyncResponseName.equalsIgnoreCase(messageId)) {
             LOG.info("Unexpected response from gateway so ignoring (expected=" + expectedSyncResponseName + ", actual =" + messageId + "): " + e);
             return;
         }
@@ -356,27 +443,13 @@ public class GatewayConnector {
 
             // Put assets in hierarchical order
             Map<String, String> gatewayAssetIdParentIdMap = e.getAssets().stream()
-                .collect(HashMap::new, (m, v) -> m.put(v.getId(), v.getParentId()), HashMap::putAll);
-
-            ToIntFunction<Asset<?>> assetLevelExtractor = asset -> {
-                int level = 0;
-                String parentId = asset.getParentId();
-                while (parentId != null) {
-                    level++;
-                    parentId = gatewayAssetIdParentIdMap.get(parentId);
-                }
-                return level;
-            };
+                .collect(LinkedHashMap::new, (m, v) -> m.put(v.getId(), v.getParentId()), LinkedHashMap::putAll);
 
-            syncAssetIds = e.getAssets()
-                .stream()
-                .sorted(Comparator.comparingInt(assetLevelExtractor))
-                .map(Asset::getId)
-                .collect(Collectors.toList());
+            syncAssetIds = getHierarchicalOrder(gatewayAssetIdParentIdMap);
+            syncRequestAssetIds = syncAssetIds;
 
             if (syncAssetIds.isEmpty()) {
-                deleteObsoleteLocalAssets();
-                onInitialSyncComplete();
+                onSyncAssetsComplete();
                 return;
             }
 
@@ -384,16 +457,20 @@ public class GatewayConnector {
 
         } else {
 
-            List<String> requestedAssetIds = syncAssetIds.stream().skip(syncIndex).limit(SYNC_ASSET_BATCH_SIZE).collect(Collectors.toList());
+            List<String> requestedAssetIds = syncPendingBatches.poll().value;
             List<Asset<?>> returnedAssets = e.getAssets();
 
             // Remove any assets that have been deleted since requested
             cachedAssetEvents.removeIf(
                 assetEvent -> {
-                    boolean remove = requestedAssetIds.stream().anyMatch(id -> id.equals(assetEvent.getAssetId()) && assetEvent.getCause() == AssetEvent.Cause.DELETE);
+                    boolean remove = requestedAssetIds.contains(assetEvent.getAssetId()) && assetEvent.getCause() == AssetEvent.Cause.DELETE;
                     if (remove) {
                         syncAssetIds.remove(assetEvent.getAssetId());
+                        if (syncRequestAssetIds != syncAssetIds) {
+                            syncRequestAssetIds.remove(assetEvent.getAssetId());
+                        }
                         requestedAssetIds.remove(assetEvent.getAssetId());
+                        syncRequestIndex--;
                     }
                     return remove;
                 });
@@ -407,7 +484,7 @@ public class GatewayConnector {
 
             // Returned asset order may not match request order so re-order
             returnedAssets = returnedAssets.stream()
-                .sorted(Comparator.comparingInt(a -> syncAssetIds.indexOf(a.getId())))
+                .sorted(Comparator.comparingInt(a -> requestedAssetIds.indexOf(a.getId())))
                 .collect(Collectors.toList());
 
             // Merge returned assets ensuring the latest version of each is merged
@@ -426,48 +503,75 @@ public class GatewayConnector {
                 }).forEach(this::saveAssetLocally);
 
 
-            // Request next batch or move on
+            // Request next batch(es) or move on
             syncIndex += requestedAssetIds.size();
-            if (syncIndex >= syncAssetIds.size()) {
+            if (syncIndex >= syncRequestAssetIds.size()) {
                 LOG.info("All requested gateway assets retrieved");
+                onSyncAssetsComplete();
+            } else {
+                requestNextAssets();
+            }
+        }
+    }
 
-                Set<String> refreshAssets = new HashSet<>();
-
-                cachedAssetEvents.forEach(
-                    assetEvent -> {
-                        if (assetEvent.getCause() == AssetEvent.Cause.DELETE) {
-                            syncAssetIds.remove(assetEvent.getAssetId());
-                        } else if (assetEvent.getCause() == AssetEvent.Cause.CREATE) {
-                            syncAssetIds.add(assetEvent.getAssetId());
-                            try {
-                                saveAssetLocally(assetEvent.getAsset());
-                            } catch (Exception ex) {
-                                LOG.log(Level.SEVERE, "Failed to add new gateway asset (Gateway ID=" + gatewayId + ", Asset=" + assetEvent.getAsset(), ex);
-                            }
-                        } else {
-                            refreshAssets.add(assetEvent.getAssetId());
-                        }
+    /**
+     * Apply the asset events received whilst synchronising, remove obsolete local assets and then request any assets
+     * whose attributes have changed whilst synchronising.
+     */
+    protected void onSyncAssetsComplete() {
+        Set<String> refreshAssets = new HashSet<>();
+
+        cachedAssetEvents.forEach(
+            assetEvent -> {
+                if (assetEvent.getCause() == AssetEvent.Cause.DELETE) {
+                    syncAssetIds.remove(assetEvent.getAssetId());
+                } else if (assetEvent.getCause() == AssetEvent.Cause.CREATE) {
+                    syncAssetIds.add(assetEvent.getAssetId());
+                    try {
+                        saveAssetLocally(assetEvent.getAsset());
+                    } catch (Exception ex) {
+                        LOG.log(Level.SEVERE, "Failed to add new gateway asset (Gateway ID=" + gatewayId + ", Asset=" + assetEvent.getAsset(), ex);
                     }
-                );
+                } else {
+                    refreshAssets.add(assetEvent.getAssetId());
+                }
+            }
+        );
+
+        // Refresh attributes that have changed
+        cachedAttributeEvents.forEach(attributeEvent -> {
+            String assetId = attributeEvent.getAssetId();
+            if (!refreshAssets.contains(assetId)) {
+                LOG.info("1 or more gateway asset attribute values have changed so requesting the asset again (Gateway ID=" + gatewayId + ", Asset<?> ID=" + assetId);
+                refreshAssets.add(assetId);
+            }
+        });
 
-                deleteObsoleteLocalAssets();
-                onInitialSyncComplete();
+        deleteObsoleteLocalAssets();
+        onInitialSyncComplete();
 
-                // Refresh attributes that have changed
-                cachedAttributeEvents.forEach(attributeEvent -> {
-                    String assetId = attributeEvent.getAssetId();
-                    if (!refreshAssets.contains(assetId)) {
-                        LOG.info("1 or more gateway asset attribute values have changed so requesting the asset again (Gateway ID=" + gatewayId + ", Asset<?> ID=" + assetId);
-                        refreshAssets.add(assetId);
-                    }
-                });
+        // Refresh assets that have changed
+        refreshAssets.forEach(id -> sendMessageToGateway(new ReadAssetEvent(id)));
+    }
 
-                // Refresh assets that have changed
-                refreshAssets.forEach(id -> sendMessageToGateway(new ReadAssetEvent(id)));
-            } else {
-                requestAssets();
+    /**
+     * @return The asset IDs ordered so that parents come before their children.
+     */
+    protected static List<String> getHierarchicalOrder(Map<String, String> assetIdParentIdMap) {
+        ToIntFunction<String> assetLevelExtractor = assetId -> {
+            int level = 0;
+            String parentId = assetIdParentIdMap.get(assetId);
+            while (parentId != null) {
+                level++;
+                parentId = assetIdParentIdMap.get(parentId);
             }
-        }
+            return level;
+        };
+
+        return assetIdParentIdMap.keySet()
+            .stream()
+            .sorted(Comparator.comparingInt(assetLevelExtractor))
+            .collect(Collectors.toList());
     }
 
     protected void deleteObsoleteLocalAssets() {
@@ -480,9 +584,12 @@ public class GatewayConnector {
                 .parents(gatewayId)
         );
 
+        Set<String> gatewayAssetIds = new HashSet<>(syncAssetIds);
+        assetDigests.keySet().retainAll(gatewayAssetIds);
+
         // Delete obsolete assets
         List<String> obsoleteLocalAssetIds = localAssets.stream()
-            .filter(localAsset -> !syncAssetIds.contains(mapAssetId(gatewayId, localAsset.getId(), true)))
+            .filter(localAsset -> !gatewayAssetIds.contains(mapAssetId(gatewayId, localAsset.getId(), true)))
             .map(Asset::getId).collect(Collectors.toList());
 
         if (!obsoleteLocalAssetIds.isEmpty()) {
@@ -654,6 +761,7 @@ public class GatewayConnector {
                 }
                 break;
             case DELETE:
+                assetDigests.remove(e.getAssetId());
                 try {
                     deleteAssetsLocally(Collections.singletonList(mapAssetId(gatewayId, e.getAssetId(), false)));
                 } catch (Exception ex) {
@@ -665,19 +773,31 @@ public class GatewayConnector {
 
     protected void onAttributeEvent(AttributeEvent e) {
         // Just push the event through the processing chain
-        assetProcessingService.sendAttributeEvent(
-            new AttributeEvent(mapAssetId(gatewayId, e.getAssetId(), false), e.getAttributeName(), e.getValue().orElse(null), e.getTimestamp()),
+        assetProcessingService.sendAttributeEvent(mapAttributeEvent(e), AttributeEvent.Source.GATEWAY);
+    }
+
+    protected void onAttributeEvents(List<AttributeEvent> events) {
+        assetProcessingService.sendAttributeEvents(
+            events.stream().map(this::mapAttributeEvent).collect(Collectors.toList()),
             AttributeEvent.Source.GATEWAY
         );
     }
 
+    protected AttributeEvent mapAttributeEvent(AttributeEvent e) {
+        assetDigests.computeIfPresent(e.getAssetId(), (id, digest) -> digest.withTimestamp(e.getTimestamp()));
+        return new AttributeEvent(mapAssetId(gatewayId, e.getAssetId(), false), e.getAttributeName(), e.getValue().orElse(null), e.getTimestamp());
+    }
+
     protected <T extends Asset<?>> T saveAssetLocally(T asset) {
         String assetId = asset.getId();
+        AssetDigest digest = AssetDigest.fromAsset(asset);
         asset.setId(mapAssetId(gatewayId, assetId, false));
         asset.setParentId(asset.getParentId() != null ? mapAssetId(gatewayId, asset.getParentId(), false) : gatewayId);
         asset.setRealm(realm);
         LOG.fine("Creating/updating gateway asset: Gateway ID=" + gatewayId + ", Asset ID=" + assetId + ", Asset ID Mapped=" + asset.getId());
-        return assetStorageService.merge(asset, true, true, null);
+        T mergedAsset = assetStorageService.merge(asset, true, true, null);
+        assetDigests.put(assetId, digest);
+        return mergedAsset;
     }
 
     protected boolean deleteAssetsLocally(List<String> assetIds) {
@@ -43,6 +43,7 @@ import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeMap;
 import org.openremote.model.attribute.AttributeWriteFailure;
 import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.gateway.GatewayCapabilitiesEvent;
 import org.openremote.model.gateway.GatewayDisconnectEvent;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.rules.Ruleset;
@@ -54,6 +55,7 @@ import org.openremote.model.util.TextUtil;
 import javax.persistence.EntityManager;
 import javax.websocket.Session;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
@@ -87,8 +89,8 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
     protected RulesetStorageService rulesetStorageService;
     protected RulesService rulesService;
     protected ScheduledExecutorService executorService;
-    protected final Map<String, GatewayConnector> gatewayConnectorMap = new HashMap<>();
-    protected final Map<String, String> assetIdGatewayIdMap = new HashMap<>();
+    protected final Map<String, GatewayConnector> gatewayConnectorMap = new ConcurrentHashMap<>();
+    protected final Map<String, String> assetIdGatewayIdMap = new ConcurrentHashMap<>();
     protected boolean active;
     protected List<String> tenantIds = new ArrayList<>();
 
@@ -467,7 +469,19 @@ public class GatewayService extends RouteBuilder implements ContainerService, As
             return;
         }
 
-        connector.connect(createConnectorMessageConsumer(sessionId), () -> clientEventService.closeSession(sessionId));
+        // Gateways announce optional protocol features when connecting, older gateways don't so use the basic protocol
+        if (isRequestParameterEnabled(session, GatewayConnector.ATTRIBUTE_EVENT_BATCHING_PARAMETER)) {
+            clientEventService.sendToSession(sessionId, new GatewayCapabilitiesEvent(true));
+        }
+
+        boolean digestSyncSupported = isRequestParameterEnabled(session, GatewayConnector.SYNC_DIGESTS_PARAMETER);
+        connector.connect(createConnectorMessageConsumer(sessionId), () -> clientEventService.closeSession(sessionId), digestSyncSupported);
+    }
+
+    protected static boolean isRequestParameterEnabled(Session session, String parameter) {
+        return session != null && session.getRequestParameterMap()
+            .getOrDefault(parameter, Collections.emptyList())
+            .contains("true");
     }
 
     protected void processGatewayDisconnected(String gatewayClientId) {
@@ -19,6 +19,8 @@
  */
 package org.openremote.manager.mqtt;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.moquette.BrokerConstants;
 import io.moquette.broker.Server;
 import io.moquette.broker.config.MemoryConfig;
@@ -69,6 +71,9 @@ public class MqttBrokerService implements ContainerService {
     public static final String MQTT_CLIENT_QUEUE = "seda://MqttClientQueue?waitForTaskToComplete=IfReplyExpected&timeout=10000&purgeWhenStopping=true&discardIfNoConsumers=false&size=25000";
     public static final String MQTT_SERVER_LISTEN_HOST = "MQTT_SERVER_LISTEN_HOST";
     public static final String MQTT_SERVER_LISTEN_PORT = "MQTT_SERVER_LISTEN_PORT";
+    // MQTT 3.1.1 has no subscription properties so the conflation window of attribute subscriptions is set here
+    public static final String MQTT_ATTRIBUTE_EVENT_CONFLATION_MILLIS = "MQTT_ATTRIBUTE_EVENT_CONFLATION_MILLIS";
+    public static final int MQTT_ATTRIBUTE_EVENT_CONFLATION_MILLIS_DEFAULT = 0;
 
     public static final String ASSET_TOPIC = "asset";
     public static final String ATTRIBUTE_TOPIC = "attribute";
@@ -84,10 +89,13 @@ public class MqttBrokerService implements ContainerService {
     protected final Set<MQTTCustomHandler> customHandlers = new CopyOnWriteArraySet<>();
     // This is not ideal (it'll keep filling with topics) but Moquette SPI is crappy - no association between Authoriser and Interceptor
     protected final Map<String, MQTTCustomHandler> topicCustomHandlerMap = new ConcurrentHashMap<>();
+    // The same event instance is sent to every subscribed connection so serialize it only once, weak keys use identity
+    protected final Cache<SharedEvent, byte[]> eventPayloadCache = CacheBuilder.newBuilder().weakKeys().maximumSize(1000).build();
 
     protected boolean active;
     protected String host;
     protected int port;
+    protected int attributeEventConflationMillis;
     protected Server mqttBroker;
 
     @Override
@@ -99,6 +107,7 @@ public class MqttBrokerService implements ContainerService {
     public void init(Container container) throws Exception {
         host = getString(container.getConfig(), MQTT_SERVER_LISTEN_HOST, BrokerConstants.HOST);
         port = getInteger(container.getConfig(), MQTT_SERVER_LISTEN_PORT, BrokerConstants.PORT);
+        attributeEventConflationMillis = getInteger(container.getConfig(), MQTT_ATTRIBUTE_EVENT_CONFLATION_MILLIS, MQTT_ATTRIBUTE_EVENT_CONFLATION_MILLIS_DEFAULT);
 
         clientEventService = container.getService(ClientEventService.class);
         ManagerIdentityService identityService = container.getService(ManagerIdentityService.class);
@@ -169,7 +178,9 @@ public class MqttBrokerService implements ContainerService {
 
     public void sendToSession(String sessionId, String topic, Object data, MqttQoS qoS) {
         try {
-            ByteBuf payload = Unpooled.copiedBuffer(ValueUtil.asJSON(data).orElseThrow(() -> new IllegalStateException("Failed to convert payload to JSON string: " + data)), Charset.defaultCharset());
+            ByteBuf payload = Unpooled.wrappedBuffer(data instanceof SharedEvent
+                ? eventPayloadCache.get((SharedEvent) data, () -> toPayload(data))
+                : toPayload(data));
 
             MqttPublishMessage publishMessage = MqttMessageBuilders.publish()
                 .qos(qoS)
@@ -183,6 +194,10 @@ public class MqttBrokerService implements ContainerService {
         }
     }
 
+    protected static byte[] toPayload(Object data) {
+        return ValueUtil.asJSON(data).orElseThrow(() -> new IllegalStateException("Failed to convert payload to JSON string: " + data)).getBytes(Charset.defaultCharset());
+    }
+
     public static boolean isAttributeTopic(List<String> tokens) {
         return tokens.get(2).equals(ATTRIBUTE_TOPIC) || tokens.get(2).equals(ATTRIBUTE_VALUE_TOPIC);
     }
@@ -329,37 +344,20 @@ public class MqttBrokerService implements ContainerService {
             });
     }
     protected Consumer<SharedEvent> getEventConsumer(MqttConnection connection, String topic, boolean isValueSubscription, MqttQoS mqttQoS) {
-        return ev -> {
-            List<String> topicTokens = Arrays.asList(topic.split("/"));
-            int wildCardIndex = Math.max(topicTokens.indexOf(MULTI_LEVEL_WILDCARD), topicTokens.indexOf(SINGLE_LEVEL_WILDCARD));
+        PublishTopicTemplate topicTemplate = new PublishTopicTemplate(topic);
 
+        return ev -> {
             if (ev instanceof AssetEvent) {
                 AssetEvent assetEvent = (AssetEvent) ev;
-                if (wildCardIndex > 0) {
-                    topicTokens.set(wildCardIndex, assetEvent.getAssetId());
-                }
-                sendToSession(connection.getSessionId(), String.join("/", topicTokens), ev, mqttQoS);
+                sendToSession(connection.getSessionId(), topicTemplate.getTopic(assetEvent), ev, mqttQoS);
             }
 
             if (ev instanceof AttributeEvent) {
                 AttributeEvent attributeEvent = (AttributeEvent) ev;
-                if (wildCardIndex > 0) {
-                    if (wildCardIndex == 1) { // attribute/<wildcard>
-                        topicTokens.set(wildCardIndex, attributeEvent.getAssetId());
-                    } else if (wildCardIndex == 2) {
-                        if (topicTokens.size() == 3) { // attribute/assetId/<wildcard>
-                            topicTokens.set(wildCardIndex, attributeEvent.getAttributeName());
-                        } else { // attribute/parentId/<wildcard>/attributeName
-                            topicTokens.set(wildCardIndex, attributeEvent.getAssetId());
-                        }
-                    } else if (wildCardIndex == 3) { //attribute/parentId/assetId/<wildcard>
-                        topicTokens.set(wildCardIndex, attributeEvent.getAttributeName());
-                    }
-                }
                 if(isValueSubscription) {
-                    sendToSession(connection.getSessionId(), String.join("/", topicTokens), attributeEvent.getValue().orElse(null), mqttQoS);
+                    sendToSession(connection.getSessionId(), topicTemplate.getTopic(attributeEvent), attributeEvent.getValue().orElse(null), mqttQoS);
                 } else {
-                    sendToSession(connection.getSessionId(), String.join("/", topicTokens), ev, mqttQoS);
+                    sendToSession(connection.getSessionId(), topicTemplate.getTopic(attributeEvent), ev, mqttQoS);
                 }
             }
         };
@@ -386,4 +384,60 @@ public class MqttBrokerService implements ContainerService {
     protected MQTTCustomHandler getCustomInterceptHandler(String topic) {
         return topicCustomHandlerMap.get(topic);
     }
+
+    /**
+     * The publish topic of a subscription, worked out once when subscribing; the wildcard level of the subscription
+     * topic (if any) is replaced by the asset ID or attribute name of each event.
+     */
+    protected static class PublishTopicTemplate {
+
+        protected static final int TYPE_LEVEL = 2; // realm/clientId/<type>/...
+        protected final String topic;
+        protected final String prefix;
+        protected final String suffix;
+        protected final boolean hasWildcard;
+        protected final boolean attributeWildcardIsAssetId;
+        protected final boolean attributeWildcardIsAttributeName;
+
+        protected PublishTopicTemplate(String topic) {
+            this.topic = topic;
+            List<String> topicTokens = Arrays.asList(topic.split("/"));
+            int wildCardIndex = Math.max(topicTokens.indexOf(MULTI_LEVEL_WILDCARD), topicTokens.indexOf(SINGLE_LEVEL_WILDCARD));
+            hasWildcard = wildCardIndex > 0;
+
+            if (!hasWildcard) {
+                prefix = null;
+                suffix = null;
+                attributeWildcardIsAssetId = false;
+                attributeWildcardIsAttributeName = false;
+                return;
+            }
+
+            prefix = String.join("/", topicTokens.subList(0, wildCardIndex)) + "/";
+            suffix = wildCardIndex < topicTokens.size() - 1
+                ? "/" + String.join("/", topicTokens.subList(wildCardIndex + 1, topicTokens.size()))
+                : "";
+
+            int level = wildCardIndex - TYPE_LEVEL;
+            int levels = topicTokens.size() - TYPE_LEVEL;
+            // attribute/<wildcard> or attribute/parentId/<wildcard>/attributeName
+            attributeWildcardIsAssetId = level == 1 || (level == 2 && levels != 3);
+            // attribute/assetId/<wildcard> or attribute/parentId/assetId/<wildcard>
+            attributeWildcardIsAttributeName = (level == 2 && levels == 3) || level == 3;
+        }
+
+        protected String getTopic(AssetEvent assetEvent) {
+            return hasWildcard ? prefix + assetEvent.getAssetId() + suffix : topic;
+        }
+
+        protected String getTopic(AttributeEvent attributeEvent) {
+            if (attributeWildcardIsAssetId) {
+                return prefix + attributeEvent.getAssetId() + suffix;
+            }
+            if (attributeWildcardIsAttributeName) {
+                return prefix + attributeEvent.getAttributeName() + suffix;
+            }
+            return topic;
+        }
+    }
 }
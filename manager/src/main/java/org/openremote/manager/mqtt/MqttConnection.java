@@ -1,31 +1,58 @@
 package org.openremote.manager.mqtt;
 
+import org.keycloak.adapters.rotation.AdapterTokenVerifier;
+import org.keycloak.common.VerificationException;
+import org.keycloak.representations.AccessToken;
+import org.openremote.container.security.AuthContext;
+import org.openremote.container.security.keycloak.AccessTokenAuthContext;
+import org.openremote.container.web.ConnectionConstants;
+import org.openremote.manager.event.ClientEventService;
 import org.openremote.manager.security.ManagerKeycloakIdentityProvider;
+import org.openremote.model.Constants;
 import org.openremote.model.auth.OAuthClientCredentialsGrant;
 import org.openremote.model.auth.OAuthGrant;
 import org.openremote.model.event.shared.SharedEvent;
 import org.openremote.model.util.TextUtil;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static org.openremote.model.Constants.KEYCLOAK_CLIENT_ID;
+
 /**
  * Handles access token generation and tracks all subscriptions for the connection
  */
 public class MqttConnection {
 
     protected static final Logger LOG = Logger.getLogger(MqttConnection.class.getSimpleName());
+    // Devices publish to a few topics so parsed topics and write authorizations are kept up to this many topics
+    protected static final int TOPIC_CACHE_MAX_SIZE = 100;
+    protected final ManagerKeycloakIdentityProvider identityProvider;
     protected final String realm;
     protected final String username; // This is OAuth clientId
     protected final String password;
     protected final Map<String, Consumer<SharedEvent>> subscriptionHandlerMap = new HashMap<>();
     protected final String sessionId;
+    protected final Map<String, List<String>> topicTokens = new ConcurrentHashMap<>();
+    protected final Set<String> authorizedWriteTopics = ConcurrentHashMap.newKeySet();
     protected Supplier<String> tokenSupplier;
+    // The access token is only verified again when it is refreshed or has expired
+    protected String verifiedTokenString;
+    protected AccessToken verifiedToken;
+    protected AuthContext authContext;
+    protected Map<String, Object> headers;
 
     public MqttConnection(ManagerKeycloakIdentityProvider identityProvider, String sessionId, String realm, String username, String password) {
+        this.identityProvider = identityProvider;
         this.realm = realm;
         this.username = username;
         this.password = password;
@@ -74,6 +101,91 @@ public class MqttConnection {
         return tokenSupplier.get();
     }
 
+    /**
+     * @return The auth context of the current access token, <code>null</code> if there is no valid token. The token is
+     * only verified when it differs from the previously verified token or when that has expired.
+     */
+    public synchronized AuthContext getAuthContext() {
+        String token = getAccessToken();
+
+        if (token == null) {
+            clearAuthContext();
+            return null;
+        }
+
+        if (authContext != null && token.equals(verifiedTokenString) && !verifiedToken.isExpired()) {
+            return authContext;
+        }
+
+        clearAuthContext();
+        try {
+            AccessToken accessToken = AdapterTokenVerifier.verifyToken(token, identityProvider.getKeycloakDeployment(realm, KEYCLOAK_CLIENT_ID));
+            if (accessToken != null) {
+                verifiedTokenString = token;
+                verifiedToken = accessToken;
+                authContext = new AccessTokenAuthContext(realm, accessToken);
+            }
+        } catch (VerificationException e) {
+            LOG.log(Level.FINE, "Couldn't verify token: " + this, e);
+        }
+        return authContext;
+    }
+
+    /**
+     * @return The message headers of events from this connection, the map must not be modified; it is replaced when
+     * the auth context changes.
+     */
+    public synchronized Map<String, Object> getHeaders() {
+        AuthContext authContext = getAuthContext();
+
+        if (headers == null) {
+            Map<String, Object> headers = new HashMap<>();
+            headers.put(ConnectionConstants.SESSION_KEY, sessionId);
+            headers.put(ClientEventService.HEADER_CONNECTION_TYPE, ClientEventService.HEADER_CONNECTION_TYPE_MQTT);
+            if (authContext != null) {
+                headers.put(Constants.AUTH_CONTEXT, authContext);
+            }
+            this.headers = Collections.unmodifiableMap(headers);
+        }
+        return headers;
+    }
+
+    protected void clearAuthContext() {
+        verifiedTokenString = null;
+        verifiedToken = null;
+        authContext = null;
+        headers = null;
+        // Write authorizations were made for the previous auth context
+        authorizedWriteTopics.clear();
+    }
+
+    /**
+     * @return The levels of the topic, parsed topics of this connection are cached.
+     */
+    public List<String> getTopicTokens(String topic) {
+        List<String> tokens = topicTokens.get(topic);
+
+        if (tokens == null) {
+            if (topicTokens.size() >= TOPIC_CACHE_MAX_SIZE) {
+                topicTokens.clear();
+            }
+            tokens = Collections.unmodifiableList(Arrays.asList(topic.split("/", -1)));
+            topicTokens.put(topic, tokens);
+        }
+        return tokens;
+    }
+
+    public boolean isWriteAuthorized(String topic) {
+        return authorizedWriteTopics.contains(topic);
+    }
+
+    public void setWriteAuthorized(String topic) {
+        if (authorizedWriteTopics.size() >= TOPIC_CACHE_MAX_SIZE) {
+            authorizedWriteTopics.clear();
+        }
+        authorizedWriteTopics.add(topic);
+    }
+
     public String getSessionId() {
         return sessionId;
     }
@@ -1,13 +1,8 @@
 package org.openremote.manager.mqtt;
 
 import io.moquette.broker.security.IAuthorizatorPolicy;
-import io.moquette.broker.subscriptions.Token;
 import io.moquette.broker.subscriptions.Topic;
-import org.keycloak.adapters.rotation.AdapterTokenVerifier;
-import org.keycloak.common.VerificationException;
-import org.keycloak.representations.AccessToken;
 import org.openremote.container.security.AuthContext;
-import org.openremote.container.security.keycloak.AccessTokenAuthContext;
 import org.openremote.manager.asset.AssetStorageService;
 import org.openremote.manager.event.ClientEventService;
 import org.openremote.manager.security.ManagerKeycloakIdentityProvider;
@@ -24,13 +19,10 @@ import org.openremote.model.value.RegexValueFilter;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static org.openremote.manager.mqtt.MqttBrokerService.*;
-import static org.openremote.model.Constants.KEYCLOAK_CLIENT_ID;
 import static org.openremote.model.syslog.SyslogCategory.API;
 
 public class ORAuthorizatorPolicy implements IAuthorizatorPolicy {
@@ -71,20 +63,13 @@ public class ORAuthorizatorPolicy implements IAuthorizatorPolicy {
     @SuppressWarnings({"rawtypes", "unchecked"})
     protected boolean verifyRights(Topic topic, String sessionId, String realm, String username, boolean isWrite) {
         MqttConnection connection = brokerService.sessionIdConnectionMap.get(sessionId);
-        AuthContext authContext;
 
         if (connection == null) {
             LOG.warning("No connection found: sessionId=" + sessionId);
             return false;
         }
 
-        try {
-            AccessToken accessToken = AdapterTokenVerifier.verifyToken(connection.getAccessToken(), identityProvider.getKeycloakDeployment(connection.realm, KEYCLOAK_CLIENT_ID));
-            authContext = accessToken != null ? new AccessTokenAuthContext(connection.realm, accessToken) : null;
-        } catch (VerificationException e) {
-            LOG.log(Level.FINE, "Couldn't verify token: " + connection, e);
-            return false;
-        }
+        AuthContext authContext = connection.getAuthContext();
 
         if (authContext == null) {
             LOG.warning("Failed to get auth context for connection: " + connection);
@@ -96,7 +81,14 @@ public class ORAuthorizatorPolicy implements IAuthorizatorPolicy {
             return result;
         }
 
-        List<String> topicTokens = topic.getTokens().stream().map(Token::toString).collect(Collectors.toList());
+        String topicString = topic.toString();
+
+        // Writes to a topic are only fully checked once per auth context of the connection
+        if (isWrite && connection.isWriteAuthorized(topicString)) {
+            return true;
+        }
+
+        List<String> topicTokens = connection.getTopicTokens(topicString);
 
         if(!connection.realm.equals(topicTokens.get(0))) {
             LOG.warning("Topic should start with the realm of the connection: " + connection);
@@ -178,6 +170,7 @@ public class ORAuthorizatorPolicy implements IAuthorizatorPolicy {
             }
 
             // Security of attribute write will be handled by the asset processing service so don't need to do anything here
+            connection.setWriteAuthorized(topicString);
         } else { // read
 
             // Build filter for the topic and verify that the filter is OK for given auth context
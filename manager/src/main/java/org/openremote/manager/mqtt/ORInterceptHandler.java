@@ -20,19 +20,13 @@
 package org.openremote.manager.mqtt;
 
 import com.google.api.client.util.Charsets;
-import io.moquette.broker.subscriptions.Token;
 import io.moquette.broker.subscriptions.Topic;
 import io.moquette.interception.AbstractInterceptHandler;
 import io.moquette.interception.messages.*;
-import org.keycloak.adapters.rotation.AdapterTokenVerifier;
-import org.keycloak.common.VerificationException;
-import org.keycloak.representations.AccessToken;
 import org.openremote.container.message.MessageBrokerService;
-import org.openremote.container.security.keycloak.AccessTokenAuthContext;
 import org.openremote.container.web.ConnectionConstants;
 import org.openremote.manager.event.ClientEventService;
 import org.openremote.manager.security.ManagerKeycloakIdentityProvider;
-import org.openremote.model.Constants;
 import org.openremote.model.asset.AssetEvent;
 import org.openremote.model.asset.AssetFilter;
 import org.openremote.model.attribute.AttributeEvent;
@@ -47,9 +41,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
-import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import static org.openremote.manager.mqtt.MqttBrokerService.*;
 import static org.openremote.model.syslog.SyslogCategory.API;
@@ -98,7 +90,7 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
         MqttConnection connection = new MqttConnection(identityProvider, msg.getClientID(), realm, username, password);
 
         sessionIdConnectionMap.put(connection.getSessionId(), connection);
-        Map<String, Object> headers = prepareHeaders(connection);
+        Map<String, Object> headers = new HashMap<>(connection.getHeaders());
         headers.put(ConnectionConstants.SESSION_OPEN, true);
         messageBrokerService.getProducerTemplate().sendBodyAndHeaders(ClientEventService.CLIENT_EVENT_QUEUE, null, headers);
         LOG.fine("Connected: " + connection);
@@ -112,7 +104,7 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
         MqttConnection connection = sessionIdConnectionMap.remove(msg.getClientID());
 
         if (connection != null) {
-            Map<String, Object> headers = prepareHeaders(connection);
+            Map<String, Object> headers = new HashMap<>(connection.getHeaders());
             headers.put(ConnectionConstants.SESSION_CLOSE, true);
             messageBrokerService.getProducerTemplate().sendBodyAndHeaders(ClientEventService.CLIENT_EVENT_QUEUE, null, headers);
             LOG.fine("Connection closed: " + connection);
@@ -127,7 +119,7 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
         MqttConnection connection = sessionIdConnectionMap.remove(msg.getClientID());
 
         if (connection != null) {
-            Map<String, Object> headers = prepareHeaders(connection);
+            Map<String, Object> headers = new HashMap<>(connection.getHeaders());
             headers.put(ConnectionConstants.SESSION_CLOSE_ERROR, true);
             messageBrokerService.getProducerTemplate().sendBodyAndHeaders(ClientEventService.CLIENT_EVENT_QUEUE, null, headers);
             LOG.fine("Connection lost: " + connection);
@@ -159,7 +151,7 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
             return;
         }
 
-        List<String> topicTokens = topic.getTokens().stream().map(Token::toString).collect(Collectors.toList());
+        List<String> topicTokens = connection.getTopicTokens(msg.getTopicFilter());
         boolean isAttributeTopic = MqttBrokerService.isAttributeTopic(topicTokens);
         boolean isAssetTopic = MqttBrokerService.isAssetTopic(topicTokens);
         boolean isValueSubscription = ATTRIBUTE_VALUE_TOPIC.equals(topicTokens.get(2));
@@ -179,9 +171,13 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
             subscriptionId
         );
 
+        if (!isAssetTopic && brokerService.attributeEventConflationMillis > 0) {
+            subscription.setConflationMillis(brokerService.attributeEventConflationMillis);
+        }
+
         Consumer<SharedEvent> eventConsumer = brokerService.getEventConsumer(connection, subscriptionId, isValueSubscription, msg.getRequestedQos());
         connection.subscriptionHandlerMap.put(subscriptionId, eventConsumer);
-        Map<String, Object> headers = prepareHeaders(connection);
+        Map<String, Object> headers = connection.getHeaders();
         messageBrokerService.getProducerTemplate().sendBodyAndHeaders(ClientEventService.CLIENT_EVENT_QUEUE, subscription, headers);
     }
 
@@ -213,7 +209,7 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
         if (eventConsumer != null) {
             boolean isAssetTopic = subscriptionId.startsWith(ASSET_TOPIC);
 
-            Map<String, Object> headers = prepareHeaders(connection);
+            Map<String, Object> headers = connection.getHeaders();
             Class<SharedEvent> subscriptionClass = (Class) (isAssetTopic ? AssetEvent.class : AttributeEvent.class);
             CancelEventSubscription cancelEventSubscription = new CancelEventSubscription(subscriptionClass, subscriptionId);
             messageBrokerService.getProducerTemplate().sendBodyAndHeaders(ClientEventService.CLIENT_EVENT_QUEUE, cancelEventSubscription, headers);
@@ -232,15 +228,15 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
             return;
         }
 
-        Topic topic = Topic.asTopic(msg.getTopicName());
+        String topic = msg.getTopicName();
 
         MQTTCustomHandler customHandler;
-        if ((customHandler = brokerService.getCustomInterceptHandler(topic.toString())) != null) {
-            customHandler.onPublish(connection, topic, msg);
+        if ((customHandler = brokerService.getCustomInterceptHandler(topic)) != null) {
+            customHandler.onPublish(connection, Topic.asTopic(topic), msg);
             return;
         }
 
-        List<String> topicTokens = topic.getTokens().stream().map(Token::toString).collect(Collectors.toList());
+        List<String> topicTokens = connection.getTopicTokens(topic);
         boolean isValueWrite = topicTokens.get(2).equals(ATTRIBUTE_VALUE_TOPIC);
         String payloadContent = msg.getPayload().toString(StandardCharsets.UTF_8);
         AttributeEvent attributeEvent = null;
@@ -259,24 +255,7 @@ public class ORInterceptHandler extends AbstractInterceptHandler {
             return;
         }
 
-        Map<String, Object> headers = prepareHeaders(connection);
+        Map<String, Object> headers = connection.getHeaders();
         messageBrokerService.getProducerTemplate().sendBodyAndHeaders(ClientEventService.CLIENT_EVENT_QUEUE, attributeEvent, headers);
     }
-
-    protected Map<String, Object> prepareHeaders(MqttConnection connection) {
-        Map<String, Object> headers = new HashMap<>();
-        headers.put(ConnectionConstants.SESSION_KEY, connection.getSessionId());
-        headers.put(ClientEventService.HEADER_CONNECTION_TYPE, ClientEventService.HEADER_CONNECTION_TYPE_MQTT);
-
-        try {
-            String token = connection.getAccessToken();
-            if (token != null) {
-                AccessToken accessToken = AdapterTokenVerifier.verifyToken(token, identityProvider.getKeycloakDeployment(connection.realm, connection.getUsername()));
-                headers.put(Constants.AUTH_CONTEXT, new AccessTokenAuthContext(connection.realm, accessToken));
-            }
-        } catch (VerificationException e) {
-            LOG.log(Level.FINE, "Couldn't verify token", e);
-        }
-        return headers;
-    }
 }
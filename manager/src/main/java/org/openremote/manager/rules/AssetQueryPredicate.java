@@ -83,11 +83,7 @@ public class AssetQueryPredicate implements Predicate<AssetState<?>> {
         }
 
         if (query.types != null && query.types.length > 0) {
-            if (Arrays.stream(query.types).noneMatch(type ->
-                        type.isAssignableFrom(
-                            ValueUtil.getAssetDescriptor(assetState.getAssetType())
-                                .orElse(ThingAsset.DESCRIPTOR).getType()))
-                    ) {
+            if (!isAssetTypeMatch(query.types, assetState.getAssetType())) {
                 return false;
             }
         }
@@ -121,6 +117,15 @@ public class AssetQueryPredicate implements Predicate<AssetState<?>> {
         return true;
     }
 
+    /**
+     * @return <code>true</code> if the asset type (or {@link ThingAsset} when the type is unknown) is one of or a
+     * subtype of the given types.
+     */
+    public static boolean isAssetTypeMatch(Class<?>[] types, String assetType) {
+        Class<?> assetClass = ValueUtil.getAssetDescriptor(assetType).orElse(ThingAsset.DESCRIPTOR).getType();
+        return Arrays.stream(types).anyMatch(type -> type.isAssignableFrom(assetClass));
+    }
+
     public static Predicate<AssetState<?>> asPredicate(ParentPredicate predicate) {
         return assetState ->
             (predicate.id == null || predicate.id.equals(assetState.getParentId()))
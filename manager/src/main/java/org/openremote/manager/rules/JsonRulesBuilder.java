@@ -71,6 +71,10 @@ public class JsonRulesBuilder extends RulesBuilder {
     /**
      * Stores all state for a given {@link RuleCondition} and calculates which {@link AssetState}s match and don't
      * match the condition.
+     * <p>
+     * The attribute predicate result of each unfiltered {@link AssetState} is cached and only the asset states changed
+     * since the last evaluation (see {@link #updateUnfilteredAssetStates}) are re-tested; all asset states are re-tested
+     * after a complete refresh or when the attribute predicates depend on the current time.
      */
     static class RuleConditionState {
 
@@ -86,6 +90,12 @@ public class JsonRulesBuilder extends RulesBuilder {
         Set<AssetState<?>> previouslyUnmatchedAssetStates;
         Predicate<Long> timePredicate;
         RuleConditionEvaluationResult lastEvaluationResult;
+        AssetQueryPredicate assetQueryPredicate;
+        Set<AssetState<?>> predicateMatchedAssetStates = new HashSet<>();
+        Set<AssetState<?>> predicateUnmatchedAssetStates = new HashSet<>();
+        Set<AssetState<?>> changedAssetStates = new HashSet<>();
+        boolean evaluateAll = true;
+        boolean timeDependent;
 
         public RuleConditionState(RuleCondition ruleCondition, boolean trackUnmatched, TimerService timerService) throws Exception {
             this.timerService = timerService;
@@ -143,7 +153,11 @@ public class JsonRulesBuilder extends RulesBuilder {
                     // Only supports a single level or logic group for attributes (i.e. cannot nest groups in the UI so
                     // don't support it here either)
                     attributePredicates.groups = null;
-                    assetStatePredicate = AssetQueryPredicate.asPredicate(timerService::getCurrentTimeMillis, attributePredicates);
+                    // Results of predicates that use the current time can change without an asset state change
+                    assetStatePredicate = AssetQueryPredicate.asPredicate(() -> {
+                        timeDependent = true;
+                        return timerService.getCurrentTimeMillis();
+                    }, attributePredicates);
                 }
                 ruleCondition.assets.orderBy = null;
                 ruleCondition.assets.limit = 0;
@@ -160,20 +174,33 @@ public class JsonRulesBuilder extends RulesBuilder {
                 // Clear last trigger to ensure update runs again
                 lastEvaluationResult = null;
 
-                if (event == null || event.cause == PersistenceEvent.Cause.CREATE) {
+                if (event == null || assetQueryPredicate == null) {
                     // Do a complete refresh of unfiltered asset states based on the asset query (without attribute predicates)
                     unfilteredAssetStates = facts.matchAssetState(ruleCondition.assets).collect(Collectors.toSet());
+                    assetQueryPredicate = new AssetQueryPredicate(facts.timerService, facts.assetStorageService, ruleCondition.assets);
+                    evaluateAll = true;
                 } else {
-                    // Replace or remove asset state as required
+                    // Insert, replace or remove asset state as required
                     switch (event.cause) {
+                        case CREATE:
+                            // Only insert if it matches the asset query (without attribute predicates)
+                            if (assetQueryPredicate.test(event.assetState)) {
+                                unfilteredAssetStates.remove(event.assetState);
+                                unfilteredAssetStates.add(event.assetState);
+                                markChanged(event.assetState);
+                            }
+                            break;
                         case UPDATE:
                             // Only insert if fact was already in there (i.e. it matches the asset type constraints)
                             if (unfilteredAssetStates.remove(event.assetState)) {
                                 unfilteredAssetStates.add(event.assetState);
+                                markChanged(event.assetState);
                             }
                             break;
                         case DELETE:
-                            unfilteredAssetStates.remove(event.assetState);
+                            if (unfilteredAssetStates.remove(event.assetState)) {
+                                markChanged(event.assetState);
+                            }
                             break;
                     }
                 }
@@ -205,6 +232,9 @@ public class JsonRulesBuilder extends RulesBuilder {
 
             if (unfilteredAssetStates.isEmpty()) {
                 // Maybe assets have been deleted so remove any previous match data
+                predicateMatchedAssetStates.clear();
+                predicateUnmatchedAssetStates.clear();
+                changedAssetStates.clear();
                 previouslyMatchedAssetStates.clear();
                 if (trackUnmatched) {
                     previouslyUnmatchedAssetStates.clear();
@@ -219,41 +249,18 @@ public class JsonRulesBuilder extends RulesBuilder {
             Collection<String> unmatchedAssetIds = Collections.emptyList();
 
             if (attributePredicates == null) {
+                changedAssetStates.clear();
                 matchedAssetStates = new ArrayList<>(unfilteredAssetStates);
             } else {
 
-                Map<Boolean, List<AssetState<?>>> results;
-                boolean isAndGroup = attributePredicates.operator == null || attributePredicates.operator == LogicGroup.Operator.AND;
-
-                if (isAndGroup) {
-
-                    // ANDs need to be applied in the context of an entire asset as don't make any sense otherwise
-                    results = new HashMap<>();
-                    ArrayList<AssetState<?>> matched = new ArrayList<>();
-                    ArrayList<AssetState<?>> unmatched = new ArrayList<>();
-                    results.put(true, matched);
-                    results.put(false, unmatched);
-
-                    unfilteredAssetStates.stream().collect(Collectors.groupingBy(AssetState::getId)).forEach((id, states) -> {
-
-                        Map<Boolean, List<AssetState<?>>> assetResults = states.stream().collect(Collectors.groupingBy(assetStatePredicate::test));
-                        matched.addAll(assetResults.getOrDefault(true, Collections.emptyList()));
-                        unmatched.addAll(assetResults.getOrDefault(false, Collections.emptyList()));
-                    });
-
-                } else {
-
-                    results = unfilteredAssetStates.stream().collect(Collectors.groupingBy(assetStatePredicate::test));
-
-                }
-
-                matchedAssetStates = results.getOrDefault(true, Collections.emptyList());
-                unmatchedAssetStates = results.getOrDefault(false, Collections.emptyList());
+                updateAssetStateResults();
+                matchedAssetStates = new ArrayList<>(predicateMatchedAssetStates);
+                unmatchedAssetStates = new ArrayList<>(predicateUnmatchedAssetStates);
 
                 if (trackUnmatched) {
 
                     // Clear out previous unmatched that now match
-                    previouslyUnmatchedAssetStates.removeIf(matchedAssetStates::contains);
+                    previouslyUnmatchedAssetStates.removeIf(predicateMatchedAssetStates::contains);
 
                     // Filter out previous un-matches to avoid re-triggering
                     unmatchedAssetStates.removeIf(previouslyUnmatchedAssetStates::contains);
@@ -262,11 +269,12 @@ public class JsonRulesBuilder extends RulesBuilder {
             }
 
             // Remove previous matches where the asset state no longer matches
+            Map<AssetState<?>, AssetState<?>> matchedAssetStateMap = new HashMap<>(matchedAssetStates.size());
+            matchedAssetStates.forEach(matchedAssetState -> matchedAssetStateMap.put(matchedAssetState, matchedAssetState));
+
             previouslyMatchedAssetStates.removeIf(previousAssetState -> {
 
-                Optional<AssetState<?>> matched = matchedAssetStates.stream()
-                    .filter(matchedAssetState -> Objects.equals(previousAssetState, matchedAssetState))
-                    .findFirst();
+                Optional<AssetState<?>> matched = Optional.ofNullable(matchedAssetStateMap.get(previousAssetState));
 
                 boolean noLongerMatches = !matched.isPresent();
 
@@ -320,6 +328,53 @@ public class JsonRulesBuilder extends RulesBuilder {
             log(Level.FINEST, "Rule evaluation result: " + lastEvaluationResult);
         }
 
+        protected void markChanged(AssetState<?> assetState) {
+            // Keep the latest asset state instance
+            changedAssetStates.remove(assetState);
+            changedAssetStates.add(assetState);
+        }
+
+        /**
+         * Re-test the attribute predicates against the asset states that changed since the last evaluation, or against
+         * all unfiltered asset states if a complete evaluation is required.
+         */
+        void updateAssetStateResults() {
+            if (evaluateAll || timeDependent) {
+                evaluateAll = false;
+                predicateMatchedAssetStates.clear();
+                predicateUnmatchedAssetStates.clear();
+                changedAssetStates.clear();
+                unfilteredAssetStates.forEach(this::testAssetState);
+                return;
+            }
+
+            if (changedAssetStates.isEmpty()) {
+                return;
+            }
+
+            log(Level.FINEST, "Rule condition re-testing changed asset states: " + changedAssetStates.size());
+
+            changedAssetStates.forEach(changedAssetState -> {
+                // Remove stale results, the sets contain an older asset state instance that is equal
+                predicateMatchedAssetStates.remove(changedAssetState);
+                predicateUnmatchedAssetStates.remove(changedAssetState);
+
+                // Changed asset state may have been deleted
+                if (unfilteredAssetStates.contains(changedAssetState)) {
+                    testAssetState(changedAssetState);
+                }
+            });
+            changedAssetStates.clear();
+        }
+
+        protected void testAssetState(AssetState<?> assetState) {
+            if (assetStatePredicate.test(assetState)) {
+                predicateMatchedAssetStates.add(assetState);
+            } else {
+                predicateUnmatchedAssetStates.add(assetState);
+            }
+        }
+
         Collection<String> getMatchedAssetIds() {
 
             if (lastEvaluationResult == null) {
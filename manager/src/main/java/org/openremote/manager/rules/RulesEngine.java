@@ -21,6 +21,7 @@ package org.openremote.manager.rules;
 
 import org.jeasy.rules.api.RulesEngineParameters;
 import org.jeasy.rules.core.InferenceRulesEngine;
+import org.openremote.container.concurrent.GlobalLock;
 import org.openremote.container.persistence.PersistenceEvent;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetProcessingService;
@@ -39,9 +40,11 @@ import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.TextUtil;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -116,11 +119,25 @@ public class RulesEngine<T extends Ruleset> {
     final protected Map<Long, RulesetDeployment> deployments = new LinkedHashMap<>();
     final protected RulesFacts facts;
     final protected InferenceRulesEngine engine;
-
-    protected boolean running;
+    // Guards the facts and deployments so engines can fire concurrently
+    final protected RulesEngineLock lock;
+    // Fact changes that arrived whilst the engine was busy, they are applied before the next firing
+    final protected Queue<Runnable> pendingFactChanges = new ConcurrentLinkedQueue<>();
+    final protected AtomicInteger pendingFactChangeCount = new AtomicInteger();
+    // Guards the fire timer and firing statistics
+    final protected Object fireLock = new Object();
+
+    protected volatile boolean running;
     protected long lastFireTimestamp;
     protected boolean trackLocationPredicates;
     protected ScheduledFuture<?> fireTimer;
+    protected long fireRequestedTimestamp;
+    protected int fireRequestCount;
+    protected long fireCount;
+    protected long lastFireDurationMillis;
+    protected long totalFireDurationMillis;
+    protected long lastFireLatencyMillis;
+    protected long maxFireLatencyMillis;
     protected ScheduledFuture<?> statsTimer;
     protected Map<Long, ScheduledFuture<?>> pauseTimers = new HashMap<>();
     protected Map<Long, ScheduledFuture<?>> unpauseTimers = new HashMap<>();
@@ -147,6 +164,7 @@ public class RulesEngine<T extends Ruleset> {
         this.assetStorageService = assetStorageService;
         this.clientEventService = clientEventService;
         this.id = id;
+        this.lock = new RulesEngineLock(getClass().getSimpleName() + id);
         AssetsFacade<T> assetsFacade = new AssetsFacade<>(id, assetStorageService, assetProcessingService::sendAttributeEvent);
         this.assetsFacade = assetsFacade;
         this.usersFacade = new UsersFacade<>(id, assetStorageService, notificationService, identityService);
@@ -171,14 +189,20 @@ public class RulesEngine<T extends Ruleset> {
      * @return a shallow copy of the asset state facts.
      */
     public Set<AssetState<?>> getAssetStates() {
-        return new HashSet<>(facts.getAssetStates());
+        return lock.withLockReturning(toString() + "::getAssetStates", () -> {
+            applyPendingFactChanges();
+            return new HashSet<>(facts.getAssetStates());
+        });
     }
 
     /**
      * @return a shallow copy of the asset event facts.
      */
     public List<TemporaryFact<AssetState<?>>> getAssetEvents() {
-        return new ArrayList<>(facts.getAssetEvents());
+        return lock.withLockReturning(toString() + "::getAssetEvents", () -> {
+            applyPendingFactChanges();
+            return new ArrayList<>(facts.getAssetEvents());
+        });
     }
 
     public boolean isRunning() {
@@ -225,118 +249,126 @@ public class RulesEngine<T extends Ruleset> {
     }
 
     public void addRuleset(T ruleset) {
+        lock.withLock(toString() + "::addRuleset", () -> {
 
-        // Check for previous version of this ruleset
-        RulesetDeployment deployment = deployments.get(ruleset.getId());
-        boolean wasRunning = this.running;
+            // Check for previous version of this ruleset
+            RulesetDeployment previousDeployment = deployments.get(ruleset.getId());
+            boolean wasRunning = this.running;
 
-        stop();
+            stop();
 
-        if (deployment != null) {
-            removeRuleset(deployment.ruleset);
-        }
+            if (previousDeployment != null) {
+                removeRuleset(previousDeployment.ruleset);
+            }
 
-        deployment = new RulesetDeployment(ruleset, timerService, assetStorageService, executorService, assetsFacade, usersFacade, notificationFacade, historicFacade, predictedFacade);
-        boolean compiled;
+            RulesetDeployment deployment = new RulesetDeployment(ruleset, timerService, assetStorageService, executorService, lock, assetsFacade, usersFacade, notificationFacade, historicFacade, predictedFacade);
+            boolean compiled;
 
-        if (TextUtil.isNullOrEmpty(ruleset.getRules())) {
-            LOG.finest("Ruleset is empty so no rules to deploy: " + ruleset.getName());
-            deployment.setStatus(EMPTY);
-            publishRulesetStatus(deployment);
-        } else if (!ruleset.isEnabled()) {
-            LOG.finest("Ruleset is disabled: " + ruleset.getName());
-            deployment.setStatus(DISABLED);
-            publishRulesetStatus(deployment);
-        } else {
-            deployment.updateValidity();
-            if (deployment.hasExpired()) {
-                LOG.fine("Ruleset validity period has expired: " + ruleset.getName());
-                deployment.setStatus(EXPIRED);
+            if (TextUtil.isNullOrEmpty(ruleset.getRules())) {
+                LOG.finest("Ruleset is empty so no rules to deploy: " + ruleset.getName());
+                deployment.setStatus(EMPTY);
+                publishRulesetStatus(deployment);
+            } else if (!ruleset.isEnabled()) {
+                LOG.finest("Ruleset is disabled: " + ruleset.getName());
+                deployment.setStatus(DISABLED);
                 publishRulesetStatus(deployment);
-                compiled = true;
             } else {
-                compiled = deployment.compile();
-            }
+                deployment.updateValidity();
+                if (deployment.hasExpired()) {
+                    LOG.fine("Ruleset validity period has expired: " + ruleset.getName());
+                    deployment.setStatus(EXPIRED);
+                    publishRulesetStatus(deployment);
+                    compiled = true;
+                } else {
+                    compiled = deployment.compile();
+                }
 
-            if (!compiled) {
-                LOG.log(Level.SEVERE, "Ruleset compilation error: " + ruleset.getName(), deployment.getError());
-                deployment.setStatus(COMPILATION_ERROR);
-                publishRulesetStatus(deployment);
-            } else if (running) {
-                startRuleset(deployment);
+                if (!compiled) {
+                    LOG.log(Level.SEVERE, "Ruleset compilation error: " + ruleset.getName(), deployment.getError());
+                    deployment.setStatus(COMPILATION_ERROR);
+                    publishRulesetStatus(deployment);
+                } else if (running) {
+                    startRuleset(deployment);
+                }
             }
-        }
 
-        deployments.put(ruleset.getId(), deployment);
-        updateDeploymentInfo();
+            deployments.put(ruleset.getId(), deployment);
+            updateDeploymentInfo();
 
-        if (wasRunning) {
-            start();
-        }
+            if (wasRunning) {
+                start();
+            }
+        });
     }
 
     /**
      * @return <code>true</code> if this rules engine has no deployments.
      */
     public boolean removeRuleset(Ruleset ruleset) {
-        RulesetDeployment deployment = deployments.get(ruleset.getId());
+        return lock.withLockReturning(toString() + "::removeRuleset", () -> {
+            RulesetDeployment deployment = deployments.get(ruleset.getId());
 
-        if (deployment == null) {
-            LOG.finer("Ruleset cannot be retracted as it was never deployed: " + ruleset);
-            return deployments.size() == 0;
-        }
+            if (deployment == null) {
+                LOG.finer("Ruleset cannot be retracted as it was never deployed: " + ruleset);
+                return deployments.size() == 0;
+            }
 
-        stopRuleset(deployment);
+            stopRuleset(deployment);
 
-        deployment.setStatus(REMOVED);
-        publishRulesetStatus(deployment);
-        deployments.remove(ruleset.getId());
+            deployment.setStatus(REMOVED);
+            publishRulesetStatus(deployment);
+            deployments.remove(ruleset.getId());
 
-        ScheduledFuture<?> timer = pauseTimers.remove(ruleset.getId());
-        if (timer != null) timer.cancel(true);
-        timer = unpauseTimers.remove(ruleset.getId());
-        if (timer != null) timer.cancel(true);
+            ScheduledFuture<?> timer = pauseTimers.remove(ruleset.getId());
+            if (timer != null) timer.cancel(true);
+            timer = unpauseTimers.remove(ruleset.getId());
+            if (timer != null) timer.cancel(true);
 
-        updateDeploymentInfo();
-        start();
+            updateDeploymentInfo();
+            start();
 
-        return deployments.size() == 0;
+            return deployments.size() == 0;
+        });
     }
 
     public void start() {
-        if (running) {
-            return;
-        }
+        lock.withLock(toString() + "::start", () -> {
+            applyPendingFactChanges();
 
-        if (deployments.size() == 0) {
-            LOG.finest("No rulesets so nothing to start");
-            return;
-        }
+            if (running) {
+                return;
+            }
 
-        if (!canStart()) {
-            LOG.fine("Cannot start rules engine one or more rulesets in an error state");
-            return;
-        }
+            if (deployments.size() == 0) {
+                LOG.finest("No rulesets so nothing to start");
+                return;
+            }
 
-        LOG.info("Starting: " + this);
-        running = true;
-        trackLocationPredicates(true);
+            if (!canStart()) {
+                LOG.fine("Cannot start rules engine one or more rulesets in an error state");
+                return;
+            }
 
-        deployments.values().forEach(this::startRuleset);
+            LOG.info("Starting: " + this);
+            running = true;
+            trackLocationPredicates(true);
 
-        updateDeploymentInfo();
-        publishRulesEngineStatus();
-        scheduleFire();
+            deployments.values().forEach(this::startRuleset);
 
-        // Start a background stats printer if INFO level logging is enabled
-        if (STATS_LOG.isLoggable(Level.INFO) || STATS_LOG.isLoggable(Level.FINEST)) {
-            if (STATS_LOG.isLoggable(Level.FINEST)) {
-                LOG.info("On " + this + ", enabling periodic statistics output at INFO level every 30 seconds on category: " + STATS_LOG.getName());
-            } else {
-                LOG.info("On " + this + ", enabling periodic full memory dump at FINEST level every 30 seconds on category: " + STATS_LOG.getName());
+            updateDeploymentInfo();
+            publishRulesEngineStatus();
+            scheduleFire();
+
+            // Start a background stats printer if INFO level logging is enabled
+            if (STATS_LOG.isLoggable(Level.INFO) || STATS_LOG.isLoggable(Level.FINEST)) {
+                if (STATS_LOG.isLoggable(Level.FINEST)) {
+                    LOG.info("On " + this + ", enabling periodic statistics output at INFO level every 30 seconds on category: " + STATS_LOG.getName());
+                } else {
+                    LOG.info("On " + this + ", enabling periodic full memory dump at FINEST level every 30 seconds on category: " + STATS_LOG.getName());
+                }
+                statsTimer = executorService.scheduleAtFixedRate(this::printSessionStats, 3, 30, TimeUnit.SECONDS);
             }
-            statsTimer = executorService.scheduleAtFixedRate(this::printSessionStats, 3, 30, TimeUnit.SECONDS);
-        }
+        });
     }
 
     protected void trackLocationPredicates(boolean track) {
@@ -359,32 +391,38 @@ public class RulesEngine<T extends Ruleset> {
     }
 
     public void stop(boolean systemShutdownInProgress) {
-        if (!running) {
-            return;
-        }
-        LOG.info("Stopping: " + this);
-        if (fireTimer != null) {
-            fireTimer.cancel(true);
-            fireTimer = null;
-        }
-        if (statsTimer != null) {
-            statsTimer.cancel(true);
-            statsTimer = null;
-        }
-        pauseTimers.values().forEach(pauseTimer -> pauseTimer.cancel(true));
-        pauseTimers.clear();
-        unpauseTimers.values().forEach(unpauseTimer -> unpauseTimer.cancel(true));
-        unpauseTimers.clear();
+        lock.withLock(toString() + "::stop", () -> {
+            if (!running) {
+                return;
+            }
+            LOG.info("Stopping: " + this);
+            synchronized (fireLock) {
+                if (fireTimer != null) {
+                    fireTimer.cancel(true);
+                    fireTimer = null;
+                }
+                fireRequestedTimestamp = 0;
+                fireRequestCount = 0;
+            }
+            if (statsTimer != null) {
+                statsTimer.cancel(true);
+                statsTimer = null;
+            }
+            pauseTimers.values().forEach(pauseTimer -> pauseTimer.cancel(true));
+            pauseTimers.clear();
+            unpauseTimers.values().forEach(unpauseTimer -> unpauseTimer.cancel(true));
+            unpauseTimers.clear();
 
-        deployments.values().forEach(this::stopRuleset);
-        running = false;
+            deployments.values().forEach(this::stopRuleset);
+            running = false;
 
-        if (!systemShutdownInProgress && assetLocationPredicatesConsumer != null) {
-            assetLocationPredicatesConsumer.accept(this, null);
-        }
+            if (!systemShutdownInProgress) {
+                processLocationRules(null);
+            }
 
-        updateDeploymentInfo();
-        publishRulesEngineStatus();
+            updateDeploymentInfo();
+            publishRulesEngineStatus();
+        });
     }
 
     protected void startRuleset(RulesetDeployment deployment) {
@@ -431,38 +469,70 @@ public class RulesEngine<T extends Ruleset> {
     }
 
     public void scheduleFire() {
-        withLock(toString() + "::scheduleFire", () -> {
+        synchronized (fireLock) {
+            fireRequestCount++;
+
             // Schedule a firing within the guaranteed expiration time (so not immediately), and
             // only if the last firing is done. This effectively limits how often the rules engine
             // will fire, only once within the guaranteed minimum expiration time.
             if (fireTimer == null || fireTimer.isDone()) {
                 LOG.fine("Scheduling rules firing on: " + this);
+                if (fireRequestedTimestamp == 0) {
+                    fireRequestedTimestamp = System.currentTimeMillis();
+                }
                 fireTimer = executorService.schedule(
-                    () -> withLock(RulesEngine.this.toString() + "::fire", () -> {
+                    this::fire,
+                    TemporaryFact.GUARANTEED_MIN_EXPIRATION_MILLIS,
+                    TimeUnit.MILLISECONDS
+                );
+            }
+        }
+    }
 
-                        fireTimer = null;
+    protected void fire() {
+        lock.withLock(toString() + "::fire", () -> {
 
-                        // Are temporary facts present before rules are fired?
-                        boolean hadTemporaryFactsBefore = facts.hasTemporaryFacts();
+            long requestedTimestamp;
 
-                        // Process rules for all deployments
-                        fireAllDeployments();
+            synchronized (fireLock) {
+                fireTimer = null;
+                requestedTimestamp = fireRequestedTimestamp;
+                fireRequestedTimestamp = 0;
+                fireRequestCount = 0;
+            }
 
-                        // If there are temporary facts, or if there were some before and
-                        // now they are gone, schedule a new firing to guarantee processing
-                        // of expired and removed temporary facts
-                        if ((facts.hasTemporaryFacts() || (hadTemporaryFactsBefore && !facts.hasTemporaryFacts()))
-                            && !disableTemporaryFactExpiration) {
-                            LOG.fine("Temporary facts require firing rules on: " + this);
-                            executorService.submit(this::scheduleFire);
-                        } else if (!disableTemporaryFactExpiration) {
-                            LOG.fine("No temporary facts present/changed when firing rules on: " + this);
-                        }
+            long startTimestamp = System.currentTimeMillis();
 
-                    }),
-                    TemporaryFact.GUARANTEED_MIN_EXPIRATION_MILLIS,
-                    TimeUnit.MILLISECONDS
-                );
+            // Apply fact changes that arrived whilst the engine was busy
+            applyPendingFactChanges();
+
+            // Are temporary facts present before rules are fired?
+            boolean hadTemporaryFactsBefore = facts.hasTemporaryFacts();
+
+            // Process rules for all deployments
+            fireAllDeployments();
+
+            // If there are temporary facts, or if there were some before and
+            // now they are gone, schedule a new firing to guarantee processing
+            // of expired and removed temporary facts
+            if ((facts.hasTemporaryFacts() || (hadTemporaryFactsBefore && !facts.hasTemporaryFacts()))
+                && !disableTemporaryFactExpiration) {
+                LOG.fine("Temporary facts require firing rules on: " + this);
+                executorService.submit(this::scheduleFire);
+            } else if (!disableTemporaryFactExpiration) {
+                LOG.fine("No temporary facts present/changed when firing rules on: " + this);
+            }
+
+            long endTimestamp = System.currentTimeMillis();
+
+            synchronized (fireLock) {
+                fireCount++;
+                lastFireDurationMillis = endTimestamp - startTimestamp;
+                totalFireDurationMillis += lastFireDurationMillis;
+                if (requestedTimestamp > 0) {
+                    lastFireLatencyMillis = endTimestamp - requestedTimestamp;
+                    maxFireLatencyMillis = Math.max(maxFireLatencyMillis, lastFireLatencyMillis);
+                }
             }
         });
     }
@@ -531,7 +601,10 @@ public class RulesEngine<T extends Ruleset> {
     }
 
     protected void fireAllDeploymentsWithPredictedData() {
-        fireDeployments(deployments.values().stream().filter(RulesetDeployment::isTriggerOnPredictedData).collect(Collectors.toList()));
+        lock.withLock(toString() + "::fireAllDeploymentsWithPredictedData", () -> {
+            applyPendingFactChanges();
+            fireDeployments(deployments.values().stream().filter(RulesetDeployment::isTriggerOnPredictedData).collect(Collectors.toList()));
+        });
     }
 
     protected void notifyAssetStatesChanged(AssetStateChangeEvent event) {
@@ -543,32 +616,53 @@ public class RulesEngine<T extends Ruleset> {
     }
 
     public void updateOrInsertAssetState(AssetState<?> assetState, boolean insert) {
-        facts.putAssetState(assetState);
-        // Make sure location predicate tracking is activated before notifying the deployments otherwise they won't report location predicates
-        trackLocationPredicates(trackLocationPredicates || (insert && assetState.getName().equals(Asset.LOCATION.getName())));
-        notifyAssetStatesChanged(new AssetStateChangeEvent(insert ? PersistenceEvent.Cause.CREATE : PersistenceEvent.Cause.UPDATE, assetState));
-        if (running) {
-            scheduleFire();
-        }
+        applyFactChange(() -> {
+            facts.putAssetState(assetState);
+            // Make sure location predicate tracking is activated before notifying the deployments otherwise they won't report location predicates
+            trackLocationPredicates(trackLocationPredicates || (insert && assetState.getName().equals(Asset.LOCATION.getName())));
+            notifyAssetStatesChanged(new AssetStateChangeEvent(insert ? PersistenceEvent.Cause.CREATE : PersistenceEvent.Cause.UPDATE, assetState));
+        });
     }
 
     public void removeAssetState(AssetState<?> assetState) {
-        facts.removeAssetState(assetState);
-        // Make sure location predicate tracking is activated before notifying the deployments otherwise they won't report location predicates
-        trackLocationPredicates(trackLocationPredicates || assetState.getName().equals(Asset.LOCATION.getName()));
-        notifyAssetStatesChanged(new AssetStateChangeEvent(PersistenceEvent.Cause.DELETE, assetState));
-        if (running) {
-            scheduleFire();
-        }
+        applyFactChange(() -> {
+            facts.removeAssetState(assetState);
+            // Make sure location predicate tracking is activated before notifying the deployments otherwise they won't report location predicates
+            trackLocationPredicates(trackLocationPredicates || assetState.getName().equals(Asset.LOCATION.getName()));
+            notifyAssetStatesChanged(new AssetStateChangeEvent(PersistenceEvent.Cause.DELETE, assetState));
+        });
     }
 
     public void insertAssetEvent(String expires, AssetState<?> assetState) {
-        facts.insertAssetEvent(expires, assetState);
+        applyFactChange(() -> facts.insertAssetEvent(expires, assetState));
+    }
+
+    /**
+     * Applies the fact change immediately if the engine isn't busy (e.g. firing on another thread) otherwise queues it
+     * to be applied before the next firing, so callers are never blocked by a slow firing.
+     */
+    protected void applyFactChange(Runnable factChange) {
+        pendingFactChanges.add(factChange);
+        pendingFactChangeCount.incrementAndGet();
+
+        lock.tryWithLock(toString() + "::applyFactChange", this::applyPendingFactChanges);
+
         if (running) {
             scheduleFire();
         }
     }
 
+    /**
+     * Must be called whilst holding the engine lock.
+     */
+    protected void applyPendingFactChanges() {
+        Runnable factChange;
+        while ((factChange = pendingFactChanges.poll()) != null) {
+            pendingFactChangeCount.decrementAndGet();
+            factChange.run();
+        }
+    }
+
     protected void updateDeploymentInfo() {
         deploymentInfo = Arrays.toString(
             deployments.values().stream()
@@ -578,7 +672,7 @@ public class RulesEngine<T extends Ruleset> {
     }
 
     protected void printSessionStats() {
-        withLock(toString() + "::printSessionStats", () -> {
+        lock.withLock(toString() + "::printSessionStats", () -> {
             Collection<AssetState<?>> assetStateFacts = facts.getAssetStates();
             Collection<TemporaryFact<AssetState<?>>> assetEventFacts = facts.getAssetEvents();
             Map<String, Object> namedFacts = facts.getNamedFacts();
@@ -603,8 +697,69 @@ public class RulesEngine<T extends Ruleset> {
      * This is called with all the asset's that have a location attribute currently loaded into this engine.
      */
     protected void processLocationRules(List<AssetStateLocationPredicates> assetStateLocationPredicates) {
-        if (assetLocationPredicatesConsumer != null) {
+        if (assetLocationPredicatesConsumer == null) {
+            return;
+        }
+
+        if (GlobalLock.isHeldByCurrentThread() || !lock.isHeldByCurrentThread()) {
             assetLocationPredicatesConsumer.accept(this, assetStateLocationPredicates);
+        } else {
+            // The consumer acquires the global lock which must not be acquired whilst only holding the engine lock
+            // (e.g. when firing) so hand over to another thread, skip stale predicates if the engine has since stopped
+            executorService.execute(() -> withLock(toString() + "::processLocationRules", () -> {
+                if (assetStateLocationPredicates == null || running) {
+                    assetLocationPredicatesConsumer.accept(this, assetStateLocationPredicates);
+                }
+            }));
+        }
+    }
+
+    /**
+     * @return The number of fact changes waiting to be applied until the engine is no longer busy.
+     */
+    public int getPendingFactChangeCount() {
+        return pendingFactChangeCount.get();
+    }
+
+    /**
+     * @return The number of firing requests coalesced into the next firing.
+     */
+    public int getPendingFireRequestCount() {
+        synchronized (fireLock) {
+            return fireRequestCount;
+        }
+    }
+
+    public long getFireCount() {
+        synchronized (fireLock) {
+            return fireCount;
+        }
+    }
+
+    public long getLastFireDurationMillis() {
+        synchronized (fireLock) {
+            return lastFireDurationMillis;
+        }
+    }
+
+    public long getAverageFireDurationMillis() {
+        synchronized (fireLock) {
+            return fireCount == 0 ? 0 : totalFireDurationMillis / fireCount;
+        }
+    }
+
+    /**
+     * @return Time between the first firing request and the end of the last firing.
+     */
+    public long getLastFireLatencyMillis() {
+        synchronized (fireLock) {
+            return lastFireLatencyMillis;
+        }
+    }
+
+    public long getMaxFireLatencyMillis() {
+        synchronized (fireLock) {
+            return maxFireLatencyMillis;
         }
     }
 
@@ -617,7 +772,7 @@ public class RulesEngine<T extends Ruleset> {
     }
 
     protected void publishRulesEngineStatus() {
-        withLock(getClass().getSimpleName() + "::publishRulesEngineStatus", () -> {
+        lock.withLock(getClass().getSimpleName() + "::publishRulesEngineStatus", () -> {
 
             String engineId = id == null ? null : id.getRealm().orElse(id.getAssetId().orElse(null));
             int compilationErrors = getCompilationErrorDeploymentCount();
@@ -641,7 +796,7 @@ public class RulesEngine<T extends Ruleset> {
     }
 
     protected void publishRulesetStatus(RulesetDeployment deployment) {
-        withLock(getClass().getSimpleName() + "::publishRulesetStatus", () -> {
+        lock.withLock(getClass().getSimpleName() + "::publishRulesetStatus", () -> {
 
             Ruleset ruleset = deployment.ruleset;
             String engineId = id == null ? null : id.getRealm().orElse(id.getAssetId().orElse(null));
@@ -675,7 +830,7 @@ public class RulesEngine<T extends Ruleset> {
             return;
         }
 
-        withLock(getClass().getSimpleName() + ":pauseRuleset", () -> {
+        lock.withLock(getClass().getSimpleName() + ":pauseRuleset", () -> {
             LOG.info("Pausing ruleset: " + deployment.getRuleset().getName());
             stopRuleset(deployment);
             deployment.updateValidity();
@@ -705,7 +860,7 @@ public class RulesEngine<T extends Ruleset> {
             return;
         }
 
-        withLock(getClass().getSimpleName() + "::unpauseRuleset", () -> {
+        lock.withLock(getClass().getSimpleName() + "::unpauseRuleset", () -> {
             LOG.info("Un-pausing ruleset: " + deployment.getRuleset().getName());
             startRuleset(deployment);
         });
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.rules;
+
+import org.openremote.container.concurrent.GlobalLock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import static java.util.logging.Level.FINEST;
+
+/**
+ * A reentrant exclusive lock guarding the facts and deployments of a single {@link RulesEngine}, so engines can fire
+ * concurrently. When both are required the {@link GlobalLock} must be acquired first, the global lock must never be
+ * acquired whilst only holding an engine lock.
+ */
+public class RulesEngineLock {
+
+    private static final Logger LOG = Logger.getLogger(RulesEngineLock.class.getName());
+    protected final ReentrantLock lock = new ReentrantLock(true);
+    protected final String name;
+    protected volatile String info;
+
+    public RulesEngineLock(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Obtain the lock within {@link GlobalLock#getLockTimeoutMillis()} or throw {@link IllegalStateException}.
+     *
+     * @param info     An informal text that is printed in log messages.
+     * @param runnable The guarded code to execute while holding the lock.
+     */
+    public void withLock(String info, Runnable runnable) {
+        withLockReturning(info, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    /**
+     * Obtain the lock within {@link GlobalLock#getLockTimeoutMillis()} or throw {@link IllegalStateException}.
+     *
+     * @param info     An informal text that is printed in log messages.
+     * @param supplier The guarded code to execute while holding the lock.
+     */
+    public <R> R withLockReturning(String info, Supplier<R> supplier) {
+        try {
+            if (lock.tryLock(GlobalLock.getLockTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                String previousInfo = this.info;
+                this.info = info;
+                LOG.finest("+ Acquired lock of " + name + " (count: " + lock.getHoldCount() + "): " + info);
+                try {
+                    return supplier.get();
+                } finally {
+                    LOG.finest("- Releasing lock of " + name + " (count: " + lock.getHoldCount() + "): " + info);
+                    this.info = previousInfo;
+                    lock.unlock();
+                }
+            } else {
+                throw new IllegalStateException(
+                    "Could not acquire lock of " + name + " held whilst executing " + this.info + " after waiting " + GlobalLock.getLockTimeoutMillis() + "ms: " + Thread.currentThread().getName() + " executing " + info
+                );
+            }
+        } catch (InterruptedException ex) {
+            LOG.log(FINEST, "Interrupted while waiting for lock of " + name + ": " + info);
+            return null;
+        }
+    }
+
+    /**
+     * Execute the runnable only if the lock can be obtained immediately.
+     *
+     * @return <code>true</code> if the lock was obtained and the runnable executed.
+     */
+    public boolean tryWithLock(String info, Runnable runnable) {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        String previousInfo = this.info;
+        this.info = info;
+        try {
+            runnable.run();
+            return true;
+        } finally {
+            this.info = previousInfo;
+            lock.unlock();
+        }
+    }
+
+    public boolean isHeldByCurrentThread() {
+        return lock.isHeldByCurrentThread();
+    }
+
+    /**
+     * @return An estimate of the number of threads waiting to acquire this lock.
+     */
+    public int getQueueLength() {
+        return lock.getQueueLength();
+    }
+}
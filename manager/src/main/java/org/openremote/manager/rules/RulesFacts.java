@@ -29,7 +29,11 @@ import org.openremote.model.asset.Asset;
 import org.openremote.model.asset.AssetEvent;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.LogicGroup;
+import org.openremote.model.query.filter.AttributePredicate;
 import org.openremote.model.query.filter.GeofencePredicate;
+import org.openremote.model.query.filter.ParentPredicate;
+import org.openremote.model.query.filter.StringPredicate;
 import org.openremote.model.rules.AssetState;
 import org.openremote.model.rules.Assets;
 import org.openremote.model.rules.TemporaryFact;
@@ -68,6 +72,13 @@ public class RulesFacts extends Facts implements RuleListener {
     final protected Logger LOG;
     final protected Map<String, Collection<AssetState<?>>> assetIdIndex = new HashMap<>();
     final protected Map<String, Collection<AssetState<?>>> assetTypeIndex = new HashMap<>();
+    final protected Map<String, Collection<AssetState<?>>> attributeNameIndex = new HashMap<>();
+    final protected Map<String, Collection<AssetState<?>>> parentIdIndex = new HashMap<>();
+    final protected Map<List<String>, Collection<AssetState<?>>> pathIndex = new HashMap<>();
+    // Order of the asset states in the asset states collection, so candidates from several index entries can be
+    // matched in the same order as a full scan
+    final protected Map<AssetState<?>, Long> assetStateSequence = new HashMap<>();
+    protected long nextAssetStateSequence;
     public RulesClock clock;
     protected int triggerCount;
     protected boolean trackLocationRules;
@@ -212,17 +223,8 @@ public class RulesFacts extends Facts implements RuleListener {
         }
         getAssetStates().remove(assetState);
         getAssetStates().add(assetState);
-
-        // Maintain index of all asset states for this asset by ID
-        assetIdIndex.putIfAbsent(assetState.getId(), new ArrayDeque<>());
-        assetIdIndex.get(assetState.getId()).remove(assetState);
-        assetIdIndex.get(assetState.getId()).add(assetState);
-
-        // Maintain index of all asset states for this asset by type
-        assetTypeIndex.putIfAbsent(assetState.getAssetType(), new ArrayDeque<>());
-        assetTypeIndex.get(assetState.getAssetType()).remove(assetState);
-        assetTypeIndex.get(assetState.getAssetType()).add(assetState);
-
+        unindexAssetState(assetState);
+        indexAssetState(assetState);
         return this;
     }
 
@@ -231,19 +233,7 @@ public class RulesFacts extends Facts implements RuleListener {
             LOG.finest("Fact change (DELETE): " + assetState + " - on: " + loggingContext);
         }
         getAssetStates().remove(assetState);
-
-        // Maintain index of all asset states for this asset by ID
-        Collection<AssetState<?>> assetIdIndexCollection = assetIdIndex.get(assetState.getId());
-        if (assetIdIndexCollection != null) {
-            assetIdIndexCollection.remove(assetState);
-        }
-
-        // Maintain index of all asset states for this asset by type
-        Collection<AssetState<?>> assetTypeIndexCollection = assetTypeIndex.get(assetState.getAssetType());
-        if (assetTypeIndexCollection != null) {
-            assetTypeIndexCollection.remove(assetState);
-        }
-
+        unindexAssetState(assetState);
         return this;
     }
 
@@ -433,7 +423,12 @@ public class RulesFacts extends Facts implements RuleListener {
         }
 
         Predicate<AssetState<?>> p = new AssetQueryPredicate(timerService, assetStorageService, assetQuery);
-        return matchAssetState(p);
+        Collection<AssetState<?>> candidates = getAssetStateCandidates(assetQuery);
+
+        if (candidates == null) {
+            return matchAssetState(p);
+        }
+        return candidates.stream().filter(p);
     }
 
     public Stream<AssetState<?>> matchAssetState(Predicate<AssetState<?>> p) {
@@ -606,16 +601,7 @@ public class RulesFacts extends Facts implements RuleListener {
                         if (LOG.isLoggable(Level.FINEST)) {
                             LOG.finest("Fact change (INTERNAL DELETE): " + assetState + " - on: " + loggingContext);
                         }
-                        // Maintain index of all asset states for this asset by ID
-                        Collection<AssetState<?>> assetIdIndexCollection = assetIdIndex.get(assetState.getId());
-                        if (assetIdIndexCollection != null) {
-                            assetIdIndexCollection.remove(assetState);
-                        }
-                        // Maintain index of all asset states for this asset by type
-                        Collection<AssetState<?>> assetTypeIndexCollection = assetTypeIndex.get(assetState.getAssetType());
-                        if (assetTypeIndexCollection != null) {
-                            assetTypeIndexCollection.remove(assetState);
-                        }
+                        unindexAssetState(assetState);
                     }
                     return invalid;
                 });
@@ -628,6 +614,194 @@ public class RulesFacts extends Facts implements RuleListener {
         return this;
     }
 
+    protected void indexAssetState(AssetState<?> assetState) {
+        addToIndex(assetIdIndex, assetState.getId(), assetState);
+        addToIndex(assetTypeIndex, assetState.getAssetType(), assetState);
+        addToIndex(attributeNameIndex, assetState.getName(), assetState);
+        addToIndex(parentIdIndex, assetState.getParentId(), assetState);
+        addToIndex(pathIndex, getPathKey(assetState.getPath()), assetState);
+        assetStateSequence.put(assetState, nextAssetStateSequence++);
+    }
+
+    protected void unindexAssetState(AssetState<?> assetState) {
+        // Use the indexed instance as the parent or path of the given instance may be different
+        Collection<AssetState<?>> assetIdIndexCollection = assetIdIndex.get(assetState.getId());
+        AssetState<?> indexed = assetIdIndexCollection == null ? null : assetIdIndexCollection.stream()
+            .filter(assetState::equals).findFirst().orElse(null);
+
+        if (indexed == null) {
+            return;
+        }
+
+        removeFromIndex(assetIdIndex, indexed.getId(), indexed);
+        removeFromIndex(assetTypeIndex, indexed.getAssetType(), indexed);
+        removeFromIndex(attributeNameIndex, indexed.getName(), indexed);
+        removeFromIndex(parentIdIndex, indexed.getParentId(), indexed);
+        removeFromIndex(pathIndex, getPathKey(indexed.getPath()), indexed);
+        assetStateSequence.remove(indexed);
+    }
+
+    protected static <K> void addToIndex(Map<K, Collection<AssetState<?>>> index, K key, AssetState<?> assetState) {
+        index.computeIfAbsent(key, k -> new ArrayDeque<>()).add(assetState);
+    }
+
+    protected static <K> void removeFromIndex(Map<K, Collection<AssetState<?>>> index, K key, AssetState<?> assetState) {
+        Collection<AssetState<?>> collection = index.get(key);
+        if (collection != null) {
+            collection.remove(assetState);
+            if (collection.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    protected static List<String> getPathKey(String[] path) {
+        return path == null ? null : Arrays.asList(path);
+    }
+
+    /**
+     * Uses the most selective index that applies to the query (asset ID, parent ID, path, asset type or attribute
+     * name) to find the asset states that may match the query; the query predicate must still be applied to the
+     * candidates, which are in the same order as {@link #getAssetStates}.
+     *
+     * @return <code>null</code> if no index applies to the query (or none would reduce the number of asset states to
+     * match) so all asset states must be matched.
+     */
+    protected Collection<AssetState<?>> getAssetStateCandidates(AssetQuery assetQuery) {
+        List<List<Collection<AssetState<?>>>> options = new ArrayList<>();
+
+        if (assetQuery.ids != null && assetQuery.ids.length > 0) {
+            options.add(lookup(assetIdIndex, Arrays.stream(assetQuery.ids).collect(Collectors.toSet())));
+        }
+
+        if (assetQuery.parents != null && assetQuery.parents.length > 0) {
+            Set<String> parentIds = new HashSet<>();
+            boolean indexable = true;
+            for (ParentPredicate parentPredicate : assetQuery.parents) {
+                if (parentPredicate.id != null) {
+                    parentIds.add(parentPredicate.id);
+                } else if (parentPredicate.noParent) {
+                    parentIds.add(null);
+                } else {
+                    indexable = false;
+                    break;
+                }
+            }
+            if (indexable) {
+                options.add(lookup(parentIdIndex, parentIds));
+            }
+        }
+
+        if (assetQuery.paths != null && assetQuery.paths.length > 0) {
+            options.add(lookup(pathIndex, Arrays.stream(assetQuery.paths)
+                .map(pathPredicate -> getPathKey(pathPredicate.path))
+                .collect(Collectors.toSet())));
+        }
+
+        if (assetQuery.types != null && assetQuery.types.length > 0) {
+            options.add(lookup(assetTypeIndex, assetTypeIndex.keySet().stream()
+                .filter(assetType -> AssetQueryPredicate.isAssetTypeMatch(assetQuery.types, assetType))
+                .collect(Collectors.toSet())));
+        }
+
+        Set<String> attributeNames = assetQuery.attributes != null ? getRequiredAttributeNames(assetQuery.attributes) : null;
+        if (attributeNames != null) {
+            options.add(lookup(attributeNameIndex, attributeNames));
+        }
+
+        List<Collection<AssetState<?>>> selected = null;
+        long selectedSize = getAssetStates().size();
+
+        for (List<Collection<AssetState<?>>> option : options) {
+            long size = option.stream().mapToLong(Collection::size).sum();
+            if (size < selectedSize) {
+                selected = option;
+                selectedSize = size;
+            }
+        }
+
+        if (selected == null) {
+            return null;
+        }
+
+        if (selected.size() == 1) {
+            return selected.get(0);
+        }
+
+        // Index entries of different keys don't overlap but must be merged into the order of the asset states
+        List<AssetState<?>> candidates = new ArrayList<>((int) selectedSize);
+        selected.forEach(candidates::addAll);
+        candidates.sort(Comparator.comparingLong(assetStateSequence::get));
+        return candidates;
+    }
+
+    protected static <K> List<Collection<AssetState<?>>> lookup(Map<K, Collection<AssetState<?>>> index, Set<K> keys) {
+        List<Collection<AssetState<?>>> collections = new ArrayList<>(keys.size());
+        for (K key : keys) {
+            Collection<AssetState<?>> collection = index.get(key);
+            if (collection != null) {
+                collections.add(collection);
+            }
+        }
+        return collections;
+    }
+
+    /**
+     * @return The attribute names of which one must be the name of a matching asset state, <code>null</code> if the
+     * condition doesn't restrict the attribute name to exact values.
+     */
+    protected static Set<String> getRequiredAttributeNames(LogicGroup<AttributePredicate> condition) {
+        if (AssetQueryPredicate.groupIsEmpty(condition)) {
+            return null;
+        }
+
+        List<LogicGroup<AttributePredicate>> groups = condition.groups != null ? condition.groups : Collections.emptyList();
+
+        if (condition.operator == LogicGroup.Operator.OR) {
+            // Every item and group must restrict the name, note that meta and previous value predicates of an item
+            // are alternatives on their own in an OR group
+            Set<String> names = new HashSet<>();
+            for (AttributePredicate attributePredicate : condition.getItems()) {
+                String name = getRequiredAttributeName(attributePredicate);
+                if (name == null || attributePredicate.meta != null || attributePredicate.previousValue != null) {
+                    return null;
+                }
+                names.add(name);
+            }
+            for (LogicGroup<AttributePredicate> group : groups) {
+                Set<String> groupNames = getRequiredAttributeNames(group);
+                if (groupNames == null) {
+                    return null;
+                }
+                names.addAll(groupNames);
+            }
+            return names;
+        }
+
+        // Any item or group that restricts the name restricts the whole group
+        for (AttributePredicate attributePredicate : condition.getItems()) {
+            String name = getRequiredAttributeName(attributePredicate);
+            if (name != null) {
+                return Collections.singleton(name);
+            }
+        }
+        for (LogicGroup<AttributePredicate> group : groups) {
+            Set<String> groupNames = getRequiredAttributeNames(group);
+            if (groupNames != null) {
+                return groupNames;
+            }
+        }
+        return null;
+    }
+
+    protected static String getRequiredAttributeName(AttributePredicate attributePredicate) {
+        StringPredicate name = attributePredicate.name;
+        if (name == null || name.value == null || name.negate || !name.caseSensitive || name.match != AssetQuery.Match.EXACT) {
+            return null;
+        }
+        return name.value;
+    }
+
     protected void storeLocationPredicates(List<GeofencePredicate> foundLocationPredicates) {
 
         if (foundLocationPredicates != null && !foundLocationPredicates.isEmpty()) {
@@ -20,6 +20,7 @@
 package org.openremote.manager.rules;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.openremote.container.concurrent.ContainerScheduledExecutor;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
 import org.openremote.model.rules.AssetRuleset;
@@ -116,6 +117,16 @@ public class RulesHealthStatusProvider implements HealthStatusProvider, Containe
         }
         objectValue.set("tenant", tenantEngines);
         objectValue.set("asset", assetEngines);
+
+        ContainerScheduledExecutor rulesExecutorService = rulesService.rulesExecutorService;
+        if (rulesExecutorService != null) {
+            ObjectNode executorValue = ValueUtil.createJsonObject();
+            executorValue.put("threads", rulesExecutorService.getCorePoolSize());
+            executorValue.put("activeThreads", rulesExecutorService.getActiveCount());
+            executorValue.put("queuedTasks", rulesExecutorService.getQueue().size());
+            executorValue.put("completedTasks", rulesExecutorService.getCompletedTaskCount());
+            objectValue.set("executor", executorValue);
+        }
         return objectValue;
     }
 
@@ -130,6 +141,14 @@ public class RulesHealthStatusProvider implements HealthStatusProvider, Containe
         val.put("totalDeployments", totalDeployments);
         val.put("executionErrorDeployments", executionErrorDeployments);
         val.put("compilationErrorDeployments", compilationErrorDeployments);
+        val.put("pendingFactChanges", rulesEngine.getPendingFactChangeCount());
+        val.put("pendingFireRequests", rulesEngine.getPendingFireRequestCount());
+        val.put("lockQueueLength", rulesEngine.lock.getQueueLength());
+        val.put("fireCount", rulesEngine.getFireCount());
+        val.put("lastFireDurationMillis", rulesEngine.getLastFireDurationMillis());
+        val.put("averageFireDurationMillis", rulesEngine.getAverageFireDurationMillis());
+        val.put("lastFireLatencyMillis", rulesEngine.getLastFireLatencyMillis());
+        val.put("maxFireLatencyMillis", rulesEngine.getMaxFireLatencyMillis());
 
         ObjectNode deployments = ValueUtil.createJsonObject();
 
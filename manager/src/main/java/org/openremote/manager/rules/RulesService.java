@@ -21,6 +21,8 @@ package org.openremote.manager.rules;
 
 import org.apache.camel.Predicate;
 import org.apache.camel.builder.RouteBuilder;
+import org.openremote.container.concurrent.ContainerScheduledExecutor;
+import org.openremote.container.concurrent.GlobalLock;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceEvent;
 import org.openremote.container.persistence.PersistenceService;
@@ -44,7 +46,6 @@ import org.openremote.model.asset.Asset;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent.Source;
 import org.openremote.model.attribute.AttributeMap;
-import org.openremote.model.query.AssetQuery;
 import org.openremote.model.query.RulesetQuery;
 import org.openremote.model.query.filter.LocationAttributePredicate;
 import org.openremote.model.rules.*;
@@ -57,8 +58,12 @@ import org.openremote.model.value.MetaItemType;
 
 import javax.persistence.EntityManager;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -70,6 +75,7 @@ import static org.openremote.container.concurrent.GlobalLock.withLock;
 import static org.openremote.container.concurrent.GlobalLock.withLockReturning;
 import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.util.MapAccess.getString;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
 import static org.openremote.model.attribute.Attribute.getAddedOrModifiedAttributes;
@@ -101,12 +107,19 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     public static final int PRIORITY = LOW_PRIORITY;
     public static final String RULE_EVENT_EXPIRES = "RULE_EVENT_EXPIRES";
     public static final String RULE_EVENT_EXPIRES_DEFAULT = "PT1H";
+    // Number of assets fetched from the database at a time when loading the rule state at startup
+    public static final String RULE_STATE_FETCH_SIZE = "RULE_STATE_FETCH_SIZE";
+    public static final int RULE_STATE_FETCH_SIZE_DEFAULT = 500;
+    public static final String RULES_ENGINE_THREADS = "RULES_ENGINE_THREADS";
+    public static final int RULES_ENGINE_THREADS_DEFAULT = Math.max(Runtime.getRuntime().availableProcessors(), 2);
     private static final Logger LOG = Logger.getLogger(RulesService.class.getName());
     protected final Map<String, RulesEngine<TenantRuleset>> tenantEngines = new HashMap<>();
     protected final Map<String, RulesEngine<AssetRuleset>> assetEngines = new HashMap<>();
     protected List<GeofenceAssetAdapter> geofenceAssetAdapters = new ArrayList<>();
     protected TimerService timerService;
     protected ScheduledExecutorService executorService;
+    // Dedicated bounded pool on which the engines fire, so engines fire in parallel without starving other tasks
+    protected ContainerScheduledExecutor rulesExecutorService;
     protected PersistenceService persistenceService;
     protected RulesetStorageService rulesetStorageService;
     protected ManagerIdentityService identityService;
@@ -125,11 +138,19 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     // Keep global list of asset states that have been pushed to any engines
     // The objects are already in memory inside the rule engines but keeping them
     // here means we can quickly insert facts into newly started engines
-    protected Set<AssetState<?>> assetStates = new HashSet<>();
+    protected Map<AssetState<?>, AssetState<?>> assetStates = new ConcurrentHashMap<>();
+    // Asset states keyed by each asset ID in their path (i.e. the asset itself and its ancestors)
+    protected Map<String, Set<AssetState<?>>> pathAssetStates = new ConcurrentHashMap<>();
+    // Global and tenant engines in scope of each realm, cleared when these engines change
+    protected Map<String, List<RulesEngine<?>>> realmEnginesInScope = new ConcurrentHashMap<>();
+    // Asset updates (possibly from several asset processing partitions) share the read lock, engine and ruleset
+    // reconfiguration takes the write lock whilst holding the global lock
+    protected final ReadWriteLock enginesLock = new ReentrantReadWriteLock();
     protected Set<AssetState<?>> preInitassetStates = new HashSet<>();
     protected String configEventExpires;
+    protected int ruleStateFetchSize;
     protected boolean initDone;
-    protected boolean startDone;
+    protected volatile boolean startDone;
 
     @Override
     public int getPriority() {
@@ -139,6 +160,12 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     @Override
     public void init(Container container) throws Exception {
         executorService = container.getExecutorService();
+        if (rulesExecutorService == null) {
+            rulesExecutorService = new ContainerScheduledExecutor(
+                "Rules engine",
+                getInteger(container.getConfig(), RULES_ENGINE_THREADS, RULES_ENGINE_THREADS_DEFAULT)
+            );
+        }
         timerService = container.getService(TimerService.class);
         persistenceService = container.getService(PersistenceService.class);
         rulesetStorageService = container.getService(RulesetStorageService.class);
@@ -185,6 +212,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
         geofenceAssetAdapters.sort(Comparator.comparingInt(GeofenceAssetAdapter::getPriority));
         container.getService(MessageBrokerService.class).getContext().addRoutes(this);
         configEventExpires = getString(container.getConfig(), RULE_EVENT_EXPIRES, RULE_EVENT_EXPIRES_DEFAULT);
+        ruleStateFetchSize = getInteger(container.getConfig(), RULE_STATE_FETCH_SIZE, RULE_STATE_FETCH_SIZE_DEFAULT);
 
         container.getService(ManagerWebService.class).getApiSingletons().add(
             new FlowResourceImpl(
@@ -281,18 +309,19 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
             .count();//Needed in order to execute the stream. TODO: can this be done differently?
 
         LOG.info("Loading all assets with fact attributes to initialize state of rules engines");
-        Stream<Pair<Asset<?>, Stream<Attribute<?>>>> stateAttributes = findRuleStateAttributes();
+        long assetStateCount = assetStates.size();
 
         // Push each attribute as an asset update through the rule engine chain
         // that will ensure the insert only happens to the engines in scope
-        stateAttributes
-            .forEach(pair -> {
-                Asset<?> asset = pair.key;
-                pair.value.forEach(ruleAttribute -> {
+        assetStorageService.streamRuleStateAssets(ruleStateFetchSize, asset ->
+            asset.getAttributes().stream()
+                .filter(RulesService::attributeIsRuleState)
+                .forEach(ruleAttribute -> {
                     AssetState<?> assetState = new AssetState<>(asset, ruleAttribute, Source.INTERNAL);
                     updateAssetState(assetState);
-                });
-            });
+                })
+        );
+        LOG.info("Loaded " + (assetStates.size() - assetStateCount) + " asset state fact(s)");
 
         // Start the engines
         if (globalEngine != null) {
@@ -301,15 +330,17 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
         tenantEngines.values().forEach(RulesEngine::start);
         assetEngines.values().forEach(RulesEngine::start);
 
-        startDone = true;
-
-        preInitassetStates.forEach(this::doProcessAssetUpdate);
-        preInitassetStates.clear();
+        withLock(getClass().getSimpleName() + "::processPreInitAssetStates", () -> {
+            // Buffered updates are applied before any newer update can bypass the buffer
+            preInitassetStates.forEach(this::doProcessAssetUpdate);
+            preInitassetStates.clear();
+            startDone = true;
+        });
     }
 
     @Override
     public void stop(Container container) throws Exception {
-        withLock(getClass().getSimpleName() + "::stop", () -> {
+        withEnginesLock(getClass().getSimpleName() + "::stop", () -> {
             for (GeofenceAssetAdapter geofenceAssetAdapter : geofenceAssetAdapters) {
                 try {
                     geofenceAssetAdapter.stop(container);
@@ -328,9 +359,16 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                 globalEngine = null;
             }
 
+            realmEnginesInScope.clear();
             assetStates.clear();
+            pathAssetStates.clear();
         });
 
+        if (rulesExecutorService != null) {
+            rulesExecutorService.shutdownNow();
+            rulesExecutorService = null;
+        }
+
         for (GeofenceAssetAdapter geofenceAssetAdapter : geofenceAssetAdapters) {
             geofenceAssetAdapter.stop(container);
         }
@@ -345,12 +383,21 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                                       Asset<?> asset,
                                       Attribute<?> attribute,
                                       Source source) throws AssetProcessingException {
+        AssetState<?> assetState = new AssetState<>(asset, attribute, source);
+
         if (!startDone) {
-            preInitassetStates.add(new AssetState<>(asset, attribute, source));
-        } else {
-            doProcessAssetUpdate(new AssetState<>(asset, attribute, source));
+            // Only contend for the global lock until the engines have started
+            boolean buffered = withLockReturning(getClass().getSimpleName() + "::processAssetUpdate", () ->
+                !startDone && preInitassetStates.add(assetState)
+            );
+            if (buffered) {
+                return false;
+            }
         }
 
+        // Asset updates may be processed concurrently when asset processing is partitioned, the engines queue
+        // fact changes whilst busy so this only shares the read lock with other asset updates
+        doProcessAssetUpdate(assetState);
         return false;
     }
 
@@ -413,7 +460,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     }
 
     protected void processTenantChange(Tenant tenant, PersistenceEvent.Cause cause) {
-        withLock(getClass().getSimpleName() + "::processTenantChange", () -> {
+        withEnginesLock(getClass().getSimpleName() + "::processTenantChange", () -> {
             // Check if enabled status has changed
             boolean wasEnabled = Arrays.stream(tenants).anyMatch(t -> tenant.getRealm().equals(t.getRealm()) && tenant.getId().equals(t.getId()));
             boolean isEnabled = tenant.getEnabled() && cause != PersistenceEvent.Cause.DELETE;
@@ -430,6 +477,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                 if (tenantRulesEngine != null) {
                     tenantRulesEngine.stop();
                     tenantEngines.remove(tenant.getRealm());
+                    realmEnginesInScope.clear();
                 }
 
                 // Remove any asset rules engines for assets in this realm
@@ -469,7 +517,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     }
 
     protected void processAssetChange(Asset<?> asset, PersistenceEvent<Asset<?>> persistenceEvent) {
-        withLock(getClass().getSimpleName() + "::processAssetChange", () -> {
+        withEnginesLock(getClass().getSimpleName() + "::processAssetChange", () -> {
 
             // We must load the asset from database (only when required), as the
             // persistence event might not contain a completely loaded asset
@@ -558,7 +606,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     }
 
     protected void processRulesetChange(Ruleset ruleset, PersistenceEvent.Cause cause) {
-        withLock(getClass().getSimpleName() + "::processRulesetChange", () -> {
+        withEnginesLock(getClass().getSimpleName() + "::processRulesetChange", () -> {
             if (cause == PersistenceEvent.Cause.DELETE || !ruleset.isEnabled()) {
                 if (ruleset instanceof GlobalRuleset) {
                     undeployGlobalRuleset((GlobalRuleset) ruleset);
@@ -575,7 +623,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
 
                     if (isNewEngine) {
                         // Push all existing facts into the engine
-                        assetStates.forEach(assetState -> engine.updateOrInsertAssetState(assetState, true));
+                        assetStates.keySet().forEach(assetState -> engine.updateOrInsertAssetState(assetState, true));
                     }
 
                     engine.start();
@@ -587,7 +635,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
 
                     if (isNewEngine) {
                         // Push all existing facts into the engine
-                        assetStates.forEach(assetState -> {
+                        assetStates.keySet().forEach(assetState -> {
                             if (assetState.getRealm().equals(((TenantRuleset) ruleset).getRealm())) {
                                 engine.updateOrInsertAssetState(assetState, true);
                             }
@@ -619,14 +667,14 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
      * Deploy the ruleset into the global engine creating the engine if necessary.
      */
     protected RulesEngine<GlobalRuleset> deployGlobalRuleset(GlobalRuleset ruleset) {
-        return withLockReturning(getClass().getSimpleName() + "::deployGlobalRuleset", () -> {
+        return withEnginesLockReturning(getClass().getSimpleName() + "::deployGlobalRuleset", () -> {
 
             // Global rules have access to everything in the system
             if (globalEngine == null) {
                 globalEngine = new RulesEngine<>(
                     timerService,
                     identityService,
-                    executorService,
+                    rulesExecutorService,
                     assetStorageService,
                     assetProcessingService,
                     notificationService,
@@ -636,6 +684,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                     new RulesEngineId<>(),
                     locationPredicateRulesConsumer
                 );
+                realmEnginesInScope.clear();
             }
 
             globalEngine.addRuleset(ruleset);
@@ -645,7 +694,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     }
 
     protected void undeployGlobalRuleset(GlobalRuleset ruleset) {
-        withLock(getClass().getSimpleName() + "::undeployGlobalRuleset", () -> {
+        withEnginesLock(getClass().getSimpleName() + "::undeployGlobalRuleset", () -> {
             if (globalEngine == null) {
                 return;
             }
@@ -653,21 +702,23 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
             if (globalEngine.removeRuleset(ruleset)) {
                 globalEngine.stop();
                 globalEngine = null;
+                realmEnginesInScope.clear();
             }
         });
     }
 
     protected RulesEngine<TenantRuleset> deployTenantRuleset(TenantRuleset ruleset) {
-        return withLockReturning(getClass().getSimpleName() + "::deployTenantRuleset", () -> {
+        return withEnginesLockReturning(getClass().getSimpleName() + "::deployTenantRuleset", () -> {
 
 
             // Look for existing rules engines for this tenant
             RulesEngine<TenantRuleset> tenantRulesEngine = tenantEngines
-                .computeIfAbsent(ruleset.getRealm(), (realm) ->
-                    new RulesEngine<>(
+                .computeIfAbsent(ruleset.getRealm(), (realm) -> {
+                    realmEnginesInScope.remove(realm);
+                    return new RulesEngine<>(
                         timerService,
                         identityService,
-                        executorService,
+                        rulesExecutorService,
                         assetStorageService,
                         assetProcessingService,
                         notificationService,
@@ -676,7 +727,8 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                         assetPredictedDatapointService,
                         new RulesEngineId<>(realm),
                         locationPredicateRulesConsumer
-                    ));
+                    );
+                });
 
             tenantRulesEngine.addRuleset(ruleset);
 
@@ -685,7 +737,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     }
 
     protected void undeployTenantRuleset(TenantRuleset ruleset) {
-        withLock(getClass().getSimpleName() + "::undeployTenantRuleset", () -> {
+        withEnginesLock(getClass().getSimpleName() + "::undeployTenantRuleset", () -> {
             RulesEngine<TenantRuleset> rulesEngine = tenantEngines.get(ruleset.getRealm());
             if (rulesEngine == null) {
                 return;
@@ -694,6 +746,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
             if (rulesEngine.removeRuleset(ruleset)) {
                 rulesEngine.stop();
                 tenantEngines.remove(ruleset.getRealm());
+                realmEnginesInScope.remove(ruleset.getRealm());
             }
         });
     }
@@ -734,7 +787,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     }
 
     protected RulesEngine<AssetRuleset> deployAssetRuleset(AssetRuleset ruleset) {
-        return withLockReturning(getClass().getSimpleName() + "::deployAssetRuleset", () -> {
+        return withEnginesLockReturning(getClass().getSimpleName() + "::deployAssetRuleset", () -> {
 
             // Look for existing rules engine for this asset
             RulesEngine<AssetRuleset> assetRulesEngine = assetEngines
@@ -742,7 +795,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
                     new RulesEngine<>(
                         timerService,
                         identityService,
-                        executorService,
+                        rulesExecutorService,
                         assetStorageService,
                         assetProcessingService,
                         notificationService,
@@ -760,7 +813,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     }
 
     protected void undeployAssetRuleset(AssetRuleset ruleset) {
-        withLock(getClass().getSimpleName() + "::undeployAssetRuleset", () -> {
+        withEnginesLock(getClass().getSimpleName() + "::undeployAssetRuleset", () -> {
             RulesEngine<AssetRuleset> rulesEngine = assetEngines.get(ruleset.getAssetId());
             if (rulesEngine == null) {
                 return;
@@ -773,8 +826,38 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
         });
     }
 
+    /**
+     * Reconfigures engines or rulesets, holding the {@link GlobalLock} and excluding concurrent asset updates.
+     */
+    protected void withEnginesLock(String info, Runnable runnable) {
+        withEnginesLockReturning(info, () -> {
+            runnable.run();
+            return null;
+        });
+    }
+
+    protected <R> R withEnginesLockReturning(String info, Supplier<R> supplier) {
+        return withLockReturning(info, () -> {
+            enginesLock.writeLock().lock();
+            try {
+                return supplier.get();
+            } finally {
+                enginesLock.writeLock().unlock();
+            }
+        });
+    }
+
+    protected void withEnginesReadLock(Runnable runnable) {
+        enginesLock.readLock().lock();
+        try {
+            runnable.run();
+        } finally {
+            enginesLock.readLock().unlock();
+        }
+    }
+
     protected void insertAssetEvent(AssetState<?> assetState, String expires) {
-        withLock(getClass().getSimpleName() + "::insertAssetEvent", () -> {
+        withEnginesReadLock(() -> {
             // Get the chain of rule engines that we need to pass through
             List<RulesEngine<?>> rulesEngines = getEnginesInScope(assetState.getRealm(), assetState.getPath());
 
@@ -799,7 +882,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
     }
 
     protected void updateAssetState(AssetState<?> assetState) {
-        withLock(getClass().getSimpleName() + "::updateAssetState", () -> {
+        withEnginesReadLock(() -> {
             // TODO: implement rules processing error state handling
 
             LOG.finer("Updating asset state: " + assetState);
@@ -808,8 +891,8 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
             List<RulesEngine<?>> rulesEngines = getEnginesInScope(assetState.getRealm(), assetState.getPath());
 
             // Remove asset state with same attribute ref as new state, add new state
-            boolean inserted = !assetStates.remove(assetState);
-            assetStates.add(assetState);
+            boolean inserted = removeAssetState(assetState) == null;
+            addAssetState(assetState);
 
             // Pass through each rules engine
             for (RulesEngine<?> rulesEngine : rulesEngines) {
@@ -823,7 +906,7 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
         List<RulesEngine<?>> rulesEngines = getEnginesInScope(assetState.getRealm(), assetState.getPath());
 
         // Remove asset state with same attribute ref
-        assetStates.remove(assetState);
+        removeAssetState(assetState);
 
         if (rulesEngines.size() == 0) {
             LOG.finer("Ignoring as there are no matching rules engines: " + assetState);
@@ -835,48 +918,81 @@ public class RulesService extends RouteBuilder implements ContainerService, Asse
         }
     }
 
-    protected List<AssetState<?>> getAssetStatesInScope(String assetId) {
-        return assetStates
-            .stream()
-            .filter(assetState -> Arrays.asList(assetState.getPath()).contains(assetId))
-            .collect(Collectors.toList());
-    }
+    protected void addAssetState(AssetState<?> assetState) {
+        assetStates.put(assetState, assetState);
 
-    protected List<RulesEngine<?>> getEnginesInScope(String realm, String[] assetPath) {
-        List<RulesEngine<?>> rulesEngines = new ArrayList<>();
+        if (assetState.getPath() != null) {
+            for (String pathId : assetState.getPath()) {
+                pathAssetStates.computeIfAbsent(pathId, id -> ConcurrentHashMap.newKeySet()).add(assetState);
+            }
+        }
+    }
 
-        // Add global engine (if it exists)
-        if (globalEngine != null) {
-            rulesEngines.add(globalEngine);
+    /**
+     * @return The removed asset state with the same attribute ref, <code>null</code> if there was none.
+     */
+    protected AssetState<?> removeAssetState(AssetState<?> assetState) {
+        // Use the path of the stored asset state as the asset may have moved since
+        AssetState<?> removed = assetStates.remove(assetState);
+
+        if (removed != null && removed.getPath() != null) {
+            for (String pathId : removed.getPath()) {
+                pathAssetStates.computeIfPresent(pathId, (id, pathIdAssetStates) -> {
+                    pathIdAssetStates.remove(removed);
+                    return pathIdAssetStates.isEmpty() ? null : pathIdAssetStates;
+                });
+            }
         }
 
-        // Add tenant engine (if it exists)
-        RulesEngine<?> tenantRulesEngine = tenantEngines.get(realm);
+        return removed;
+    }
 
-        if (tenantRulesEngine != null) {
-            rulesEngines.add(tenantRulesEngine);
-        }
+    protected List<AssetState<?>> getAssetStatesInScope(String assetId) {
+        return new ArrayList<>(pathAssetStates.getOrDefault(assetId, Collections.emptySet()));
+    }
+
+    protected List<RulesEngine<?>> getEnginesInScope(String realm, String[] assetPath) {
+        List<RulesEngine<?>> realmRulesEngines = getRealmEnginesInScope(realm);
+        List<RulesEngine<?>> rulesEngines = null;
 
         // Add asset engines, iterate through asset hierarchy using asset IDs from asset path
         for (String assetId : assetPath) {
             RulesEngine<?> assetRulesEngine = assetEngines.get(assetId);
             if (assetRulesEngine != null) {
+                if (rulesEngines == null) {
+                    rulesEngines = new ArrayList<>(realmRulesEngines);
+                }
                 rulesEngines.add(assetRulesEngine);
             }
         }
 
-        return rulesEngines;
+        // Most assets have no asset engines in their hierarchy so avoid allocating a new list
+        return rulesEngines != null ? rulesEngines : realmRulesEngines;
     }
 
-    protected Stream<Pair<Asset<?>, Stream<Attribute<?>>>> findRuleStateAttributes() {
-        // Get all assets then filter out any attributes with RULE_STATE=false
-        List<Asset<?>> assets = assetStorageService.findAll(new AssetQuery());
+    protected List<RulesEngine<?>> getRealmEnginesInScope(String realm) {
+        List<RulesEngine<?>> rulesEngines = realmEnginesInScope.get(realm);
 
-        return assets.stream()
-            .map(asset ->
-                new Pair<>(asset, asset.getAttributes().stream()
-                    .filter(RulesService::attributeIsRuleState))
-            );
+        if (rulesEngines == null) {
+            rulesEngines = new ArrayList<>(2);
+
+            // Add global engine (if it exists)
+            if (globalEngine != null) {
+                rulesEngines.add(globalEngine);
+            }
+
+            // Add tenant engine (if it exists)
+            RulesEngine<?> tenantRulesEngine = tenantEngines.get(realm);
+
+            if (tenantRulesEngine != null) {
+                rulesEngines.add(tenantRulesEngine);
+            }
+
+            rulesEngines = Collections.unmodifiableList(rulesEngines);
+            realmEnginesInScope.put(realm, rulesEngines);
+        }
+
+        return rulesEngines;
     }
 
     /**
@@ -51,8 +51,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static org.openremote.container.concurrent.GlobalLock.withLock;
-
 public class RulesetDeployment {
 
     /**
@@ -125,6 +123,7 @@ public class RulesetDeployment {
     final protected AssetStorageService assetStorageService;
     final protected TimerService timerService;
     final protected ScheduledExecutorService executorService;
+    final protected RulesEngineLock lock;
     final protected Assets assetsFacade;
     final protected Users usersFacade;
     final protected Notifications notificationsFacade;
@@ -140,12 +139,13 @@ public class RulesetDeployment {
 
     public RulesetDeployment(Ruleset ruleset, TimerService timerService,
                              AssetStorageService assetStorageService, ScheduledExecutorService executorService,
-                             Assets assetsFacade, Users usersFacade, Notifications notificationsFacade,
+                             RulesEngineLock lock, Assets assetsFacade, Users usersFacade, Notifications notificationsFacade,
                              HistoricDatapoints historicDatapointsFacade, PredictedDatapoints predictedDatapointsFacade) {
         this.ruleset = ruleset;
         this.timerService = timerService;
         this.assetStorageService = assetStorageService;
         this.executorService = executorService;
+        this.lock = lock;
         this.assetsFacade = assetsFacade;
         this.usersFacade = usersFacade;
         this.notificationsFacade = notificationsFacade;
@@ -254,9 +254,9 @@ public class RulesetDeployment {
     }
 
     protected void scheduleRuleAction(Runnable action, long delayMillis) {
-        withLock(toString() + "::scheduleRuleAction", () -> {
+        lock.withLock(toString() + "::scheduleRuleAction", () -> {
             ScheduledFuture<?> future = executorService.schedule(() ->
-                    withLock(toString() + "::scheduledRuleActionFire", () -> {
+                    lock.withLock(toString() + "::scheduledRuleActionFire", () -> {
                         scheduledRuleActions.removeIf(Future::isDone);
                         action.run();
                     }), delayMillis, TimeUnit.MILLISECONDS);
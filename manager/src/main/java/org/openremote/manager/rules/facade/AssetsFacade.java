@@ -68,9 +68,8 @@ public class AssetsFacade<T extends Ruleset> extends Assets {
                 rulesEngineId.getRealm().orElseThrow(() -> new IllegalArgumentException("Realm missing: " + rulesEngineId))
             );
 
-            Asset<?> restrictedAsset = assetStorageService.find(
-                rulesEngineId.getAssetId().orElseThrow(() -> new IllegalStateException("Asset ID missing: " + rulesEngineId)),
-                true);
+            Asset<?> restrictedAsset = assetStorageService.findCached(
+                rulesEngineId.getAssetId().orElseThrow(() -> new IllegalStateException("Asset ID missing: " + rulesEngineId)));
 
             if (restrictedAsset == null) {
                 throw new IllegalStateException("Asset is no longer available: " + rulesEngineId);
@@ -96,13 +95,11 @@ public class AssetsFacade<T extends Ruleset> extends Assets {
         if (events == null || events.length == 0)
             return this;
 
-        // Check if the asset ID of every event can be found with the default security of this facade
+        // Check if the asset ID of every event can be found with the default security of this facade, uses the asset
+        // cache as rules typically dispatch events for the same assets over and over
         String[] ids = Arrays.stream(events).map(AttributeEvent::getAssetId).toArray(String[]::new);
 
-        AssetQuery query = new AssetQuery().ids(ids);
-        long count = this.getResults(query).count();
-
-        if (ids.length != count) {
+        if (!Arrays.stream(ids).distinct().allMatch(this::isAccessible)) {
             LOG.warning("Access to asset(s) not allowed for this rule engine scope " + rulesEngineId + " for asset IDs: " + String.join(", ", ids));
             return this;
         }
@@ -113,6 +110,29 @@ public class AssetsFacade<T extends Ruleset> extends Assets {
         return this;
     }
 
+    protected boolean isAccessible(String assetId) {
+        Asset<?> asset = assetStorageService.findCached(assetId);
+
+        if (asset == null) {
+            return false;
+        }
+
+        if (TenantRuleset.class.isAssignableFrom(rulesEngineId.getScope())
+            || AssetRuleset.class.isAssignableFrom(rulesEngineId.getScope())) {
+            String realm = rulesEngineId.getRealm().orElseThrow(() -> new IllegalArgumentException("Realm missing: " + rulesEngineId));
+            if (!realm.equals(asset.getRealm())) {
+                return false;
+            }
+        }
+
+        if (AssetRuleset.class.isAssignableFrom(rulesEngineId.getScope())) {
+            String restrictedAssetId = rulesEngineId.getAssetId().orElseThrow(() -> new IllegalStateException("Asset ID missing: " + rulesEngineId));
+            return asset.getPath() != null && Arrays.asList(asset.getPath()).contains(restrictedAssetId);
+        }
+
+        return true;
+    }
+
     public AssetsFacade<T> dispatch(String assetId, String attributeName, Object value) {
         return dispatch(new AttributeEvent(assetId, attributeName, value));
     }
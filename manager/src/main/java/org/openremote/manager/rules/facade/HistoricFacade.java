@@ -22,6 +22,7 @@ package org.openremote.manager.rules.facade;
 import org.openremote.manager.datapoint.AssetDatapointService;
 import org.openremote.manager.rules.RulesEngineId;
 import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.DatapointDecimation;
 import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.datapoint.ValueDatapoint;
 import org.openremote.model.rules.HistoricDatapoints;
@@ -50,4 +51,9 @@ public class HistoricFacade<T extends Ruleset> extends HistoricDatapoints {
     public ValueDatapoint<?>[] getValueDatapoints(AttributeRef attributeRef, DatapointInterval interval, int stepSize, LocalDateTime fromTimestamp, LocalDateTime toTimestamp) {
         return assetDatapointService.getValueDatapoints(attributeRef, interval, stepSize, fromTimestamp, toTimestamp);
     }
+
+    @Override
+    public ValueDatapoint<?>[] getValueDatapoints(AttributeRef attributeRef, DatapointDecimation decimation, int maxPoints, LocalDateTime fromTimestamp, LocalDateTime toTimestamp) {
+        return assetDatapointService.getValueDatapoints(attributeRef, decimation, maxPoints, fromTimestamp, toTimestamp);
+    }
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.security;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.openremote.model.security.Tenant;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the inputs of the authorization checks done for every client write: whether a user is restricted, the
+ * {@link Tenant} of a realm and whether a user is linked to an asset.
+ * <p>
+ * Entries expire after a fixed time so changes that are not published (e.g. made directly in Keycloak) are picked up
+ * eventually, and are invalidated by the {@link ManagerIdentityService} when a user, tenant or user asset link is
+ * modified. Tenants are cached rather than the decision, the tenant activity depends on the current time.
+ */
+public class AuthorizationCache {
+
+    protected final Cache<String, Boolean> restrictedUsers;
+    protected final Cache<String, Optional<Tenant>> tenants;
+    protected final Cache<String, Boolean> userAssets;
+    // Incremented on every invalidation so a load that raced with an invalidation is not cached
+    protected final AtomicLong generation = new AtomicLong();
+
+    public AuthorizationCache(int maxSize, int expireSeconds) {
+        restrictedUsers = buildCache(maxSize, expireSeconds);
+        tenants = buildCache(maxSize, expireSeconds);
+        userAssets = buildCache(maxSize, expireSeconds);
+    }
+
+    protected static <K, V> Cache<K, V> buildCache(int maxSize, int expireSeconds) {
+        return CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(expireSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+    }
+
+    public boolean isRestrictedUser(String userId, Supplier<Boolean> loader) {
+        return get(restrictedUsers, userId, loader);
+    }
+
+    public Tenant getTenant(String realm, Supplier<Tenant> loader) {
+        return get(tenants, realm, () -> Optional.ofNullable(loader.get())).orElse(null);
+    }
+
+    public boolean isUserAsset(String userId, String assetId, Supplier<Boolean> loader) {
+        return get(userAssets, getUserAssetKey(userId, assetId), loader);
+    }
+
+    protected <K, V> V get(Cache<K, V> cache, K key, Supplier<V> loader) {
+        V value = cache.getIfPresent(key);
+
+        if (value == null) {
+            long loadGeneration = generation.get();
+            value = loader.get();
+            if (loadGeneration == generation.get()) {
+                cache.put(key, value);
+            }
+        }
+
+        return value;
+    }
+
+    /**
+     * Invalidate the restricted flag and asset links of the user.
+     */
+    public void invalidateUser(String userId) {
+        generation.incrementAndGet();
+        restrictedUsers.invalidate(userId);
+        String prefix = getUserAssetKey(userId, "");
+        userAssets.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Invalidate all tenants, a tenant update can change its realm name.
+     */
+    public void invalidateTenants() {
+        generation.incrementAndGet();
+        tenants.invalidateAll();
+    }
+
+    public void invalidateUserAsset(String userId, String assetId) {
+        generation.incrementAndGet();
+        userAssets.invalidate(getUserAssetKey(userId, assetId));
+    }
+
+    /**
+     * Invalidate the links of all users to the asset.
+     */
+    public void invalidateAsset(String assetId) {
+        generation.incrementAndGet();
+        String suffix = getUserAssetKey("", assetId);
+        userAssets.asMap().keySet().removeIf(key -> key.endsWith(suffix));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        restrictedUsers.invalidateAll();
+        tenants.invalidateAll();
+        userAssets.invalidateAll();
+    }
+
+    public CacheStats getRestrictedUserStats() {
+        return restrictedUsers.stats();
+    }
+
+    public CacheStats getTenantStats() {
+        return tenants.stats();
+    }
+
+    public CacheStats getUserAssetStats() {
+        return userAssets.stats();
+    }
+
+    protected static String getUserAssetKey(String userId, String assetId) {
+        return userId + ":" + assetId;
+    }
+}
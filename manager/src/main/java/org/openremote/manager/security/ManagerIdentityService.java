@@ -19,27 +19,54 @@
  */
 package org.openremote.manager.security;
 
+import org.apache.camel.builder.RouteBuilder;
+import org.openremote.container.message.MessageBrokerService;
+import org.openremote.container.persistence.PersistenceEvent;
 import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.security.IdentityService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.web.ManagerWebService;
 import org.openremote.model.Container;
+import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.UserAsset;
+import org.openremote.model.security.Tenant;
+import org.openremote.model.security.User;
 
 import javax.persistence.EntityManager;
 import java.util.Locale;
 import java.util.logging.Logger;
 
+import static org.openremote.container.persistence.PersistenceEvent.PERSISTENCE_TOPIC;
+import static org.openremote.container.persistence.PersistenceEvent.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
+
 public class ManagerIdentityService extends IdentityService {
 
     private static final Logger LOG = Logger.getLogger(ManagerIdentityService.class.getName());
+    public static final String IDENTITY_AUTHORIZATION_CACHE_MAX_SIZE = "IDENTITY_AUTHORIZATION_CACHE_MAX_SIZE";
+    public static final int IDENTITY_AUTHORIZATION_CACHE_MAX_SIZE_DEFAULT = 10000;
+    // Cached authorization data is reloaded after this long, so changes that are not published are picked up eventually
+    public static final String IDENTITY_AUTHORIZATION_CACHE_EXPIRE_SECONDS = "IDENTITY_AUTHORIZATION_CACHE_EXPIRE_SECONDS";
+    public static final int IDENTITY_AUTHORIZATION_CACHE_EXPIRE_SECONDS_DEFAULT = 60;
 
     protected ManagerIdentityProvider identityProvider;
     protected PersistenceService persistenceService;
+    protected MessageBrokerService messageBrokerService;
+    protected AuthorizationCache authorizationCache;
 
     @Override
     public void init(Container container) throws Exception {
         super.init(container);
         persistenceService = container.getService(PersistenceService.class);
+        messageBrokerService = container.getService(MessageBrokerService.class);
+
+        int authorizationCacheMaxSize = getInteger(container.getConfig(), IDENTITY_AUTHORIZATION_CACHE_MAX_SIZE, IDENTITY_AUTHORIZATION_CACHE_MAX_SIZE_DEFAULT);
+        if (authorizationCacheMaxSize > 0) {
+            authorizationCache = new AuthorizationCache(
+                authorizationCacheMaxSize,
+                getInteger(container.getConfig(), IDENTITY_AUTHORIZATION_CACHE_EXPIRE_SECONDS, IDENTITY_AUTHORIZATION_CACHE_EXPIRE_SECONDS_DEFAULT)
+            );
+        }
 
         container.getService(ManagerWebService.class).getApiSingletons().add(
             new TenantResourceImpl(container.getService(TimerService.class), this, container)
@@ -49,10 +76,41 @@ public class ManagerIdentityService extends IdentityService {
         );
     }
 
+    @Override
+    public void start(Container container) throws Exception {
+        super.start(container);
+
+        if (authorizationCache != null) {
+            // The message broker context doesn't exist yet when this service is initialised
+            messageBrokerService.getContext().addRoutes(new RouteBuilder() {
+                @SuppressWarnings("unchecked")
+                @Override
+                public void configure() throws Exception {
+                    from(PERSISTENCE_TOPIC)
+                        .routeId("AuthorizationCacheInvalidation")
+                        .filter(exchange ->
+                            isPersistenceEventForEntityType(UserConfiguration.class).matches(exchange)
+                                || isPersistenceEventForEntityType(User.class).matches(exchange)
+                                || isPersistenceEventForEntityType(Tenant.class).matches(exchange)
+                                || isPersistenceEventForEntityType(UserAsset.class).matches(exchange)
+                                || isPersistenceEventForEntityType(Asset.class).matches(exchange))
+                        .process(exchange -> onPersistenceEvent(exchange.getIn().getBody(PersistenceEvent.class)));
+                }
+            });
+        }
+    }
+
     public ManagerIdentityProvider getIdentityProvider() {
         return identityProvider;
     }
 
+    /**
+     * @return The cache of authorization data, <code>null</code> if it is disabled.
+     */
+    public AuthorizationCache getAuthorizationCache() {
+        return authorizationCache;
+    }
+
     @Override
     public ManagerIdentityProvider createIdentityProvider(Container container, String identityProviderType) {
         if (identityProvider == null) {
@@ -93,7 +151,54 @@ public class ManagerIdentityService extends IdentityService {
         if (userConfiguration.getUserId() == null || userConfiguration.getUserId().length() == 0) {
             throw new IllegalArgumentException("User ID must be set on: " + userConfiguration);
         }
-        return em.merge(userConfiguration);
+        userConfiguration = em.merge(userConfiguration);
+        invalidateUser(userConfiguration.getUserId());
+        return userConfiguration;
+    }
+
+    public void invalidateUser(String userId) {
+        if (authorizationCache != null) {
+            authorizationCache.invalidateUser(userId);
+        }
+    }
+
+    public void invalidateTenants() {
+        if (authorizationCache != null) {
+            authorizationCache.invalidateTenants();
+        }
+    }
+
+    public void invalidateUserAsset(String userId, String assetId) {
+        if (authorizationCache != null) {
+            authorizationCache.invalidateUserAsset(userId, assetId);
+        }
+    }
+
+    protected void onPersistenceEvent(PersistenceEvent<?> persistenceEvent) {
+        if (authorizationCache == null) {
+            return;
+        }
+
+        Object entity = persistenceEvent.getEntity();
+
+        if (entity instanceof UserConfiguration) {
+            invalidateUser(((UserConfiguration) entity).getUserId());
+        } else if (entity instanceof User) {
+            invalidateUser(((User) entity).getId());
+        } else if (entity instanceof Tenant) {
+            if (persistenceEvent.getCause() == PersistenceEvent.Cause.DELETE) {
+                // Users of the tenant are removed as well
+                authorizationCache.invalidateAll();
+            } else {
+                invalidateTenants();
+            }
+        } else if (entity instanceof UserAsset) {
+            UserAsset.Id id = ((UserAsset) entity).getId();
+            invalidateUserAsset(id.getUserId(), id.getAssetId());
+        } else if (entity instanceof Asset && persistenceEvent.getCause() == PersistenceEvent.Cause.DELETE) {
+            // User asset links are removed by the database when the asset is deleted
+            authorizationCache.invalidateAsset(((Asset<?>) entity).getId());
+        }
     }
 
     @Override
@@ -93,6 +93,7 @@ public class ManagerKeycloakIdentityProvider extends KeycloakIdentityProvider im
     protected MessageBrokerService messageBrokerService;
     protected ClientEventService clientEventService;
     protected ConsoleAppService consoleAppService;
+    protected ManagerIdentityService identityService;
     protected String keycloakAdminPassword;
     protected Container container;
 
@@ -113,6 +114,7 @@ public class ManagerKeycloakIdentityProvider extends KeycloakIdentityProvider im
         this.messageBrokerService = container.getService(MessageBrokerService.class);
         this.clientEventService = container.getService(ClientEventService.class);
         this.consoleAppService = container.getService(ConsoleAppService.class);
+        this.identityService = container.getService(ManagerIdentityService.class);
     }
 
     @Override
@@ -397,6 +399,7 @@ public class ManagerKeycloakIdentityProvider extends KeycloakIdentityProvider im
             }
             return null;
         });
+        identityService.invalidateUser(userId);
     }
 
     @Override
@@ -951,7 +954,11 @@ public class ManagerKeycloakIdentityProvider extends KeycloakIdentityProvider im
      */
     @Override
     public boolean isTenantActiveAndAccessible(AuthContext authContext, String realm) {
-        return isTenantActiveAndAccessible(authContext, getTenant(realm));
+        AuthorizationCache authorizationCache = identityService.getAuthorizationCache();
+        Tenant tenant = authorizationCache != null && realm != null
+            ? authorizationCache.getTenant(realm, () -> getTenant(realm))
+            : getTenant(realm);
+        return isTenantActiveAndAccessible(authContext, tenant);
     }
 
     @Override
@@ -961,6 +968,13 @@ public class ManagerKeycloakIdentityProvider extends KeycloakIdentityProvider im
 
     @Override
     public boolean isRestrictedUser(String userId) {
+        AuthorizationCache authorizationCache = identityService.getAuthorizationCache();
+        return authorizationCache != null && userId != null
+            ? authorizationCache.isRestrictedUser(userId, () -> isRestrictedUserFromDb(userId))
+            : isRestrictedUserFromDb(userId);
+    }
+
+    protected boolean isRestrictedUserFromDb(String userId) {
         UserConfiguration userConfiguration = persistenceService.doReturningTransaction(em -> em.find(UserConfiguration.class, userId));
         return userConfiguration != null && userConfiguration.isRestricted();
     }
@@ -1086,6 +1100,9 @@ public class ManagerKeycloakIdentityProvider extends KeycloakIdentityProvider im
         // Fire persistence event although we don't use database for Tenant CUD but call Keycloak API
         PersistenceEvent<?> persistenceEvent = new PersistenceEvent<>(cause, tenant, new String[0], null);
 
+        // Invalidate cached tenants now, the published event is processed asynchronously
+        identityService.onPersistenceEvent(persistenceEvent);
+
         if (messageBrokerService.getProducerTemplate() != null) {
             messageBrokerService.getProducerTemplate().sendBodyAndHeader(
                 PersistenceEvent.PERSISTENCE_TOPIC,
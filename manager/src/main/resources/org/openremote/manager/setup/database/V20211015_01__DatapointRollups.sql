@@ -0,0 +1,51 @@
+/*
+  ############################# TABLES #############################
+ */
+
+/*
+  Hourly and daily aggregates of number and boolean (1/0) asset datapoints, maintained by the asset datapoint service;
+  TIMESTAMP is the start of the bucket and LAST_VALUE is the value of the most recent datapoint in the bucket.
+ */
+create table ASSET_DATAPOINT_HOURLY (
+  TIMESTAMP      timestamp    not null,
+  ENTITY_ID      varchar(22)  not null,
+  ATTRIBUTE_NAME varchar(255) not null,
+  MIN_VALUE      numeric      not null,
+  MAX_VALUE      numeric      not null,
+  SUM_VALUE      numeric      not null,
+  VALUE_COUNT    int8         not null,
+  LAST_VALUE     numeric      not null,
+  LAST_TIMESTAMP timestamp    not null,
+  primary key (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP)
+);
+
+create table ASSET_DATAPOINT_DAILY (
+  TIMESTAMP      timestamp    not null,
+  ENTITY_ID      varchar(22)  not null,
+  ATTRIBUTE_NAME varchar(255) not null,
+  MIN_VALUE      numeric      not null,
+  MAX_VALUE      numeric      not null,
+  SUM_VALUE      numeric      not null,
+  VALUE_COUNT    int8         not null,
+  LAST_VALUE     numeric      not null,
+  LAST_TIMESTAMP timestamp    not null,
+  primary key (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP)
+);
+
+/*
+  ############################# CONSTRAINTS #############################
+ */
+
+alter table ASSET_DATAPOINT_HOURLY
+  add foreign key (ENTITY_ID) references ASSET (ID) on delete cascade;
+
+alter table ASSET_DATAPOINT_DAILY
+  add foreign key (ENTITY_ID) references ASSET (ID) on delete cascade;
+
+/*
+  ############################# INDICES #############################
+ */
+
+create index ASSET_DATAPOINT_HOURLY_TIMESTAMP on ASSET_DATAPOINT_HOURLY(TIMESTAMP);
+
+create index ASSET_DATAPOINT_DAILY_TIMESTAMP on ASSET_DATAPOINT_DAILY(TIMESTAMP);
@@ -0,0 +1,76 @@
+/*
+  ASSET_DATAPOINT and ASSET_PREDICTED_DATAPOINT are partitioned into a child table per day (using table inheritance
+  so this works on all supported PostgreSQL versions); rows are routed to the child table of their TIMESTAMP by an
+  insert trigger on the parent table. Rows stored before the tables were partitioned stay in the parent table until
+  they are purged. Child tables are created ahead of time by the datapoint services and on demand by the trigger.
+ */
+
+/*
+  ############################# FUNCTIONS #############################
+ */
+create or replace function CREATE_DATAPOINT_PARTITION(SCHEMA_NAME text, PARENT_TABLE text, PARTITION_TIMESTAMP timestamp)
+  returns text as
+$$
+declare
+  PARTITION_START timestamp := date_trunc('day', PARTITION_TIMESTAMP);
+  PARTITION_TABLE text := lower(PARENT_TABLE) || '_' || to_char(PARTITION_TIMESTAMP, 'YYYYMMDD');
+begin
+  if to_regclass(format('%I.%I', SCHEMA_NAME, PARTITION_TABLE)) is null then
+    execute format(
+      'create table if not exists %I.%I (check (TIMESTAMP >= %L and TIMESTAMP < %L), primary key (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME)) inherits (%I.%I)',
+      SCHEMA_NAME, PARTITION_TABLE, PARTITION_START, PARTITION_START + interval '1 day', SCHEMA_NAME, lower(PARENT_TABLE)
+    );
+    if lower(PARENT_TABLE) = 'asset_datapoint' then
+      execute format(
+        'alter table %I.%I add foreign key (ENTITY_ID) references %I.ASSET (ID) on delete cascade',
+        SCHEMA_NAME, PARTITION_TABLE, SCHEMA_NAME
+      );
+    end if;
+  end if;
+  return PARTITION_TABLE;
+end;
+$$
+language plpgsql;
+
+create or replace function DATAPOINT_PARTITION_INSERT()
+  returns trigger as
+$$
+declare
+  PARTITION_TABLE text := TG_TABLE_NAME || '_' || to_char(NEW.TIMESTAMP, 'YYYYMMDD');
+  UPDATED_COUNT int;
+begin
+  -- Update the row if it was stored before the table was partitioned
+  execute format(
+    'update only %I.%I set VALUE = $1 where TIMESTAMP = $2 and ENTITY_ID = $3 and ATTRIBUTE_NAME = $4',
+    TG_TABLE_SCHEMA, TG_TABLE_NAME
+  ) using NEW.VALUE, NEW.TIMESTAMP, NEW.ENTITY_ID, NEW.ATTRIBUTE_NAME;
+  get diagnostics UPDATED_COUNT = row_count;
+
+  if UPDATED_COUNT = 0 then
+    -- Not using an exception handler for a missing partition as that would start a subtransaction for every row
+    if to_regclass(format('%I.%I', TG_TABLE_SCHEMA, PARTITION_TABLE)) is null then
+      perform CREATE_DATAPOINT_PARTITION(TG_TABLE_SCHEMA, TG_TABLE_NAME, NEW.TIMESTAMP);
+    end if;
+    execute format(
+      'insert into %I.%I values ($1.*) on conflict (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME) do update set VALUE = excluded.VALUE',
+      TG_TABLE_SCHEMA, PARTITION_TABLE
+    ) using NEW;
+  end if;
+
+  -- The row has been stored in a partition (or updated) so don't insert it into the parent table
+  return null;
+end;
+$$
+language plpgsql;
+
+/*
+  ############################# TRIGGERS #############################
+ */
+
+create trigger ASSET_DATAPOINT_PARTITION_INSERT
+  before insert on ASSET_DATAPOINT
+  for each row execute procedure DATAPOINT_PARTITION_INSERT();
+
+create trigger ASSET_PREDICTED_DATAPOINT_PARTITION_INSERT
+  before insert on ASSET_PREDICTED_DATAPOINT
+  for each row execute procedure DATAPOINT_PARTITION_INSERT();
@@ -0,0 +1,64 @@
+/*
+  Index datapoints by attribute and timestamp so the datapoints and period of a single attribute can be read without
+  scanning the datapoints of all attributes (the primary key leads with TIMESTAMP). Indexes aren't inherited so the
+  index is created on the parent tables, on every existing partition and by CREATE_DATAPOINT_PARTITION.
+ */
+
+/*
+  ############################# FUNCTIONS #############################
+ */
+create or replace function CREATE_DATAPOINT_PARTITION(SCHEMA_NAME text, PARENT_TABLE text, PARTITION_TIMESTAMP timestamp)
+  returns text as
+$$
+declare
+  PARTITION_START timestamp := date_trunc('day', PARTITION_TIMESTAMP);
+  PARTITION_TABLE text := lower(PARENT_TABLE) || '_' || to_char(PARTITION_TIMESTAMP, 'YYYYMMDD');
+begin
+  if to_regclass(format('%I.%I', SCHEMA_NAME, PARTITION_TABLE)) is null then
+    execute format(
+      'create table if not exists %I.%I (check (TIMESTAMP >= %L and TIMESTAMP < %L), primary key (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME)) inherits (%I.%I)',
+      SCHEMA_NAME, PARTITION_TABLE, PARTITION_START, PARTITION_START + interval '1 day', SCHEMA_NAME, lower(PARENT_TABLE)
+    );
+    execute format(
+      'create index if not exists %I on %I.%I (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP)',
+      PARTITION_TABLE || '_attribute', SCHEMA_NAME, PARTITION_TABLE
+    );
+    if lower(PARENT_TABLE) = 'asset_datapoint' then
+      execute format(
+        'alter table %I.%I add foreign key (ENTITY_ID) references %I.ASSET (ID) on delete cascade',
+        SCHEMA_NAME, PARTITION_TABLE, SCHEMA_NAME
+      );
+    end if;
+  end if;
+  return PARTITION_TABLE;
+end;
+$$
+language plpgsql;
+
+do
+$$
+declare
+  PARTITION record;
+begin
+  for PARTITION in
+    select N.NSPNAME as SCHEMA_NAME, C.RELNAME as TABLE_NAME
+    from PG_INHERITS I
+      join PG_CLASS C on C.OID = I.INHRELID
+      join PG_NAMESPACE N on N.OID = C.RELNAMESPACE
+    where I.INHPARENT in ('ASSET_DATAPOINT'::regclass, 'ASSET_PREDICTED_DATAPOINT'::regclass)
+  loop
+    execute format(
+      'create index if not exists %I on %I.%I (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP)',
+      PARTITION.TABLE_NAME || '_attribute', PARTITION.SCHEMA_NAME, PARTITION.TABLE_NAME
+    );
+  end loop;
+end;
+$$;
+
+/*
+  ############################# INDICES #############################
+ */
+
+create index ASSET_DATAPOINT_ATTRIBUTE on ASSET_DATAPOINT(ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP);
+
+create index ASSET_PREDICTED_DATAPOINT_ATTRIBUTE on ASSET_PREDICTED_DATAPOINT(ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP);
@@ -0,0 +1,23 @@
+/*
+  ############################# TABLES #############################
+ */
+
+/*
+  Hourly datapoint rollup buckets that have to be recomputed, written in the transaction of the datapoint upsert that
+  made the bucket dirty and deleted once the bucket has been recomputed, so no bucket is missed after a restart;
+  MARKED_AT is the time (in millis) the bucket was last marked.
+ */
+create table ASSET_DATAPOINT_ROLLUP_DIRTY (
+  TIMESTAMP      timestamp    not null,
+  ENTITY_ID      varchar(22)  not null,
+  ATTRIBUTE_NAME varchar(255) not null,
+  MARKED_AT      int8         not null,
+  primary key (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP)
+);
+
+/*
+  ############################# CONSTRAINTS #############################
+ */
+
+alter table ASSET_DATAPOINT_ROLLUP_DIRTY
+  add foreign key (ENTITY_ID) references ASSET (ID) on delete cascade;
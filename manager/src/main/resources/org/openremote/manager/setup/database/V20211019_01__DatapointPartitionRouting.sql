@@ -0,0 +1,136 @@
+/*
+  Datapoints stored in the parent tables before they were partitioned stay there until they are purged, no data is
+  copied; the insert trigger only looks for an existing row in the parent table when the timestamp isn't newer than
+  the latest of those rows, which is passed to the trigger as its argument. Partitions are still created on demand
+  by the trigger, under a transaction level advisory lock so concurrent creation of the same partition waits instead
+  of failing with a unique violation on the catalog.
+
+  When the partition of an expired day is dropped the datapoints of attributes with a longer max age are first
+  copied to the ASSET_DATAPOINT_RETAINED child table (see DatapointPartitions), which has no day constraint and is
+  purged per attribute.
+ */
+
+/*
+  ############################# FUNCTIONS #############################
+ */
+create or replace function CREATE_DATAPOINT_PARTITION(SCHEMA_NAME text, PARENT_TABLE text, PARTITION_TIMESTAMP timestamp)
+  returns text as
+$$
+declare
+  PARTITION_START timestamp := date_trunc('day', PARTITION_TIMESTAMP);
+  PARTITION_TABLE text := lower(PARENT_TABLE) || '_' || to_char(PARTITION_TIMESTAMP, 'YYYYMMDD');
+begin
+  if to_regclass(format('%I.%I', SCHEMA_NAME, PARTITION_TABLE)) is null then
+    -- Serialise creation of the partition, the check is repeated once the lock is held
+    perform pg_advisory_xact_lock(hashtext(SCHEMA_NAME || '.' || PARTITION_TABLE));
+    if to_regclass(format('%I.%I', SCHEMA_NAME, PARTITION_TABLE)) is null then
+      execute format(
+        'create table %I.%I (check (TIMESTAMP >= %L and TIMESTAMP < %L), primary key (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME)) inherits (%I.%I)',
+        SCHEMA_NAME, PARTITION_TABLE, PARTITION_START, PARTITION_START + interval '1 day', SCHEMA_NAME, lower(PARENT_TABLE)
+      );
+      execute format(
+        'create index %I on %I.%I (ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP)',
+        PARTITION_TABLE || '_attribute', SCHEMA_NAME, PARTITION_TABLE
+      );
+      if lower(PARENT_TABLE) = 'asset_datapoint' then
+        execute format(
+          'alter table %I.%I add foreign key (ENTITY_ID) references %I.ASSET (ID) on delete cascade',
+          SCHEMA_NAME, PARTITION_TABLE, SCHEMA_NAME
+        );
+      end if;
+    end if;
+  end if;
+  return PARTITION_TABLE;
+end;
+$$
+language plpgsql;
+
+create or replace function DATAPOINT_PARTITION_INSERT()
+  returns trigger as
+$$
+declare
+  PARTITION_TABLE text := TG_TABLE_NAME || '_' || to_char(NEW.TIMESTAMP, 'YYYYMMDD');
+  RETAINED_TABLE text := TG_TABLE_NAME || '_retained';
+  UPDATED_COUNT int;
+begin
+  -- Update the row if it was stored before the table was partitioned
+  if NEW.TIMESTAMP <= TG_ARGV[0]::timestamp then
+    execute format(
+      'update only %I.%I set VALUE = $1 where TIMESTAMP = $2 and ENTITY_ID = $3 and ATTRIBUTE_NAME = $4',
+      TG_TABLE_SCHEMA, TG_TABLE_NAME
+    ) using NEW.VALUE, NEW.TIMESTAMP, NEW.ENTITY_ID, NEW.ATTRIBUTE_NAME;
+    get diagnostics UPDATED_COUNT = row_count;
+    if UPDATED_COUNT > 0 then
+      return null;
+    end if;
+  end if;
+
+  -- Not using an exception handler for a missing partition as that would start a subtransaction for every row
+  if to_regclass(format('%I.%I', TG_TABLE_SCHEMA, PARTITION_TABLE)) is null then
+    -- The partition may have been dropped after the rows of attributes with a longer max age were retained
+    if to_regclass(format('%I.%I', TG_TABLE_SCHEMA, RETAINED_TABLE)) is not null then
+      execute format(
+        'update %I.%I set VALUE = $1 where TIMESTAMP = $2 and ENTITY_ID = $3 and ATTRIBUTE_NAME = $4',
+        TG_TABLE_SCHEMA, RETAINED_TABLE
+      ) using NEW.VALUE, NEW.TIMESTAMP, NEW.ENTITY_ID, NEW.ATTRIBUTE_NAME;
+      get diagnostics UPDATED_COUNT = row_count;
+      if UPDATED_COUNT > 0 then
+        return null;
+      end if;
+    end if;
+    perform CREATE_DATAPOINT_PARTITION(TG_TABLE_SCHEMA, TG_TABLE_NAME, NEW.TIMESTAMP);
+  end if;
+
+  execute format(
+    'insert into %I.%I values ($1.*) on conflict (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME) do update set VALUE = excluded.VALUE',
+    TG_TABLE_SCHEMA, PARTITION_TABLE
+  ) using NEW;
+
+  -- The row has been stored in a partition (or updated) so don't insert it into the parent table
+  return null;
+end;
+$$
+language plpgsql;
+
+/*
+  ############################# TABLES #############################
+ */
+
+create table ASSET_DATAPOINT_RETAINED (
+  primary key (TIMESTAMP, ENTITY_ID, ATTRIBUTE_NAME)
+) inherits (ASSET_DATAPOINT);
+
+/*
+  ############################# CONSTRAINTS #############################
+ */
+
+alter table ASSET_DATAPOINT_RETAINED
+  add foreign key (ENTITY_ID) references ASSET (ID) on delete cascade;
+
+/*
+  ############################# INDICES #############################
+ */
+
+create index ASSET_DATAPOINT_RETAINED_ATTRIBUTE on ASSET_DATAPOINT_RETAINED(ENTITY_ID, ATTRIBUTE_NAME, TIMESTAMP);
+
+/*
+  ############################# TRIGGERS #############################
+ */
+do
+$$
+declare
+  PARENT_TABLE text;
+  LEGACY_LATEST timestamp;
+begin
+  foreach PARENT_TABLE in array array['asset_datapoint', 'asset_predicted_datapoint']
+  loop
+    -- A backward scan of the primary key of the parent table only
+    execute format('select max(TIMESTAMP) from only %I', PARENT_TABLE) into LEGACY_LATEST;
+    execute format('drop trigger %I on %I', PARENT_TABLE || '_partition_insert', PARENT_TABLE);
+    execute format(
+      'create trigger %I before insert on %I for each row execute procedure DATAPOINT_PARTITION_INSERT(%L)',
+      PARENT_TABLE || '_partition_insert', PARENT_TABLE, coalesce(LEGACY_LATEST, '-infinity'::timestamp)
+    );
+  end loop;
+end;
+$$;
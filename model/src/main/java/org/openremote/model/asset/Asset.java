@@ -43,6 +43,7 @@ import org.openremote.model.util.ValueUtil;
 import javax.persistence.*;
 import javax.validation.Valid;
 import javax.validation.constraints.*;
+import java.lang.reflect.Constructor;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -315,6 +316,20 @@ public abstract class Asset<T extends Asset<?>> implements IdentifiableEntity<T>
     @Valid
     protected AttributeMap attributes;
 
+    // The no args constructor of each asset type, see deepCopy
+    protected static final ClassValue<Constructor<?>> NO_ARGS_CONSTRUCTORS = new ClassValue<Constructor<?>>() {
+        @Override
+        protected Constructor<?> computeValue(Class<?> type) {
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                return constructor;
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Asset class must have a no args constructor: " + type, e);
+            }
+        }
+    };
+
     /**
      * For use by hydrators (i.e. JPA/Jackson)
      */
@@ -526,6 +541,32 @@ public abstract class Asset<T extends Asset<?>> implements IdentifiableEntity<T>
         return (T) this;
     }
 
+    /**
+     * Deep copy of this asset that doesn't use serialization; the attributes are copied using {@link
+     * AttributeMap#deepCopy}. Asset types only declare descriptors so the fields of this class are all that is copied.
+     */
+    public Asset<?> deepCopy() {
+        Asset<?> copy;
+        try {
+            copy = (Asset<?>) NO_ARGS_CONSTRUCTORS.get(getClass()).newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create asset of type: " + getClass(), e);
+        }
+        copy.id = id;
+        copy.version = version;
+        copy.createdOn = createdOn != null ? new Date(createdOn.getTime()) : null;
+        copy.name = name;
+        copy.accessPublicRead = accessPublicRead;
+        copy.parentId = parentId;
+        copy.realm = realm;
+        copy.parentName = parentName;
+        copy.parentType = parentType;
+        copy.type = type;
+        copy.path = path != null ? path.clone() : null;
+        copy.attributes = attributes != null ? attributes.deepCopy() : null;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "{" +
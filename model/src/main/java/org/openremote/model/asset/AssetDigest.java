@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.asset;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A summary of the state of an {@link Asset} used to work out which assets have changed without transferring them;
+ * the asset {@link Asset#getVersion} changes when the asset is modified and attribute value updates are captured by
+ * the most recent attribute timestamp.
+ */
+public class AssetDigest {
+
+    protected String id;
+    protected String parentId;
+    protected long version;
+    protected long timestamp;
+
+    @JsonCreator
+    public AssetDigest(@JsonProperty("id") String id,
+                       @JsonProperty("parentId") String parentId,
+                       @JsonProperty("version") long version,
+                       @JsonProperty("timestamp") long timestamp) {
+        this.id = id;
+        this.parentId = parentId;
+        this.version = version;
+        this.timestamp = timestamp;
+    }
+
+    public static AssetDigest fromAsset(Asset<?> asset) {
+        return new AssetDigest(
+            asset.getId(),
+            asset.getParentId(),
+            asset.getVersion(),
+            asset.getAttributes().values().stream().mapToLong(attribute -> attribute.getTimestamp().orElse(0L)).max().orElse(0L)
+        );
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return A digest with the timestamp moved forward to the specified attribute timestamp (if more recent)
+     */
+    public AssetDigest withTimestamp(long timestamp) {
+        return timestamp > this.timestamp ? new AssetDigest(id, parentId, version, timestamp) : this;
+    }
+
+    /**
+     * @return <code>true</code> if the asset described by the specified digest is different to (or more recent than)
+     * the one described by this digest.
+     */
+    public boolean isChanged(AssetDigest digest) {
+        return digest.version != version || digest.timestamp > timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "id='" + id + '\'' +
+            ", parentId='" + parentId + '\'' +
+            ", version=" + version +
+            ", timestamp=" + timestamp +
+            '}';
+    }
+}
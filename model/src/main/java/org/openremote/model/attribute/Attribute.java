@@ -317,6 +317,20 @@ public class Attribute<T> extends AbstractNameValueHolder<T> implements MetaHold
         return timestamp > 0;
     }
 
+    /**
+     * Deep copy of this attribute that doesn't use serialization; the value is copied using {@link
+     * ValueUtil#cloneValue} and the immutable {@link ValueDescriptor} is shared.
+     */
+    public Attribute<T> deepCopy() {
+        Attribute<T> copy = new Attribute<>();
+        copy.name = name;
+        copy.type = type;
+        copy.value = ValueUtil.cloneValue(value);
+        copy.timestamp = timestamp;
+        copy.meta = meta != null ? meta.deepCopy() : null;
+        return copy;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "{" +
@@ -68,4 +68,13 @@ public class AttributeMap extends NamedMap<Attribute<?>> {
     public <T> void setValue(AttributeDescriptor<T> descriptor, T value) {
         getOrCreate(descriptor).setValue(value);
     }
+
+    /**
+     * Deep copy of this map and its {@link Attribute}s, see {@link Attribute#deepCopy}.
+     */
+    public AttributeMap deepCopy() {
+        AttributeMap copy = new AttributeMap();
+        values().forEach(attribute -> copy.putSilent(attribute.deepCopy()));
+        return copy;
+    }
 }
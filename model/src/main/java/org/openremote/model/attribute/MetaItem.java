@@ -23,6 +23,7 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.openremote.model.util.ValueUtil;
 import org.openremote.model.value.AbstractNameValueHolder;
 import org.openremote.model.value.MetaItemDescriptor;
 import org.openremote.model.value.ValueDescriptor;
@@ -75,6 +76,18 @@ public class MetaItem<T> extends AbstractNameValueHolder<T> {
         this.type = type;
     }
 
+    /**
+     * Deep copy of this meta item that doesn't use serialization; the value is copied using {@link
+     * ValueUtil#cloneValue} and the immutable {@link ValueDescriptor} is shared.
+     */
+    public MetaItem<T> deepCopy() {
+        MetaItem<T> copy = new MetaItem<>();
+        copy.name = name;
+        copy.type = type;
+        copy.value = ValueUtil.cloneValue(value);
+        return copy;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(getName(), getValue());
@@ -113,6 +113,15 @@ public class MetaMap extends NamedMap<MetaItem<?>> {
         return metaItem;
     }
 
+    /**
+     * Deep copy of this map and its {@link MetaItem}s, see {@link MetaItem#deepCopy}.
+     */
+    public MetaMap deepCopy() {
+        MetaMap copy = new MetaMap();
+        values().forEach(metaItem -> copy.putSilent(metaItem.deepCopy()));
+        return copy;
+    }
+
     public <T> void set(MetaItemDescriptor<T> descriptor, T value) {
         MetaItem<T> metaItem = get(descriptor).orElse(new MetaItem<>(descriptor, null));
         metaItem.setValue(value);
@@ -39,6 +39,9 @@ public interface AssetDatapointResource {
      * regular user tries to access an asset in a realm different than its authenticated realm, or if the user is
      * restricted and the asset is not linked to the user. A 400 status is returned if the asset attribute does
      * not have datapoint storage enabled.
+     * <p>
+     * When a {@link DatapointDecimation} is specified the datapoints of a number or boolean attribute are reduced to
+     * at most the specified number of points instead of averaged per interval.
      */
     @GET
     @Path("{assetId}/attribute/{attributeName}")
@@ -50,7 +53,9 @@ public interface AssetDatapointResource {
                                    @QueryParam("interval") DatapointInterval datapointInterval,
                                    @QueryParam("step") Integer stepSize,
                                    @QueryParam("fromTimestamp") long fromTimestamp,
-                                   @QueryParam("toTimestamp") long toTimestamp);
+                                   @QueryParam("toTimestamp") long toTimestamp,
+                                   @QueryParam("decimation") DatapointDecimation decimation,
+                                   @QueryParam("points") Integer maxPoints);
 
     @GET
     @Path("periods")
@@ -60,12 +65,19 @@ public interface AssetDatapointResource {
                                           @QueryParam("assetId") String assetId,
                                           @QueryParam("attributeName") String attributeName);
 
+    /**
+     * Export the datapoints of the asset attributes in the time range; the datapoints are streamed from the database
+     * into the response. The default format is {@link DatapointExportFormat#CSV} and the default compression is
+     * {@link DatapointExportCompression#ZIP}.
+     */
     @GET
     @Path("export")
-    @Produces("application/zip")
+    @Produces({"application/zip", "application/gzip", "text/csv", APPLICATION_JSON})
     @RolesAllowed({Constants.READ_ASSETS_ROLE})
     void getDatapointExport(@Suspended AsyncResponse asyncResponse,
                             @QueryParam("attributeRefs") String attributeRefsString,
                             @QueryParam("fromTimestamp") long fromTimestamp,
-                            @QueryParam("toTimestamp") long toTimestamp);
+                            @QueryParam("toTimestamp") long toTimestamp,
+                            @QueryParam("format") DatapointExportFormat format,
+                            @QueryParam("compression") DatapointExportCompression compression);
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.datapoint;
+
+/**
+ * Algorithms for reducing the datapoints of a time range to a maximum number of points, as an alternative to the
+ * {@link DatapointInterval} averages; unlike averaging these preserve the peaks of the data.
+ */
+public enum DatapointDecimation {
+
+    /**
+     * Divide the time range into buckets of equal length and take the minimum and maximum datapoint of each bucket.
+     */
+    MIN_MAX,
+
+    /**
+     * Largest-Triangle-Three-Buckets; divide the time range into buckets of equal length and take the datapoint of
+     * each bucket that forms the largest triangle with the point selected in the previous bucket and the average of
+     * the next bucket. The first and last datapoints are always included.
+     */
+    LTTB
+}
@@ -32,6 +32,10 @@ import java.util.function.Consumer;
  * <p>
  * A subscription can optionally contain a {@link #subscriptionId} which allows a client
  * to have multiple subscriptions for the same event type.
+ * <p>
+ * A subscription to {@link org.openremote.model.attribute.AttributeEvent}s can optionally set a
+ * {@link #conflationMillis} window, the server then only delivers the latest event of each attribute at most once
+ * per window; this is useful for clients that only need the current value of frequently updated attributes.
  */
 public class EventSubscription<E extends SharedEvent> {
 
@@ -41,6 +45,7 @@ public class EventSubscription<E extends SharedEvent> {
     protected String eventType;
     protected EventFilter<E> filter;
     protected String subscriptionId;
+    protected Integer conflationMillis;
     @JsonIgnore
     protected boolean subscribed;
 
@@ -121,6 +126,14 @@ public class EventSubscription<E extends SharedEvent> {
         return subscriptionId;
     }
 
+    public Integer getConflationMillis() {
+        return conflationMillis;
+    }
+
+    public void setConflationMillis(Integer conflationMillis) {
+        this.conflationMillis = conflationMillis;
+    }
+
     public void setSubscribed(boolean subscribed) {
         this.subscribed = subscribed;
     }
@@ -135,6 +148,7 @@ public class EventSubscription<E extends SharedEvent> {
             "eventType='" + eventType + '\'' +
             ", filter=" + filter +
             ", subscriptionId='" + subscriptionId + '\'' +
+            ", conflationMillis=" + conflationMillis +
             '}';
     }
 }
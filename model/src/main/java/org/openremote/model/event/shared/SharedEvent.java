@@ -24,6 +24,8 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import org.openremote.model.asset.*;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.event.Event;
+import org.openremote.model.gateway.GatewayAttributeEventsEvent;
+import org.openremote.model.gateway.GatewayCapabilitiesEvent;
 import org.openremote.model.gateway.GatewayConnectionStatusEvent;
 import org.openremote.model.gateway.GatewayDisconnectEvent;
 import org.openremote.model.rules.RulesEngineStatusEvent;
@@ -50,8 +52,12 @@ import org.openremote.model.syslog.SyslogEvent;
     @JsonSubTypes.Type(value = RulesetChangedEvent.class, name = "ruleset-changed"),
     @JsonSubTypes.Type(value = GatewayDisconnectEvent.class, name = "gateway-disconnect"),
     @JsonSubTypes.Type(value = GatewayConnectionStatusEvent.class, name = "gateway-connection-status"),
+    @JsonSubTypes.Type(value = GatewayCapabilitiesEvent.class, name = "gateway-capabilities"),
+    @JsonSubTypes.Type(value = GatewayAttributeEventsEvent.class, name = "gateway-attribute-events"),
     @JsonSubTypes.Type(value = DeleteAssetsRequestEvent.class, name = "delete-assets-request"),
-    @JsonSubTypes.Type(value = DeleteAssetsResponseEvent.class, name = "delete-assets-response")
+    @JsonSubTypes.Type(value = DeleteAssetsResponseEvent.class, name = "delete-assets-response"),
+    @JsonSubTypes.Type(value = ReadAssetDigestsEvent.class, name = "read-asset-digests"),
+    @JsonSubTypes.Type(value = AssetDigestsEvent.class, name = "asset-digests")
 })
 @JsonTypeInfo(
     use = JsonTypeInfo.Id.NAME,
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.gateway;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.shared.SharedEvent;
+
+import java.util.List;
+
+/**
+ * Used by a gateway to send the {@link AttributeEvent}s that occurred within a short window to the central manager as
+ * a single message, the events are in the order they occurred.
+ */
+public class GatewayAttributeEventsEvent extends SharedEvent {
+
+    protected List<AttributeEvent> events;
+
+    @JsonCreator
+    public GatewayAttributeEventsEvent(@JsonProperty("events") List<AttributeEvent> events) {
+        this.events = events;
+    }
+
+    public List<AttributeEvent> getEvents() {
+        return events;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "events=" + (events == null ? "null" : events.size()) +
+            '}';
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.gateway;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.openremote.model.event.shared.SharedEvent;
+
+/**
+ * Sent by a central manager to a connected gateway to indicate which optional features of the gateway protocol it
+ * supports; gateways that don't know this event ignore it.
+ */
+public class GatewayCapabilitiesEvent extends SharedEvent {
+
+    protected boolean attributeEventBatching;
+
+    @JsonCreator
+    public GatewayCapabilitiesEvent(@JsonProperty("attributeEventBatching") boolean attributeEventBatching) {
+        this.attributeEventBatching = attributeEventBatching;
+    }
+
+    /**
+     * @return <code>true</code> if the central manager accepts {@link GatewayAttributeEventsEvent}s.
+     */
+    public boolean isAttributeEventBatching() {
+        return attributeEventBatching;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "attributeEventBatching=" + attributeEventBatching +
+            '}';
+    }
+}
@@ -20,6 +20,7 @@
 package org.openremote.model.rules;
 
 import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.datapoint.DatapointDecimation;
 import org.openremote.model.datapoint.DatapointInterval;
 import org.openremote.model.datapoint.ValueDatapoint;
 import org.openremote.model.util.TsIgnore;
@@ -42,4 +43,13 @@ public abstract class HistoricDatapoints {
                                                            int stepSize,
                                                            LocalDateTime fromTimestamp,
                                                            LocalDateTime toTimestamp);
+
+    /**
+     * Get the datapoints of a number or boolean attribute reduced to at most the specified number of points.
+     */
+    public abstract ValueDatapoint<?>[] getValueDatapoints(AttributeRef attributeRef,
+                                                           DatapointDecimation decimation,
+                                                           int maxPoints,
+                                                           LocalDateTime fromTimestamp,
+                                                           LocalDateTime toTimestamp);
 }
@@ -45,6 +45,8 @@ import org.openremote.model.asset.agent.Agent;
 import org.openremote.model.asset.agent.AgentDescriptor;
 import org.openremote.model.asset.agent.AgentLink;
 import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.MetaItem;
+import org.openremote.model.attribute.MetaMap;
 import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.value.*;
 import org.reflections.Reflections;
@@ -488,11 +490,29 @@ public class ValueUtil {
         return value;
     }
 
+    @SuppressWarnings("unchecked")
     public static <T> T clone(T object) {
         if (object == null) {
             return null;
         }
 
+        // Fast paths for the types copied on every attribute event
+        if (object.getClass() == Attribute.class) {
+            return (T) ((Attribute<?>) object).deepCopy();
+        }
+        if (object.getClass() == MetaMap.class) {
+            return (T) ((MetaMap) object).deepCopy();
+        }
+        if (object.getClass() == MetaItem.class) {
+            return (T) ((MetaItem<?>) object).deepCopy();
+        }
+        if (object instanceof JsonNode) {
+            return (T) ((JsonNode) object).deepCopy();
+        }
+        if (object instanceof Asset) {
+            return (T) ((Asset<?>) object).deepCopy();
+        }
+
         if (object instanceof Serializable) {
             try {
                 return (T) SerializationHelper.clone((Serializable) object);
@@ -510,6 +530,62 @@ public class ValueUtil {
         return null;
     }
 
+    /**
+     * Deep copy of an {@link Attribute} or {@link MetaItem} value without serialization: immutable values (strings,
+     * numbers, booleans, enums and JSON value nodes) are shared, JSON containers and arrays are copied directly and
+     * any other type falls back to {@link #clone}.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T cloneValue(T value) {
+        if (value == null || isImmutableValue(value)) {
+            return value;
+        }
+
+        if (value instanceof JsonNode) {
+            // Value nodes return themselves
+            return (T) ((JsonNode) value).deepCopy();
+        }
+
+        Class<?> valueClass = value.getClass();
+
+        if (valueClass.isArray()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(valueClass.getComponentType(), length);
+
+            if (valueClass.getComponentType().isPrimitive()) {
+                System.arraycopy(value, 0, copy, 0, length);
+            } else {
+                Object[] source = (Object[]) value;
+                Object[] target = (Object[]) copy;
+                for (int i = 0; i < length; i++) {
+                    target[i] = cloneValue(source[i]);
+                }
+            }
+            return (T) copy;
+        }
+
+        if (value instanceof Date) {
+            return (T) ((Date) value).clone();
+        }
+
+        return clone(value);
+    }
+
+    protected static boolean isImmutableValue(Object value) {
+        return value instanceof String
+            || value instanceof Boolean
+            || value instanceof Integer
+            || value instanceof Long
+            || value instanceof Double
+            || value instanceof Float
+            || value instanceof Short
+            || value instanceof Byte
+            || value instanceof Character
+            || value instanceof BigDecimal
+            || value instanceof BigInteger
+            || value instanceof Enum<?>;
+    }
+
     public static <T> TypeReference<Attribute<T>> getRef(Class<T> clazz) {
         return new TypeReference<Attribute<T>>() {};
     }
@@ -0,0 +1,131 @@
+package org.openremote.test.assets
+
+import org.openremote.manager.asset.AssetCache
+import org.openremote.manager.asset.AssetProcessingService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.setup.SetupService
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.test.ManagerContainerTrait
+import org.openremote.test.setup.KeycloakTestSetup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.TimeUnit
+
+import static org.openremote.model.value.ValueType.NUMBER
+
+class AssetCacheTest extends Specification implements ManagerContainerTrait {
+
+    def "Check cached assets are updated or invalidated when the asset changes"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        and: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+        def assetCache = assetStorageService.assetCache
+
+        expect: "the asset cache to be enabled"
+        assetCache != null
+
+        when: "an asset is created and read through the cache"
+        def asset = new ThingAsset("Cache test asset")
+            .setRealm(keycloakTestSetup.masterTenant.realm)
+        asset.addOrReplaceAttributes(new Attribute<>("counter", NUMBER, 1d))
+        asset = assetStorageService.merge(asset)
+        def misses = assetCache.stats.missCount()
+        def cachedAsset = assetStorageService.findCached(asset.id)
+
+        then: "the asset should have been loaded into the cache"
+        cachedAsset.name == "Cache test asset"
+        assetCache.stats.missCount() == misses + 1
+
+        when: "the returned copy is modified and the asset is read again"
+        def hits = assetCache.stats.hitCount()
+        cachedAsset.setName("Modified copy")
+        cachedAsset = assetStorageService.findCached(asset.id)
+
+        then: "the cached asset should be returned unmodified"
+        cachedAsset.name == "Cache test asset"
+        assetCache.stats.hitCount() == hits + 1
+
+        when: "an attribute of the asset is updated"
+        advancePseudoClock(1, TimeUnit.SECONDS, container)
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "counter", 2d))
+
+        then: "the cached attribute value should match the stored value"
+        conditions.eventually {
+            assert assetStorageService.find(asset.id, true).getAttribute("counter").flatMap { it.value }.orElse(null) == 2d
+            def cachedCounter = assetStorageService.findCached(asset.id).getAttribute("counter").orElse(null)
+            assert cachedCounter.value.orElse(null) == 2d
+            assert cachedCounter.timestamp.orElse(null) == assetStorageService.find(asset.id, true).getAttribute("counter").flatMap { it.timestamp }.orElse(null)
+        }
+
+        when: "the asset is merged"
+        asset = assetStorageService.find(asset.id, true)
+        asset.setName("Cache test asset updated")
+        asset.addOrReplaceAttributes(new Attribute<>("other", NUMBER, 5d))
+        asset = assetStorageService.merge(asset)
+
+        then: "the cached asset should reflect the merge"
+        def mergedAsset = assetStorageService.findCached(asset.id)
+        mergedAsset.name == "Cache test asset updated"
+        mergedAsset.version == asset.version
+        mergedAsset.getAttribute("other").flatMap { it.value }.orElse(null) == 5d
+        mergedAsset.getAttribute("counter").flatMap { it.value }.orElse(null) == 2d
+
+        when: "the asset is deleted"
+        def deleted = assetStorageService.delete(Collections.singletonList(asset.id))
+
+        then: "the asset should no longer be returned from the cache"
+        deleted
+        assetStorageService.findCached(asset.id) == null
+    }
+
+    def "Check a load that races with an invalidation is not cached and older values are ignored"() {
+
+        given: "an asset cache"
+        def assetCache = new AssetCache(10, 0)
+        def asset = new ThingAsset("Cache unit test asset").setId("cacheUnitTestAsset")
+        asset.addOrReplaceAttributes(new Attribute<>("counter", NUMBER, 1d, 1000L))
+
+        when: "the asset is invalidated whilst it is being loaded"
+        def loaded = assetCache.get(asset.id, {
+            assetCache.invalidate(asset.id)
+            asset
+        })
+
+        then: "the loaded asset should be returned but not cached"
+        loaded.name == "Cache unit test asset"
+        assetCache.size == 0
+
+        when: "the asset is loaded without an invalidation"
+        assetCache.get(asset.id, { asset })
+
+        then: "the asset should be cached"
+        assetCache.size == 1
+
+        when: "an older value of the attribute is written through"
+        assetCache.updateAttributeValue(asset.id, new Attribute<>("counter", NUMBER, 0d, 999L))
+
+        then: "the cached value should be unchanged"
+        assetCache.get(asset.id, { null }).getAttribute("counter").flatMap { it.value }.orElse(null) == 1d
+
+        when: "a newer value of the attribute is written through"
+        assetCache.updateAttributeValue(asset.id, new Attribute<>("counter", NUMBER, 3d, 1001L))
+
+        then: "the cached value should be updated"
+        assetCache.get(asset.id, { null }).getAttribute("counter").flatMap { it.value }.orElse(null) == 3d
+
+        when: "an attribute the cached asset doesn't have is written through"
+        assetCache.updateAttributeValue(asset.id, new Attribute<>("unknown", NUMBER, 1d, 1002L))
+
+        then: "the asset should have been invalidated"
+        assetCache.size == 0
+    }
+}
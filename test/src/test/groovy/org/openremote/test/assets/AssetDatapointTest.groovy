@@ -1,13 +1,17 @@
 package org.openremote.test.assets
 
 import org.openremote.agent.protocol.simulator.SimulatorProtocol
+import org.openremote.container.persistence.PersistenceService
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.datapoint.AssetDatapointService
+import org.openremote.manager.datapoint.DatapointRollups
 import org.openremote.manager.setup.SetupService
 import org.openremote.test.setup.ManagerTestSetup
 import org.openremote.model.attribute.AttributeRef
+import org.openremote.model.datapoint.DatapointDecimation
+import org.openremote.model.datapoint.DatapointExportFormat
 import org.openremote.model.datapoint.DatapointInterval
 import org.openremote.model.util.ValueUtil
 import org.openremote.test.ManagerContainerTrait
@@ -134,6 +138,33 @@ class AssetDatapointTest extends Specification implements ManagerContainerTrait
             assert ValueUtil.getValue(datapoints.get(4).value, Double.class).orElse(null) == 13.3d
         }
 
+        and: "the datapoint period should span the stored datapoints"
+        conditions.eventually {
+            def datapoints = assetDatapointService.getDatapoints(new AttributeRef(managerTestSetup.thingId, "light1PowerConsumption"))
+            def period = assetDatapointService.getDatapointPeriod(managerTestSetup.thingId, "light1PowerConsumption")
+            assert period.latest == datapoint3ExpectedTimestamp
+            assert period.oldest == datapoints.get(datapoints.size() - 1).timestamp
+        }
+
+        and: "the datapoints should be exported as CSV and in the columnar format"
+        conditions.eventually {
+            def attributeRefs = [new AttributeRef(managerTestSetup.thingId, "light1PowerConsumption")] as AttributeRef[]
+            def csvOut = new ByteArrayOutputStream()
+            assetDatapointService.exportDatapoints(attributeRefs, 0, getClockTimeOf(container), DatapointExportFormat.CSV, csvOut)
+            def lines = csvOut.toString("UTF-8").readLines()
+            assert lines.size() == 6
+            assert lines[0] == "timestamp,name,attribute_name,value"
+            assert lines[5].endsWith(",light1PowerConsumption,15.5")
+
+            def columnarOut = new ByteArrayOutputStream()
+            assetDatapointService.exportDatapoints(attributeRefs, 0, getClockTimeOf(container), DatapointExportFormat.COLUMNAR, columnarOut)
+            def blocks = ValueUtil.JSON.readTree(columnarOut.toByteArray())
+            assert blocks.size() == 1
+            assert blocks[0].get("attributeName").asText() == "light1PowerConsumption"
+            assert blocks[0].get("timestamps").size() == 5
+            assert blocks[0].get("values").get(4).asDouble() == 15.5d
+        }
+
         and: "the aggregated datapoints should match"
         conditions.eventually {
             def thing = assetStorageService.find(managerTestSetup.thingId, true)
@@ -171,6 +202,98 @@ class AssetDatapointTest extends Specification implements ManagerContainerTrait
             assert aggregatedDatapoints[12].value == 14.95
         }
 
+        and: "when a decimation is used on the datapoint retrieval then the peaks should be preserved"
+        conditions.eventually {
+            def thing = assetStorageService.find(managerTestSetup.thingId, true)
+            def attribute = thing.getAttribute("light1PowerConsumption").orElseThrow({ new RuntimeException("Missing attribute") })
+            def from = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).minus(1, ChronoUnit.HOURS)
+            def to = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault())
+
+            def minMaxDatapoints = assetDatapointService.getValueDatapoints(thing.getId(), attribute, DatapointDecimation.MIN_MAX, 4, from, to)
+            assert minMaxDatapoints.size() == 2
+            assert minMaxDatapoints[0].value == 13.3d
+            assert minMaxDatapoints[1].value == 15.5d
+            assert minMaxDatapoints[1].timestamp == datapoint3ExpectedTimestamp
+
+            def lttbDatapoints = assetDatapointService.getValueDatapoints(thing.getId(), attribute, DatapointDecimation.LTTB, 4, from, to)
+            assert lttbDatapoints.size() <= 4
+            assert lttbDatapoints[0].value == 13.3d
+            assert lttbDatapoints[lttbDatapoints.size() - 1].value == 15.5d
+            assert lttbDatapoints[lttbDatapoints.size() - 1].timestamp == datapoint3ExpectedTimestamp
+        }
+
+        and: "the hourly aggregated datapoints should be read from the rollups and match the raw datapoint averages"
+        conditions.eventually {
+            assert assetDatapointService.rollups.backfillComplete
+            def thing = assetStorageService.find(managerTestSetup.thingId, true)
+            def aggregatedDatapoints = assetDatapointService.getValueDatapoints(
+                thing.getId(),
+                thing.getAttribute("light1PowerConsumption").orElseThrow({ new RuntimeException("Missing attribute") }),
+                DatapointInterval.HOUR,
+                null,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).minus(1, ChronoUnit.DAYS),
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault())
+            )
+            def expectedAverages = assetDatapointService.getDatapoints(new AttributeRef(thing.id, "light1PowerConsumption"))
+                .groupBy { LocalDateTime.ofInstant(Instant.ofEpochMilli(it.timestamp), ZoneId.systemDefault()).truncatedTo(ChronoUnit.HOURS) }
+                .collectEntries { hour, datapoints -> [(hour): datapoints.sum { ValueUtil.getValue(it.value, Double.class).orElse(0d) } / datapoints.size()] }
+            def hourlyAverages = aggregatedDatapoints
+                .findAll { it.value != null }
+                .collectEntries { [(LocalDateTime.ofInstant(Instant.ofEpochMilli(it.timestamp), ZoneId.systemDefault())): it.value] }
+            assert hourlyAverages.size() == expectedAverages.size()
+            expectedAverages.each { hour, average ->
+                assert Math.abs((hourlyAverages[hour] as Double) - average) < 0.0001
+            }
+        }
+
+        when: "a historic datapoint is upserted"
+        def persistenceService = container.getService(PersistenceService.class)
+        def countDirtyMarkings = {
+            persistenceService.doReturningTransaction { em ->
+                em.createNativeQuery("select count(*) from " + DatapointRollups.DIRTY_TABLE_NAME + " where ATTRIBUTE_NAME = 'rollupTest'").singleResult as Long
+            }
+        }
+        def historicHour = LocalDateTime.ofInstant(Instant.ofEpochMilli(getClockTimeOf(container)), ZoneId.systemDefault()).minus(2, ChronoUnit.DAYS).truncatedTo(ChronoUnit.HOURS)
+        assetDatapointService.upsertValue(managerTestSetup.thingId, "rollupTest", 5d, historicHour.plusMinutes(10))
+
+        then: "the dirty bucket should have been stored with the datapoint"
+        countDirtyMarkings() == 1
+
+        when: "the dirty buckets in memory are lost (i.e. the manager is restarted before the next flush)"
+        assetDatapointService.rollups.dirtyBuckets.clear()
+        assetDatapointService.rollups.loadDirtyMarkings()
+        assetDatapointService.rollups.flush()
+
+        then: "the historic bucket should still have been recomputed"
+        persistenceService.doReturningTransaction { em ->
+            em.createNativeQuery("select SUM_VALUE from " + DatapointRollups.HOURLY_TABLE_NAME + " where ATTRIBUTE_NAME = 'rollupTest' and TIMESTAMP = ?1")
+                .setParameter(1, historicHour)
+                .singleResult as Double
+        } == 5d
+
+        and: "the stored marking should be removed once the bucket has been recomputed after the grace period"
+        new PollingConditions(timeout: 20, delay: 1).eventually {
+            assetDatapointService.rollups.flush()
+            assert countDirtyMarkings() == 0
+        }
+
+        when: "the only datapoint of the historic bucket is deleted and the bucket is recomputed"
+        persistenceService.doTransaction { em ->
+            em.createNativeQuery("delete from ASSET_DATAPOINT where ATTRIBUTE_NAME = 'rollupTest' and TIMESTAMP >= ?1 and TIMESTAMP < ?2")
+                .setParameter(1, historicHour)
+                .setParameter(2, historicHour.plusHours(1))
+                .executeUpdate()
+        }
+        assetDatapointService.rollups.dirtyBuckets.put(new DatapointRollups.BucketKey(managerTestSetup.thingId, "rollupTest", historicHour), System.currentTimeMillis())
+        assetDatapointService.rollups.flush()
+
+        then: "the stale hourly bucket should have been removed"
+        persistenceService.doReturningTransaction { em ->
+            em.createNativeQuery("select count(*) from " + DatapointRollups.HOURLY_TABLE_NAME + " where ATTRIBUTE_NAME = 'rollupTest' and TIMESTAMP = ?1")
+                .setParameter(1, historicHour)
+                .singleResult as Long
+        } == 0
+
 
         // ------------------------------------
         // Test boolean data point storage
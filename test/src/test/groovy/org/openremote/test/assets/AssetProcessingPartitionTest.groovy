@@ -0,0 +1,244 @@
+package org.openremote.test.assets
+
+import org.openremote.manager.asset.AssetProcessingException
+import org.openremote.manager.asset.AssetProcessingService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.asset.AssetUpdateProcessor
+import org.openremote.manager.setup.SetupService
+import org.openremote.model.asset.Asset
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.test.ManagerContainerTrait
+import org.openremote.test.setup.KeycloakTestSetup
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import javax.persistence.EntityManager
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.openremote.manager.asset.AssetProcessingService.ASSET_PROCESSING_PARTITIONS
+import static org.openremote.model.value.ValueType.NUMBER
+
+class AssetProcessingPartitionTest extends Specification implements ManagerContainerTrait {
+
+    static final int PARTITIONS = 4
+    static final int ASSET_COUNT = 16
+    static final int EVENTS_PER_ASSET = 50
+    static final int THROUGHPUT_EVENTS_PER_ASSET = 20
+    static final long THROUGHPUT_PROCESSING_MILLIS = 5
+
+    @Shared
+    static AssetStorageService assetStorageService
+    @Shared
+    static AssetProcessingService assetProcessingService
+    @Shared
+    static KeycloakTestSetup keycloakTestSetup
+
+    def setupSpec() {
+        def container = startContainer(defaultConfig() << [(ASSET_PROCESSING_PARTITIONS): Integer.toString(PARTITIONS)], defaultServices())
+        assetStorageService = container.getService(AssetStorageService.class)
+        assetProcessingService = container.getService(AssetProcessingService.class)
+        keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+    }
+
+    def "Check partitioned asset processing preserves per asset ordering and spreads assets over the partitions"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 30, delay: 0.2)
+
+        and: "a processor recording the order in which values are processed and the thread processing them"
+        Map<String, List<Double>> processedValues = new ConcurrentHashMap<>()
+        Map<String, Set<String>> processingThreads = new ConcurrentHashMap<>()
+        AtomicInteger processedCount = new AtomicInteger()
+        AssetUpdateProcessor recordingProcessor = new AssetUpdateProcessor() {
+            @Override
+            boolean processAssetUpdate(EntityManager em, Asset asset, Attribute attribute, AttributeEvent.Source source) throws AssetProcessingException {
+                if (attribute.name == "counter") {
+                    processedValues.computeIfAbsent(asset.id, { new CopyOnWriteArrayList<>() }).add(attribute.value.orElse(null) as Double)
+                    processingThreads.computeIfAbsent(asset.id, { ConcurrentHashMap.newKeySet() }).add(Thread.currentThread().name)
+                    processedCount.incrementAndGet()
+                }
+                false
+            }
+        }
+        assetProcessingService.processors.add(0, recordingProcessor)
+
+        and: "some assets spread over the partitions"
+        def assetIds = (1..ASSET_COUNT).collect {
+            def asset = new ThingAsset("Partition test asset " + it)
+                .setRealm(keycloakTestSetup.masterTenant.realm)
+            asset.addOrReplaceAttributes(new Attribute<>("counter", NUMBER))
+            assetStorageService.merge(asset).id
+        }
+        def partitionsUsed = assetIds.collect { assetProcessingService.getAssetQueue(it) }.toSet()
+        assert partitionsUsed.size() > 1
+
+        when: "events for all assets are interleaved"
+        advancePseudoClock(10, TimeUnit.MINUTES, container)
+        def startTimestamp = getClockTimeOf(container) - 60000
+        (0..<EVENTS_PER_ASSET).each { i ->
+            assetIds.each { assetId ->
+                assetProcessingService.sendAttributeEvent(new AttributeEvent(assetId, "counter", (double) i, startTimestamp + i))
+            }
+        }
+
+        then: "all events should be processed"
+        conditions.eventually {
+            assert processedCount.get() == ASSET_COUNT * EVENTS_PER_ASSET
+        }
+
+        and: "the events of each asset should have been processed in the order they were sent"
+        assetIds.every { assetId ->
+            processedValues.get(assetId) == (0..<EVENTS_PER_ASSET).collect { (double) it }
+        }
+
+        and: "each asset should have been processed by a single partition thread"
+        assetIds.every { assetId -> processingThreads.get(assetId).size() == 1 }
+
+        and: "assets of different partitions should have been processed on different threads"
+        assetIds.collect { processingThreads.get(it).first() }.toSet().size() == partitionsUsed.size()
+
+        when: "the queue of an event without an asset ID is requested"
+        assetProcessingService.getAssetQueue(null)
+
+        then: "it should be rejected rather than assigned to a partition"
+        thrown(IllegalArgumentException)
+
+        cleanup: "remove the recording processor"
+        assetProcessingService.processors.remove(recordingProcessor)
+    }
+
+    def "Check a batch of attribute events is processed in order by the partitions of its assets"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 30, delay: 0.2)
+
+        and: "a processor recording the processed values and the threads processing them"
+        Map<String, List<Double>> processedValues = new ConcurrentHashMap<>()
+        Set<String> batchProcessingThreads = ConcurrentHashMap.newKeySet()
+        AtomicInteger processedCount = new AtomicInteger()
+        AssetUpdateProcessor recordingProcessor = new AssetUpdateProcessor() {
+            @Override
+            boolean processAssetUpdate(EntityManager em, Asset asset, Attribute attribute, AttributeEvent.Source source) throws AssetProcessingException {
+                if (attribute.name == "counter") {
+                    processedValues.computeIfAbsent(asset.id, { new CopyOnWriteArrayList<>() }).add(attribute.value.orElse(null) as Double)
+                    batchProcessingThreads.add(Thread.currentThread().name)
+                    processedCount.incrementAndGet()
+                }
+                false
+            }
+        }
+        assetProcessingService.processors.add(0, recordingProcessor)
+
+        and: "some assets spread over the partitions"
+        def assetIds = (1..ASSET_COUNT).collect {
+            def asset = new ThingAsset("Batch test asset " + it)
+                .setRealm(keycloakTestSetup.masterTenant.realm)
+            asset.addOrReplaceAttributes(new Attribute<>("counter", NUMBER))
+            assetStorageService.merge(asset).id
+        }
+        def partitionsUsed = assetIds.collect { assetProcessingService.getAssetQueue(it) }.toSet()
+
+        when: "a batch of interleaved events is sent that also contains an event of an asset that doesn't exist"
+        advancePseudoClock(10, TimeUnit.MINUTES, container)
+        def startTimestamp = getClockTimeOf(container) - 60000
+        List<AttributeEvent> events = []
+        (0..<EVENTS_PER_ASSET).each { i ->
+            assetIds.each { assetId ->
+                events.add(new AttributeEvent(assetId, "counter", (double) i, startTimestamp + i))
+            }
+            if (i == 0) {
+                events.add(new AttributeEvent("doesNotExist", "counter", (double) i, startTimestamp + i))
+            }
+        }
+        assetProcessingService.sendAttributeEvents(events, AttributeEvent.Source.INTERNAL)
+
+        then: "all events of existing assets should be processed despite the failing event"
+        conditions.eventually {
+            assert processedCount.get() == ASSET_COUNT * EVENTS_PER_ASSET
+        }
+
+        and: "the events of each asset should have been processed in the order they were sent"
+        assetIds.every { assetId ->
+            processedValues.get(assetId) == (0..<EVENTS_PER_ASSET).collect { (double) it }
+        }
+
+        and: "the batch should have been processed by one partition consumer per partition"
+        batchProcessingThreads.size() == partitionsUsed.size()
+
+        and: "the last value of each asset should have been stored"
+        conditions.eventually {
+            assetIds.each { assetId ->
+                assert assetStorageService.find(assetId).getAttribute("counter").flatMap { it.value }.orElse(null) == (double) (EVENTS_PER_ASSET - 1)
+            }
+        }
+
+        cleanup: "remove the recording processor"
+        assetProcessingService.processors.remove(recordingProcessor)
+    }
+
+    def "Check attribute event throughput increases with the number of partitions"() {
+
+        when: "the events are processed by a single partition"
+        def singlePartitionRate = measureEventsPerSecond(1)
+
+        and: "the same events are processed by multiple partitions"
+        def partitionedRate = measureEventsPerSecond(PARTITIONS)
+
+        then: "clearly more events per second should have been processed by multiple partitions"
+        println("Attribute events per second: 1 partition=" + singlePartitionRate + ", " + PARTITIONS + " partitions=" + partitionedRate)
+        partitionedRate > singlePartitionRate * 1.5
+    }
+
+    /**
+     * Processes events of assets spread over the partitions with a processor that takes a few milliseconds per event
+     * (like a processor waiting for I/O) and returns the number of events processed per second.
+     */
+    double measureEventsPerSecond(int partitions) {
+        def container = startContainer(defaultConfig() << [(ASSET_PROCESSING_PARTITIONS): Integer.toString(partitions)], defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+        def processedCount = new AtomicInteger()
+        AssetUpdateProcessor slowProcessor = new AssetUpdateProcessor() {
+            @Override
+            boolean processAssetUpdate(EntityManager em, Asset asset, Attribute attribute, AttributeEvent.Source source) throws AssetProcessingException {
+                if (attribute.name == "load") {
+                    Thread.sleep(THROUGHPUT_PROCESSING_MILLIS)
+                    processedCount.incrementAndGet()
+                }
+                false
+            }
+        }
+        assetProcessingService.processors.add(0, slowProcessor)
+
+        def assetIds = (1..ASSET_COUNT).collect {
+            def asset = new ThingAsset("Throughput test asset " + it)
+                .setRealm(keycloakTestSetup.masterTenant.realm)
+            asset.addOrReplaceAttributes(new Attribute<>("load", NUMBER))
+            assetStorageService.merge(asset).id
+        }
+        advancePseudoClock(1, TimeUnit.MINUTES, container)
+
+        try {
+            long start = System.nanoTime()
+            (0..<THROUGHPUT_EVENTS_PER_ASSET).each { i ->
+                assetIds.each { assetId ->
+                    assetProcessingService.sendAttributeEvent(new AttributeEvent(assetId, "load", (double) i))
+                }
+            }
+            new PollingConditions(timeout: 60, delay: 0.05).eventually {
+                assert processedCount.get() == ASSET_COUNT * THROUGHPUT_EVENTS_PER_ASSET
+            }
+            return ASSET_COUNT * THROUGHPUT_EVENTS_PER_ASSET * 1000000000d / (System.nanoTime() - start)
+        } finally {
+            assetProcessingService.processors.remove(slowProcessor)
+            assetStorageService.delete(assetIds)
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package org.openremote.test.assets
 
 import org.openremote.container.timer.TimerService
+import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.security.ManagerIdentityService
 import org.openremote.manager.setup.SetupService
 import org.openremote.test.setup.KeycloakTestSetup
@@ -24,6 +25,7 @@ class AssetUserLinkingTest extends Specification implements ManagerContainerTrai
         def container = startContainer(defaultConfig(), defaultServices())
         def timerService = container.getService(TimerService.class)
         def identityService = container.getService(ManagerIdentityService.class)
+        def assetStorageService = container.getService(AssetStorageService.class)
         def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
         def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
 
@@ -156,6 +158,9 @@ class AssetUserLinkingTest extends Specification implements ManagerContainerTrai
 
         /* ############################################## WRITE ####################################### */
 
+        expect: "the user not to be linked to the asset (which caches the result)"
+        !assetStorageService.isUserAsset(keycloakTestSetup.testuser2Id, managerTestSetup.apartment2Id)
+
         when: "an asset is linked to a user"
         UserAsset userAsset = new UserAsset(keycloakTestSetup.tenantBuilding.realm, keycloakTestSetup.testuser2Id, managerTestSetup.apartment2Id)
         assetResource.createUserAsset(null, userAsset)
@@ -173,12 +178,18 @@ class AssetUserLinkingTest extends Specification implements ManagerContainerTrai
                     it.createdOn.time <= timerService.currentTimeMillis
         }
 
+        and: "the cached link check should reflect the new link immediately"
+        assetStorageService.isUserAsset(keycloakTestSetup.testuser2Id, managerTestSetup.apartment2Id)
+
         when: "an asset link is deleted"
         assetResource.deleteUserAsset(null, keycloakTestSetup.tenantBuilding.realm, keycloakTestSetup.testuser2Id, managerTestSetup.apartment2Id)
         userAssets = assetResource.getUserAssetLinks(null, keycloakTestSetup.tenantBuilding.realm, keycloakTestSetup.testuser2Id, null)
 
         then: "result should match"
         userAssets.length == 0
+
+        and: "the cached link check should reflect the deleted link immediately"
+        !assetStorageService.isUserAsset(keycloakTestSetup.testuser2Id, managerTestSetup.apartment2Id)
     }
 
 }
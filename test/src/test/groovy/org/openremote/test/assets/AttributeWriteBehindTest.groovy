@@ -0,0 +1,162 @@
+package org.openremote.test.assets
+
+import org.openremote.manager.asset.AssetProcessingException
+import org.openremote.manager.asset.AssetProcessingService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.asset.AssetUpdateProcessor
+import org.openremote.manager.asset.AttributeWriteBehind
+import org.openremote.manager.setup.SetupService
+import org.openremote.model.asset.Asset
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.test.ManagerContainerTrait
+import org.openremote.test.setup.KeycloakTestSetup
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import javax.persistence.EntityManager
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+import static org.openremote.manager.asset.AssetProcessingService.ASSET_PROCESSING_BATCH_WINDOW_MILLIS
+import static org.openremote.model.value.ValueType.NUMBER
+
+class AttributeWriteBehindTest extends Specification implements ManagerContainerTrait {
+
+    def "Check batched storage retries failed values and bounds the pending values"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        and: "the container is started with a batch window long enough to only flush on demand"
+        def container = startContainer(defaultConfig() << [(ASSET_PROCESSING_BATCH_WINDOW_MILLIS): "600000"], defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+        def originalWriteBehind = assetProcessingService.writeBehind
+
+        and: "a processor recording the values it is given"
+        List<Double> processedValues = new CopyOnWriteArrayList<>()
+        AssetUpdateProcessor recordingProcessor = new AssetUpdateProcessor() {
+            @Override
+            boolean processAssetUpdate(EntityManager em, Asset asset, Attribute attribute, AttributeEvent.Source source) throws AssetProcessingException {
+                if (attribute.name == "counter") {
+                    processedValues.add(attribute.value.orElse(null) as Double)
+                }
+                false
+            }
+        }
+        assetProcessingService.processors.add(0, recordingProcessor)
+
+        and: "an asset"
+        def asset = new ThingAsset("Write behind test asset")
+            .setRealm(keycloakTestSetup.masterTenant.realm)
+        asset.addOrReplaceAttributes(new Attribute<>("counter", NUMBER))
+        asset = assetStorageService.merge(asset)
+        advancePseudoClock(1, TimeUnit.MINUTES, container)
+
+        when: "an attribute event is processed"
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "counter", 1d), AttributeEvent.Source.INTERNAL)
+
+        then: "the processors should have acted on the value before it is stored"
+        conditions.eventually {
+            assert processedValues == [1d]
+            assert assetProcessingService.writeBehind.pendingCount == 1
+        }
+
+        when: "the batch is flushed"
+        assetProcessingService.writeBehind.flush()
+
+        then: "the value should be stored"
+        assetProcessingService.writeBehind.pendingCount == 0
+        assetStorageService.find(asset.id, true).getAttribute("counter").flatMap { it.value }.orElse(null) == 1d
+
+        when: "the values are written by a stage that can't store values and allows 2 pending values"
+        def storeFailing = new AtomicBoolean(true)
+        def failingWriteBehind = new AttributeWriteBehind(
+            originalWriteBehind.persistenceService,
+            originalWriteBehind.assetStorageService,
+            originalWriteBehind.assetDatapointService,
+            originalWriteBehind.executorService,
+            100,
+            originalWriteBehind.batchSize,
+            2) {
+            @Override
+            protected Set<String> store(List writes) {
+                if (storeFailing.get()) {
+                    throw new IllegalStateException("Database unavailable")
+                }
+                return super.store(writes)
+            }
+        }
+        assetProcessingService.writeBehind = failingWriteBehind
+        advancePseudoClock(1, TimeUnit.MINUTES, container)
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "counter", 3d), AttributeEvent.Source.INTERNAL)
+
+        then: "the processors should have acted on the value"
+        conditions.eventually {
+            assert processedValues == [1d, 3d]
+            assert failingWriteBehind.pendingCount == 1
+        }
+
+        when: "the batch is flushed"
+        failingWriteBehind.flush()
+
+        then: "the value should be kept to be retried rather than dropped"
+        failingWriteBehind.pendingCount == 1
+        assetStorageService.find(asset.id, true).getAttribute("counter").flatMap { it.value }.orElse(null) == 1d
+
+        when: "more attribute events are processed than can be pending"
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "counter", 4d), AttributeEvent.Source.INTERNAL)
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "counter", 5d), AttributeEvent.Source.INTERNAL)
+
+        then: "processing should wait once the maximum number of values are pending"
+        conditions.eventually {
+            assert processedValues == [1d, 3d, 4d]
+            assert failingWriteBehind.pendingCount == 2
+        }
+        new PollingConditions(timeout: 1, initialDelay: 0.5).eventually {
+            assert processedValues == [1d, 3d, 4d]
+        }
+
+        when: "values can be stored again"
+        storeFailing.set(false)
+
+        then: "the pending values should be stored and processing should continue"
+        conditions.eventually {
+            assert processedValues == [1d, 3d, 4d, 5d]
+        }
+
+        when: "the batch is flushed"
+        failingWriteBehind.flush()
+
+        then: "the latest value should be stored"
+        failingWriteBehind.pendingCount == 0
+        assetStorageService.find(asset.id, true).getAttribute("counter").flatMap { it.value }.orElse(null) == 5d
+
+        when: "the original stage is used again and another attribute event is processed"
+        assetProcessingService.writeBehind = originalWriteBehind
+        advancePseudoClock(1, TimeUnit.MINUTES, container)
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "counter", 2d), AttributeEvent.Source.INTERNAL)
+
+        then: "the processors should have acted on the value"
+        conditions.eventually {
+            assert processedValues == [1d, 2d]
+            assert assetProcessingService.writeBehind.pendingCount == 1
+        }
+
+        when: "the asset is deleted before the batch is flushed"
+        assetStorageService.delete([asset.id])
+        assetProcessingService.writeBehind.flush()
+
+        then: "the value should never have been stored and isn't retried"
+        assetProcessingService.writeBehind.pendingCount == 0
+        assetStorageService.find(asset.id) == null
+
+        cleanup: "remove the recording processor and restore the write behind stage"
+        assetProcessingService.processors.remove(recordingProcessor)
+        assetProcessingService.writeBehind = originalWriteBehind
+    }
+}
@@ -0,0 +1,146 @@
+package org.openremote.test.event
+
+import org.apache.camel.impl.DefaultCamelContext
+import org.apache.camel.impl.DefaultExchange
+import org.openremote.container.timer.TimerService
+import org.openremote.container.web.ConnectionConstants
+import org.openremote.manager.event.ClientEventService
+import org.openremote.manager.event.EventSubscriptions
+import org.openremote.manager.event.EventTypeConverters
+import org.openremote.model.asset.AssetFilter
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.event.Event
+import org.openremote.model.event.TriggeredEventSubscription
+import org.openremote.model.event.shared.CancelEventSubscription
+import org.openremote.model.event.shared.EventSubscription
+import org.openremote.model.util.ValueUtil
+import spock.lang.Specification
+
+import java.util.concurrent.ScheduledExecutorService
+
+class EventSubscriptionsTest extends Specification {
+
+    def "Check events are only routed to sessions with a matching subscription"() {
+
+        given: "subscriptions using the different asset filter criteria"
+        def eventSubscriptions = new EventSubscriptions(Mock(TimerService))
+        eventSubscriptions.createOrUpdate("assetIds", false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1", "asset2")))
+        eventSubscriptions.createOrUpdate("assetIdAndAttribute", false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1").setAttributeNames("humidity")))
+        eventSubscriptions.createOrUpdate("parentIds", false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setParentIds("parent1")))
+        eventSubscriptions.createOrUpdate("path", false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setPath(["building1"] as String[])))
+        eventSubscriptions.createOrUpdate("attributeNames", false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAttributeNames("temperature")))
+        eventSubscriptions.createOrUpdate("realm", false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setRealm("master")))
+        eventSubscriptions.createOrUpdate("otherRealm", false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setRealm("building")))
+        eventSubscriptions.createOrUpdate("all", false, new EventSubscription<>(AttributeEvent.class))
+        eventSubscriptions.createOrUpdate("restricted", true, new EventSubscription<>(AttributeEvent.class))
+
+        def sessionsFor = { AttributeEvent event ->
+            def exchange = new DefaultExchange(new DefaultCamelContext())
+            exchange.getIn().setBody(event)
+            exchange.getIn().setHeader(ClientEventService.HEADER_ACCESS_RESTRICTED, false)
+            eventSubscriptions.splitForSubscribers(exchange).collect { it.getHeader(ConnectionConstants.SESSION_KEY) } as Set
+        }
+
+        expect: "events to be routed to the matching sessions only"
+        sessionsFor(new AttributeEvent("asset1", "temperature", 20).setRealm("master").setParentId("parent1").setPath(["asset1", "parent1", "building1"] as String[])) ==
+            ["assetIds", "parentIds", "path", "attributeNames", "realm", "all"] as Set
+        sessionsFor(new AttributeEvent("asset1", "humidity", 20).setRealm("master").setPath(["asset1"] as String[])) ==
+            ["assetIds", "assetIdAndAttribute", "realm", "all"] as Set
+        sessionsFor(new AttributeEvent("asset3", "humidity", 20).setRealm("building").setPath(["asset3"] as String[])) ==
+            ["otherRealm", "all"] as Set
+
+        when: "subscriptions are cancelled"
+        eventSubscriptions.cancelAll("assetIds")
+        eventSubscriptions.cancel("all", new CancelEventSubscription(Event.getEventType(AttributeEvent.class), null))
+        eventSubscriptions.cancelAll("realm")
+
+        then: "events should no longer be routed to those sessions"
+        sessionsFor(new AttributeEvent("asset1", "humidity", 20).setRealm("master").setPath(["asset1"] as String[])) ==
+            ["assetIdAndAttribute"] as Set
+
+        when: "a subscription is replaced by a subscription of the same type"
+        eventSubscriptions.createOrUpdate("assetIdAndAttribute", false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset2")))
+
+        then: "only the new subscription should be used"
+        sessionsFor(new AttributeEvent("asset1", "humidity", 20).setRealm("master").setPath(["asset1"] as String[])).isEmpty()
+        sessionsFor(new AttributeEvent("asset2", "humidity", 20).setRealm("master").setPath(["asset2"] as String[])) ==
+            ["assetIdAndAttribute"] as Set
+    }
+
+    def "Check the serialized event is shared by the triggered subscriptions of all sessions"() {
+
+        given: "multiple sessions subscribed to the same asset"
+        def eventSubscriptions = new EventSubscriptions(Mock(TimerService))
+        (1..3).each {
+            eventSubscriptions.createOrUpdate("session" + it, false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1"), "subscription\"" + it))
+        }
+
+        when: "an event is published"
+        def event = new AttributeEvent("asset1", "temperature", 20, 1000L).setRealm("master")
+        def exchange = new DefaultExchange(new DefaultCamelContext())
+        exchange.getIn().setBody(event)
+        def messages = eventSubscriptions.splitForSubscribers(exchange)
+        def converters = new EventTypeConverters()
+
+        then: "every message should be written as if it was serialized individually"
+        messages.size() == 3
+        messages.every {
+            def triggered = it.getBody(TriggeredEventSubscription.class)
+            converters.writeTriggeredEventSubscription(triggered, null) ==
+                TriggeredEventSubscription.MESSAGE_PREFIX + ValueUtil.JSON.writeValueAsString(new TriggeredEventSubscription<>([event], triggered.subscriptionId))
+        }
+    }
+
+    def "Check attribute events of a conflated subscription are delivered once per window with the latest values"() {
+
+        given: "a conflated and a regular subscription to the same asset"
+        List<Runnable> scheduled = []
+        def executorService = Mock(ScheduledExecutorService) {
+            schedule(_ as Runnable, _ as Long, _) >> { Runnable runnable, long delay, unit ->
+                scheduled.add(runnable)
+                null
+            }
+        }
+        Map<String, List<TriggeredEventSubscription>> delivered = [:]
+        def eventSubscriptions = new EventSubscriptions(Mock(TimerService), executorService, { String sessionKey, TriggeredEventSubscription triggered ->
+            delivered.computeIfAbsent(sessionKey, { [] }).add(triggered)
+        })
+        def conflatedSubscription = new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1"), "conflated")
+        conflatedSubscription.setConflationMillis(500)
+        eventSubscriptions.createOrUpdate("dashboard", false, conflatedSubscription)
+        eventSubscriptions.createOrUpdate("logger", false, new EventSubscription<>(AttributeEvent.class, new AssetFilter<AttributeEvent>().setAssetIds("asset1")))
+
+        def publish = { AttributeEvent event ->
+            def exchange = new DefaultExchange(new DefaultCamelContext())
+            exchange.getIn().setBody(event)
+            eventSubscriptions.splitForSubscribers(exchange).collect { it.getHeader(ConnectionConstants.SESSION_KEY) }
+        }
+
+        when: "a burst of events is published"
+        def routed = (1..10).collect {
+            publish(new AttributeEvent("asset1", "temperature", it, it)) + publish(new AttributeEvent("asset1", "humidity", it * 10, it))
+        }.flatten()
+
+        then: "only the regular subscription gets the events immediately and a single flush is scheduled"
+        routed.every { it == "logger" }
+        routed.size() == 20
+        scheduled.size() == 1
+        delivered.isEmpty()
+
+        when: "the conflation window ends"
+        scheduled.remove(0).run()
+
+        then: "the latest event of each attribute is delivered"
+        delivered["dashboard"].size() == 1
+        delivered["dashboard"][0].subscriptionId == "conflated"
+        delivered["dashboard"][0].events.collect { "${it.attributeName}=${it.value.orElse(null)}" } == ["temperature=10", "humidity=100"]
+
+        when: "another event is published and the subscription is cancelled before the window ends"
+        publish(new AttributeEvent("asset1", "temperature", 11, 11))
+        eventSubscriptions.cancelAll("dashboard")
+        scheduled.remove(0).run()
+
+        then: "the pending event is discarded"
+        delivered["dashboard"].size() == 1
+    }
+}
@@ -0,0 +1,155 @@
+package org.openremote.test.event
+
+import org.openremote.container.web.socket.WebsocketSessionQueue
+import spock.lang.Specification
+
+import javax.websocket.CloseReason
+import javax.websocket.RemoteEndpoint
+import javax.websocket.SendHandler
+import javax.websocket.SendResult
+import javax.websocket.Session
+
+import static org.openremote.container.web.socket.WebsocketSessionQueue.OverflowPolicy.*
+
+class WebsocketSessionQueueTest extends Specification {
+
+    List<String> sent = []
+    List<SendHandler> pendingHandlers = []
+    boolean completeInline = false
+    Session session
+
+    def setup() {
+        def asyncRemote = Mock(RemoteEndpoint.Async) {
+            sendText(_ as String, _ as SendHandler) >> { String text, SendHandler handler ->
+                sent.add(text)
+                if (completeInline) {
+                    handler.onResult(new SendResult())
+                } else {
+                    pendingHandlers.add(handler)
+                }
+            }
+        }
+        session = Mock(Session) {
+            getId() >> "session1"
+            isOpen() >> true
+            getAsyncRemote() >> asyncRemote
+        }
+    }
+
+    def completeSends() {
+        while (!pendingHandlers.isEmpty()) {
+            pendingHandlers.remove(0).onResult(new SendResult())
+        }
+    }
+
+    def "Check a slow websocket client doesn't block the sender and is disconnected on overflow by default"() {
+
+        when: "messages are offered faster than they are sent"
+        def queue = new WebsocketSessionQueue(session, 2, DISCONNECT)
+        (1..3).each { queue.offer("message" + it, it == 3 ? "key" : null) }
+
+        then: "only the first message is in flight and nothing was discarded"
+        sent == ["message1"]
+        queue.size == 2
+        queue.droppedCount == 0
+
+        when: "the queue overflows"
+        queue.offer("message4", "key")
+
+        then: "the session is closed and queued messages are discarded, keyed messages aren't coalesced"
+        1 * session.close(_ as CloseReason)
+        queue.size == 0
+        queue.droppedCount == 3
+        queue.coalescedCount == 0
+
+        when: "the in flight send completes"
+        completeSends()
+        queue.offer("message5", null)
+
+        then: "nothing else is sent"
+        sent == ["message1"]
+        queue.sentCount == 1
+    }
+
+    def "Check only keyed messages are coalesced and only when the queue is full"() {
+
+        given: "a coalescing queue"
+        def queue = new WebsocketSessionQueue(session, 2, COALESCE)
+
+        when: "messages with the same key are offered whilst there is room"
+        queue.offer("first", null)
+        queue.offer("temperature=1", "temperature")
+        queue.offer("temperature=2", "temperature")
+
+        then: "nothing is coalesced"
+        queue.size == 2
+        queue.coalescedCount == 0
+
+        when: "a message with the same key as a queued message is offered to the full queue"
+        queue.offer("temperature=3", "temperature")
+
+        then: "the queued message is replaced"
+        queue.size == 2
+        queue.coalescedCount == 1
+
+        when: "the client catches up"
+        completeSends()
+
+        then: "every message is sent in order with only the superseded value missing"
+        sent == ["first", "temperature=1", "temperature=3"]
+        queue.droppedCount == 0
+
+        when: "a message without a key is offered to the full queue"
+        queue.offer("request1", null)
+        queue.offer("response1", null)
+        queue.offer("response2", null)
+        queue.offer("response3", null)
+
+        then: "the session is closed rather than discarding it"
+        1 * session.close(_ as CloseReason)
+        queue.droppedCount == 3
+    }
+
+    def "Check drop oldest only discards keyed messages"() {
+
+        given: "a drop oldest queue"
+        def queue = new WebsocketSessionQueue(session, 2, DROP_OLDEST)
+
+        when: "the queue overflows whilst a keyed message is queued"
+        queue.offer("first", null)
+        queue.offer("response", null)
+        queue.offer("temperature=1", "temperature")
+        queue.offer("humidity=1", "humidity")
+        completeSends()
+
+        then: "the keyed message is discarded"
+        sent == ["first", "response", "humidity=1"]
+        queue.droppedCount == 1
+
+        when: "the queue overflows whilst only messages without a key are queued"
+        queue.offer("message1", null)
+        queue.offer("message2", null)
+        queue.offer("message3", null)
+        queue.offer("temperature=2", "temperature")
+
+        then: "the session is closed"
+        1 * session.close(_ as CloseReason)
+    }
+
+    def "Check sends completing on the sending thread don't nest"() {
+
+        given: "a large backlog behind an in flight send"
+        def queue = new WebsocketSessionQueue(session, 20000, DISCONNECT)
+        (1..10000).each { queue.offer("message" + it, null) }
+
+        when: "subsequent sends complete immediately on the sending thread"
+        completeInline = true
+        completeSends()
+
+        then: "the backlog is sent in order without exhausting the stack"
+        sent.size() == 10000
+        sent.last() == "message10000"
+        queue.size == 0
+        queue.sentCount == 10000
+    }
+}
@@ -13,6 +13,7 @@ import org.openremote.container.util.UniqueIdentifierGenerator
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.event.ClientEventService
 import org.openremote.manager.gateway.GatewayClientService
 import org.openremote.manager.gateway.GatewayConnector
 import org.openremote.manager.gateway.GatewayService
@@ -727,6 +728,249 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
         }
     }
 
+    def "Gateway digest synchronisation test"() {
+
+        given: "the container environment is started"
+        def conditions = new PollingConditions(timeout: 15, delay: 0.2)
+        def container = startContainer(defaultConfig(), defaultServices())
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def timerService = container.getService(TimerService.class)
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def gatewayService = container.getService(GatewayService.class)
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def batchSize = GatewayConnector.SYNC_DIGEST_ASSET_BATCH_SIZE
+        def pipelineDepth = GatewayConnector.SYNC_DIGEST_PIPELINE_DEPTH
+
+        and: "the clock is stopped for testing purposes"
+        stopPseudoClock()
+
+        and: "small digest sync batches are used so the pipelining can be observed"
+        GatewayConnector.SYNC_DIGEST_ASSET_BATCH_SIZE = 3
+        GatewayConnector.SYNC_DIGEST_PIPELINE_DEPTH = 2
+
+        expect: "asset digests to only report a change when the version differs or an attribute is more recent"
+        def digest = new AssetDigest("id", null, 1L, 1000L)
+        assert !digest.isChanged(new AssetDigest("id", null, 1L, 1000L))
+        assert !digest.isChanged(new AssetDigest("id", null, 1L, 999L))
+        assert digest.isChanged(new AssetDigest("id", null, 2L, 1000L))
+        assert digest.isChanged(new AssetDigest("id", null, 1L, 1001L))
+        assert digest.withTimestamp(999L).is(digest)
+        assert digest.withTimestamp(1001L).timestamp == 1001L
+
+        and: "the system should settle down"
+        conditions.eventually {
+            assert noEventProcessedIn(assetProcessingService, 300)
+        }
+
+        when: "a gateway is provisioned in this manager"
+        GatewayAsset gateway = assetStorageService.merge(new GatewayAsset("Test digest gateway")
+            .setRealm(managerTestSetup.realmBuildingTenant))
+
+        then: "a set of credentials and a gateway connector should have been created for this gateway"
+        conditions.eventually {
+            gateway = assetStorageService.find(gateway.getId(), true)
+            assert !isNullOrEmpty(gateway.getClientId().orElse(""))
+            assert !isNullOrEmpty(gateway.getClientSecret().orElse(""))
+            assert gatewayService.gatewayConnectorMap.get(gateway.getId()) != null
+        }
+
+        when: "the gateway assets are defined"
+        List<Asset> assets = []
+        IntStream.range(0, 10).forEach {i ->
+            def id = UniqueIdentifierGenerator.generateId("Test Digest Room $i")
+            def roomAsset = new RoomAsset("Test Digest Room $i")
+                .setId(id)
+                .setCreatedOn(Date.from(timerService.getNow()))
+                .setRealm(MASTER_REALM)
+                .setPath((String[])[id].toArray(new String[0]))
+            roomAsset.addOrReplaceAttributes(
+                new Attribute<>("temp", NUMBER, 20d, timerService.getCurrentTimeMillis())
+            )
+            assets.add(roomAsset)
+        }
+
+        and: "a gateway client that supports digest synchronisation is created"
+        def gatewayClient = new WebsocketIOClient<String>(
+            new URIBuilder("ws://127.0.0.1:$serverPort/websocket/events?Auth-Realm=$managerTestSetup.realmBuildingTenant&$GatewayConnector.SYNC_DIGESTS_PARAMETER=true").build(),
+            null,
+            new OAuthClientCredentialsGrant("http://127.0.0.1:$serverPort/auth/realms/$managerTestSetup.realmBuildingTenant/protocol/openid-connect/token",
+                gateway.getClientId().orElse(""),
+                gateway.getClientSecret().orElse(""),
+                null).setBasicAuthHeader(true))
+        gatewayClient.setEncoderDecoderProvider({
+            [new AbstractNettyIOClient.MessageToMessageDecoder<String>(String.class, gatewayClient)].toArray(new ChannelHandler[0])
+        })
+        List<String> clientReceivedMessages = Collections.synchronizedList([])
+        gatewayClient.addMessageConsumer({
+            message -> clientReceivedMessages.add(message)
+        })
+        def readRequests = {
+            new ArrayList<>(clientReceivedMessages).findAll {it.startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)}
+                .collect {ValueUtil.JSON.readValue(it.substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)}
+                .findAll {it.event instanceof ReadAssetsEvent || it.event instanceof ReadAssetDigestsEvent}
+        }
+        def requestedIds = {EventRequestResponseWrapper request ->
+            Arrays.asList(((ReadAssetsEvent)request.event).assetQuery.ids)
+        }
+        def reply = {String messageId, SharedEvent event ->
+            gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + ValueUtil.asJSON(new EventRequestResponseWrapper(messageId, event)).get())
+        }
+        def replyWithAssets = {EventRequestResponseWrapper request ->
+            def ids = requestedIds(request)
+            reply(request.messageId, new AssetsEvent(assets.findAll {ids.contains(it.id)}))
+        }
+        def replyWithDigests = {
+            reply(GatewayConnector.ASSET_READ_EVENT_NAME_DIGESTS, new AssetDigestsEvent(assets.collect {AssetDigest.fromAsset(it)}))
+        }
+
+        and: "the gateway connects to this manager"
+        gatewayClient.connect()
+
+        then: "the central manager should request the asset digests"
+        def gatewayConnector = gatewayService.gatewayConnectorMap.get(gateway.getId())
+        conditions.eventually {
+            assert gatewayConnector.connected
+            assert gatewayConnector.digestSyncSupported
+            assert readRequests().size() == 1
+            assert readRequests()[0].messageId == GatewayConnector.ASSET_READ_EVENT_NAME_DIGESTS
+        }
+
+        when: "the gateway returns the digests of its assets"
+        replyWithDigests()
+
+        then: "the first batches should be requested up to the pipeline depth"
+        conditions.eventually {
+            def requests = readRequests()
+            assert requests.size() == 3
+            assert requests[1].messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + "0"
+            assert requestedIds(requests[1]) == assets.subList(0, 3).collect {it.id}
+            assert requests[2].messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + "3"
+            assert requestedIds(requests[2]) == assets.subList(3, 6).collect {it.id}
+            assert gatewayConnector.syncPendingBatches.size() == GatewayConnector.SYNC_DIGEST_PIPELINE_DEPTH
+            assert gatewayConnector.syncRequestIndex == 6
+        }
+
+        when: "an asset of the first batch is deleted on the gateway whilst the batch is in flight"
+        def firstBatchRequest = readRequests()[1]
+        def secondBatchRequest = readRequests()[2]
+        def deletedAsset = assets.remove(1)
+        gatewayClient.sendMessage(SharedEvent.MESSAGE_PREFIX + ValueUtil.asJSON(new AssetEvent(AssetEvent.Cause.DELETE, deletedAsset, null)).get())
+
+        and: "the gateway returns the remaining assets of the first batch"
+        conditions.eventually {
+            assert gatewayConnector.cachedAssetEvents.size() == 1
+        }
+        replyWithAssets(firstBatchRequest)
+
+        then: "the request index should have been adjusted so the next batch starts at the asset following the second batch"
+        conditions.eventually {
+            def requests = readRequests()
+            assert requests.size() == 4
+            assert requests[3].messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + "5"
+            assert requestedIds(requests[3]) == assets.subList(5, 8).collect {it.id}
+            assert gatewayConnector.syncIndex == 2
+            assert gatewayConnector.syncRequestIndex == 8
+            assert gatewayConnector.syncPendingBatches.size() == GatewayConnector.SYNC_DIGEST_PIPELINE_DEPTH
+            assert gatewayConnector.cachedAssetEvents.isEmpty()
+        }
+
+        when: "the gateway returns the second batch"
+        replyWithAssets(secondBatchRequest)
+
+        then: "the last batch should be requested"
+        conditions.eventually {
+            def requests = readRequests()
+            assert requests.size() == 5
+            assert requests[4].messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + "8"
+            assert requestedIds(requests[4]) == [assets[8].id]
+        }
+
+        when: "the gateway returns the remaining batches"
+        replyWithAssets(readRequests()[3])
+        replyWithAssets(readRequests()[4])
+
+        then: "the gateway should become connected with all but the deleted asset replicated"
+        conditions.eventually {
+            gateway = assetStorageService.find(gateway.getId())
+            assert gateway.getGatewayStatus().orElse(null) == ConnectionStatus.CONNECTED
+            assert assetStorageService.findAll(new AssetQuery().parents(gateway.getId()).recursive(true)).size() == assets.size()
+            assert assetStorageService.find(mapAssetId(gateway.id, deletedAsset.id, false)) == null
+            assert gatewayConnector.assetDigests.size() == assets.size()
+            assert !gatewayConnector.assetDigests.containsKey(deletedAsset.id)
+        }
+
+        when: "the gateway disconnects"
+        gatewayClient.disconnect()
+
+        then: "the gateway connector should be disconnected"
+        conditions.eventually {
+            assert !gatewayConnector.connected
+        }
+
+        when: "an attribute of one asset and the version of another asset change on the gateway whilst disconnected"
+        advancePseudoClock(1, TimeUnit.SECONDS, container)
+        assets[2].getAttribute("temp").ifPresent{it.setValue(25d, timerService.getCurrentTimeMillis())}
+        assets[6].setName("Test Digest Room Updated")
+        assets[6].setVersion(assets[6].getVersion() + 1)
+
+        and: "the digest sync batches are reduced to a single asset"
+        GatewayConnector.SYNC_DIGEST_ASSET_BATCH_SIZE = 1
+        clientReceivedMessages.clear()
+
+        and: "the gateway reconnects"
+        gatewayClient.connect()
+
+        then: "the central manager should request the asset digests"
+        conditions.eventually {
+            assert gatewayConnector.connected
+            assert readRequests().size() == 1
+            assert readRequests()[0].messageId == GatewayConnector.ASSET_READ_EVENT_NAME_DIGESTS
+        }
+
+        when: "the gateway returns the digests of its assets"
+        replyWithDigests()
+
+        then: "only the changed assets should be requested in single asset batches with both outstanding"
+        conditions.eventually {
+            def requests = readRequests()
+            assert requests.size() == 3
+            assert requests[1].messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + "0"
+            assert requestedIds(requests[1]) == [assets[2].id]
+            assert requests[2].messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + "1"
+            assert requestedIds(requests[2]) == [assets[6].id]
+            assert gatewayConnector.syncPendingBatches.size() == GatewayConnector.SYNC_DIGEST_PIPELINE_DEPTH
+        }
+
+        when: "the gateway returns the changed assets"
+        replyWithAssets(readRequests()[1])
+        replyWithAssets(readRequests()[2])
+
+        then: "the gateway should become connected without requesting any other assets"
+        conditions.eventually {
+            gateway = assetStorageService.find(gateway.getId())
+            assert gateway.getGatewayStatus().orElse(null) == ConnectionStatus.CONNECTED
+        }
+        assert readRequests().size() == 3
+
+        and: "the changes should have been replicated"
+        conditions.eventually {
+            def room2 = assetStorageService.find(mapAssetId(gateway.id, assets[2].id, false))
+            def room6 = assetStorageService.find(mapAssetId(gateway.id, assets[6].id, false))
+            assert room2.getAttribute("temp").flatMap{it.getValue()}.orElse(null) == 25d
+            assert room6.getName() == "Test Digest Room Updated"
+            assert gatewayConnector.assetDigests.get(assets[2].id).timestamp == AssetDigest.fromAsset(assets[2]).timestamp
+            assert gatewayConnector.assetDigests.get(assets[6].id).version == assets[6].version
+        }
+
+        cleanup: "restore the digest sync settings and cleanup the gateway client"
+        GatewayConnector.SYNC_DIGEST_ASSET_BATCH_SIZE = batchSize
+        GatewayConnector.SYNC_DIGEST_PIPELINE_DEPTH = pipelineDepth
+        if (gatewayClient != null) {
+            gatewayClient.disconnect()
+            gatewayClient.removeAllMessageConsumers()
+        }
+    }
+
     def "Verify gateway client service"() {
 
         given: "the container environment is started with the spy gateway client service"
@@ -737,6 +981,8 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
         def assetStorageService = container.getService(AssetStorageService.class)
         def gatewayService = container.getService(GatewayService.class)
         def gatewayClientService = container.getService(GatewayClientService.class)
+        def clientEventService = container.getService(ClientEventService.class)
+        def timerService = container.getService(TimerService.class)
         def agentService = container.getService(AgentService.class)
         def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
 
@@ -804,6 +1050,15 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert gatewayAssets.size() == cityAssets.size()
         }
 
+        and: "the gateway should have been synchronised using asset digests"
+        def gatewayConnector = gatewayService.gatewayConnectorMap.get(gateway.getId())
+        assert gatewayConnector.digestSyncSupported
+        conditions.eventually {
+            def cityAssets = assetStorageService.findAll(new AssetQuery().tenant(new TenantPredicate(managerTestSetup.realmCityTenant)))
+            assert gatewayConnector.assetDigests.size() == cityAssets.size()
+            assert cityAssets.every {gatewayConnector.assetDigests.get(it.id)?.version == it.version}
+        }
+
         when: "a gateway client asset is modified"
         MicrophoneAsset microphone1 = assetStorageService.find(managerTestSetup.microphone1Id)
         microphone1.setName("Microphone 1 Updated")
@@ -861,7 +1116,54 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert ((SimulatorProtocol)agentService.getProtocolInstance(managerTestSetup.smartCityServiceAgentId)).linkedAttributes.containsKey(new AttributeRef(mapAssetId(gateway.id, microphone3.id, true), MicrophoneAsset.SOUND_LEVEL.name))
         }
 
-        when: "an attribute is updated on the gateway client"
+        and: "the gateway client should batch attribute events as the central manager accepts them"
+        conditions.eventually {
+            assert gatewayClientService.pendingAttributeEvents.containsKey(managerTestSetup.realmCityTenant)
+            assert gatewayClientService.pendingAttributeEvents.get(managerTestSetup.realmCityTenant).isEmpty()
+        }
+
+        when: "the gateway client batch window is extended so the batch can be observed"
+        def attributeEventBatchMillis = gatewayClientService.attributeEventBatchMillis
+        gatewayClientService.attributeEventBatchMillis = 600000
+        List<AttributeEvent> mirroredEvents = Collections.synchronizedList([])
+        def subscriptionId = clientEventService.addInternalSubscription(
+            AttributeEvent.class,
+            new AssetFilter<AttributeEvent>().setAssetIds(mapAssetId(gateway.id, microphone2.id, false)).setAttributeNames("test"),
+            {mirroredEvents.add(it)})
+
+        and: "time advances"
+        advancePseudoClock(1, TimeUnit.SECONDS, container)
+
+        and: "an attribute is updated several times on the gateway client"
+        def batchTime = timerService.getCurrentTimeMillis()
+        def batchValues = (1..5).collect {"batchValue$it".toString()}
+        batchValues.eachWithIndex {value, i ->
+            assetProcessingService.sendAttributeEvent(new AttributeEvent(microphone2.id, "test", value, batchTime - batchValues.size() + i + 1))
+        }
+
+        then: "the events should be held in a single pending batch"
+        conditions.eventually {
+            assert gatewayClientService.pendingAttributeEvents.get(managerTestSetup.realmCityTenant).collect {it.value.orElse(null)} == batchValues
+        }
+        assert mirroredEvents.isEmpty()
+
+        when: "the batch is sent"
+        gatewayClientService.flushAttributeEvents(managerTestSetup.realmCityTenant)
+
+        then: "the central manager should receive the batch and apply every event of it in order"
+        conditions.eventually {
+            assert mirroredEvents.collect {it.value.orElse(null)} == batchValues
+            assert mirroredEvents.collect {it.timestamp} == mirroredEvents.collect {it.timestamp}.sort(false)
+            def mirroredMicrophone2 = assetStorageService.find(mapAssetId(gateway.id, microphone2.id, false))
+            assert mirroredMicrophone2.getAttribute("test").flatMap{it.getValue()}.orElse("") == batchValues.last()
+        }
+        assert gatewayClientService.pendingAttributeEvents.get(managerTestSetup.realmCityTenant).isEmpty()
+
+        when: "the batch window is restored"
+        gatewayClientService.attributeEventBatchMillis = attributeEventBatchMillis
+        clientEventService.cancelInternalSubscription(subscriptionId)
+
+        and: "an attribute is updated on the gateway client"
         assetProcessingService.sendAttributeEvent(new AttributeEvent(microphone2.id, "test", "newValue"))
 
         then: "the mirrored asset attribute should also be updated"
@@ -894,6 +1196,7 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
         assert deleted
         conditions.eventually {
             assert assetStorageService.find(mapAssetId(gateway.id, managerTestSetup.microphone1Id, false)) == null
+            assert !gatewayConnector.assetDigests.containsKey(managerTestSetup.microphone1Id)
         }
     }
 }
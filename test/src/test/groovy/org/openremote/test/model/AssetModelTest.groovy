@@ -187,6 +187,48 @@ class AssetModelTest extends Specification implements ManagerContainerTrait {
         clonedAttribute.getValue().orElse(null) == attribute.getValue().orElse(null)
         clonedAttribute.getMeta() == attribute.getMeta()
 
+        when: "an attribute with a JSON value and meta is cloned"
+        def jsonValue = ValueUtil.JSON.createObjectNode().put("mode", "auto")
+        jsonValue.putArray("schedule").add(18).add(21)
+        def jsonAttribute = new Attribute<>("settings", ValueType.JSON_OBJECT, jsonValue, 1000L)
+            .addMeta(new MetaItem<>(MetaItemType.LABEL, "Settings"), new MetaItem<>(MetaItemType.UNITS, ["celsius"] as String[]))
+        def clonedJsonAttribute = ValueUtil.clone(jsonAttribute)
+
+        then: "the cloned attribute should be equal but not share any mutable state with the source"
+        clonedJsonAttribute.deepEquals(jsonAttribute)
+        !clonedJsonAttribute.getValue().get().is(jsonValue)
+        !clonedJsonAttribute.getMeta().is(jsonAttribute.getMeta())
+        !clonedJsonAttribute.getMetaValue(MetaItemType.UNITS).get().is(jsonAttribute.getMetaValue(MetaItemType.UNITS).get())
+
+        when: "the cloned attribute is modified"
+        clonedJsonAttribute.getValue().get().put("mode", "manual")
+        clonedJsonAttribute.getMeta().get(MetaItemType.LABEL).get().setValue("Modified")
+
+        then: "the source attribute should be unchanged"
+        jsonAttribute.getValue().get().get("mode").asText() == "auto"
+        jsonAttribute.getMetaValue(MetaItemType.LABEL).orElse(null) == "Settings"
+
+        when: "an asset is copied"
+        asset.setId("testLightAssetId12345a")
+        def copiedAsset = asset.deepCopy()
+
+        then: "the copy should be an equal asset of the same type that doesn't share attributes with the source"
+        copiedAsset instanceof LightAsset
+        copiedAsset.getId() == asset.getId()
+        copiedAsset.getName() == asset.getName()
+        copiedAsset.getRealm() == asset.getRealm()
+        copiedAsset.getType() == asset.getType()
+        !copiedAsset.getAttributes().is(asset.getAttributes())
+        copiedAsset.getAttributes().keySet() == asset.getAttributes().keySet()
+        copiedAsset.getAttributes().values().every { it.deepEquals(asset.getAttribute(it.getName()).get()) }
+        !copiedAsset.getAttribute("testAttribute").get().is(asset.getAttribute("testAttribute").get())
+
+        when: "an attribute of the copy is modified"
+        copiedAsset.getAttribute("testAttribute").get().setValue(200.5)
+
+        then: "the source asset should be unchanged"
+        asset.getAttribute("testAttribute", BIG_NUMBER.type).flatMap{it.getValue()}.orElse(null) == 100.5
+
         when: "an asset state is serialized"
         def assetState = new AssetState(asset2, attribute, null)
         def assetStateStr = ValueUtil.asJSON(assetState).orElse(null)
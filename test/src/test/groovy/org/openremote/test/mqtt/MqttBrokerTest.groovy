@@ -307,6 +307,12 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert mqttBrokerServiceAttributeEventCalls == 3
         }
 
+        and: "the verified auth context and the write authorization of the topic should be kept by the connection"
+        def mqttConnection = mqttBrokerService.sessionIdConnectionMap.get(mqttClientId)
+        mqttConnection.isWriteAuthorized(topic)
+        mqttConnection.getAuthContext() != null
+        mqttConnection.getAuthContext().is(mqttConnection.getAuthContext())
+
         when: "a mqtt client unsubscribes to an asset"
         topic = keycloakTestSetup.tenantBuilding.realm + "/" + mqttClientId + "/attribute/" + managerTestSetup.apartment1HallwayId
         remainingLength = 4 + topic.size()
@@ -674,4 +680,17 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert mqttBrokerService.sessionIdConnectionMap.size() == 0
         }
     }
+
+    def "Check publish topics of wildcard subscriptions"() {
+        expect: "the wildcard level to be replaced by the asset ID or attribute name of the event"
+        new MqttBrokerService.PublishTopicTemplate(topic).getTopic(new AttributeEvent("asset1", "temperature", 20)) == expectedTopic
+
+        where:
+        topic                                          | expectedTopic
+        "realm/client/attribute/asset1/temperature"    | "realm/client/attribute/asset1/temperature"
+        "realm/client/attribute/+"                     | "realm/client/attribute/asset1"
+        "realm/client/attribute/asset1/+"              | "realm/client/attribute/asset1/temperature"
+        "realm/client/attribute/parent1/+/temperature" | "realm/client/attribute/parent1/asset1/temperature"
+        "realm/client/attributevalue/asset1/#"         | "realm/client/attributevalue/asset1/temperature"
+    }
 }
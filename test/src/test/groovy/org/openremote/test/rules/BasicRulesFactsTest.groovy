@@ -5,14 +5,31 @@ import groovy.transform.ToString
 import org.openremote.container.Container
 import org.openremote.container.timer.TimerService
 import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.rules.AssetQueryPredicate
 import org.openremote.manager.rules.RulesClock
 import org.openremote.manager.rules.RulesEngine
 import org.openremote.manager.rules.RulesFacts
 import org.openremote.manager.rules.facade.AssetsFacade
+import org.openremote.model.asset.Asset
+import org.openremote.model.asset.impl.BuildingAsset
+import org.openremote.model.asset.impl.RoomAsset
+import org.openremote.model.asset.impl.ThermostatAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.query.AssetQuery
+import org.openremote.model.query.LogicGroup
+import org.openremote.model.query.filter.AttributePredicate
+import org.openremote.model.query.filter.NumberPredicate
+import org.openremote.model.query.filter.ParentPredicate
+import org.openremote.model.query.filter.PathPredicate
+import org.openremote.model.query.filter.StringPredicate
+import org.openremote.model.rules.AssetState
 import spock.lang.Specification
 
 import java.util.stream.Collectors
 
+import static org.openremote.model.value.ValueType.NUMBER
+
 class BasicRulesFactsTest extends Specification {
 
     @ToString(includeNames = true)
@@ -398,4 +415,59 @@ class BasicRulesFactsTest extends Specification {
         assert !rulesFacts.hasTemporaryFacts()
         assert rulesFacts.match(AnonFact).count() == 0
     }
+
+    def "Match asset states using the indexes with the same results as a full scan"() {
+
+        given: "asset states of a building, room and thermostat hierarchy"
+        def createAsset = { Asset asset, String id, Asset parent ->
+            asset.setId(id).setRealm("master")
+            if (parent != null) {
+                asset.setParent(parent)
+            }
+            asset.setPath(parent != null ? ([id] + (parent.path as List)) as String[] : [id] as String[])
+            asset
+        }
+        def putAssetStates = { Asset asset, double value ->
+            ["temperature", "humidity", "targetTemperature"].each {
+                rulesFacts.putAssetState(new AssetState<>(asset, new Attribute<>(it, NUMBER, value), AttributeEvent.Source.SENSOR))
+            }
+        }
+        def buildings = (0..2).collect { createAsset(new BuildingAsset("Building " + it), "building" + it, null) }
+        def rooms = (0..8).collect { createAsset(new RoomAsset("Room " + it), "room" + it, buildings[it % 3]) }
+        def thermostats = (0..17).collect { createAsset(new ThermostatAsset("Thermostat " + it), "thermostat" + it, rooms[it % 9]) }
+        (buildings + rooms + thermostats).eachWithIndex { asset, i -> putAssetStates(asset, i) }
+
+        and: "queries using the different indexes"
+        def queries = [
+            new AssetQuery().ids("room1", "thermostat2", "unknown"),
+            new AssetQuery().ids("room1").attributeName("humidity"),
+            new AssetQuery().parents("building1", "room2"),
+            new AssetQuery().parents(new ParentPredicate(true)),
+            new AssetQuery().parents(new ParentPredicate().type(RoomAsset.class)),
+            new AssetQuery().paths(new PathPredicate(thermostats[4].path)),
+            new AssetQuery().types(RoomAsset.class),
+            new AssetQuery().types(ThermostatAsset.class).attributeValue("temperature", new NumberPredicate(20, AssetQuery.Operator.GREATER_THAN)),
+            new AssetQuery().attributeNames("humidity", "targetTemperature"),
+            new AssetQuery().attributes(new AttributePredicate(new StringPredicate(AssetQuery.Match.BEGIN, "temp"), null)),
+            new AssetQuery().attributes(new LogicGroup<AttributePredicate>(LogicGroup.Operator.OR, [new LogicGroup<AttributePredicate>(new AttributePredicate("humidity", null))], new AttributePredicate("temperature", null))),
+            new AssetQuery()
+        ]
+        def fullScan = { AssetQuery query -> rulesFacts.matchAssetState(new AssetQueryPredicate(rulesFacts.timerService, rulesFacts.assetStorageService, query)).collect(Collectors.toList()) }
+        def indexed = { AssetQuery query -> rulesFacts.matchAssetState(query).collect(Collectors.toList()) }
+
+        expect: "the indexed matches to be the same as the full scan matches in the same order"
+        queries.every { indexed(it) == fullScan(it) }
+        indexed(new AssetQuery().parents("building1")).size() == 9
+
+        when: "asset states are updated, an asset is moved and asset states are removed"
+        putAssetStates(rooms[0], 100)
+        createAsset(thermostats[0], "thermostat0", rooms[5])
+        putAssetStates(thermostats[0], 101)
+        rulesFacts.removeAssetState(new AssetState<>(thermostats[1], new Attribute<>("humidity", NUMBER), AttributeEvent.Source.SENSOR))
+
+        then: "the indexed matches should still be the same as the full scan matches"
+        queries.every { indexed(it) == fullScan(it) }
+        indexed(new AssetQuery().parents("room0")).every { it.id != "thermostat0" }
+        indexed(new AssetQuery().parents("room5")).count { it.id == "thermostat0" } == 3
+    }
 }
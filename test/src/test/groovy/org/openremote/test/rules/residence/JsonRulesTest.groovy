@@ -3,12 +3,14 @@ package org.openremote.test.rules.residence
 import com.fasterxml.jackson.databind.node.ObjectNode
 import com.google.firebase.messaging.Message
 import net.fortuna.ical4j.model.Recur
+import org.openremote.container.persistence.PersistenceEvent
 import org.openremote.container.timer.TimerService
 import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.notification.EmailNotificationHandler
 import org.openremote.manager.notification.NotificationService
 import org.openremote.manager.notification.PushNotificationHandler
+import org.openremote.manager.rules.JsonRulesBuilder
 import org.openremote.manager.rules.RulesEngine
 import org.openremote.manager.rules.RulesService
 import org.openremote.manager.rules.RulesetDeployment
@@ -29,6 +31,7 @@ import org.openremote.model.notification.AbstractNotificationMessage
 import org.openremote.model.notification.Notification
 import org.openremote.model.notification.NotificationSendResult
 import org.openremote.model.notification.PushNotificationMessage
+import org.openremote.model.rules.AssetState
 import org.openremote.model.rules.Ruleset
 import org.openremote.model.rules.RulesetStatus
 import org.openremote.model.rules.TemporaryFact
@@ -45,6 +48,7 @@ import java.time.temporal.ChronoUnit
 
 import static java.util.concurrent.TimeUnit.HOURS
 import static java.util.concurrent.TimeUnit.MILLISECONDS
+import static java.util.concurrent.TimeUnit.SECONDS
 import static org.openremote.test.setup.ManagerTestSetup.DEMO_RULE_STATES_SMART_BUILDING
 import static org.openremote.model.Constants.KEYCLOAK_CLIENT_ID
 import static org.openremote.model.util.ValueUtil.parse
@@ -478,4 +482,143 @@ class JsonRulesTest extends Specification implements ManagerContainerTrait {
             notificationService.notificationHandlerMap.put(pushNotificationHandler.getTypeName(), pushNotificationHandler)
         }
     }
+
+    def "Incremental rule condition evaluation fires the same rules as a full re-evaluation"() {
+
+        given: "the container environment is started"
+        def conditions = new PollingConditions(timeout: 15, delay: 0.2)
+        def container = startContainer(defaultConfig(), defaultServices())
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+        def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
+        def rulesService = container.getService(RulesService.class)
+        def timerService = container.getService(TimerService.class)
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        RulesEngine tenantBuildingEngine
+
+        and: "the clock is stopped for testing purposes"
+        stopPseudoClock()
+
+        and: "rules with a condition matching several assets and a condition group spanning several assets"
+        def lightOnCondition = { String parentOrId, boolean parent ->
+            """{
+                "assets": {
+                    "types": ["RoomAsset"],
+                    ${parent ? "\"parents\": [{\"id\": \"$parentOrId\"}]" : "\"ids\": [\"$parentOrId\"]"},
+                    "attributes": {
+                        "items": [{
+                            "name": {"predicateType": "string", "match": "EXACT", "value": "lightSwitch"},
+                            "value": {"predicateType": "boolean", "value": true}
+                        }]
+                    }
+                }
+            }"""
+        }
+        Ruleset ruleset = new TenantRuleset(
+            keycloakTestSetup.tenantBuilding.realm,
+            "Incremental evaluation test",
+            Ruleset.Lang.JSON,
+            """{
+                "rules": [
+                    {
+                        "name": "Any apartment light on",
+                        "when": {"items": [${lightOnCondition(managerTestSetup.apartment2Id, true)}]},
+                        "then": [{"action": "wait", "millis": 1}]
+                    },
+                    {
+                        "name": "Living room and bathroom lights on",
+                        "when": {"operator": "AND", "items": [${lightOnCondition(managerTestSetup.apartment2LivingroomId, false)}, ${lightOnCondition(managerTestSetup.apartment2BathroomId, false)}]},
+                        "then": [{"action": "wait", "millis": 1}]
+                    }
+                ]
+            }""").setId(1L)
+
+        expect: "the rule engine to become available and be running with asset states inserted"
+        conditions.eventually {
+            tenantBuildingEngine = rulesService.tenantEngines.get(keycloakTestSetup.tenantBuilding.realm)
+            assert tenantBuildingEngine != null
+            assert tenantBuildingEngine.isRunning()
+            assert tenantBuildingEngine.assetStates.size() == DEMO_RULE_STATES_SMART_BUILDING
+        }
+
+        when: "one builder of the rules is evaluated incrementally and another is completely re-evaluated on every change"
+        def facts = tenantBuildingEngine.facts
+        def newBuilder = {
+            new JsonRulesBuilder(ruleset, timerService, assetStorageService, container.getExecutorService(), null, null, null, null, null, { action, delay -> })
+        }
+        def incrementalBuilder = newBuilder()
+        def fullBuilder = newBuilder()
+        incrementalBuilder.start(facts)
+        fullBuilder.start(facts)
+
+        // Fire the rules whose condition matches and return the asset IDs that triggered each of them
+        def fire = { JsonRulesBuilder builder ->
+            Map<String, Set<String>> fired = [:]
+            builder.build().each { rule ->
+                if (rule.evaluate(facts)) {
+                    fired[rule.name] = new HashSet<>(builder.ruleStateMap[rule.name].thenMatchedAssetIds)
+                    rule.execute(facts)
+                }
+            }
+            fired
+        }
+        def switchLight = { String assetId, boolean on ->
+            advancePseudoClock(1, SECONDS, container)
+            assetProcessingService.sendAttributeEvent(new AttributeEvent(assetId, "lightSwitch", on))
+            AssetState<?> assetState = null
+            conditions.eventually {
+                assetState = tenantBuildingEngine.assetStates.find { it.id == assetId && it.name == "lightSwitch" }
+                assert assetState.value.orElse(null) == on
+            }
+            incrementalBuilder.onAssetStatesChanged(facts, new RulesEngine.AssetStateChangeEvent(PersistenceEvent.Cause.UPDATE, assetState))
+            fullBuilder.onAssetStatesChanged(facts, null)
+        }
+        def anyLightConditionState = { JsonRulesBuilder builder ->
+            builder.ruleStateMap["Any apartment light on"].conditionStateMap.values().first()
+        }
+        def initiallyFired = fire(incrementalBuilder)
+
+        then: "both should fire the same rules for the same assets"
+        initiallyFired == fire(fullBuilder)
+        initiallyFired["Any apartment light on"] == [managerTestSetup.apartment2LivingroomId, managerTestSetup.apartment2BathroomId] as Set
+        initiallyFired["Living room and bathroom lights on"] == [managerTestSetup.apartment2LivingroomId, managerTestSetup.apartment2BathroomId] as Set
+
+        when: "only the bathroom light is switched off"
+        switchLight(managerTestSetup.apartment2BathroomId, false)
+
+        then: "only the changed asset state should be re-tested incrementally"
+        !anyLightConditionState(incrementalBuilder).evaluateAll
+        anyLightConditionState(incrementalBuilder).changedAssetStates*.id == [managerTestSetup.apartment2BathroomId]
+        anyLightConditionState(fullBuilder).evaluateAll
+
+        and: "both should fire the same rules"
+        def bathroomOffFired = fire(incrementalBuilder)
+        bathroomOffFired == fire(fullBuilder)
+        bathroomOffFired.isEmpty()
+        anyLightConditionState(incrementalBuilder).changedAssetStates.isEmpty()
+
+        when: "only the bathroom light is switched on again"
+        switchLight(managerTestSetup.apartment2BathroomId, true)
+        def bathroomOnFired = fire(incrementalBuilder)
+
+        then: "both should fire the same rules for only the changed asset"
+        bathroomOnFired == fire(fullBuilder)
+        bathroomOnFired["Any apartment light on"] == [managerTestSetup.apartment2BathroomId] as Set
+
+        when: "only the living room light is switched off and on again"
+        switchLight(managerTestSetup.apartment2LivingroomId, false)
+        def livingroomOffFired = fire(incrementalBuilder)
+        def livingroomOffFullFired = fire(fullBuilder)
+        switchLight(managerTestSetup.apartment2LivingroomId, true)
+        def livingroomOnFired = fire(incrementalBuilder)
+
+        then: "both should fire the same rules every time"
+        livingroomOffFired == livingroomOffFullFired
+        livingroomOnFired == fire(fullBuilder)
+        livingroomOnFired["Any apartment light on"] == [managerTestSetup.apartment2LivingroomId] as Set
+
+        and: "the matched asset states of both should be the same"
+        anyLightConditionState(incrementalBuilder).predicateMatchedAssetStates == anyLightConditionState(fullBuilder).predicateMatchedAssetStates
+        anyLightConditionState(incrementalBuilder).predicateUnmatchedAssetStates == anyLightConditionState(fullBuilder).predicateUnmatchedAssetStates
+    }
 }